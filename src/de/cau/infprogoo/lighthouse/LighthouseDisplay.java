@@ -20,6 +20,7 @@ import org.eclipse.jetty.websocket.client.ClientUpgradeRequest;
 import org.eclipse.jetty.websocket.client.WebSocketClient;
 import org.msgpack.core.MessageBufferPacker;
 import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
 
 /**
  * This class wraps the network communication with the lighthouse in a simple
@@ -102,6 +103,10 @@ public class LighthouseDisplay {
 	 *             if there is an error constructing a web-socket-client
 	 */
 	public void connect(String destUri, boolean selfSigned) throws Exception {
+		// a client of an earlier connection would keep its threads and session
+		if (client != null) {
+			close();
+		}
 		if (selfSigned) {
 			// Since we use a self-signed certificate, we can't check the
 			// validity of the certificate (and we have to disable this check)
@@ -121,6 +126,18 @@ public class LighthouseDisplay {
 		}
 	}
 
+	/**
+	 * Uses an already opened web-socket session instead of connecting to the
+	 * server, eg a session which discards the data to measure the encoding of the
+	 * requests
+	 * 
+	 * @param session
+	 *            the opened session
+	 */
+	public void connect(Session session) {
+		handler.onConnect(session);
+	}
+
 	/**
 	 * getter for the configured username
 	 * 
@@ -155,6 +172,52 @@ public class LighthouseDisplay {
 		handler.send(data, 0, data.length);
 	}
 
+	/**
+	 * sets the listener which is told the duration of every request sent to the
+	 * server
+	 * 
+	 * @param listener
+	 *            the listener or null for none
+	 */
+	public void setSendListener(SendListener listener) {
+		handler.sendListener = listener;
+	}
+
+	/**
+	 * listener for the durations of the requests sent to the server
+	 */
+	public interface SendListener {
+		/**
+		 * called after a request was sent
+		 * 
+		 * @param encodeNanos
+		 *            the time encoding the request took in nanoseconds
+		 * @param sendNanos
+		 *            the time sending the request took in nanoseconds
+		 */
+		void requestSent(long encodeNanos, long sendNanos);
+	}
+
+	/**
+	 * returns the round trip time of the last request which was answered by the
+	 * server
+	 * 
+	 * @return the round trip time in nanoseconds or -1 if no request was answered
+	 *         yet
+	 */
+	public long getLastRoundTripNanos() {
+		return handler.lastRoundTripNanos;
+	}
+
+	/**
+	 * returns the number of requests which were sent to the server
+	 * 
+	 * @return the number of sent requests
+	 */
+	public long getRequestsSent() {
+		return handler.requestsSent;
+	}
+
 	/**
 	 * returns if there is currently a connection open note: connection is
 	 * established asynchronous so this value might be false after a call of
@@ -168,11 +231,15 @@ public class LighthouseDisplay {
 
 	public void close() {
 		handler.close();
+		if (client == null) {
+			return;
+		}
 		try {
 			client.stop();
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
+		client = null;
 	}
 
 	/**
@@ -186,6 +253,15 @@ public class LighthouseDisplay {
 		private boolean connected = false;
 		private int debug;
 
+		// the send times of the last requests by their request-ID, to compute the
+		// round trip time when the response arrives
+		private static final int PENDING_REQUESTS = 64;
+		private final long[] sentAt = new long[PENDING_REQUESTS];
+		private int requestId = 0;
+		private volatile long requestsSent = 0;
+		private volatile long lastRoundTripNanos = -1;
+		private volatile SendListener sendListener;
+
 		private LighthouseDisplayHandler(LighthouseDisplay parent, int debug) {
 			this.parent = parent;
 			this.debug = debug;
@@ -214,11 +290,18 @@ public class LighthouseDisplay {
 				// "PAYL" => *
 				// "REID" => Int // Request-ID
 				// }
+				long encodeStart = System.nanoTime();
+				int reid;
+				synchronized (sentAt) {
+					reid = requestId++ & Integer.MAX_VALUE;
+					sentAt[reid % PENDING_REQUESTS] = System.nanoTime();
+				}
+
 				MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
 				packer.packMapHeader(6);
 				{
 					packer.packString("REID");
-					packer.packInt(0);
+					packer.packInt(reid);
 
 					packer.packString("VERB");
 					packer.packString("PUT");
@@ -248,9 +331,40 @@ public class LighthouseDisplay {
 					packer.packBinaryHeader(length);
 					packer.addPayload(data, offset, length);
 				}
+				ByteBuffer request = ByteBuffer.wrap(packer.toByteArray());
+				long sendStart = System.nanoTime();
 				RemoteEndpoint endpoint = session.getRemote();
-				endpoint.sendBytes(ByteBuffer.wrap(packer.toByteArray()));
+				endpoint.sendBytes(request);
 				endpoint.flush();
+				requestsSent++;
+
+				SendListener listener = sendListener;
+				if (listener != null) {
+					listener.requestSent(sendStart - encodeStart, System.nanoTime() - sendStart);
+				}
+			}
+		}
+
+		/**
+		 * this method reads the request-ID of a response and computes the round trip
+		 * time of the request
+		 */
+		private void responseReceived(byte buf[], int offset, int length) {
+			long receivedAt = System.nanoTime();
+			try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buf, offset, length)) {
+				int entries = unpacker.unpackMapHeader();
+				for (int i = 0; i < entries; i++) {
+					if (unpacker.unpackString().equals("REID")) {
+						int reid = unpacker.unpackInt();
+						synchronized (sentAt) {
+							lastRoundTripNanos = receivedAt - sentAt[reid % PENDING_REQUESTS];
+						}
+						return;
+					}
+					unpacker.skipValue();
+				}
+			} catch (IOException | RuntimeException e) {
+				// not a response to a request
 			}
 		}
 
@@ -306,6 +420,7 @@ public class LighthouseDisplay {
 
 		@OnWebSocketMessage
 		public void methodName(byte buf[], int offset, int length) {
+			responseReceived(buf, offset, length);
 			if (debug > 1) {
 				System.out.printf("LighthouseDisplay, got binary Message: ");
 				for (int i = 0; i < length; i++) {
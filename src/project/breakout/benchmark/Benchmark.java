@@ -0,0 +1,82 @@
+package project.breakout.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A benchmark of the {@code BenchmarkRunner}. The fixture of a benchmark is
+ * only created when the benchmark is run, so filtered benchmarks don't cost
+ * anything.
+ */
+public class Benchmark {
+	private final String name;
+	private final Map<String, String> params = new LinkedHashMap<>();
+	private final Supplier<Operation> setup;
+
+	/**
+	 * An operation which is measured. It returns a value computed from its work,
+	 * which is consumed by the runner, so the JIT can't remove the work.
+	 */
+	public interface Operation {
+		long run();
+	}
+
+	/**
+	 * Constructor for the Benchmark.
+	 *
+	 * @param name
+	 *            The name of the benchmark, eg "collision.brick".
+	 * @param setup
+	 *            Creates the fixture and returns the measured operation.
+	 */
+	public Benchmark(String name, Supplier<Operation> setup) {
+		this.name = name;
+		this.setup = setup;
+	}
+
+	/**
+	 * Adds a parameter, which is reported with the results.
+	 *
+	 * @param key
+	 *            The name of the parameter.
+	 * @param value
+	 *            The value of the parameter.
+	 * @return this benchmark.
+	 */
+	public Benchmark param(String key, Object value) {
+		params.put(key, String.valueOf(value));
+		return this;
+	}
+
+	Operation setUp() {
+		return setup.get();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Map<String, String> getParams() {
+		return params;
+	}
+
+	/**
+	 * Gets the name with the parameters, eg "collision.brick(bricks=100)".
+	 *
+	 * @return the full name.
+	 */
+	public String getFullName() {
+		if (params.isEmpty()) {
+			return name;
+		}
+		StringBuilder fullName = new StringBuilder(name).append('(');
+		for (Map.Entry<String, String> param : params.entrySet()) {
+			if (fullName.charAt(fullName.length() - 1) != '(') {
+				fullName.append(", ");
+			}
+			fullName.append(param.getKey()).append('=').append(param.getValue());
+		}
+		return fullName.append(')').toString();
+	}
+}
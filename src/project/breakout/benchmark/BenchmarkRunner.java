@@ -0,0 +1,234 @@
+package project.breakout.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * This class runs the benchmarks of the {@code BreakoutBenchmarks} and writes
+ * the results in the JSON format of JMH, so runs can be compared over time with
+ * the usual JMH tools. It is a small harness in plain Java, as the project has
+ * no build which could run JMH itself.
+ *
+ * Every benchmark is warmed up first, then the average time of an operation is
+ * measured in several iterations. The error is the half width of the 99.9%
+ * confidence interval of the iterations. The output of the game is suppressed
+ * while measuring.
+ *
+ * The collision benchmarks play a headless {@code BreakoutGame}, so all
+ * benchmarks run without a display. The lighthouse benchmarks need the
+ * messages of the {@code LighthouseView} on the classpath.
+ *
+ * Usage: BenchmarkRunner [--filter regex] [--seed n] [--warmup n]
+ * [--iterations n] [--time ms] [--out file]
+ */
+public class BenchmarkRunner {
+	private static final String DEFAULT_OUT = "benchmark-results.json"; //$NON-NLS-1$
+
+	// options
+	private Pattern filter = Pattern.compile(".*");
+	private long seed = 42;
+	private int warmupIterations = 5;
+	private int measurementIterations = 10;
+	private long iterationNanos = 200_000_000L;
+	private Path out = Paths.get(DEFAULT_OUT);
+
+	/**
+	 * Consumes the results of the operations.
+	 */
+	private long sink;
+
+	public static void main(String[] args) throws IOException {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--filter":
+				runner.filter = Pattern.compile(args[++i]);
+				break;
+			case "--seed":
+				runner.seed = Long.parseLong(args[++i]);
+				break;
+			case "--warmup":
+				runner.warmupIterations = Integer.parseInt(args[++i]);
+				break;
+			case "--iterations":
+				runner.measurementIterations = Integer.parseInt(args[++i]);
+				break;
+			case "--time":
+				runner.iterationNanos = Long.parseLong(args[++i]) * 1_000_000L;
+				break;
+			case "--out":
+				runner.out = Paths.get(args[++i]);
+				break;
+			default:
+				System.out.println("unknown option " + args[i]);
+				System.out.println("usage: BenchmarkRunner [--filter regex] [--seed n] [--warmup n] "
+						+ "[--iterations n] [--time ms] [--out file]");
+				return;
+			}
+		}
+		runner.runAll(BreakoutBenchmarks.create(runner.seed));
+	}
+
+	/**
+	 * Runs the benchmarks which match the filter and writes the results.
+	 */
+	private void runAll(List<Benchmark> benchmarks) throws IOException {
+		List<Result> results = new ArrayList<>();
+		for (Benchmark benchmark : benchmarks) {
+			if (!filter.matcher(benchmark.getFullName()).find()) {
+				continue;
+			}
+			try {
+				Result result = run(benchmark);
+				results.add(result);
+				System.out.printf("%-60s %12.1f +/- %8.1f ns/op%n", benchmark.getFullName(), result.score,
+						result.error);
+			} catch (RuntimeException | Error e) {
+				System.out.println(benchmark.getFullName() + " skipped: " + e);
+			}
+		}
+		writeJson(results);
+		System.out.println("results written to " + out.toAbsolutePath());
+	}
+
+	/**
+	 * Warms up and measures a benchmark.
+	 */
+	private Result run(Benchmark benchmark) {
+		PrintStream stdout = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		try {
+			Benchmark.Operation operation = benchmark.setUp();
+
+			// grow the batch until a batch takes long enough to be timed
+			int batch = 1;
+			while (runBatch(operation, batch) < 100_000 && batch < (1 << 30)) {
+				batch *= 2;
+			}
+
+			for (int i = 0; i < warmupIterations; i++) {
+				iteration(operation, batch);
+			}
+			double[] samples = new double[measurementIterations];
+			for (int i = 0; i < measurementIterations; i++) {
+				samples[i] = iteration(operation, batch);
+			}
+			return new Result(benchmark, samples);
+		} finally {
+			System.setOut(stdout);
+		}
+	}
+
+	/**
+	 * Runs batches until the time of an iteration is over.
+	 *
+	 * @return the average time of an operation in nanoseconds.
+	 */
+	private double iteration(Benchmark.Operation operation, int batch) {
+		long operations = 0;
+		long elapsed = 0;
+		while (elapsed < iterationNanos) {
+			elapsed += runBatch(operation, batch);
+			operations += batch;
+		}
+		return (double) elapsed / operations;
+	}
+
+	private long runBatch(Benchmark.Operation operation, int batch) {
+		long start = System.nanoTime();
+		long value = 0;
+		for (int i = 0; i < batch; i++) {
+			value ^= operation.run();
+		}
+		long elapsed = System.nanoTime() - start;
+		sink ^= value;
+		return elapsed;
+	}
+
+	/**
+	 * Writes the results in the JSON format of JMH.
+	 */
+	private void writeJson(List<Result> results) throws IOException {
+		try (Writer json = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+			json.write("[\n");
+			for (int r = 0; r < results.size(); r++) {
+				Result result = results.get(r);
+				json.write("  {\n");
+				json.write("    \"benchmark\" : " + quote(result.benchmark.getName()) + ",\n");
+				json.write("    \"mode\" : \"avgt\",\n");
+				json.write("    \"threads\" : 1,\n");
+				json.write("    \"forks\" : 1,\n");
+				json.write("    \"jdkVersion\" : " + quote(System.getProperty("java.version")) + ",\n");
+				json.write("    \"vmName\" : " + quote(System.getProperty("java.vm.name")) + ",\n");
+				json.write("    \"warmupIterations\" : " + warmupIterations + ",\n");
+				json.write("    \"measurementIterations\" : " + measurementIterations + ",\n");
+				json.write("    \"measurementTime\" : \"" + iterationNanos / 1_000_000 + " ms\",\n");
+				json.write("    \"params\" : {\n");
+				json.write("      \"seed\" : \"" + seed + "\"");
+				for (Map.Entry<String, String> param : result.benchmark.getParams().entrySet()) {
+					json.write(",\n      " + quote(param.getKey()) + " : " + quote(param.getValue()));
+				}
+				json.write("\n    },\n");
+				json.write("    \"primaryMetric\" : {\n");
+				json.write("      \"score\" : " + result.score + ",\n");
+				json.write("      \"scoreError\" : " + result.error + ",\n");
+				json.write("      \"scoreUnit\" : \"ns/op\",\n");
+				json.write("      \"rawData\" : [ [ ");
+				for (int i = 0; i < result.samples.length; i++) {
+					json.write((i > 0 ? ", " : "") + result.samples[i]);
+				}
+				json.write(" ] ]\n");
+				json.write("    }\n");
+				json.write(r < results.size() - 1 ? "  },\n" : "  }\n");
+			}
+			json.write("]\n");
+		}
+	}
+
+	private static String quote(String text) {
+		return '"' + text.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+	}
+
+	/**
+	 * The measured times of a benchmark.
+	 */
+	private static class Result {
+		/**
+		 * The quantile of the normal distribution for the 99.9% confidence interval.
+		 */
+		private static final double Z_999 = 3.2905;
+
+		final Benchmark benchmark;
+		final double[] samples;
+		final double score;
+		final double error;
+
+		Result(Benchmark benchmark, double[] samples) {
+			this.benchmark = benchmark;
+			this.samples = samples;
+
+			double sum = 0;
+			for (double sample : samples) {
+				sum += sample;
+			}
+			score = sum / samples.length;
+
+			double squares = 0;
+			for (double sample : samples) {
+				squares += (sample - score) * (sample - score);
+			}
+			double deviation = samples.length > 1 ? Math.sqrt(squares / (samples.length - 1)) : 0;
+			error = Z_999 * deviation / Math.sqrt(samples.length);
+		}
+	}
+}
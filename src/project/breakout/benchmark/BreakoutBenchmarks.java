@@ -0,0 +1,391 @@
+package project.breakout.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+
+import de.cau.infprogoo.lighthouse.LighthouseDisplay;
+import project.breakout.controller.AutoPlayer;
+import project.breakout.controller.CollisionController;
+import project.breakout.controller.CollisionWith;
+import project.breakout.model.BallModel;
+import project.breakout.model.BreakoutGame;
+import project.breakout.model.BrickStore;
+import project.breakout.model.BricksConfig;
+import project.breakout.model.LevelCache;
+import project.breakout.model.LevelData;
+import project.breakout.model.LevelGenerator;
+import project.breakout.server.GameSession;
+import project.breakout.view.BreakoutBrick;
+import project.breakout.view.LighthouseView;
+
+/**
+ * The benchmarks of the hot paths of the game: the collision checks, the
+ * physics of the ball, loading the levels, painting a frame for the lighthouse
+ * and encoding the requests to the lighthouse.
+ *
+ * All fixtures are generated from the seed, so a run with the same seed
+ * measures the same levels and ball positions.
+ */
+public class BreakoutBenchmarks {
+	private static final int FIELD_WIDTH = 700;
+	private static final int FIELD_HEIGHT = 500;
+	private static final int BALL_RADIUS = 3;
+
+	/**
+	 * The number of ball positions an operation cycles through.
+	 */
+	private static final int POSITIONS = 1024;
+
+	private static final int[] BRICK_COUNTS = { 10, 100, 1000, 10000 };
+	private static final int[] STORE_BRICK_COUNTS = { 10000, 100000, 1000000 };
+
+	/**
+	 * The size of a frame of the lighthouse, 14 floors with 28 windows of 3 bytes.
+	 */
+	private static final int FRAME_BYTES = 14 * 28 * 3;
+
+	/**
+	 * The listener of the games of the collision benchmarks, whose balls miss
+	 * everything.
+	 */
+	private static final BreakoutGame.Listener NO_LISTENER = new BreakoutGame.Listener() {
+		@Override
+		public void frameStarted() {
+		}
+
+		@Override
+		public void frameDone() {
+		}
+
+		@Override
+		public void collided(CollisionWith lastCollisionWith) {
+		}
+
+		@Override
+		public void brickDestroyed(int brick, BreakoutBrick removed) {
+		}
+
+		@Override
+		public void ballLost() {
+		}
+
+		@Override
+		public void levelDone() {
+		}
+	};
+
+	private BreakoutBenchmarks() {
+	}
+
+	/**
+	 * Creates all benchmarks.
+	 *
+	 * @param seed
+	 *            The seed of the fixtures.
+	 * @return the benchmarks.
+	 */
+	public static List<Benchmark> create(long seed) {
+		List<Benchmark> benchmarks = new ArrayList<>();
+
+		// collisions
+		for (int bricks : BRICK_COUNTS) {
+			benchmarks.add(new Benchmark("collision.brick", () -> brickCollision(bricks, false, seed))
+					.param("bricks", bricks).param("storage", "array"));
+		}
+		for (int bricks : STORE_BRICK_COUNTS) {
+			benchmarks.add(new Benchmark("collision.brick", () -> brickCollision(bricks, true, seed))
+					.param("bricks", bricks).param("storage", "store"));
+		}
+		benchmarks.add(new Benchmark("collision.paddle", () -> paddleCollision(seed)));
+
+		// physics
+		benchmarks.add(new Benchmark("ball.updatePosition", () -> ballUpdatePosition(seed)));
+		benchmarks.add(new Benchmark("ball.collisionEvent", () -> ballCollisionEvent(seed)));
+
+		// bot
+		benchmarks.add(new Benchmark("autoPlayer.tick", () -> autoPlayer(false, seed)));
+		benchmarks.add(new Benchmark("autoPlayer.predict", () -> autoPlayer(true, seed)));
+
+		// levels
+		for (int level = 0; level < LevelCache.getLevelCount(); level++) {
+			int levelNumber = level;
+			benchmarks.add(new Benchmark("level.getBrickArray", () -> getBrickArray(levelNumber, true))
+					.param("level", level).param("cache", "warm"));
+			benchmarks.add(new Benchmark("level.getBrickArray", () -> getBrickArray(levelNumber, false))
+					.param("level", level).param("cache", "cold"));
+		}
+
+		// lighthouse
+		benchmarks.add(new Benchmark("lighthouse.paintFrame", () -> lighthousePaintFrame(seed)));
+		benchmarks.add(new Benchmark("lighthouse.encode", () -> lighthouseEncode(seed)));
+		return benchmarks;
+	}
+
+	// ---------collisions-------------------------
+
+	/**
+	 * Checks the ball for a collision with the bricks of a generated level. The
+	 * ball positions miss all bricks, so every candidate brick is tested, like in
+	 * most ticks of the game.
+	 */
+	private static Benchmark.Operation brickCollision(int brickCount, boolean store, long seed) {
+		LevelData level = LevelGenerator.generate(LevelGenerator.Pattern.RANDOM_FILL, brickCount, FIELD_WIDTH,
+				FIELD_HEIGHT / 2, seed);
+		BrickStore brickStore = BrickStore.of(level);
+
+		BreakoutGame game = new BreakoutGame(FIELD_WIDTH, FIELD_HEIGHT, new Random(seed), NO_LISTENER);
+		if (store) {
+			game.setBrickStore(brickStore);
+		} else {
+			game.setBrickArray(level.toBrickArray());
+		}
+		BallModel ball = game.getBall();
+		ball.setRadius(BALL_RADIUS);
+		double[][] positions = missingPositions(level, brickStore, seed);
+
+		CollisionController controller = new CollisionController();
+		return new Benchmark.Operation() {
+			private int next = 0;
+
+			@Override
+			public long run() {
+				double[] position = positions[next++ & (POSITIONS - 1)];
+				ball.setX(position[0]);
+				ball.setY(position[1]);
+				return controller.isBrickCollisionInModel(game) ? 1 : 0;
+			}
+		};
+	}
+
+	/**
+	 * Checks the ball for a collision with the paddle, which it misses.
+	 */
+	private static Benchmark.Operation paddleCollision(long seed) {
+		BreakoutGame game = new BreakoutGame(FIELD_WIDTH, FIELD_HEIGHT, new Random(seed), NO_LISTENER);
+		BallModel ball = game.getBall();
+		ball.setRadius(BALL_RADIUS);
+		CollisionController controller = new CollisionController();
+
+		// the paddle isn't checked right after a collision with it
+		ball.setX(-1);
+		ball.setY(FIELD_HEIGHT / 2);
+		controller.isWallCollisionInModel(game);
+
+		Random random = new Random(seed);
+		double[][] positions = new double[POSITIONS][];
+		for (int i = 0; i < POSITIONS; i++) {
+			positions[i] = new double[] { random.nextDouble() * FIELD_WIDTH,
+					game.getPaddleY() + 20 + random.nextDouble() * FIELD_HEIGHT };
+		}
+		return new Benchmark.Operation() {
+			private int next = 0;
+
+			@Override
+			public long run() {
+				double[] position = positions[next++ & (POSITIONS - 1)];
+				ball.setX(position[0]);
+				ball.setY(position[1]);
+				return controller.isPaddleCollisionInModel(game) ? 1 : 0;
+			}
+		};
+	}
+
+	/**
+	 * Generates ball positions which don't hit any brick. The positions are spread
+	 * over the bricks of the level and the free space below them, where the ball
+	 * is most of the time.
+	 */
+	private static double[][] missingPositions(LevelData level, BrickStore store, long seed) {
+		double bottom = 0;
+		for (int i = 0; i < level.getBrickCount(); i++) {
+			bottom = Math.max(bottom, level.getY(i) + level.getHeight(i));
+		}
+		double height = bottom + FIELD_HEIGHT / 2;
+
+		Random random = new Random(seed);
+		double[][] positions = new double[POSITIONS][];
+		int found = 0;
+		while (found < POSITIONS) {
+			double x = random.nextDouble() * (FIELD_WIDTH - 2 * BALL_RADIUS);
+			double y = random.nextDouble() * height;
+			if (store.findHit(x + BALL_RADIUS, y + BALL_RADIUS, BALL_RADIUS) < 0) {
+				positions[found++] = new double[] { x, y };
+			}
+		}
+		return positions;
+	}
+
+	// ---------physics-------------------------
+
+	private static Benchmark.Operation ballUpdatePosition(long seed) {
+		BallModel ball = new BallModel(FIELD_WIDTH / 2, FIELD_HEIGHT / 2, BALL_RADIUS);
+		ball.setDirection(new Random(seed).nextInt(360));
+		return () -> {
+			ball.updatePosition(0.03);
+			return Double.doubleToRawLongBits(ball.getX());
+		};
+	}
+
+	private static Benchmark.Operation ballCollisionEvent(long seed) {
+		BallModel ball = new BallModel(FIELD_WIDTH / 2, FIELD_HEIGHT / 2, BALL_RADIUS);
+		CollisionWith[] values = CollisionWith.values();
+		Random random = new Random(seed);
+		CollisionWith[] collisions = new CollisionWith[POSITIONS];
+		for (int i = 0; i < POSITIONS; i++) {
+			collisions[i] = values[random.nextInt(values.length)];
+		}
+		return new Benchmark.Operation() {
+			private int next = 0;
+
+			@Override
+			public long run() {
+				ball.collisionEvent(collisions[next++ & (POSITIONS - 1)]);
+				return ball.getDirection();
+			}
+		};
+	}
+
+	// ---------bot-------------------------
+
+	/**
+	 * Gets the position of the mouse from the {@code AutoPlayer} in the first
+	 * level. Most ticks return the cached prediction, after a collision the ray is
+	 * cast again through the walls and bricks.
+	 */
+	private static Benchmark.Operation autoPlayer(boolean predict, long seed) {
+		GameSession session = new GameSession(0, new LighthouseDisplay("benchmark", "token"), FIELD_WIDTH,
+				FIELD_HEIGHT, 0, seed);
+		BallModel ball = session.getBall();
+
+		Random random = new Random(seed);
+		double[][] positions = new double[POSITIONS][];
+		for (int i = 0; i < POSITIONS; i++) {
+			positions[i] = new double[] { random.nextDouble() * (FIELD_WIDTH - 2 * BALL_RADIUS),
+					FIELD_HEIGHT / 2 + random.nextDouble() * (session.getPaddleY() - FIELD_HEIGHT / 2),
+					random.nextInt(360) };
+		}
+		AutoPlayer autoPlayer = new AutoPlayer();
+		return new Benchmark.Operation() {
+			private int next = 0;
+
+			@Override
+			public long run() {
+				if (predict) {
+					double[] position = positions[next++ & (POSITIONS - 1)];
+					ball.setX(position[0]);
+					ball.setY(position[1]);
+					ball.setDirection((int) position[2]);
+					autoPlayer.reset();
+				}
+				return autoPlayer.nextMouseX(session.getGame(), ball);
+			}
+		};
+	}
+
+	// ---------levels-------------------------
+
+	/**
+	 * Gets the bricks of a level from the cache or, if the cache is cold, parses
+	 * the level again.
+	 */
+	private static Benchmark.Operation getBrickArray(int levelNumber, boolean warm) {
+		return () -> {
+			if (!warm) {
+				LevelCache.clear();
+			}
+			return BricksConfig.getBrickArray(levelNumber).length;
+		};
+	}
+
+	// ---------lighthouse-------------------------
+
+	/**
+	 * Paints the bricks of the first level and a moving ball into the frame of
+	 * the lighthouse. The lighthouse isn't connected, so nothing is sent.
+	 */
+	private static Benchmark.Operation lighthousePaintFrame(long seed) {
+		BreakoutBrick[] bricks = BricksConfig.getBrickArray(0);
+		Random random = new Random(seed);
+		double[][] positions = new double[POSITIONS][];
+		for (int i = 0; i < POSITIONS; i++) {
+			positions[i] = new double[] { random.nextDouble() * 0.9, random.nextDouble() * 0.9 };
+		}
+		return new Benchmark.Operation() {
+			private int next = 0;
+
+			@Override
+			public long run() {
+				double[] position = positions[next++ & (POSITIONS - 1)];
+				LighthouseView.setAllDark();
+				LighthouseView.setBricks(bricks, 0, bricks.length, FIELD_WIDTH, FIELD_HEIGHT);
+				LighthouseView.setBallPosition(position[0], position[1]);
+				return next;
+			}
+		};
+	}
+
+	/**
+	 * Encodes a frame into a request of the lighthouse, which is sent to a
+	 * session discarding the data.
+	 */
+	private static Benchmark.Operation lighthouseEncode(long seed) {
+		LighthouseDisplay display = new LighthouseDisplay("benchmark", "token");
+		display.connect(noOpSession());
+		byte[] frame = new byte[FRAME_BYTES];
+		new Random(seed).nextBytes(frame);
+		return () -> {
+			try {
+				display.send(frame);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return frame[0];
+		};
+	}
+
+	/**
+	 * Creates an open web-socket session, which discards everything sent to it.
+	 */
+	private static Session noOpSession() {
+		RemoteEndpoint remote = noOp(RemoteEndpoint.class, null);
+		return noOp(Session.class, remote);
+	}
+
+	/**
+	 * Creates an object whose methods do nothing. It is open and returns the
+	 * remote endpoint if it is asked for one.
+	 */
+	private static <T> T noOp(Class<T> type, RemoteEndpoint remote) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "isOpen":
+						return true;
+					case "getRemote":
+						return remote;
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "equals":
+						return proxy == args[0];
+					case "toString":
+						return "no-op " + type.getSimpleName();
+					default:
+						break;
+					}
+					// the default value of the return type
+					Class<?> result = method.getReturnType();
+					if (result.isPrimitive() && result != void.class) {
+						return Array.get(Array.newInstance(result, 1), 0);
+					}
+					return null;
+				}));
+	}
+}
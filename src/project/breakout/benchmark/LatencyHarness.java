@@ -0,0 +1,374 @@
+package project.breakout.benchmark;
+
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import project.breakout.metrics.LatencyProbe;
+import project.breakout.model.BreakoutModel;
+import project.breakout.view.GameView;
+import project.breakout.view.LighthouseView;
+
+/**
+ * This class measures the latency from a mouse input to the frame on the
+ * lighthouse. It runs the game against a local {@code WebSocketSink} instead of
+ * the lighthouse and posts mouse events into the event queue, where they are
+ * passed to the listeners of the {@code BreakoutController} like real ones.
+ * Every event moves the paddle to another column of the lighthouse, so the
+ * frame showing the move is found by decoding the frames in the sink.
+ *
+ * The latency of every input is broken down into the stages:
+ * <ul>
+ * <li>dispatch: from posting the event until the model gets the mouse
+ * location</li>
+ * <li>model: from the model until the {@code LighthouseView} starts painting
+ * the paddle</li>
+ * <li>lighthouse: from painting the paddle until the frame was decoded by the
+ * sink</li>
+ * <li>endToEnd: from posting the event until the frame was decoded</li>
+ * <li>tick: from the model until the next tick showed the paddle in the
+ * window</li>
+ * <li>sendCall: how long the {@code LighthouseView} blocked the caller</li>
+ * </ul>
+ *
+ * The percentiles of the stages are printed and the times of all inputs are
+ * written to a CSV file. The harness exits with 1 if the 99th percentile of
+ * the end-to-end latency is above the limit, so a regression fails the build.
+ *
+ * The game is an applet, so the harness needs a display, eg xvfb-run on a
+ * build server, and the messages of the {@code LighthouseView} on the
+ * classpath. The mouse must not be moved over the window while it runs.
+ *
+ * Usage: LatencyHarness [--samples n] [--interval ms] [--timeout ms]
+ * [--max-p99 ms] [--out file]
+ */
+public class LatencyHarness {
+	private static final String DEFAULT_OUT = "latency-results.csv"; //$NON-NLS-1$
+
+	private static final String[] STAGES = { "dispatch", "model", "lighthouse", "endToEnd", "tick", "sendCall" };
+	private static final int DISPATCH = 0;
+	private static final int MODEL = 1;
+	private static final int LIGHTHOUSE = 2;
+	private static final int END_TO_END = 3;
+	private static final int TICK = 4;
+	private static final int SEND_CALL = 5;
+
+	/**
+	 * The percentiles which are printed for every stage.
+	 */
+	private static final double[] PERCENTILES = { 0, 50, 90, 99, 99.9, 100 };
+
+	// data of the lighthouse, the paddle is in the lowest floor
+	private static final int FLOORS = 14;
+	private static final int WINDOWS_PER_FLOOR = 28;
+	private static final int RGB = 3;
+	private static final byte[] PADDLE_COLOR = { (byte) 255, (byte) 100, (byte) 200 };
+
+	/**
+	 * A tick which is older than this means the game isn't running, eg because
+	 * the ball was lost.
+	 */
+	private static final long TICK_STALLED_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+	// options
+	private int samples = 500;
+	private long intervalMillis = 20;
+	private long timeoutNanos = TimeUnit.SECONDS.toNanos(1);
+	private double maxP99Millis = Double.NaN;
+	private Path out = Paths.get(DEFAULT_OUT);
+
+	/**
+	 * The frames of the sink with the column of the paddle and the time they
+	 * were decoded.
+	 */
+	private final BlockingQueue<long[]> frames = new LinkedBlockingQueue<>();
+
+	private final BreakoutModel model = new BreakoutModel();
+
+	public static void main(String[] args) throws Exception {
+		// the probe has to be on before the game starts
+		System.setProperty("breakout.latency.probe", "true"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		LatencyHarness harness = new LatencyHarness();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--samples":
+				harness.samples = Integer.parseInt(args[++i]);
+				break;
+			case "--interval":
+				harness.intervalMillis = Long.parseLong(args[++i]);
+				break;
+			case "--timeout":
+				harness.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(args[++i]));
+				break;
+			case "--max-p99":
+				harness.maxP99Millis = Double.parseDouble(args[++i]);
+				break;
+			case "--out":
+				harness.out = Paths.get(args[++i]);
+				break;
+			default:
+				System.out.println("unknown option " + args[i]);
+				System.out.println("usage: LatencyHarness [--samples n] [--interval ms] [--timeout ms] "
+						+ "[--max-p99 ms] [--out file]");
+				return;
+			}
+		}
+		System.exit(harness.run() ? 0 : 1);
+	}
+
+	/**
+	 * Starts the game against the sink, measures the inputs and reports them.
+	 *
+	 * @return {@code false} if the end-to-end latency is above the limit.
+	 */
+	private boolean run() throws Exception {
+		try (WebSocketSink sink = new WebSocketSink(
+				(frame, receivedAt) -> frames.add(new long[] { paddleColumn(frame), receivedAt }))) {
+			System.setProperty("breakout.lighthouse.uri", sink.getUri()); //$NON-NLS-1$
+			startGame();
+
+			List<long[]> results = measure();
+			report(results);
+			writeCsv(results);
+
+			double p99 = percentile(stage(results, END_TO_END), 99) / 1e6;
+			if (!Double.isNaN(maxP99Millis) && p99 > maxP99Millis) {
+				System.out.printf("end-to-end p99 of %.3f ms is above the limit of %.3f ms%n", p99, maxP99Millis);
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Starts the game in its own thread and waits until it is connected to the
+	 * sink.
+	 */
+	private void startGame() throws InterruptedException {
+		Thread game = new Thread(() -> model.start(new String[0]), "game");
+		game.setDaemon(true);
+		game.start();
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (BreakoutModel.getView() == null || !LighthouseView.isConnected()) {
+			if (System.nanoTime() > deadline) {
+				throw new IllegalStateException("the game didn't connect to the sink");
+			}
+			Thread.sleep(50);
+		}
+		// the game pushes the level to the lighthouse after connecting
+		Thread.sleep(1000);
+		frames.clear();
+	}
+
+	/**
+	 * Moves the paddle to another column for every sample and waits for the frame
+	 * showing it.
+	 *
+	 * @return the stages of every input in nanoseconds, -1 if a stage wasn't
+	 *         passed.
+	 */
+	private List<long[]> measure() throws InterruptedException {
+		int[] columns = reachableColumns();
+		if (columns.length < 2) {
+			throw new IllegalStateException("the window is too small to move the paddle");
+		}
+
+		List<long[]> results = new ArrayList<>();
+		int timeouts = 0;
+		for (int sample = 0; sample < samples; sample++) {
+			int column = columns[sample % columns.length];
+			GameView view = BreakoutModel.getView();
+			Component component = view.getComponent();
+
+			// the ticks are measured too, so the game has to run
+			if (System.nanoTime() - LatencyProbe.getTickDoneAt() > TICK_STALLED_NANOS) {
+				post(new MouseEvent(component, MouseEvent.MOUSE_CLICKED, System.currentTimeMillis(), 0, 0, 0, 1,
+						false, MouseEvent.BUTTON1));
+				Thread.sleep(intervalMillis);
+			}
+
+			frames.clear();
+			long injectedAt = System.nanoTime();
+			post(new MouseEvent(component, MouseEvent.MOUSE_MOVED, System.currentTimeMillis(), 0,
+					mouseX(column), view.getHeight() / 2, 0, false));
+
+			long receivedAt = awaitFrame(column, injectedAt);
+			if (receivedAt < 0) {
+				timeouts++;
+				continue;
+			}
+			long inputAt = LatencyProbe.getInputAt();
+			long sendStartAt = LatencyProbe.getPaddleSendStartAt();
+			long sentAt = LatencyProbe.getPaddleSentAt();
+			long tickAt = awaitTick(inputAt);
+
+			long[] stages = new long[STAGES.length];
+			stages[DISPATCH] = inputAt - injectedAt;
+			stages[MODEL] = sendStartAt - inputAt;
+			stages[LIGHTHOUSE] = receivedAt - sendStartAt;
+			stages[END_TO_END] = receivedAt - injectedAt;
+			stages[TICK] = tickAt >= 0 ? tickAt - inputAt : -1;
+			stages[SEND_CALL] = sentAt - sendStartAt;
+			results.add(stages);
+
+			Thread.sleep(intervalMillis);
+		}
+		if (timeouts > 0) {
+			System.out.println(timeouts + " inputs didn't reach the sink in time and were left out");
+		}
+		return results;
+	}
+
+	private static void post(MouseEvent event) {
+		EventQueue queue = Toolkit.getDefaultToolkit().getSystemEventQueue();
+		queue.postEvent(event);
+	}
+
+	/**
+	 * Waits for the first frame with the paddle in the column.
+	 *
+	 * @return the time the frame was decoded or -1 after the timeout.
+	 */
+	private long awaitFrame(int column, long injectedAt) throws InterruptedException {
+		long deadline = injectedAt + timeoutNanos;
+		long[] frame;
+		while ((frame = frames.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null) {
+			if (frame[0] == column && frame[1] > injectedAt) {
+				return frame[1];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Waits for the first tick after the input.
+	 *
+	 * @return the time the tick was done or -1 after the timeout.
+	 */
+	private long awaitTick(long inputAt) throws InterruptedException {
+		long deadline = inputAt + timeoutNanos;
+		while (System.nanoTime() < deadline) {
+			long tickAt = LatencyProbe.getTickDoneAt();
+			if (tickAt > inputAt) {
+				return tickAt;
+			}
+			Thread.sleep(1);
+		}
+		return -1;
+	}
+
+	// ---------paddle-------------------------
+
+	/**
+	 * Finds the columns of the lighthouse the paddle can be moved to. The model
+	 * converts the position of the paddle like this.
+	 */
+	private int[] reachableColumns() {
+		int width = model.getWidth();
+		int paddleWindows = (int) (27 * (double) model.getPaddleWidth() / width);
+		List<Integer> columns = new ArrayList<>();
+		for (int column = 0; column + paddleWindows < WINDOWS_PER_FLOOR; column++) {
+			int mouseX = mouseX(column);
+			int paddleHalf = model.getPaddleWidth() / 2;
+			boolean inView = mouseX > paddleHalf && mouseX < BreakoutModel.getView().getWidth() - paddleHalf;
+			if (inView && (int) (27 * (double) (mouseX - paddleHalf) / width) == column) {
+				columns.add(column);
+			}
+		}
+		return columns.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Computes the mouse location which moves the paddle into the column.
+	 */
+	private int mouseX(int column) {
+		int paddleX = (int) Math.ceil(column * (double) model.getWidth() / 27);
+		return paddleX + model.getPaddleWidth() / 2;
+	}
+
+	/**
+	 * Finds the paddle in the lowest floor of a frame.
+	 *
+	 * @return the column of the paddle or -1 if there is no paddle.
+	 */
+	private static long paddleColumn(byte[] frame) {
+		int floor = (FLOORS - 1) * WINDOWS_PER_FLOOR * RGB;
+		for (int window = 0; window < WINDOWS_PER_FLOOR; window++) {
+			int index = floor + window * RGB;
+			if (index + RGB <= frame.length && frame[index] == PADDLE_COLOR[0]
+					&& frame[index + 1] == PADDLE_COLOR[1] && frame[index + 2] == PADDLE_COLOR[2]) {
+				return window;
+			}
+		}
+		return -1;
+	}
+
+	// ---------report-------------------------
+
+	private void report(List<long[]> results) {
+		System.out.println(results.size() + " inputs measured");
+		System.out.printf("%-12s %8s", "stage", "count");
+		for (double percentile : PERCENTILES) {
+			System.out.printf(" %10s", percentile == 0 ? "min" : percentile == 100 ? "max" : "p" + percentile);
+		}
+		System.out.printf(" %10s%n", "mean");
+
+		for (int stage = 0; stage < STAGES.length; stage++) {
+			long[] times = stage(results, stage);
+			System.out.printf("%-12s %8d", STAGES[stage], times.length);
+			for (double percentile : PERCENTILES) {
+				System.out.printf(" %10.1f", percentile(times, percentile) / 1e3);
+			}
+			System.out.printf(" %10.1f%n", Arrays.stream(times).average().orElse(Double.NaN) / 1e3);
+		}
+		System.out.println("all times in microseconds");
+	}
+
+	/**
+	 * Gets the sorted times of a stage, the inputs which didn't pass the stage
+	 * are left out.
+	 */
+	private static long[] stage(List<long[]> results, int stage) {
+		return results.stream().mapToLong(stages -> stages[stage]).filter(time -> time >= 0).sorted().toArray();
+	}
+
+	/**
+	 * Computes a percentile of sorted times with the nearest rank.
+	 */
+	private static double percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return Double.NaN;
+		}
+		int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+		return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+	}
+
+	private void writeCsv(List<long[]> results) throws IOException {
+		try (Writer csv = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+			csv.write("sample," + String.join(",", STAGES) + "\n");
+			for (int sample = 0; sample < results.size(); sample++) {
+				csv.write(Integer.toString(sample));
+				for (long time : results.get(sample)) {
+					csv.write("," + time);
+				}
+				csv.write("\n");
+			}
+		}
+		System.out.println("latencies in nanoseconds written to " + out.toAbsolutePath());
+	}
+}
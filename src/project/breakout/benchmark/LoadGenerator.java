@@ -0,0 +1,435 @@
+package project.breakout.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import project.breakout.server.GameServer;
+import project.breakout.server.GameSession;
+
+/**
+ * This class finds out how many players one {@code GameServer} can host. It
+ * opens sessions for virtual players in steps and measures every step after a
+ * warm-up, until the ticks of the sessions don't keep their deadlines any
+ * more.
+ *
+ * A virtual player drives its session like a person drives the game through
+ * the {@code BreakoutController}: it moves the mouse 60 times a second towards
+ * the ball, which it looks at a few times a second only and misjudges a bit,
+ * clicks to start the game a moment after the ball was lost and sometimes
+ * pauses the game for a few seconds. All sessions are connected to a local
+ * {@code WebSocketSink}, which stands in for the lighthouse and counts the
+ * frames.
+ *
+ * For every step the following is measured:
+ * <ul>
+ * <li>lateness: how long after its deadline a tick started, the percentiles
+ * and the share of the ticks which were more than a whole tick late</li>
+ * <li>cpu: the processor time of the tick and I/O threads of the server per
+ * session, in percent of one processor</li>
+ * <li>sink: the frames and bytes the sink received per second</li>
+ * </ul>
+ *
+ * The ramp stops at the first step whose 99th percentile of the lateness is
+ * above the limit, that is where the deadlines start slipping. The default
+ * limit is half a tick, a tick which is later shows its frame closer to the
+ * next one than to its own. The sink and the players run in the same JVM and
+ * take processor time from the ticks, so the number of sessions found is a
+ * lower bound for a server of its own.
+ *
+ * Usage: LoadGenerator [--start n] [--step n] [--max n] [--warmup s]
+ * [--seconds s] [--max-p99 ms] [--tick-threads n] [--seed n] [--out file]
+ */
+public class LoadGenerator {
+	private static final String DEFAULT_OUT = "load-results.csv"; //$NON-NLS-1$
+
+	private static final int FIELD_WIDTH = 700;
+	private static final int FIELD_HEIGHT = 500;
+
+	/**
+	 * The time between two mouse events of a player, like a mouse which reports
+	 * 60 times a second.
+	 */
+	private static final long INPUT_MILLIS = 16;
+
+	/**
+	 * The resolution and the range of the histogram of the lateness.
+	 */
+	private static final long BUCKET_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+	private static final int BUCKETS = 10_000;
+
+	private static final long CONNECT_SECONDS = 10;
+
+	/**
+	 * The time between two readings of the processor time of the server
+	 * threads during a step.
+	 */
+	private static final long CPU_SAMPLE_MILLIS = 100;
+
+	// options
+	private int start = 16;
+	private int step = 16;
+	private int max = 2048;
+	private long warmupSeconds = 3;
+	private long seconds = 10;
+	private double maxP99Millis = GameServer.TICK_MILLIS / 2.0;
+	private int tickThreads = Runtime.getRuntime().availableProcessors();
+	private long seed = 42;
+	private Path out = Paths.get(DEFAULT_OUT);
+
+	private final LongAdder framesReceived = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+	private final List<VirtualPlayer> players = new CopyOnWriteArrayList<>();
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	/**
+	 * The last processor time read of every tick and I/O thread by its id. An
+	 * I/O thread of the cached pool which exited keeps its last time, so the sum
+	 * never goes down.
+	 */
+	private final Map<Long, Long> serverCpu = new HashMap<>();
+
+	/**
+	 * The lateness of the ticks of the step which is measured, {@code null}
+	 * during the warm-up.
+	 */
+	private volatile Lateness lateness;
+
+	public static void main(String[] args) throws Exception {
+		LoadGenerator generator = new LoadGenerator();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--start":
+				generator.start = Integer.parseInt(args[++i]);
+				break;
+			case "--step":
+				generator.step = Integer.parseInt(args[++i]);
+				break;
+			case "--max":
+				generator.max = Integer.parseInt(args[++i]);
+				break;
+			case "--warmup":
+				generator.warmupSeconds = Long.parseLong(args[++i]);
+				break;
+			case "--seconds":
+				generator.seconds = Long.parseLong(args[++i]);
+				break;
+			case "--max-p99":
+				generator.maxP99Millis = Double.parseDouble(args[++i]);
+				break;
+			case "--tick-threads":
+				generator.tickThreads = Integer.parseInt(args[++i]);
+				break;
+			case "--seed":
+				generator.seed = Long.parseLong(args[++i]);
+				break;
+			case "--out":
+				generator.out = Paths.get(args[++i]);
+				break;
+			default:
+				System.out.println("unknown option " + args[i]);
+				System.out.println("usage: LoadGenerator [--start n] [--step n] [--max n] [--warmup s] "
+						+ "[--seconds s] [--max-p99 ms] [--tick-threads n] [--seed n] [--out file]");
+				return;
+			}
+		}
+		generator.run();
+		System.exit(0);
+	}
+
+	/**
+	 * Ramps the sessions up step by step until the deadlines slip and reports
+	 * the steps.
+	 */
+	private void run() throws Exception {
+		if (threads.isThreadCpuTimeSupported()) {
+			threads.setThreadCpuTimeEnabled(true);
+		}
+		Random random = new Random(seed);
+		ScheduledExecutorService input = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "virtual-players");
+			thread.setDaemon(true);
+			return thread;
+		});
+		List<double[]> results = new ArrayList<>();
+		int keptUp = 0;
+		int slipped = 0;
+
+		try (WebSocketSink sink = new WebSocketSink((frame, receivedAt) -> {
+			framesReceived.increment();
+			bytesReceived.add(frame.length);
+		}); GameServer server = new GameServer(tickThreads)) {
+			server.setTickListener((session, latenessNanos, tickNanos) -> {
+				Lateness current = lateness;
+				if (current != null) {
+					current.record(latenessNanos, tickNanos);
+				}
+			});
+			input.scheduleAtFixedRate(() -> {
+				long now = System.nanoTime();
+				for (VirtualPlayer player : players) {
+					player.input(now);
+				}
+			}, INPUT_MILLIS, INPUT_MILLIS, TimeUnit.MILLISECONDS);
+
+			System.out.printf("%8s %10s %10s %10s %10s %8s %8s %10s %10s%n", "sessions", "p50 ms", "p99 ms",
+					"max ms", "missed %", "cpu %", "tick us", "frames/s", "kB/s");
+			for (int sessions = start; sessions <= max; sessions += step) {
+				addPlayers(server, sink, sessions, random);
+				Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+
+				double[] result = measure(sessions);
+				results.add(result);
+				System.out.printf("%8d %10.2f %10.2f %10.2f %10.2f %8.2f %8.1f %10.0f %10.0f%n", sessions, result[1],
+						result[2], result[3], result[4], result[5], result[6], result[7], result[8] / 1e3);
+				if (result[2] > maxP99Millis) {
+					slipped = sessions;
+					break;
+				}
+				keptUp = sessions;
+			}
+		} finally {
+			input.shutdownNow();
+		}
+
+		writeCsv(results);
+		if (slipped > 0) {
+			System.out.printf("the tick deadlines start slipping at %d sessions, the p99 lateness is above %.1f ms; "
+					+ "%d sessions kept up%n", slipped, maxP99Millis, keptUp);
+		} else {
+			System.out.printf("the tick deadlines kept up to %d sessions%n", keptUp);
+		}
+	}
+
+	/**
+	 * Opens sessions for new players until there are enough and connects them to
+	 * the sink.
+	 */
+	private void addPlayers(GameServer server, WebSocketSink sink, int sessions, Random random) throws Exception {
+		List<CompletableFuture<Void>> connected = new ArrayList<>();
+		List<GameSession> opened = new ArrayList<>();
+		while (server.getSessionCount() < sessions) {
+			GameSession session = server.openSession("player" + server.getSessionCount(), "", FIELD_WIDTH, //$NON-NLS-1$ //$NON-NLS-2$
+					FIELD_HEIGHT, 0);
+			opened.add(session);
+			connected.add(server.connect(session, sink.getUri()));
+		}
+		CompletableFuture.allOf(connected.toArray(new CompletableFuture<?>[0])).get(CONNECT_SECONDS,
+				TimeUnit.SECONDS);
+		for (GameSession session : opened) {
+			players.add(new VirtualPlayer(session, new Random(random.nextLong())));
+		}
+	}
+
+	/**
+	 * Measures a step.
+	 *
+	 * @return sessions, p50, p99 and max lateness in milliseconds, missed ticks
+	 *         in percent, cpu per session in percent, mean tick in microseconds,
+	 *         frames and bytes per second.
+	 */
+	private double[] measure(int sessions) throws InterruptedException {
+		long frames = framesReceived.sum();
+		long bytes = bytesReceived.sum();
+		long cpu = serverCpuNanos();
+		long begin = System.nanoTime();
+		Lateness measured = new Lateness();
+		lateness = measured;
+
+		// the threads are read now and then, so an I/O thread which exits loses
+		// little of its time
+		long end = begin + TimeUnit.SECONDS.toNanos(seconds);
+		long left;
+		while ((left = end - System.nanoTime()) > 0) {
+			Thread.sleep(Math.min(CPU_SAMPLE_MILLIS, TimeUnit.NANOSECONDS.toMillis(left) + 1));
+			serverCpuNanos();
+		}
+
+		lateness = null;
+		double elapsed = System.nanoTime() - begin;
+		double cpuPercent = (serverCpuNanos() - cpu) / elapsed / sessions * 100;
+		long ticks = Math.max(1, measured.count.get());
+		return new double[] { sessions, measured.percentile(50) / 1e6, measured.percentile(99) / 1e6,
+				measured.max.get() / 1e6, 100.0 * measured.missed.get() / ticks, cpuPercent,
+				measured.tickNanos.get() / (double) ticks / 1e3, (framesReceived.sum() - frames) / elapsed * 1e9,
+				(bytesReceived.sum() - bytes) / elapsed * 1e9 };
+	}
+
+	/**
+	 * Sums the processor time of the tick and I/O threads of the server,
+	 * including the threads which exited since the start.
+	 */
+	private long serverCpuNanos() {
+		if (!threads.isThreadCpuTimeSupported()) {
+			return 0;
+		}
+		for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+			if (info != null && (info.getThreadName().startsWith("game-tick-") //$NON-NLS-1$
+					|| info.getThreadName().startsWith("game-io-"))) { //$NON-NLS-1$
+				long time = threads.getThreadCpuTime(info.getThreadId());
+				// -1 if the thread exited meanwhile
+				if (time >= 0) {
+					serverCpu.put(info.getThreadId(), time);
+				}
+			}
+		}
+		long nanos = 0;
+		for (long time : serverCpu.values()) {
+			nanos += time;
+		}
+		return nanos;
+	}
+
+	private void writeCsv(List<double[]> results) throws IOException {
+		try (Writer csv = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+			csv.write("sessions,p50Millis,p99Millis,maxMillis,missedPercent,cpuPercent,tickMicros,framesPerSecond,"
+					+ "bytesPerSecond\n");
+			for (double[] result : results) {
+				csv.write(String.format("%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.2f,%.1f,%.1f%n", (long) result[0], result[1],
+						result[2], result[3], result[4], result[5], result[6], result[7], result[8]));
+			}
+		}
+		System.out.println("steps written to " + out.toAbsolutePath());
+	}
+
+	/**
+	 * The lateness of the ticks in a histogram with a fixed resolution, which
+	 * the tick threads record into at the same time.
+	 */
+	private static class Lateness {
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS + 1);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong missed = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+		private final AtomicLong tickNanos = new AtomicLong();
+
+		void record(long latenessNanos, long nanos) {
+			buckets.incrementAndGet((int) Math.min(BUCKETS, latenessNanos / BUCKET_NANOS));
+			count.incrementAndGet();
+			tickNanos.addAndGet(nanos);
+			if (latenessNanos > TimeUnit.MILLISECONDS.toNanos(GameServer.TICK_MILLIS)) {
+				missed.incrementAndGet();
+			}
+			max.accumulateAndGet(latenessNanos, Math::max);
+		}
+
+		/**
+		 * Computes a percentile with the nearest rank, rounded up to the bucket.
+		 */
+		long percentile(double percentile) {
+			long total = count.get();
+			if (total == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(percentile / 100 * total);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += buckets.get(i);
+				if (seen >= rank) {
+					return (i + 1) * BUCKET_NANOS;
+				}
+			}
+			return max.get();
+		}
+	}
+
+	/**
+	 * A player who moves the mouse, clicks and pauses like a person.
+	 */
+	private static class VirtualPlayer {
+		/** How often the player looks at the ball, in milliseconds. */
+		private static final int MIN_LOOK_MILLIS = 120;
+		private static final int MAX_LOOK_MILLIS = 350;
+		/** How far the player misjudges the ball. */
+		private static final int AIM_ERROR = 30;
+		/** The share of the way to the target the mouse moves per event. */
+		private static final double EASING = 0.3;
+		/** The fastest move of the mouse per event. */
+		private static final double MAX_MOVE = 40;
+		/** The time from losing the ball until the next click. */
+		private static final int MIN_CLICK_MILLIS = 400;
+		private static final int MAX_CLICK_MILLIS = 2000;
+		/** About one pause a minute of one to five seconds. */
+		private static final double PAUSES_PER_SECOND = 1.0 / 60;
+		private static final int MIN_PAUSE_MILLIS = 1000;
+		private static final int MAX_PAUSE_MILLIS = 5000;
+
+		private final GameSession session;
+		private final Random random;
+		private double mouseX;
+		private double targetX;
+		private int lastMouseX = -1;
+		private long lookAt = 0;
+		private long clickAt = 0;
+		private long continueAt = 0;
+
+		VirtualPlayer(GameSession session, Random random) {
+			this.session = session;
+			this.random = random;
+			this.mouseX = FIELD_WIDTH / 2.0;
+			this.targetX = mouseX;
+		}
+
+		/**
+		 * Called every {@code INPUT_MILLIS} by the thread of the players.
+		 */
+		void input(long now) {
+			if (session.isGamePaused()) {
+				if (now >= continueAt) {
+					session.continueGame();
+				}
+				return;
+			}
+			if (!session.isGameStarted()) {
+				// the ball was lost or the game is new, click after a moment
+				if (clickAt == 0) {
+					clickAt = now + millis(MIN_CLICK_MILLIS, MAX_CLICK_MILLIS);
+				} else if (now >= clickAt) {
+					clickAt = 0;
+					session.startGame();
+				}
+			} else if (random.nextDouble() < PAUSES_PER_SECOND * INPUT_MILLIS / 1000) {
+				continueAt = now + millis(MIN_PAUSE_MILLIS, MAX_PAUSE_MILLIS);
+				session.pauseGame();
+				return;
+			}
+
+			if (now >= lookAt) {
+				lookAt = now + millis(MIN_LOOK_MILLIS, MAX_LOOK_MILLIS);
+				targetX = session.getBallX() + random.nextGaussian() * AIM_ERROR;
+			}
+			double move = (targetX - mouseX) * EASING + random.nextGaussian();
+			mouseX += Math.max(-MAX_MOVE, Math.min(MAX_MOVE, move));
+			mouseX = Math.max(0, Math.min(FIELD_WIDTH - 1, mouseX));
+
+			// a mouse which doesn't move sends no events
+			int x = (int) mouseX;
+			if (x != lastMouseX) {
+				lastMouseX = x;
+				session.updateMouseLocation(x);
+			}
+		}
+
+		private long millis(int min, int max) {
+			return TimeUnit.MILLISECONDS.toNanos(min + random.nextInt(max - min));
+		}
+	}
+}
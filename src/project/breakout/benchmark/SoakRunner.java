@@ -0,0 +1,333 @@
+package project.breakout.benchmark;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.event.ComponentEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import project.breakout.model.BreakoutModel;
+import project.breakout.view.GameView;
+import project.breakout.view.LighthouseView;
+
+/**
+ * This class runs the game for a long time at full speed to find resource
+ * leaks. A bot drives the game through the listeners of the
+ * {@code BreakoutController} like a player: it starts the game, moves the
+ * paddle, pauses and continues, hides and shows the window, switches the
+ * endless mode, which restarts the game, completes levels and reconnects to the
+ * lighthouse. A local {@code WebSocketSink} stands in for the lighthouse.
+ *
+ * Every few cycles the number of threads, the used heap after a garbage
+ * collection, the open web-socket sessions and the listeners of the game are
+ * sampled. The first quarter of the samples is the warm-up. The run fails if
+ * the smallest value of the last quarter is above the largest value of the
+ * second quarter by more than the tolerance, so a value which grows steadily
+ * is reported, while one which just varies is not.
+ *
+ * The game is an applet, so the runner needs a display, eg xvfb-run on a build
+ * server, and the messages of the {@code LighthouseView} on the classpath.
+ *
+ * Usage: SoakRunner [--cycles n] [--sample-every n] [--reconnect-every n]
+ * [--seed n] [--out file]
+ */
+public class SoakRunner {
+	private static final String DEFAULT_OUT = "soak-results.csv"; //$NON-NLS-1$
+
+	private static final String[] GAUGES = { "threads", "heapBytes", "sessions", "listeners" };
+	private static final int THREADS = 0;
+	private static final int HEAP = 1;
+	private static final int SESSIONS = 2;
+	private static final int LISTENERS = 3;
+
+	/**
+	 * How much a gauge may grow before it is a leak. The heap may grow by a
+	 * quarter of its size, but at least by the minimum.
+	 */
+	private static final long[] TOLERANCES = { 2, 0, 0, 0 };
+	private static final double HEAP_TOLERANCE = 0.25;
+	private static final long MIN_HEAP_TOLERANCE = 8L << 20;
+
+	private static final int MIN_SAMPLES = 8;
+
+	// options
+	private int cycles = 5000;
+	private int sampleEvery = 100;
+	private int reconnectEvery = 25;
+	private long seed = 42;
+	private Path out = Paths.get(DEFAULT_OUT);
+
+	private final BreakoutModel model = new BreakoutModel();
+	private Random random;
+	private int errors = 0;
+
+	public static void main(String[] args) throws Exception {
+		SoakRunner runner = new SoakRunner();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--cycles":
+				runner.cycles = Integer.parseInt(args[++i]);
+				break;
+			case "--sample-every":
+				runner.sampleEvery = Integer.parseInt(args[++i]);
+				break;
+			case "--reconnect-every":
+				runner.reconnectEvery = Integer.parseInt(args[++i]);
+				break;
+			case "--seed":
+				runner.seed = Long.parseLong(args[++i]);
+				break;
+			case "--out":
+				runner.out = Paths.get(args[++i]);
+				break;
+			default:
+				System.out.println("unknown option " + args[i]);
+				System.out.println("usage: SoakRunner [--cycles n] [--sample-every n] [--reconnect-every n] "
+						+ "[--seed n] [--out file]");
+				return;
+			}
+		}
+		System.exit(runner.run() ? 0 : 1);
+	}
+
+	/**
+	 * Starts the game against the sink, runs the bot and checks the samples.
+	 *
+	 * @return {@code false} if a leak was found.
+	 */
+	private boolean run() throws Exception {
+		random = new Random(seed);
+		try (WebSocketSink sink = new WebSocketSink((frame, receivedAt) -> {
+		})) {
+			System.setProperty("breakout.lighthouse.uri", sink.getUri()); //$NON-NLS-1$
+			startGame();
+
+			// the game prints a lot, only the samples are printed
+			PrintStream stdout = System.out;
+			System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+			List<long[]> samples = new ArrayList<>();
+			long start = System.nanoTime();
+			try {
+				for (int cycle = 0; cycle < cycles; cycle++) {
+					cycle(cycle);
+					if (cycle % sampleEvery == 0 || cycle == cycles - 1) {
+						long[] sample = sample(sink);
+						samples.add(sample);
+						stdout.printf("cycle %6d %6ds threads %4d heap %8d KB sessions %3d listeners %3d%n", cycle,
+								TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), sample[THREADS],
+								sample[HEAP] >> 10, sample[SESSIONS], sample[LISTENERS]);
+					}
+				}
+			} finally {
+				System.setOut(stdout);
+			}
+
+			writeCsv(samples);
+			if (errors > 0) {
+				System.out.println(errors + " actions of the bot failed");
+			}
+			return check(samples);
+		}
+	}
+
+	/**
+	 * Starts the game in its own thread and waits until it is connected to the
+	 * sink.
+	 */
+	private void startGame() throws InterruptedException {
+		Thread game = new Thread(() -> model.start(new String[0]), "game");
+		game.setDaemon(true);
+		game.start();
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (BreakoutModel.getView() == null || !LighthouseView.isConnected()) {
+			if (System.nanoTime() > deadline) {
+				throw new IllegalStateException("the game didn't connect to the sink");
+			}
+			Thread.sleep(50);
+		}
+	}
+
+	// ---------bot-------------------------
+
+	/**
+	 * A cycle of the bot, which goes through every state of the game once.
+	 */
+	private void cycle(int cycle) throws InterruptedException {
+		// start the game and move the paddle
+		click();
+		for (int i = 0; i < 5; i++) {
+			moveMouse(random.nextInt(Math.max(1, BreakoutModel.getView().getWidth())));
+		}
+
+		// pause and continue with the key and by hiding the window
+		type('p');
+		type('p');
+		dispatch(new ComponentEvent(model, ComponentEvent.COMPONENT_HIDDEN));
+		dispatch(new ComponentEvent(model, ComponentEvent.COMPONENT_SHOWN));
+		// the window may be shown while the game runs
+		dispatch(new ComponentEvent(model, ComponentEvent.COMPONENT_SHOWN));
+
+		// the next level
+		onEventThread(model::levelDone);
+		click();
+
+		// switching the mode restarts the game
+		type('e');
+		type('e');
+
+		if (reconnectEvery > 0 && cycle % reconnectEvery == reconnectEvery - 1) {
+			reconnect();
+		}
+	}
+
+	/**
+	 * Closes the connection to the lighthouse and lets the player connect again.
+	 */
+	private void reconnect() throws InterruptedException {
+		onEventThread(LighthouseView.display::close);
+		if (model.isLighthouseEnabled()) {
+			type('l');
+		}
+		type('l');
+	}
+
+	private void click() throws InterruptedException {
+		dispatch(new MouseEvent(view(), MouseEvent.MOUSE_CLICKED, System.currentTimeMillis(), 0, 0, 0, 1, false,
+				MouseEvent.BUTTON1));
+	}
+
+	private void moveMouse(int x) throws InterruptedException {
+		dispatch(new MouseEvent(view(), MouseEvent.MOUSE_MOVED, System.currentTimeMillis(), 0, x, 0, 0, false));
+	}
+
+	/**
+	 * Passes a key to the key listeners of the view. Dispatching it would pass it
+	 * to the component with the focus instead.
+	 */
+	private void type(char key) throws InterruptedException {
+		Component view = view();
+		KeyEvent event = new KeyEvent(view, KeyEvent.KEY_TYPED, System.currentTimeMillis(), 0,
+				KeyEvent.VK_UNDEFINED, key);
+		onEventThread(() -> {
+			for (KeyListener listener : view.getKeyListeners()) {
+				listener.keyTyped(event);
+			}
+		});
+	}
+
+	private static Component view() {
+		return BreakoutModel.getView().getComponent();
+	}
+
+	/**
+	 * Passes an event to the listeners of its component on the event thread and
+	 * waits until they are done, so the bot runs as fast as the game reacts.
+	 */
+	private void dispatch(AWTEvent event) throws InterruptedException {
+		Component component = (Component) event.getSource();
+		onEventThread(() -> component.dispatchEvent(event));
+	}
+
+	private void onEventThread(Runnable action) throws InterruptedException {
+		try {
+			EventQueue.invokeAndWait(action);
+		} catch (InvocationTargetException e) {
+			errors++;
+		}
+	}
+
+	// ---------samples-------------------------
+
+	/**
+	 * Samples the gauges after a garbage collection.
+	 */
+	private long[] sample(WebSocketSink sink) throws InterruptedException {
+		System.gc();
+		Thread.sleep(50);
+
+		long[] sample = new long[GAUGES.length];
+		sample[THREADS] = ManagementFactory.getThreadMXBean().getThreadCount();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			MemoryUsage afterGc = pool.getCollectionUsage();
+			if (pool.getType() == MemoryType.HEAP && afterGc != null) {
+				sample[HEAP] += afterGc.getUsed();
+			}
+		}
+		sample[SESSIONS] = sink.getOpenConnections();
+
+		GameView view = BreakoutModel.getView();
+		sample[LISTENERS] = model.getComponentListeners().length + view.getComponent().getMouseListeners().length
+				+ view.getComponent().getMouseMotionListeners().length
+				+ view.getComponent().getKeyListeners().length;
+		return sample;
+	}
+
+	/**
+	 * Checks if a gauge grew steadily.
+	 *
+	 * @return {@code false} if a leak was found.
+	 */
+	private static boolean check(List<long[]> samples) {
+		if (samples.size() < MIN_SAMPLES) {
+			System.out.println("only " + samples.size() + " samples, at least " + MIN_SAMPLES
+					+ " are needed to find leaks");
+			return true;
+		}
+		int quarter = samples.size() / 4;
+		boolean leaking = false;
+		for (int gauge = 0; gauge < GAUGES.length; gauge++) {
+			long baseline = Long.MIN_VALUE;
+			for (int i = quarter; i < 2 * quarter; i++) {
+				baseline = Math.max(baseline, samples.get(i)[gauge]);
+			}
+			long last = Long.MAX_VALUE;
+			for (int i = samples.size() - quarter; i < samples.size(); i++) {
+				last = Math.min(last, samples.get(i)[gauge]);
+			}
+
+			long tolerance = TOLERANCES[gauge];
+			if (gauge == HEAP) {
+				tolerance = Math.max(MIN_HEAP_TOLERANCE, (long) (baseline * HEAP_TOLERANCE));
+			}
+			boolean leak = last > baseline + tolerance;
+			System.out.printf("%-10s baseline %12d last %12d %s%n", GAUGES[gauge], baseline, last,
+					leak ? "LEAK" : "ok");
+			leaking |= leak;
+		}
+		return !leaking;
+	}
+
+	private void writeCsv(List<long[]> samples) throws IOException {
+		try (Writer csv = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+			csv.write("sample," + String.join(",", GAUGES) + "\n");
+			for (int sample = 0; sample < samples.size(); sample++) {
+				csv.write(Integer.toString(sample));
+				for (long value : samples.get(sample)) {
+					csv.write("," + value);
+				}
+				csv.write("\n");
+			}
+		}
+		System.out.println("samples written to " + out.toAbsolutePath());
+	}
+}
@@ -0,0 +1,294 @@
+package project.breakout.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+/**
+ * A web-socket server on the loopback interface, which takes the place of the
+ * lighthouse server. It decodes the requests of the {@code LighthouseDisplay},
+ * passes the frames to a listener with the time they were decoded, and answers
+ * every request like the lighthouse, so the round trip is measured as well.
+ *
+ * Only the parts of the web-socket protocol the {@code LighthouseDisplay}
+ * uses are implemented, as there is no server of jetty in the project.
+ */
+class WebSocketSink implements Closeable {
+	private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11"; //$NON-NLS-1$
+
+	// the opcodes of the web-socket frames
+	private static final int CONTINUATION = 0x0;
+	private static final int BINARY = 0x2;
+	private static final int CLOSE = 0x8;
+	private static final int PING = 0x9;
+	private static final int PONG = 0xA;
+
+	/**
+	 * The connections which may wait to be accepted, eg of many sessions of a
+	 * {@code GameServer} connecting at once.
+	 */
+	private static final int BACKLOG = 64;
+
+	/**
+	 * Gets the frames of the lighthouse received by the sink.
+	 */
+	interface FrameListener {
+		/**
+		 * Called by the thread of the connection for every frame.
+		 *
+		 * @param frame
+		 *            The colors of the windows, which were sent.
+		 * @param receivedAt
+		 *            The time of {@code System.nanoTime()} when the frame was
+		 *            decoded.
+		 */
+		void frameReceived(byte[] frame, long receivedAt);
+	}
+
+	private final ServerSocket server;
+	private final FrameListener listener;
+	private final AtomicInteger openConnections = new AtomicInteger();
+
+	/**
+	 * Constructor for the WebSocketSink. The server listens on a free port of the
+	 * loopback interface right away.
+	 *
+	 * @param listener
+	 *            Gets the received frames.
+	 */
+	WebSocketSink(FrameListener listener) throws IOException {
+		this.listener = listener;
+		this.server = new ServerSocket(0, BACKLOG, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(this::acceptLoop, "websocket-sink");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * Gets the address the {@code LighthouseDisplay} connects to.
+	 *
+	 * @return the web-socket address of the sink.
+	 */
+	String getUri() {
+		return "ws://127.0.0.1:" + server.getLocalPort() + "/user/harness/model"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Gets the number of web-socket connections which are open, eg to find
+	 * clients which aren't closed.
+	 *
+	 * @return the number of open connections.
+	 */
+	int getOpenConnections() {
+		return openConnections.get();
+	}
+
+	@Override
+	public void close() throws IOException {
+		server.close();
+	}
+
+	private void acceptLoop() {
+		while (!server.isClosed()) {
+			try {
+				Socket socket = server.accept();
+				Thread connection = new Thread(() -> serve(socket), "websocket-sink-connection");
+				connection.setDaemon(true);
+				connection.start();
+			} catch (IOException e) {
+				// the sink was closed
+			}
+		}
+	}
+
+	/**
+	 * Answers the upgrade request of the client and then reads its frames until
+	 * the connection is closed.
+	 */
+	private void serve(Socket socket) {
+		try (Socket connection = socket) {
+			connection.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+			OutputStream out = connection.getOutputStream();
+			handshake(in, out);
+			openConnections.incrementAndGet();
+			try {
+				readFrames(in, out);
+			} finally {
+				openConnections.decrementAndGet();
+			}
+		} catch (IOException e) {
+			// the client closed the connection
+		}
+	}
+
+	/**
+	 * Reads the frames of a connection and answers the requests until the client
+	 * closes it.
+	 */
+	private void readFrames(DataInputStream in, OutputStream out) throws IOException {
+		byte[] message = new byte[0];
+		while (true) {
+			int first = in.readUnsignedByte();
+			int second = in.readUnsignedByte();
+			boolean fin = (first & 0x80) != 0;
+			int opcode = first & 0x0F;
+			long length = second & 0x7F;
+			if (length == 126) {
+				length = in.readUnsignedShort();
+			} else if (length == 127) {
+				length = in.readLong();
+			}
+			byte[] mask = new byte[4];
+			if ((second & 0x80) != 0) {
+				in.readFully(mask);
+			}
+			byte[] payload = new byte[(int) length];
+			in.readFully(payload);
+			for (int i = 0; i < payload.length; i++) {
+				payload[i] ^= mask[i & 3];
+			}
+
+			switch (opcode) {
+			case CLOSE:
+				writeFrame(out, CLOSE, payload);
+				return;
+			case PING:
+				writeFrame(out, PONG, payload);
+				break;
+			case PONG:
+				break;
+			default:
+				// a message may be split into several frames
+				message = opcode == CONTINUATION ? concat(message, payload) : payload;
+				if (fin) {
+					requestReceived(message, out);
+				}
+				break;
+			}
+		}
+	}
+
+	private static void handshake(DataInputStream in, OutputStream out) throws IOException {
+		String key = null;
+		String line;
+		while (!(line = readLine(in)).isEmpty()) {
+			int colon = line.indexOf(':');
+			if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) { //$NON-NLS-1$
+				key = line.substring(colon + 1).trim();
+			}
+		}
+		if (key == null) {
+			throw new IOException("no web-socket upgrade request");
+		}
+
+		String response = "HTTP/1.1 101 Switching Protocols\r\n" //$NON-NLS-1$
+				+ "Upgrade: websocket\r\n" //$NON-NLS-1$
+				+ "Connection: Upgrade\r\n" //$NON-NLS-1$
+				+ "Sec-WebSocket-Accept: " + accept(key) + "\r\n\r\n"; //$NON-NLS-1$ //$NON-NLS-2$
+		out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+		out.flush();
+	}
+
+	/**
+	 * Reads a line of the upgrade request from the same stream as the frames, so
+	 * no frame is lost in the buffer of a reader.
+	 */
+	private static String readLine(DataInputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int next;
+		while ((next = in.readUnsignedByte()) != '\n') {
+			if (next != '\r') {
+				line.append((char) next);
+			}
+		}
+		return line.toString();
+	}
+
+	private static String accept(String key) {
+		try {
+			MessageDigest sha1 = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			byte[] digest = sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1));
+			return Base64.getEncoder().encodeToString(digest);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Decodes a request of the {@code LighthouseDisplay}, passes its frame on and
+	 * answers it.
+	 */
+	private void requestReceived(byte[] request, OutputStream out) throws IOException {
+		int reid = -1;
+		byte[] frame = null;
+		try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(request)) {
+			int entries = unpacker.unpackMapHeader();
+			for (int i = 0; i < entries; i++) {
+				switch (unpacker.unpackString()) {
+				case "REID": //$NON-NLS-1$
+					reid = unpacker.unpackInt();
+					break;
+				case "PAYL": //$NON-NLS-1$
+					frame = unpacker.readPayload(unpacker.unpackBinaryHeader());
+					break;
+				default:
+					unpacker.skipValue();
+					break;
+				}
+			}
+		}
+		if (frame != null) {
+			listener.frameReceived(frame, System.nanoTime());
+		}
+
+		MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+		packer.packMapHeader(3);
+		packer.packString("REID").packInt(reid); //$NON-NLS-1$
+		packer.packString("RNUM").packInt(200); //$NON-NLS-1$
+		packer.packString("RESPONSE").packNil(); //$NON-NLS-1$
+		writeFrame(out, BINARY, packer.toByteArray());
+	}
+
+	/**
+	 * Writes an unmasked frame, like a server does.
+	 */
+	private static void writeFrame(OutputStream out, int opcode, byte[] payload) throws IOException {
+		out.write(0x80 | opcode);
+		if (payload.length < 126) {
+			out.write(payload.length);
+		} else if (payload.length <= 0xFFFF) {
+			out.write(126);
+			out.write(payload.length >>> 8);
+			out.write(payload.length);
+		} else {
+			out.write(127);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				out.write((int) ((long) payload.length >>> shift));
+			}
+		}
+		out.write(payload);
+		out.flush();
+	}
+
+	private static byte[] concat(byte[] first, byte[] second) {
+		byte[] joined = new byte[first.length + second.length];
+		System.arraycopy(first, 0, joined, 0, first.length);
+		System.arraycopy(second, 0, joined, first.length, second.length);
+		return joined;
+	}
+}
@@ -0,0 +1,333 @@
+package project.breakout.controller;
+
+import project.breakout.model.BallModel;
+import project.breakout.model.BrickStore;
+import project.breakout.model.CollisionListener;
+import project.breakout.model.GameModel;
+import project.breakout.view.BreakoutBrick;
+
+/**
+ * A bot which plays the game instead of the mouse, eg for demos, soak tests
+ * and benchmarks. It predicts where the ball meets the line of the paddle by
+ * casting a ray in the direction of the ball, which is reflected by the walls
+ * and the bricks in its way, and moves the paddle so the ball bounces off
+ * towards the lowest remaining brick.
+ *
+ * The prediction only changes when the ball collides, so it is computed once
+ * after every collision and the ticks in between only return the cached
+ * position of the mouse. The bot is a {@code CollisionListener} of the
+ * collision controller to learn about the collisions.
+ */
+public class AutoPlayer implements CollisionListener {
+	/**
+	 * The maximum number of reflections of a prediction, a ball which doesn't
+	 * come down after them is followed directly.
+	 */
+	private static final int MAX_BOUNCES = 32;
+
+	/**
+	 * The part of the half paddle the ball may hit off the middle, so the ball
+	 * still hits the paddle if the prediction is a little off.
+	 */
+	private static final double MAX_DEVIATION = 0.8;
+
+	/**
+	 * The change of the direction when the ball hits the end of the paddle, like
+	 * in the {@code BallModel}.
+	 */
+	private static final int PADDLE_DEFLECTION = 80;
+
+	/**
+	 * The height of the bands the field is searched in for the lowest brick of a
+	 * {@code BrickStore}.
+	 */
+	private static final double TARGET_BAND = 50;
+
+	private boolean predictionValid = false;
+	private int mouseX;
+	private long predictions = 0;
+
+	// state of the current prediction
+	private final int[] bricksHit = new int[MAX_BOUNCES];
+	private int bricksHitCount;
+	private double rayX, rayY, rayDX, rayDY;
+	private int rayDirection;
+	private double nearestT;
+	private int nearestBrick;
+	private boolean nearestOnSide;
+	private int ballRadius;
+	private BrickStore store;
+	private final BrickStore.Visitor rayVisitor = this::castOnStoredBrick;
+
+	/**
+	 * Gets the x-position the mouse should be at in this tick. The prediction is
+	 * only computed again after the ball collided.
+	 *
+	 * @param game
+	 *            The game the bot plays.
+	 * @param ball
+	 *            The ball of the game.
+	 * @return the x-position of the mouse in the field.
+	 */
+	public int nextMouseX(GameModel game, BallModel ball) {
+		if (!predictionValid) {
+			mouseX = predictMouseX(game, ball);
+			predictionValid = true;
+			predictions++;
+		}
+		return mouseX;
+	}
+
+	@Override
+	public void collisionEvent(CollisionWith lastCollisionWith) {
+		predictionValid = false;
+	}
+
+	/**
+	 * Drops the prediction, eg after the ball was put back onto the paddle.
+	 */
+	public void reset() {
+		predictionValid = false;
+	}
+
+	// ---------prediction-------------------------
+
+	private int predictMouseX(GameModel game, BallModel ball) {
+		ballRadius = game.getBallRadius();
+		store = game.getBrickStore();
+		bricksHitCount = 0;
+
+		double paddleLine = game.getPaddleY() - 2 * ballRadius;
+		double impactX = castToPaddleLine(game, ball.getX(), ball.getY(), ball.getDirection(), paddleLine);
+
+		// the ball hits the paddle off its middle to bounce off towards the target
+		double deviation = 0;
+		if (!Double.isNaN(impactX)) {
+			double[] target = findTarget(game, impactX, paddleLine);
+			if (target != null) {
+				double wanted = Math.toDegrees(Math.atan2(target[0] - impactX, paddleLine - target[1]));
+				deviation = (wanted - signed(180 - rayDirection)) / PADDLE_DEFLECTION;
+				deviation = Math.max(-MAX_DEVIATION, Math.min(MAX_DEVIATION, deviation));
+			}
+		} else {
+			impactX = ball.getX();
+		}
+
+		int paddleHalf = game.getPaddleWidth() / 2;
+		int x = (int) Math.round(impactX - deviation * paddleHalf);
+		return Math.max(paddleHalf + 1, Math.min(game.getWidth() - paddleHalf - 1, x));
+	}
+
+	/**
+	 * Casts the ray of the ball until it reaches the line of the paddle. The
+	 * position is the upper left corner of the ball like in the model.
+	 *
+	 * @return the x-position of the ball on the line of the paddle or NaN if it
+	 *         doesn't get there within {@code MAX_BOUNCES} reflections.
+	 */
+	private double castToPaddleLine(GameModel game, double x, double y, int direction, double paddleLine) {
+		double right = game.getWidth() - 2 * ballRadius;
+		double top = ballRadius;
+
+		for (int bounce = 0; bounce < MAX_BOUNCES; bounce++) {
+			double dx = Math.sin(Math.toRadians(direction));
+			double dy = -Math.cos(Math.toRadians(direction));
+
+			// the next wall in the direction of the ball
+			double tX = dx < 0 ? -x / dx : dx > 0 ? (right - x) / dx : Double.POSITIVE_INFINITY;
+			double tY = dy < 0 ? (top - y) / dy : dy > 0 ? (paddleLine - y) / dy : Double.POSITIVE_INFINITY;
+			nearestT = Math.max(0, Math.min(tX, tY));
+			nearestOnSide = tX < tY;
+			nearestBrick = -1;
+
+			// a brick on the way to the wall
+			rayX = x;
+			rayY = y;
+			rayDX = dx;
+			rayDY = dy;
+			castOnBricks(game);
+
+			x += dx * nearestT;
+			y += dy * nearestT;
+			if (nearestBrick < 0 && !nearestOnSide && dy > 0) {
+				rayDirection = direction;
+				return x;
+			}
+			if (nearestBrick >= 0) {
+				bricksHit[bricksHitCount++] = nearestBrick;
+			}
+
+			// reflect like the ball after the collision
+			direction = nearestOnSide ? 360 - direction : 180 - direction;
+			direction = (direction >= 360) ? direction - 360 : direction;
+			direction = (direction < 0) ? direction + 360 : direction;
+		}
+		return Double.NaN;
+	}
+
+	private void castOnBricks(GameModel game) {
+		if (store != null) {
+			// only the bricks around the ray are visited
+			double endX = rayX + rayDX * nearestT;
+			double endY = rayY + rayDY * nearestT;
+			double minX = Math.min(rayX, endX);
+			double minY = Math.min(rayY, endY);
+			store.visit(minX - 2 * ballRadius, minY - 2 * ballRadius, Math.abs(endX - rayX) + 4 * ballRadius,
+					Math.abs(endY - rayY) + 4 * ballRadius, rayVisitor);
+			return;
+		}
+
+		BreakoutBrick[] bricks = game.getBrickArray();
+		if (bricks == null) {
+			return;
+		}
+		for (int i = 0; i < bricks.length; i++) {
+			BreakoutBrick brick = bricks[i];
+			if (brick != null && !wasHit(i)) {
+				castOnBrick(i, brick.getX(), brick.getY(), brick.getWidth(), brick.getHeight());
+			}
+		}
+	}
+
+	private void castOnStoredBrick(int brick) {
+		if (!wasHit(brick)) {
+			castOnBrick(brick, store.getX(brick), store.getY(brick), store.getWidth(brick), store.getHeight(brick));
+		}
+	}
+
+	/**
+	 * Intersects the ray with a brick, which is grown by the size of the ball
+	 * since the ray is the upper left corner of the ball. The ray hits the side
+	 * of the brick if it enters the brick through the left or right edge.
+	 */
+	private void castOnBrick(int brick, double x, double y, double width, double height) {
+		double left = x - 2 * ballRadius;
+		double upper = y - 2 * ballRadius;
+		double enterX, exitX, enterY, exitY;
+
+		if (rayDX == 0) {
+			if (rayX < left || rayX > x + width) {
+				return;
+			}
+			enterX = Double.NEGATIVE_INFINITY;
+			exitX = Double.POSITIVE_INFINITY;
+		} else {
+			double t1 = (left - rayX) / rayDX;
+			double t2 = (x + width - rayX) / rayDX;
+			enterX = Math.min(t1, t2);
+			exitX = Math.max(t1, t2);
+		}
+		if (rayDY == 0) {
+			if (rayY < upper || rayY > y + height) {
+				return;
+			}
+			enterY = Double.NEGATIVE_INFINITY;
+			exitY = Double.POSITIVE_INFINITY;
+		} else {
+			double t1 = (upper - rayY) / rayDY;
+			double t2 = (y + height - rayY) / rayDY;
+			enterY = Math.min(t1, t2);
+			exitY = Math.max(t1, t2);
+		}
+
+		double enter = Math.max(enterX, enterY);
+		double exit = Math.min(exitX, exitY);
+		if (enter >= 0 && enter <= exit && enter < nearestT) {
+			nearestT = enter;
+			nearestBrick = brick;
+			nearestOnSide = enterX > enterY;
+		}
+	}
+
+	private boolean wasHit(int brick) {
+		for (int i = 0; i < bricksHitCount; i++) {
+			if (bricksHit[i] == brick) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// ---------aiming-------------------------
+
+	/**
+	 * Finds the lowest remaining brick, which the ball reaches first. Of the
+	 * lowest bricks the one nearest to the ball is taken.
+	 *
+	 * @return the position of the upper left corner of the ball in the middle of
+	 *         the brick or {@code null} if there is no brick left.
+	 */
+	private double[] findTarget(GameModel game, double impactX, double paddleLine) {
+		if (store != null) {
+			// search the field in bands from the paddle upwards
+			for (double bottom = paddleLine; bottom > 0; bottom -= TARGET_BAND) {
+				double[] best = new double[] { 0, 0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY };
+				store.visit(0, bottom - TARGET_BAND, game.getWidth(), TARGET_BAND, brick -> {
+					if (!wasHit(brick)) {
+						chooseTarget(best, store.getX(brick), store.getY(brick), store.getWidth(brick),
+								store.getHeight(brick), impactX);
+					}
+				});
+				if (best[2] != Double.NEGATIVE_INFINITY) {
+					return best;
+				}
+			}
+			return null;
+		}
+
+		BreakoutBrick[] bricks = game.getBrickArray();
+		if (bricks == null) {
+			return null;
+		}
+		double[] best = new double[] { 0, 0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY };
+		for (int i = 0; i < bricks.length; i++) {
+			BreakoutBrick brick = bricks[i];
+			if (brick != null && !wasHit(i)) {
+				chooseTarget(best, brick.getX(), brick.getY(), brick.getWidth(), brick.getHeight(), impactX);
+			}
+		}
+		return best[2] != Double.NEGATIVE_INFINITY ? best : null;
+	}
+
+	/**
+	 * Keeps the brick in {@code best} if it is lower than the best one so far or
+	 * as low and nearer to the ball. {@code best} holds the target position, the
+	 * bottom of the brick and the distance to the ball.
+	 */
+	private void chooseTarget(double[] best, double x, double y, double width, double height, double impactX) {
+		double targetX = x + width / 2 - ballRadius;
+		double bottom = y + height;
+		double distance = Math.abs(targetX - impactX);
+		if (bottom > best[2] || (bottom == best[2] && distance < best[3])) {
+			best[0] = targetX;
+			best[1] = y + height / 2 - ballRadius;
+			best[2] = bottom;
+			best[3] = distance;
+		}
+	}
+
+	/**
+	 * Converts a direction into the range -180 to 180 degrees.
+	 */
+	private static double signed(int direction) {
+		direction %= 360;
+		if (direction > 180) {
+			return direction - 360;
+		}
+		if (direction <= -180) {
+			return direction + 360;
+		}
+		return direction;
+	}
+
+	// ---------Getters-------------------------
+
+	/**
+	 * Gets the number of predictions computed so far.
+	 *
+	 * @return the number of predictions.
+	 */
+	public long getPredictions() {
+		return predictions;
+	}
+}
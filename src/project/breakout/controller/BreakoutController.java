@@ -9,14 +9,21 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 
 import project.breakout.model.BreakoutModel;
-import project.breakout.view.BreakoutView;
+import project.breakout.replay.ReplayLog;
+import project.breakout.replay.ReplayRecorder;
+import project.breakout.view.GameView;
 
 /**
  * This class represents the mouse and keyboard controllers used for the game.
  *
  */
 public class BreakoutController {
-	private BreakoutView view;
+	/**
+	 * The seconds the game is rewound by with 'r'.
+	 */
+	private static final double REWIND_SECONDS = 2;
+
+	private GameView view;
 	private BreakoutModel model;
 
 	/**
@@ -27,15 +34,54 @@ public class BreakoutController {
 	 * @param view
 	 *            The view representing the current game.
 	 */
-	public BreakoutController(BreakoutModel model, BreakoutView view) {
-		this.view = view;
+	public BreakoutController(BreakoutModel model, GameView view) {
 		this.model = model;
-		initControllers();
+		initModelControllers();
+		setView(view);
+	}
+
+	/**
+	 * Connects the controllers to a new view, eg after the game was restarted.
+	 * The listeners of the model stay, so they are only added once.
+	 * 
+	 * @param view
+	 *            The view representing the current game.
+	 */
+	public void setView(GameView view) {
+		this.view = view;
+		initViewControllers();
+	}
+
+	private void initModelControllers() {
+		model.addComponentListener(new ComponentListener() {
+
+			@Override
+			public void componentShown(ComponentEvent e) {
+				model.continueGame();
+			}
+
+			@Override
+			public void componentResized(ComponentEvent e) {
+				model.resizedView(model.getWidth(), model.getHeight());
+
+			}
+
+			@Override
+			public void componentMoved(ComponentEvent e) {
+				// TODO Auto-generated method stub
+
+			}
+
+			@Override
+			public void componentHidden(ComponentEvent e) {
+				model.pauseGame();
+			}
+		});
 	}
 
-	private void initControllers() {
+	private void initViewControllers() {
 
-		view.addMouseListener(new MouseListener() {
+		view.getComponent().addMouseListener(new MouseListener() {
 
 			@Override
 			public void mouseReleased(MouseEvent e) {
@@ -63,14 +109,18 @@ public class BreakoutController {
 
 			@Override
 			public void mouseClicked(MouseEvent e) {
+				ReplayRecorder.record(ReplayLog.CLICK);
 				model.startGame();
 			}
 		});
-		view.addMouseMotionListener(new MouseMotionListener() {
+		view.getComponent().addMouseMotionListener(new MouseMotionListener() {
 
 			@Override
 			public void mouseMoved(MouseEvent e) {
-				model.updateMouseLocation(e.getPoint());
+				// the bot moves the paddle during the auto play
+				if (!model.isAutoPlay()) {
+					model.updateMouseLocation(e.getPoint());
+				}
 			}
 
 			@Override
@@ -80,41 +130,18 @@ public class BreakoutController {
 			}
 		});
 
-		model.addComponentListener(new ComponentListener() {
-
-			@Override
-			public void componentShown(ComponentEvent e) {
-				model.continueGame();
-			}
-
-			@Override
-			public void componentResized(ComponentEvent e) {
-				model.resizedView(model.getWidth(), model.getHeight());
-
-			}
-
-			@Override
-			public void componentMoved(ComponentEvent e) {
-				// TODO Auto-generated method stub
-
-			}
-
-			@Override
-			public void componentHidden(ComponentEvent e) {
-				model.pauseGame();
-			}
-		});
-
-		view.addKeyListener(new KeyListener() {
+		view.getComponent().addKeyListener(new KeyListener() {
 
 			@Override
 			public void keyTyped(KeyEvent e) {
+				ReplayRecorder.keyTyped(e.getKeyChar());
 				switch (e.getKeyChar()) {
 				case 'i':
-					// toggle info text / overlay in the view
+					// hide the info text or show the performance HUD in it
 					if (view.isInfoVisible()) {
 						view.showInfoText(false);
 					} else {
+						view.showHud();
 						view.showInfoText(true);
 					}
 					break;
@@ -131,6 +158,19 @@ public class BreakoutController {
 					} else {
 						model.setLighthouseEnabled(true);
 					}
+					break;
+				case 'e':
+					model.setEndlessMode(!model.isEndlessMode());
+					break;
+				case 'a':
+					model.setAutoPlay(!model.isAutoPlay());
+					break;
+				case 'r':
+					model.rewind(REWIND_SECONDS);
+					break;
+				case 'b':
+					model.showLeaderboard();
+					break;
 				}				
 			}
 
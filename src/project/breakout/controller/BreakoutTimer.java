@@ -2,6 +2,10 @@ package project.breakout.controller;
 
 import java.util.TimerTask;
 
+import project.breakout.metrics.LatencyProbe;
+import project.breakout.metrics.TickEvent;
+import project.breakout.metrics.TickMetrics;
+import project.breakout.metrics.TickWatchdog;
 import project.breakout.model.BreakoutModel;
 
 public class BreakoutTimer extends TimerTask {
@@ -24,6 +28,29 @@ public class BreakoutTimer extends TimerTask {
 	@Override
 	public void run() {
 		// create new frame
-		model.updateFrame();
+		TickEvent event = new TickEvent();
+		long checks = 0, collisions = 0;
+		if (event.isEnabled()) {
+			checks = TickMetrics.getCollisionChecks();
+			collisions = TickMetrics.getCollisions();
+		}
+		event.begin();
+		TickWatchdog.tickStarted();
+		long start = System.nanoTime();
+
+		try {
+			model.tick();
+		} finally {
+			// a failed tick ends as well, so the watchdog doesn't report it as stuck
+			TickMetrics.tickDone(System.nanoTime() - start);
+			TickWatchdog.tickEnded();
+			LatencyProbe.tickDone();
+			event.end();
+			if (event.shouldCommit()) {
+				event.substeps = (int) (TickMetrics.getCollisionChecks() - checks);
+				event.collisions = (int) (TickMetrics.getCollisions() - collisions);
+				event.commit();
+			}
+		}
 	}
 }
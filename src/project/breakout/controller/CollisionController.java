@@ -1,8 +1,11 @@
 package project.breakout.controller;
 
+import project.breakout.metrics.CollisionEvent;
+import project.breakout.metrics.CollisionMetrics;
 import project.breakout.model.BallModel;
-import project.breakout.model.BreakoutModel;
+import project.breakout.model.BrickStore;
 import project.breakout.model.CollisionListener;
+import project.breakout.model.GameModel;
 import project.breakout.view.BreakoutBrick;
 
 import java.awt.List;
@@ -20,6 +23,12 @@ public class CollisionController {
 	@SuppressWarnings("unused")
 	private BreakoutBrick lastBrickCollided = new BreakoutBrick(0, 0);
 
+	/**
+	 * The index of the brick of the last collision in the brick array or brick
+	 * store, -1 if the last collision wasn't with a brick.
+	 */
+	private int lastBrickIndex = -1;
+
 	/**
 	 * The distance between the bricks wall to the end of the zone within the brick
 	 * which is seen as a collision.
@@ -28,15 +37,51 @@ public class CollisionController {
 
 	private ArrayList<CollisionListener> listeners = new ArrayList<CollisionListener>();
 
+	/**
+	 * The metrics of the game whose ball is checked.
+	 */
+	private final CollisionMetrics metrics;
+
+	/**
+	 * Constructor for a CollisionController whose checks aren't recorded.
+	 */
+	public CollisionController() {
+		this(CollisionMetrics.NONE);
+	}
+
+	/**
+	 * Constructor for the CollisionController.
+	 * 
+	 * @param metrics
+	 *            The metrics of the game, which record the checks.
+	 */
+	public CollisionController(CollisionMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 	/**
 	 * Checks for any kind of collision in the model.
 	 * @param model
 	 * @return
 	 */
-	public boolean checkForCollision(BreakoutModel model) {
-		if (!(isWallCollisionInModel(model) || isBrickCollisionInModel(model) || isPaddleCollisionInModel(model))) {
+	public boolean checkForCollision(GameModel model) {
+		long start = System.nanoTime();
+		lastBrickIndex = -1;
+		boolean collision = isWallCollisionInModel(model) || isBrickCollisionInModel(model)
+				|| isPaddleCollisionInModel(model);
+		metrics.collisionChecked(System.nanoTime() - start);
+
+		if (!collision) {
 			return false;
 		} else {
+			metrics.collided();
+			CollisionEvent event = new CollisionEvent();
+			if (event.shouldCommit()) {
+				event.type = lastCollisionWith.name();
+				event.brick = lastBrickIndex;
+				event.commit();
+			}
+
 			// fire CollisionEvent to CollisionListeners
 			for (CollisionListener listener : listeners) {
 				listener.collisionEvent(lastCollisionWith);
@@ -59,7 +104,7 @@ public class CollisionController {
 	 * @return {@code true} if there is a collision with a wall in the model,
 	 *         {@code false} if not.
 	 */
-	public boolean isWallCollisionInModel(BreakoutModel model) {
+	public boolean isWallCollisionInModel(GameModel model) {
 		double ballX = model.getBallX();
 		double ballY = model.getBallY();
 		int ballRadius = model.getBallRadius();
@@ -101,7 +146,12 @@ public class CollisionController {
 	 * @return {@code true} if there is a collision with a brick in the model,
 	 *         {@code false} if not.
 	 */
-	public boolean isBrickCollisionInModel(BreakoutModel model) {
+	public boolean isBrickCollisionInModel(GameModel model) {
+		// very large levels are queried in their store
+		if (model.getBrickStore() != null) {
+			return isStoredBrickCollisionInModel(model, model.getBrickStore());
+		}
+
 		BreakoutBrick[] bricks = model.getBrickArray();
 		double ballX = model.getBallX();
 		double ballY = model.getBallY();
@@ -120,8 +170,12 @@ public class CollisionController {
 		}
 
 		// iterate over bricks
+		int bricksTested = 0;
+		int index = -1;
 		for (BreakoutBrick brick : bricks) {
+			index++;
 			if (brick != null) {
+				bricksTested++;
 				// get middle of the brick
 				double brickMiddleX = brick.getX() + brick.getWidth() / 2;
 				double brickMiddleY = brick.getY() + brick.getHeight() / 2;
@@ -149,6 +203,8 @@ public class CollisionController {
 							: CollisionWith.BRICK_Y_AXIS;
 
 					lastBrickCollided = brick;
+					lastBrickIndex = index;
+					metrics.bricksTested(bricksTested);
 					model.deleteBrickAfterCollision(lastBrickCollided);
 
 					// check if this was the last brick in the level
@@ -160,10 +216,54 @@ public class CollisionController {
 			}
 		}
 
+		metrics.bricksTested(bricksTested);
 		return false;
 	}
 
-	public boolean isPaddleCollisionInModel(BreakoutModel model) {
+	/**
+	 * Checks if the ball in the model collides with a brick of the
+	 * {@code BrickStore} of a very large level. Only the bricks near the ball are
+	 * tested. Sets {@code lastCollisionWith} to a new value if there is a
+	 * collision.
+	 * 
+	 * @param model
+	 *            A reference to the current model of the game.
+	 * @param store
+	 *            The store containing the bricks.
+	 * @return {@code true} if there is a collision with a brick in the model,
+	 *         {@code false} if not.
+	 */
+	private boolean isStoredBrickCollisionInModel(GameModel model, BrickStore store) {
+		int ballRadius = model.getBallRadius();
+		double ballMiddleX = model.getBallX() + ballRadius;
+		double ballMiddleY = model.getBallY() + ballRadius;
+
+		int brick = store.findHit(ballMiddleX, ballMiddleY, ballRadius);
+		metrics.bricksTested(store.getLastCandidateCount());
+		if (brick < 0) {
+			return false;
+		}
+
+		// collision happened on the side where the relative distance of the ball to
+		// the brick middle is minimal.
+		double relativeDistanceX = (Math.abs(store.getX(brick) + store.getWidth(brick) / 2 - ballMiddleX)
+				- ballRadius) / (store.getWidth(brick) / 2);
+		double relativeDistanceY = (Math.abs(store.getY(brick) + store.getHeight(brick) / 2 - ballMiddleY)
+				- ballRadius) / (store.getHeight(brick) / 2);
+		lastCollisionWith = (relativeDistanceX < relativeDistanceY) ? CollisionWith.BRICK_X_AXIS
+				: CollisionWith.BRICK_Y_AXIS;
+
+		lastBrickIndex = brick;
+		model.deleteBrickAfterCollision(brick);
+
+		// check if this was the last brick in the level
+		if (store.getLiveCount() == 0) {
+			model.levelDone();
+		}
+		return true;
+	}
+
+	public boolean isPaddleCollisionInModel(GameModel model) {
 		// get information about the ball
 		int ballRadius = model.getBallRadius();
 		double ballX = model.getBallX();
@@ -172,10 +272,10 @@ public class CollisionController {
 		double ballMiddleY = ballY + ballRadius;
 
 		// get information about the paddle
-		double paddleX = BreakoutModel.getPaddleX();
-		double paddleY = BreakoutModel.getPaddleY();
-		double paddleMiddleX = paddleX + BreakoutModel.getPaddleWidth() / 2;
-		double paddleMiddleY = paddleY + BreakoutModel.getPaddleHeight() / 2;
+		double paddleX = model.getPaddleX();
+		double paddleY = model.getPaddleY();
+		double paddleMiddleX = paddleX + model.getPaddleWidth() / 2;
+		double paddleMiddleY = paddleY + model.getPaddleHeight() / 2;
 
 		// in case the collision is detected multiple times
 		if (lastCollisionWith == CollisionWith.PADDLE) {
@@ -187,8 +287,8 @@ public class CollisionController {
 		double ballPaddleDistanceY = Math.abs(paddleMiddleY - ballMiddleY) - ballRadius;
 
 		// see distance as percentage of paddle size
-		double relativeDistanceX = ballPaddleDistanceX / (BreakoutModel.getPaddleWidth() / 2);
-		double relativeDistanceY = ballPaddleDistanceY / (BreakoutModel.getPaddleHeight() / 2);
+		double relativeDistanceX = ballPaddleDistanceX / (model.getPaddleWidth() / 2);
+		double relativeDistanceY = ballPaddleDistanceY / (model.getPaddleHeight() / 2);
 
 		assert relativeDistanceX + ballRadius > 0 : "the relative distanceX should be > 0, but was "
 				+ relativeDistanceX;
@@ -233,4 +333,15 @@ public class CollisionController {
 	public CollisionWith getLastCollisionWith() {
 		return lastCollisionWith;
 	}
+
+	/**
+	 * Sets the last collision of the ball, eg when a game is restored from a
+	 * snapshot. The same collision isn't detected again right after it.
+	 * 
+	 * @param lastCollisionWith
+	 *            The last object that the ball collided with.
+	 */
+	public void setLastCollisionWith(CollisionWith lastCollisionWith) {
+		this.lastCollisionWith = lastCollisionWith;
+	}
 }
@@ -0,0 +1,515 @@
+package project.breakout.leaderboard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import project.breakout.log.Log;
+import project.breakout.metrics.Counter;
+import project.breakout.metrics.Histogram;
+import project.breakout.metrics.MetricsRegistry;
+import project.breakout.model.AtomicFile;
+
+/**
+ * This class keeps the best runs of all games in a file. The file is a log
+ * which is only appended to: every finished run is a record with a CRC32, so a
+ * record which was only written in part by a crash is cut off when the file is
+ * opened again. The best {@code size} runs are kept in memory, they are
+ * rebuilt from the log when it is opened.
+ *
+ * The runs are submitted by the game thread into a queue. A writer thread
+ * appends all runs which are waiting with one write and makes them durable
+ * with one {@code fsync}; the runs submitted meanwhile wait for the next one,
+ * so many games share the cost of a sync. After {@code compactAfter} records
+ * the log is rewritten with only the best runs, so it never grows beyond a few
+ * kilobytes and is read quickly even after months of games.
+ *
+ * <pre>
+ * file:    "BLBD" version:byte record*
+ * record:  length:int millis:long points level:int flags:byte nameLength:byte name:utf8 crc:int
+ * </pre>
+ *
+ * The file is set with the system property "breakout.leaderboard.file", the
+ * default is "breakout-scores.log" and an empty name switches the leaderboard
+ * off. The number of runs kept is set with "breakout.leaderboard.size", the
+ * default is 10, and the records between two compactions with
+ * "breakout.leaderboard.compactAfter", the default is 1000.
+ */
+public class Leaderboard {
+	private static final String FILE_PROPERTY = "breakout.leaderboard.file"; //$NON-NLS-1$
+	private static final String SIZE_PROPERTY = "breakout.leaderboard.size"; //$NON-NLS-1$
+	private static final String COMPACT_PROPERTY = "breakout.leaderboard.compactAfter"; //$NON-NLS-1$
+	private static final String DEFAULT_FILE = "breakout-scores.log"; //$NON-NLS-1$
+
+	private static final byte[] MAGIC = { 'B', 'L', 'B', 'D' };
+	private static final int VERSION = 1;
+
+	/**
+	 * The longest name in bytes, longer names are cut.
+	 */
+	private static final int MAX_NAME_BYTES = 32;
+	private static final int MIN_PAYLOAD = 8 + 4 + 4 + 1 + 1;
+
+	/**
+	 * The most runs written with one sync.
+	 */
+	private static final int MAX_BATCH = 1024;
+
+	private static final Log.Site WRITE_FAILED = Log.site("leaderboard", Log.Level.WARN, 1); //$NON-NLS-1$
+	private static final Log.Site LOAD = Log.site("leaderboard.load", Log.Level.WARN, 1); //$NON-NLS-1$
+	private static final Counter runsCommitted = MetricsRegistry.counter("breakout_leaderboard_runs_total", //$NON-NLS-1$
+			"Runs written to the leaderboard");
+	private static final Histogram syncTime = MetricsRegistry.histogram("breakout_leaderboard_sync_seconds", //$NON-NLS-1$
+			"Duration of a write and sync of the leaderboard", 1e-9);
+	private static final Histogram batchSize = MetricsRegistry.histogram("breakout_leaderboard_batch_runs", //$NON-NLS-1$
+			"Runs written to the leaderboard per sync", 1);
+
+	/**
+	 * The best runs, best first. The array is replaced, never changed, so it is
+	 * read without a lock.
+	 */
+	private static volatile LeaderboardEntry[] top = new LeaderboardEntry[0];
+
+	// the log, used by the writer thread only after it is opened
+	private static Path file;
+	private static FileChannel channel;
+	private static int size;
+	private static int compactAfter;
+	private static long records = 0;
+	private static ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+	private static final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+	private static final Pending CLOSE = new Pending(null);
+	private static volatile Thread writer;
+	private static volatile boolean closed = false;
+	/**
+	 * Set when the writer thread exits, the runs submitted after it are failed.
+	 */
+	private static volatile boolean writerDone = false;
+
+	private Leaderboard() {
+	}
+
+	/**
+	 * Opens the configured file, rebuilds the best runs from it and starts the
+	 * writer thread. Calling it again does nothing.
+	 *
+	 * @return {@code true} if the leaderboard is open, {@code false} if it is
+	 *         switched off or the file can't be used.
+	 */
+	public static synchronized boolean open() {
+		if (writer != null) {
+			return true;
+		}
+		String name = System.getProperty(FILE_PROPERTY, DEFAULT_FILE).trim();
+		if (name.isEmpty()) {
+			return false;
+		}
+		size = Math.max(1, Integer.getInteger(SIZE_PROPERTY, 10));
+		compactAfter = Math.max(1, Integer.getInteger(COMPACT_PROPERTY, 1000));
+		file = Paths.get(name);
+
+		try {
+			load();
+		} catch (IOException e) {
+			// the file is kept as it is, maybe it belongs to something else
+			LOAD.log("leaderboard not opened: {}", e.getMessage());
+			return false;
+		}
+
+		writer = new Thread(Leaderboard::write, "leaderboard-writer");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(Leaderboard::close, "leaderboard-close"));
+		return true;
+	}
+
+	/**
+	 * Reads the log into the best runs and opens it for appending. A record
+	 * which was only written in part is cut off.
+	 */
+	private static void load() throws IOException {
+		byte[] data;
+		try {
+			data = Files.readAllBytes(file);
+		} catch (NoSuchFileException e) {
+			data = new byte[0];
+		}
+
+		int end = 0;
+		LeaderboardEntry[] loaded = new LeaderboardEntry[0];
+		if (data.length > 0) {
+			if (data.length < MAGIC.length + 1) {
+				throw new IOException(file + " is no leaderboard, it is too short");
+			}
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (data[i] != MAGIC[i]) {
+					throw new IOException(file + " is no leaderboard, the magic number is missing");
+				}
+			}
+			if (data[MAGIC.length] != VERSION) {
+				throw new IOException("leaderboard version " + data[MAGIC.length] + " is not supported");
+			}
+
+			ByteBuffer in = ByteBuffer.wrap(data);
+			in.position(MAGIC.length + 1);
+			LeaderboardEntry entry;
+			while ((entry = readRecord(in)) != null) {
+				loaded = insert(loaded, entry);
+				records++;
+			}
+			end = in.position();
+			if (end < data.length) {
+				LOAD.log("cut off {} bytes of an incomplete run", data.length - end);
+			}
+		}
+		top = loaded;
+
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		if (end == 0) {
+			channel.truncate(0);
+			channel.write(ByteBuffer.wrap(header()));
+			channel.force(true);
+		} else {
+			channel.truncate(end);
+		}
+		channel.position(channel.size());
+	}
+
+	/**
+	 * Reads the next record.
+	 *
+	 * @return the run or {@code null} at the end of the log or at a record which
+	 *         is incomplete or damaged. The position stays before it then.
+	 */
+	private static LeaderboardEntry readRecord(ByteBuffer in) {
+		int start = in.position();
+		if (in.remaining() < 4) {
+			return null;
+		}
+		int length = in.getInt();
+		if (length < MIN_PAYLOAD || length > MIN_PAYLOAD + MAX_NAME_BYTES || in.remaining() < length + 4) {
+			in.position(start);
+			return null;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(in.array(), in.position(), length);
+		if (in.getInt(in.position() + length) != (int) crc.getValue()) {
+			in.position(start);
+			return null;
+		}
+
+		long millis = in.getLong();
+		int points = in.getInt();
+		int level = in.getInt();
+		int flags = in.get();
+		int nameLength = in.get() & 0xff;
+		if (nameLength != length - MIN_PAYLOAD) {
+			in.position(start);
+			return null;
+		}
+		String name = new String(in.array(), in.position(), nameLength, StandardCharsets.UTF_8);
+		in.position(in.position() + nameLength + 4);
+		return new LeaderboardEntry(name, points, level, flags, millis);
+	}
+
+	private static byte[] header() {
+		byte[] header = new byte[MAGIC.length + 1];
+		System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+		header[MAGIC.length] = VERSION;
+		return header;
+	}
+
+	// ---------submitting-------------------------
+
+	/**
+	 * Submits a finished run. It returns at once, the run is written by the
+	 * writer thread. A run submitted while the leaderboard is closed fails.
+	 *
+	 * @param name
+	 *            The name of the player.
+	 * @param points
+	 *            The points of the run.
+	 * @param level
+	 *            The level the run ended in.
+	 * @param flags
+	 *            The flags of the {@code LeaderboardEntry}.
+	 * @return completes with the rank of the run, counted from 1, or 0 if it
+	 *         isn't one of the best, when the run is durable.
+	 */
+	public static CompletableFuture<Integer> submit(String name, int points, int level, int flags) {
+		Pending pending = new Pending(new LeaderboardEntry(cutName(name), points, level, flags,
+				System.currentTimeMillis()));
+		if (closed || writer == null) {
+			pending.rank.completeExceptionally(new IllegalStateException("the leaderboard is not open"));
+			return pending.rank;
+		}
+		queue.add(pending);
+		// the writer may have exited after the check, then nobody else takes the run
+		if (writerDone) {
+			failPending();
+		}
+		return pending.rank;
+	}
+
+	private static String cutName(String name) {
+		while (name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES) {
+			name = name.substring(0, name.length() - 1);
+		}
+		return name;
+	}
+
+	// ---------writing-------------------------
+
+	private static void write() {
+		try {
+			// a log which was written with a larger compactAfter is compacted first
+			if (records > size + compactAfter) {
+				compact();
+			}
+			List<Pending> batch = new ArrayList<>();
+			while (true) {
+				batch.clear();
+				try {
+					batch.add(queue.take());
+				} catch (InterruptedException e) {
+					return;
+				}
+				// the runs submitted during the last sync are written together
+				queue.drainTo(batch, MAX_BATCH - 1);
+				boolean close = batch.remove(CLOSE);
+				if (!batch.isEmpty()) {
+					commit(batch);
+				}
+				if (close) {
+					return;
+				}
+				if (records > size + compactAfter) {
+					compact();
+				}
+			}
+		} finally {
+			closed = true;
+			writerDone = true;
+			failPending();
+		}
+	}
+
+	/**
+	 * Fails the runs which are still in the queue after the writer thread
+	 * exited.
+	 */
+	private static void failPending() {
+		Pending pending;
+		while ((pending = queue.poll()) != null) {
+			pending.rank.completeExceptionally(new IllegalStateException("the leaderboard is closed"));
+		}
+	}
+
+	/**
+	 * Appends the runs to the log with one write and one sync and adds them to
+	 * the best runs.
+	 */
+	private static void commit(List<Pending> batch) {
+		buffer.clear();
+		for (Pending pending : batch) {
+			encode(pending.entry);
+		}
+		buffer.flip();
+
+		long start = System.nanoTime();
+		long end = -1;
+		try {
+			end = channel.position();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		} catch (IOException e) {
+			WRITE_FAILED.log("runs not written: {}", e.toString());
+			// a part of the runs would hide the runs appended after it
+			try {
+				if (end >= 0) {
+					channel.truncate(end);
+				}
+			} catch (IOException ignored) {
+			}
+			for (Pending pending : batch) {
+				pending.rank.completeExceptionally(e);
+			}
+			return;
+		}
+		syncTime.record(System.nanoTime() - start);
+		batchSize.record(batch.size());
+		runsCommitted.add(batch.size());
+		records += batch.size();
+
+		LeaderboardEntry[] best = top;
+		for (Pending pending : batch) {
+			best = insert(best, pending.entry);
+		}
+		top = best;
+		for (Pending pending : batch) {
+			pending.rank.complete(rankIn(best, pending.entry));
+		}
+	}
+
+	private static void encode(LeaderboardEntry entry) {
+		byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+		int length = MIN_PAYLOAD + name.length;
+		if (buffer.remaining() < length + 8) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length + 8));
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		}
+		buffer.putInt(length);
+		int payload = buffer.position();
+		buffer.putLong(entry.getMillis());
+		buffer.putInt(entry.getPoints());
+		buffer.putInt(entry.getLevel());
+		buffer.put((byte) entry.getFlags());
+		buffer.put((byte) name.length);
+		buffer.put(name);
+
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), payload, length);
+		buffer.putInt((int) crc.getValue());
+	}
+
+	/**
+	 * Rewrites the log with only the best runs. The new log is written with the
+	 * {@code AtomicFile}, so a crash leaves the old or the new log complete.
+	 */
+	private static void compact() {
+		LeaderboardEntry[] best = top;
+		try {
+			buffer.clear();
+			buffer.put(header());
+			for (LeaderboardEntry entry : best) {
+				encode(entry);
+			}
+			buffer.flip();
+
+			// the log is closed first, an open file can't be replaced on every system
+			channel.close();
+			AtomicFile.write(file, buffer);
+			records = best.length;
+		} catch (IOException e) {
+			WRITE_FAILED.log("leaderboard not compacted: {}", e.toString());
+		}
+
+		try {
+			if (!channel.isOpen()) {
+				channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			}
+		} catch (IOException e) {
+			WRITE_FAILED.log("leaderboard closed: {}", e.toString());
+			closed = true;
+		}
+	}
+
+	/**
+	 * Writes the runs which were submitted and stops the writer thread, eg when
+	 * the program exits.
+	 */
+	public static void close() {
+		Thread thread;
+		synchronized (Leaderboard.class) {
+			thread = writer;
+			if (thread == null || closed) {
+				return;
+			}
+			closed = true;
+		}
+		queue.add(CLOSE);
+		try {
+			thread.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// ---------the best runs-------------------------
+
+	/**
+	 * Inserts a run into the best runs, if it is one of them.
+	 *
+	 * @return the new array or the same one if the run isn't one of the best.
+	 */
+	private static LeaderboardEntry[] insert(LeaderboardEntry[] best, LeaderboardEntry entry) {
+		int rank = best.length;
+		while (rank > 0 && entry.ranksBefore(best[rank - 1])) {
+			rank--;
+		}
+		if (rank >= size) {
+			return best;
+		}
+		LeaderboardEntry[] inserted = new LeaderboardEntry[Math.min(best.length + 1, size)];
+		System.arraycopy(best, 0, inserted, 0, rank);
+		inserted[rank] = entry;
+		System.arraycopy(best, rank, inserted, rank + 1, inserted.length - rank - 1);
+		return inserted;
+	}
+
+	private static int rankIn(LeaderboardEntry[] best, LeaderboardEntry entry) {
+		for (int i = 0; i < best.length; i++) {
+			if (best[i] == entry) {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	// ---------Getters-------------------------
+
+	/**
+	 * Gets the best runs which are durable.
+	 *
+	 * @return the runs, best first. The array must not be changed.
+	 */
+	public static LeaderboardEntry[] getTop() {
+		return top;
+	}
+
+	/**
+	 * Gets the rank a run with some points would get now.
+	 *
+	 * @param points
+	 *            The points of the run.
+	 * @return the rank, counted from 1, or 0 if it wouldn't be one of the best.
+	 */
+	public static int rankFor(int points) {
+		LeaderboardEntry[] best = top;
+		int rank = best.length;
+		while (rank > 0 && points > best[rank - 1].getPoints()) {
+			rank--;
+		}
+		return rank < size ? rank + 1 : 0;
+	}
+
+	/**
+	 * A run which waits for the writer thread.
+	 */
+	private static class Pending {
+		final LeaderboardEntry entry;
+		final CompletableFuture<Integer> rank = new CompletableFuture<>();
+
+		Pending(LeaderboardEntry entry) {
+			this.entry = entry;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package project.breakout.leaderboard;
+
+/**
+ * A finished run on the {@code Leaderboard}: the player, the points, the level
+ * the run ended in and when it ended. An entry ranks before another one with
+ * more points or, with the same points, if it ended earlier.
+ */
+public class LeaderboardEntry {
+	// the flags
+	/** The run was played in the endless mode. */
+	public static final int ENDLESS = 1;
+	/** The run was rewound, so it was played more than once in parts. */
+	public static final int REWOUND = 2;
+
+	private final String name;
+	private final int points;
+	private final int level;
+	private final int flags;
+	private final long millis;
+
+	/**
+	 * Constructor for the LeaderboardEntry.
+	 *
+	 * @param name
+	 *            The name of the player.
+	 * @param points
+	 *            The points of the run.
+	 * @param level
+	 *            The level the run ended in.
+	 * @param flags
+	 *            The flags of the run, eg {@code ENDLESS}.
+	 * @param millis
+	 *            The time the run ended at.
+	 */
+	public LeaderboardEntry(String name, int points, int level, int flags, long millis) {
+		this.name = name;
+		this.points = points;
+		this.level = level;
+		this.flags = flags;
+		this.millis = millis;
+	}
+
+	/**
+	 * Checks if this entry ranks before another one.
+	 *
+	 * @param other
+	 *            The other entry.
+	 * @return {@code true} if this entry has more points or ended earlier with
+	 *         the same points.
+	 */
+	public boolean ranksBefore(LeaderboardEntry other) {
+		return points > other.points || points == other.points && millis < other.millis;
+	}
+
+	@Override
+	public String toString() {
+		return name + " " + points + " (level " + (level + 1) + ((flags & ENDLESS) != 0 ? ", endless" : "")
+				+ ((flags & REWOUND) != 0 ? ", rewound" : "") + ")";
+	}
+
+	// ---------Getters-------------------------
+
+	public String getName() {
+		return name;
+	}
+
+	public int getPoints() {
+		return points;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	public long getMillis() {
+		return millis;
+	}
+}
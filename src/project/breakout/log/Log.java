@@ -0,0 +1,169 @@
+package project.breakout.log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is the log of the game for the conditions which are reported on
+ * the hot paths. A message is logged at a {@code Site}, which is created once
+ * as a constant of the class logging it. The site drops messages below the
+ * configured level and limits how many messages per second it passes on. The
+ * messages are handed to a background thread through a preallocated ring, so
+ * the logging thread never waits for the console.
+ *
+ * The level is configured with the system property "breakout.log.level", the
+ * default is INFO.
+ *
+ * Example:
+ *
+ * <pre>
+ * private static final Log.Site SEND_FAILED = Log.site("lighthouse.send", Log.Level.WARN, 1);
+ * ...
+ * SEND_FAILED.log("sending failed: {}", e.getMessage());
+ * </pre>
+ */
+public class Log {
+
+	/**
+	 * The levels of the messages.
+	 */
+	public enum Level {
+		DEBUG, INFO, WARN, ERROR
+	}
+
+	private static final Level THRESHOLD = parseLevel(System.getProperty("breakout.log.level")); //$NON-NLS-1$
+	private static final LogRing ring = new LogRing(System.out);
+
+	private Log() {
+	}
+
+	/**
+	 * Creates a site which logs messages.
+	 *
+	 * @param name
+	 *            The name of the site, which is printed in front of the messages.
+	 * @param level
+	 *            The level of the messages of the site.
+	 * @param maxPerSecond
+	 *            The number of messages per second which are passed on, the
+	 *            others are suppressed and counted.
+	 * @return the site.
+	 */
+	public static Site site(String name, Level level, int maxPerSecond) {
+		return new Site(name, level, maxPerSecond);
+	}
+
+	/**
+	 * Writes all messages, which were logged so far, eg before the program exits.
+	 */
+	public static void flush() {
+		ring.flush();
+	}
+
+	private static Level parseLevel(String level) {
+		if (level != null) {
+			try {
+				return Level.valueOf(level.trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				System.out.println("unknown log level " + level + ", using INFO");
+			}
+		}
+		return Level.INFO;
+	}
+
+	/**
+	 * A place in the code which logs messages. The placeholders "{}" in a message
+	 * are replaced by the numbers and then by the detail when it is written, so
+	 * logging doesn't build any strings.
+	 */
+	public static class Site {
+		private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+		private final String name;
+		private final Level level;
+		private final boolean enabled;
+		private final int maxPerSecond;
+
+		// the rate limit, the messages are counted per window of a second
+		private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+		private final AtomicInteger windowCount = new AtomicInteger();
+		private final AtomicLong suppressed = new AtomicLong();
+
+		private Site(String name, Level level, int maxPerSecond) {
+			this.name = name;
+			this.level = level;
+			this.enabled = level.compareTo(THRESHOLD) >= 0;
+			this.maxPerSecond = maxPerSecond;
+		}
+
+		public void log(String message) {
+			publish(message, 0, 0, 0, null);
+		}
+
+		public void log(String message, String detail) {
+			publish(message, 0, 0, 0, detail);
+		}
+
+		public void log(String message, double number) {
+			publish(message, 1, number, 0, null);
+		}
+
+		public void log(String message, double number, String detail) {
+			publish(message, 1, number, 0, detail);
+		}
+
+		public void log(String message, double first, double second) {
+			publish(message, 2, first, second, null);
+		}
+
+		public void log(String message, double first, double second, String detail) {
+			publish(message, 2, first, second, detail);
+		}
+
+		private void publish(String message, int numberCount, double first, double second, String detail) {
+			if (!enabled || !acquire()) {
+				return;
+			}
+			// the suppressed messages are reported with the next message
+			long suppressedBefore = suppressed.getAndSet(0);
+			if (!ring.publish(this, message, numberCount, first, second, detail, suppressedBefore)) {
+				suppressed.addAndGet(suppressedBefore);
+			}
+		}
+
+		/**
+		 * Checks if another message may be passed on in the current second.
+		 */
+		private boolean acquire() {
+			long now = System.nanoTime();
+			long start = windowStart.get();
+			if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+				windowCount.set(0);
+			}
+			if (windowCount.incrementAndGet() <= maxPerSecond) {
+				return true;
+			}
+			suppressed.incrementAndGet();
+			return false;
+		}
+
+		/**
+		 * Checks if the messages of the site are written at all, eg to skip
+		 * computing a detail which is expensive.
+		 *
+		 * @return {@code true} if the level of the site is enabled.
+		 */
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Level getLevel() {
+			return level;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package project.breakout.log;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The ring buffer between the threads which log and the thread which writes
+ * the messages. The entries are allocated once and reused. Any thread can
+ * publish a message without locks, if the ring is full the message is dropped
+ * and counted instead of waiting for the writer.
+ *
+ * Every slot has a sequence number: a slot with the sequence {@code position}
+ * is free for the message at {@code position}, a slot with the sequence
+ * {@code position + 1} contains it, and the writer frees the slot for the next
+ * round by setting the sequence to {@code position + CAPACITY}.
+ */
+class LogRing {
+	private static final int CAPACITY = 1024;
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	/**
+	 * An entry of the ring. The arguments are kept unformatted, so publishing
+	 * doesn't allocate.
+	 */
+	private static class Entry {
+		Log.Site site;
+		String message;
+		int numberCount;
+		double first;
+		double second;
+		String detail;
+		long suppressed;
+	}
+
+	private final Entry[] entries = new Entry[CAPACITY];
+	private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private long head = 0;
+
+	private final PrintStream out;
+	private final StringBuilder line = new StringBuilder();
+
+	/**
+	 * Constructor for the LogRing. The writer thread is started right away.
+	 *
+	 * @param out
+	 *            The stream the messages are written to.
+	 */
+	LogRing(PrintStream out) {
+		this.out = out;
+		for (int i = 0; i < CAPACITY; i++) {
+			entries[i] = new Entry();
+			sequences.set(i, i);
+		}
+
+		Thread writer = new Thread(this::writeLoop, "log-writer");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "log-flush"));
+	}
+
+	/**
+	 * Puts a message into the ring.
+	 *
+	 * @return {@code true} if the message was put, {@code false} if the ring was
+	 *         full and the message was dropped.
+	 */
+	boolean publish(Log.Site site, String message, int numberCount, double first, double second, String detail,
+			long suppressed) {
+		long position;
+		while (true) {
+			position = tail.get();
+			long sequence = sequences.get(slot(position));
+			if (sequence < position) {
+				// the writer hasn't freed the slot yet
+				dropped.incrementAndGet();
+				return false;
+			}
+			if (sequence == position && tail.compareAndSet(position, position + 1)) {
+				break;
+			}
+		}
+
+		Entry entry = entries[slot(position)];
+		entry.site = site;
+		entry.message = message;
+		entry.numberCount = numberCount;
+		entry.first = first;
+		entry.second = second;
+		entry.detail = detail;
+		entry.suppressed = suppressed;
+		sequences.set(slot(position), position + 1);
+		return true;
+	}
+
+	private static int slot(long position) {
+		return (int) (position & (CAPACITY - 1));
+	}
+
+	/**
+	 * The loop of the writer thread, which writes the messages as they arrive.
+	 */
+	private void writeLoop() {
+		while (true) {
+			if (!flush()) {
+				LockSupport.parkNanos(IDLE_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Writes all messages in the ring.
+	 *
+	 * @return {@code true} if there was a message, {@code false} if not.
+	 */
+	synchronized boolean flush() {
+		boolean written = false;
+		while (sequences.get(slot(head)) == head + 1) {
+			write(entries[slot(head)]);
+			entries[slot(head)].message = null;
+			entries[slot(head)].detail = null;
+			sequences.set(slot(head), head + CAPACITY);
+			head++;
+			written = true;
+		}
+
+		long lost = dropped.getAndSet(0);
+		if (lost > 0) {
+			out.println("WARN log: " + lost + " messages were dropped, the log ring was full");
+		}
+		return written || lost > 0;
+	}
+
+	/**
+	 * Formats an entry. The placeholders "{}" of the message are replaced by the
+	 * numbers and then by the detail.
+	 */
+	private void write(Entry entry) {
+		line.setLength(0);
+		line.append(entry.site.getLevel()).append(' ').append(entry.site.getName()).append(": ");
+
+		int argument = 0;
+		int argumentCount = entry.numberCount + (entry.detail != null ? 1 : 0);
+		String message = entry.message;
+		int start = 0;
+		int placeholder;
+		while (argument < argumentCount && (placeholder = message.indexOf("{}", start)) >= 0) {
+			line.append(message, start, placeholder);
+			if (argument < entry.numberCount) {
+				appendNumber(argument == 0 ? entry.first : entry.second);
+			} else {
+				line.append(entry.detail);
+			}
+			argument++;
+			start = placeholder + 2;
+		}
+		line.append(message, start, message.length());
+
+		if (entry.suppressed > 0) {
+			line.append(" (").append(entry.suppressed).append(" similar messages suppressed)");
+		}
+		out.println(line);
+	}
+
+	private void appendNumber(double number) {
+		if (number == (long) number) {
+			line.append((long) number);
+		} else {
+			line.append(number);
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package project.breakout.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a collision of the ball, which was detected by the
+ * {@code CollisionController}.
+ */
+@Name("project.breakout.Collision")
+@Label("Collision")
+@Category("Breakout")
+@Description("A collision of the ball")
+@StackTrace(false)
+public class CollisionEvent extends Event {
+	@Label("Type")
+	@Description("The object the ball collided with")
+	public String type;
+
+	@Label("Brick")
+	@Description("The index of the brick which was hit, -1 if no brick was hit")
+	public int brick;
+}
@@ -0,0 +1,49 @@
+package project.breakout.metrics;
+
+/**
+ * The metrics of the collision checks of one game. Every game passes its own
+ * sink to its {@code CollisionController}: the desktop game records into the
+ * {@code TickMetrics}, which the HUD and the tick events show, the sessions of
+ * the server, the games of the {@code LevelAnalyzer} and the versus mode keep
+ * their checks out of them.
+ */
+public interface CollisionMetrics {
+	/**
+	 * The sink of a game whose collision checks aren't recorded.
+	 */
+	CollisionMetrics NONE = new CollisionMetrics() {
+		@Override
+		public void collisionChecked(long nanos) {
+		}
+
+		@Override
+		public void collided() {
+		}
+
+		@Override
+		public void bricksTested(int count) {
+		}
+	};
+
+	/**
+	 * Called after every collision check of the ball.
+	 *
+	 * @param nanos
+	 *            The duration of the check in nanoseconds.
+	 */
+	void collisionChecked(long nanos);
+
+	/**
+	 * Called for every collision of the ball.
+	 */
+	void collided();
+
+	/**
+	 * Called with the number of bricks which were tested for a collision with
+	 * the ball.
+	 *
+	 * @param count
+	 *            The number of tested bricks.
+	 */
+	void bricksTested(int count);
+}
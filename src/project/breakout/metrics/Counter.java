@@ -0,0 +1,43 @@
+package project.breakout.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter of the {@code MetricsRegistry}, which only grows. It is striped by
+ * a {@code LongAdder}, so threads counting at the same time don't contend and
+ * counting doesn't allocate.
+ */
+public class Counter {
+	private final String name;
+	private final String help;
+	private final LongAdder count = new LongAdder();
+
+	/**
+	 * Constructor for the Counter, counters are created by the
+	 * {@code MetricsRegistry}.
+	 */
+	Counter(String name, String help) {
+		this.name = name;
+		this.help = help;
+	}
+
+	public void increment() {
+		count.increment();
+	}
+
+	public void add(long amount) {
+		count.add(amount);
+	}
+
+	public long get() {
+		return count.sum();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getHelp() {
+		return help;
+	}
+}
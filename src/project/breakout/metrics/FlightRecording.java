@@ -0,0 +1,80 @@
+package project.breakout.metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * This class starts a continuous flight recording of the game, which is
+ * switched on with the system property "breakout.jfr=<file>". The recording
+ * keeps the events of the last minutes on disk and is written to the file
+ * when the JVM exits, so a stutter can be correlated with the ticks, collisions,
+ * level loads and lighthouse sends around it.
+ *
+ * The events of the game stay in the code when no recording is running, as a
+ * disabled event costs no more than the check whether it is enabled.
+ */
+public class FlightRecording {
+	private static final String FILE_PROPERTY = "breakout.jfr"; //$NON-NLS-1$
+	private static final Duration MAX_AGE = Duration.ofMinutes(10);
+
+	private static Recording recording;
+
+	private FlightRecording() {
+	}
+
+	/**
+	 * Starts the continuous recording if the system property is set. Calling it
+	 * again has no effect.
+	 */
+	public static synchronized void startIfConfigured() {
+		String file = System.getProperty(FILE_PROPERTY);
+		if (file == null || recording != null) {
+			return;
+		}
+		try {
+			start(Paths.get(file));
+		} catch (IOException | ParseException | RuntimeException e) {
+			System.out.println("Could not start the flight recording: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Starts a continuous recording with the default settings of the JDK and all
+	 * events of the game.
+	 *
+	 * @param destination
+	 *            The file the recording is written to when the JVM exits.
+	 */
+	public static synchronized void start(Path destination) throws IOException, ParseException {
+		recording = new Recording(Configuration.getConfiguration("default"));
+		recording.setName("breakout");
+		recording.setToDisk(true);
+		recording.setMaxAge(MAX_AGE);
+		recording.setDumpOnExit(true);
+		recording.setDestination(destination);
+
+		recording.enable(TickEvent.class);
+		recording.enable(CollisionEvent.class);
+		recording.enable(LevelLoadEvent.class);
+		recording.enable(LighthouseSendEvent.class);
+		recording.start();
+	}
+
+	/**
+	 * Writes the events recorded so far to a file, while the recording goes on.
+	 *
+	 * @param file
+	 *            The file to write.
+	 */
+	public static synchronized void dump(Path file) throws IOException {
+		if (recording != null) {
+			recording.dump(file);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package project.breakout.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of the {@code MetricsRegistry}. The samples are counted in
+ * buckets whose upper bounds are the powers of two, so the bucket of a sample
+ * is found by counting its leading zeros and recording a sample is a single
+ * atomic increment without locks or allocation.
+ *
+ * Bucket {@code i} counts the samples {@code v} with
+ * {@code 2^(i-1) <= v < 2^i}, bucket 0 counts the samples {@code <= 0}.
+ */
+public class Histogram {
+	static final int BUCKETS = 64;
+
+	private final String name;
+	private final String help;
+
+	/**
+	 * The factor converting a sample to the unit of the exported values, eg 1e-9
+	 * for samples in nanoseconds which are exported in seconds.
+	 */
+	private final double scale;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder sum = new LongAdder();
+
+	/**
+	 * Constructor for the Histogram, histograms are created by the
+	 * {@code MetricsRegistry}.
+	 */
+	Histogram(String name, String help, double scale) {
+		this.name = name;
+		this.help = help;
+		this.scale = scale;
+	}
+
+	/**
+	 * Records a sample.
+	 *
+	 * @param value
+	 *            The sample, eg a duration in nanoseconds.
+	 */
+	public void record(long value) {
+		buckets.incrementAndGet(bucketOf(value));
+		sum.add(value);
+	}
+
+	private static int bucketOf(long value) {
+		if (value <= 0) {
+			return 0;
+		}
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+	}
+
+	/**
+	 * Gets the upper bound of a bucket, all samples of the bucket are smaller.
+	 *
+	 * @param bucket
+	 *            The index of the bucket.
+	 * @return the upper bound, {@code Long.MAX_VALUE} for the last bucket.
+	 */
+	static long upperBound(int bucket) {
+		return bucket < BUCKETS - 1 ? 1L << bucket : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Estimates a percentile of the samples by the upper bound of the bucket it
+	 * is in.
+	 *
+	 * @param percentile
+	 *            The percentile between 0 and 1, eg 0.99.
+	 * @return the estimated percentile or 0 if there are no samples.
+	 */
+	public long getPercentile(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			count += counts[i];
+		}
+		long rank = (long) Math.ceil(percentile * count);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] > 0) {
+				return i == 0 ? 0 : upperBound(i);
+			}
+		}
+		return 0;
+	}
+
+	long getBucket(int bucket) {
+		return buckets.get(bucket);
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += buckets.get(i);
+		}
+		return count;
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getHelp() {
+		return help;
+	}
+
+	public double getScale() {
+		return scale;
+	}
+}
@@ -0,0 +1,77 @@
+package project.breakout.metrics;
+
+/**
+ * This class keeps the times at which the last mouse input passed the stages
+ * of the game on its way to the lighthouse, so the {@code LatencyHarness} can
+ * break the latency of an input down into the stages. Only the time of the
+ * latest pass of every stage is kept.
+ *
+ * The probe is switched on with the system property
+ * "breakout.latency.probe=true". When it is off the calls do nothing and are
+ * removed by the JIT.
+ */
+public class LatencyProbe {
+	public static final boolean ENABLED = Boolean.getBoolean("breakout.latency.probe"); //$NON-NLS-1$
+
+	private static volatile long inputAt;
+	private static volatile long paddleSendStartAt;
+	private static volatile long paddleSentAt;
+	private static volatile long tickDoneAt;
+
+	private LatencyProbe() {
+	}
+
+	/**
+	 * Called by the model when it gets the location of the mouse.
+	 */
+	public static void inputReceived() {
+		if (ENABLED) {
+			inputAt = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Called by the {@code LighthouseView} before the paddle is painted and sent.
+	 */
+	public static void paddleSendStarted() {
+		if (ENABLED) {
+			paddleSendStartAt = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Called by the {@code LighthouseView} after the paddle was sent.
+	 */
+	public static void paddleSent() {
+		if (ENABLED) {
+			paddleSentAt = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Called by the game thread after every tick, when the frame is shown.
+	 */
+	public static void tickDone() {
+		if (ENABLED) {
+			tickDoneAt = System.nanoTime();
+		}
+	}
+
+	// ---------Getters-------------------------
+
+	public static long getInputAt() {
+		return inputAt;
+	}
+
+	public static long getPaddleSendStartAt() {
+		return paddleSendStartAt;
+	}
+
+	public static long getPaddleSentAt() {
+		return paddleSentAt;
+	}
+
+	public static long getTickDoneAt() {
+		return tickDoneAt;
+	}
+}
@@ -0,0 +1,27 @@
+package project.breakout.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for loading a level by the {@code BricksConfig}. The
+ * duration of the event is the time the level took to load.
+ */
+@Name("project.breakout.LevelLoad")
+@Label("Level Load")
+@Category("Breakout")
+@Description("Loading the bricks of a level")
+public class LevelLoadEvent extends Event {
+	@Label("Level")
+	public int level;
+
+	@Label("Format")
+	@Description("The format the level was read from, null if it couldn't be loaded")
+	public String format;
+
+	@Label("Bricks")
+	public int bricks;
+}
@@ -0,0 +1,28 @@
+package project.breakout.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for sending a frame to the lighthouse. The duration of
+ * the event is the time the sending thread was blocked.
+ */
+@Name("project.breakout.LighthouseSend")
+@Label("Lighthouse Send")
+@Category("Breakout")
+@Description("Sending a frame to the lighthouse")
+@StackTrace(false)
+public class LighthouseSendEvent extends Event {
+	@Label("Bytes")
+	@DataAmount
+	public int bytes;
+
+	@Label("Dropped")
+	@Description("If the frame couldn't be sent")
+	public boolean dropped;
+}
@@ -0,0 +1,97 @@
+package project.breakout.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * The MBean of the {@code MetricsRegistry}. Every counter is an attribute and
+ * every histogram has the attributes "_count", "_sum", "_p50" and "_p99" in the
+ * unit of its samples. The attributes are read only.
+ */
+class MetricsMBean implements DynamicMBean {
+	private static final String[] HISTOGRAM_ATTRIBUTES = { "_count", "_sum", "_p50", "_p99" };
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		for (Counter counter : MetricsRegistry.getCounters()) {
+			if (counter.getName().equals(attribute)) {
+				return counter.get();
+			}
+		}
+		for (Histogram histogram : MetricsRegistry.getHistograms()) {
+			if (attribute.startsWith(histogram.getName())) {
+				switch (attribute.substring(histogram.getName().length())) {
+				case "_count":
+					return histogram.getCount();
+				case "_sum":
+					return histogram.getSum();
+				case "_p50":
+					return histogram.getPercentile(0.5);
+				case "_p99":
+					return histogram.getPercentile(0.99);
+				default:
+					break;
+				}
+			}
+		}
+		throw new AttributeNotFoundException(attribute);
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		AttributeList list = new AttributeList();
+		for (String attribute : attributes) {
+			try {
+				list.add(new Attribute(attribute, getAttribute(attribute)));
+			} catch (AttributeNotFoundException e) {
+				// left out as described by DynamicMBean
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("The metrics are read only");
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		// the MBean has no operations
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	/**
+	 * The attributes are built from the registry, so metrics created after the
+	 * registration are listed as well.
+	 */
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributes = new ArrayList<>();
+		for (Counter counter : MetricsRegistry.getCounters()) {
+			attributes.add(new MBeanAttributeInfo(counter.getName(), "long", counter.getHelp(), true, false, false));
+		}
+		for (Histogram histogram : MetricsRegistry.getHistograms()) {
+			for (String suffix : HISTOGRAM_ATTRIBUTES) {
+				attributes.add(new MBeanAttributeInfo(histogram.getName() + suffix, "long", histogram.getHelp(), true,
+						false, false));
+			}
+		}
+		return new MBeanInfo(getClass().getName(), "Metrics of the breakout game",
+				attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+	}
+}
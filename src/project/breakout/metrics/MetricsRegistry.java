@@ -0,0 +1,176 @@
+package project.breakout.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class keeps the counters and histograms of the game and exports them.
+ * The metrics are created once, usually as constants of the class which
+ * records them, so recording a sample only touches the metric itself.
+ *
+ * The metrics are exported as attributes of the MBean
+ * "project.breakout:type=Metrics" and, if the system property
+ * "breakout.metrics.port" is set, in the Prometheus text format at
+ * http://localhost:<port>/metrics.
+ */
+public class MetricsRegistry {
+	public static final String OBJECT_NAME = "project.breakout:type=Metrics"; //$NON-NLS-1$
+	private static final String PORT_PROPERTY = "breakout.metrics.port"; //$NON-NLS-1$
+
+	private static final List<Counter> counters = new CopyOnWriteArrayList<>();
+	private static final List<Histogram> histograms = new CopyOnWriteArrayList<>();
+
+	private static HttpServer server;
+
+	private MetricsRegistry() {
+	}
+
+	// ---------registration-------------------------
+
+	/**
+	 * Gets the counter with the given name, it is created if it doesn't exist.
+	 *
+	 * @param name
+	 *            The name of the counter, eg "breakout_ticks_total".
+	 * @param help
+	 *            The description of the counter.
+	 * @return the counter.
+	 */
+	public static synchronized Counter counter(String name, String help) {
+		for (Counter counter : counters) {
+			if (counter.getName().equals(name)) {
+				return counter;
+			}
+		}
+		Counter counter = new Counter(name, help);
+		counters.add(counter);
+		return counter;
+	}
+
+	/**
+	 * Gets the histogram with the given name, it is created if it doesn't exist.
+	 *
+	 * @param name
+	 *            The name of the histogram, eg "breakout_tick_seconds".
+	 * @param help
+	 *            The description of the histogram.
+	 * @param scale
+	 *            The factor converting a sample to the exported unit, eg 1e-9
+	 *            for samples in nanoseconds exported in seconds.
+	 * @return the histogram.
+	 */
+	public static synchronized Histogram histogram(String name, String help, double scale) {
+		for (Histogram histogram : histograms) {
+			if (histogram.getName().equals(name)) {
+				return histogram;
+			}
+		}
+		Histogram histogram = new Histogram(name, help, scale);
+		histograms.add(histogram);
+		return histogram;
+	}
+
+	static List<Counter> getCounters() {
+		return counters;
+	}
+
+	static List<Histogram> getHistograms() {
+		return histograms;
+	}
+
+	// ---------exporters-------------------------
+
+	/**
+	 * Registers the MBean and starts the HTTP endpoint if a port is configured.
+	 * Calling it again has no effect.
+	 */
+	public static synchronized void startExporters() {
+		MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!mbeans.isRegistered(name)) {
+				mbeans.registerMBean(new MetricsMBean(), name);
+			}
+		} catch (JMException e) {
+			System.out.println("Could not register the metrics MBean: " + e.getMessage());
+		}
+
+		Integer port = Integer.getInteger(PORT_PROPERTY);
+		if (port != null && server == null) {
+			try {
+				startHttpServer(port);
+			} catch (IOException e) {
+				System.out.println("Could not start the metrics endpoint: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Starts the HTTP endpoint on the loopback interface.
+	 */
+	private static void startHttpServer(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/metrics", MetricsRegistry::handleScrape);
+		server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "metrics-http");
+			thread.setDaemon(true);
+			return thread;
+		}));
+		server.start();
+	}
+
+	private static void handleScrape(HttpExchange exchange) throws IOException {
+		byte[] body = toPrometheusText().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * Writes all metrics in the Prometheus text format.
+	 *
+	 * @return the metrics as text.
+	 */
+	public static String toPrometheusText() {
+		StringBuilder text = new StringBuilder();
+		for (Counter counter : counters) {
+			text.append("# HELP ").append(counter.getName()).append(' ').append(counter.getHelp()).append('\n');
+			text.append("# TYPE ").append(counter.getName()).append(" counter\n");
+			text.append(counter.getName()).append(' ').append(counter.get()).append('\n');
+		}
+		for (Histogram histogram : histograms) {
+			String name = histogram.getName();
+			text.append("# HELP ").append(name).append(' ').append(histogram.getHelp()).append('\n');
+			text.append("# TYPE ").append(name).append(" histogram\n");
+
+			// the buckets of the text format are cumulative
+			long count = 0;
+			for (int i = 0; i < Histogram.BUCKETS - 1; i++) {
+				count += histogram.getBucket(i);
+				text.append(name).append("_bucket{le=\"").append(Histogram.upperBound(i) * histogram.getScale())
+						.append("\"} ").append(count).append('\n');
+			}
+			count += histogram.getBucket(Histogram.BUCKETS - 1);
+			text.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+			text.append(name).append("_sum ").append(histogram.getSum() * histogram.getScale()).append('\n');
+			text.append(name).append("_count ").append(count).append('\n');
+		}
+		return text.toString();
+	}
+}
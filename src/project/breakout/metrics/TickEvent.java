@@ -0,0 +1,27 @@
+package project.breakout.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a tick of the game loop. The duration of the event
+ * is the duration of the tick.
+ */
+@Name("project.breakout.Tick")
+@Label("Game Tick")
+@Category("Breakout")
+@Description("A tick of the game loop")
+@StackTrace(false)
+public class TickEvent extends Event {
+	@Label("Substeps")
+	@Description("Collision checks and position updates of the ball during the tick")
+	public int substeps;
+
+	@Label("Collisions")
+	@Description("Collisions of the ball during the tick")
+	public int collisions;
+}
@@ -0,0 +1,179 @@
+package project.breakout.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * This class collects the live metrics of the game loop. The game thread of
+ * the desktop game counts its ticks and, through {@code COLLISIONS}, its
+ * collision checks and tested bricks, the {@code LighthouseView} counts the
+ * data sent to the lighthouse. The counters only grow, so a reader
+ * computes rates from the difference of two readings. All metrics are kept in
+ * the {@code MetricsRegistry}, so they are exported as well.
+ *
+ * The durations of the last {@code TICK_HISTORY} ticks are kept in a ring for
+ * the exact percentiles of the recent tick time.
+ */
+public class TickMetrics {
+	private static final int TICK_HISTORY = 256;
+
+	private static final long[] tickNanos = new long[TICK_HISTORY];
+	private static final long[] sortedTickNanos = new long[TICK_HISTORY];
+
+	private static final double NANOS = 1e-9;
+
+	// game loop
+	private static final Histogram tickTime = MetricsRegistry.histogram("breakout_tick_seconds",
+			"Duration of a tick of the game loop", NANOS);
+	private static final Histogram collisionCheckTime = MetricsRegistry
+			.histogram("breakout_collision_check_seconds", "Duration of a collision check of the ball", NANOS);
+	private static final Histogram bricksTested = MetricsRegistry.histogram("breakout_bricks_tested",
+			"Bricks tested for a collision per check", 1);
+	private static final Counter collisions = MetricsRegistry.counter("breakout_collisions_total",
+			"Collisions of the ball");
+
+	// lighthouse
+	private static final Histogram lighthouseEncodeTime = MetricsRegistry.histogram(
+			"breakout_lighthouse_encode_seconds", "Duration of encoding a frame for the lighthouse", NANOS);
+	private static final Histogram lighthouseSendTime = MetricsRegistry.histogram(
+			"breakout_lighthouse_send_seconds", "Duration of sending a frame to the lighthouse", NANOS);
+	private static final Counter lighthouseDrops = MetricsRegistry.counter("breakout_lighthouse_dropped_total",
+			"Frames which could not be sent to the lighthouse");
+	private static final Counter lighthouseReconnects = MetricsRegistry
+			.counter("breakout_lighthouse_reconnects_total", "Connections to the lighthouse after the first");
+
+	// written by the game thread only, guarded by tickNanos
+	private static long ticks = 0;
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * The collision metrics of the desktop game, which its
+	 * {@code CollisionController} records into.
+	 */
+	public static final CollisionMetrics COLLISIONS = new CollisionMetrics() {
+		@Override
+		public void collisionChecked(long nanos) {
+			collisionCheckTime.record(nanos);
+		}
+
+		@Override
+		public void collided() {
+			collisions.increment();
+		}
+
+		@Override
+		public void bricksTested(int count) {
+			bricksTested.record(count);
+		}
+	};
+
+	private TickMetrics() {
+	}
+
+	// ---------game loop-------------------------
+
+	/**
+	 * Called by the game thread after every tick.
+	 *
+	 * @param nanos
+	 *            The duration of the tick in nanoseconds.
+	 */
+	public static void tickDone(long nanos) {
+		tickTime.record(nanos);
+		synchronized (tickNanos) {
+			tickNanos[(int) (ticks % TICK_HISTORY)] = nanos;
+			ticks++;
+		}
+	}
+
+	// ---------lighthouse-------------------------
+
+	/**
+	 * Called after a frame was sent to the lighthouse.
+	 *
+	 * @param encodeNanos
+	 *            The time encoding the frame took in nanoseconds.
+	 * @param sendNanos
+	 *            The time sending the frame took in nanoseconds.
+	 */
+	public static void lighthouseSent(long encodeNanos, long sendNanos) {
+		lighthouseEncodeTime.record(encodeNanos);
+		lighthouseSendTime.record(sendNanos);
+	}
+
+	/**
+	 * Called when sending data to the lighthouse failed.
+	 */
+	public static void lighthouseDropped() {
+		lighthouseDrops.increment();
+	}
+
+	/**
+	 * Called when the connection to the lighthouse is established again.
+	 */
+	public static void lighthouseReconnected() {
+		lighthouseReconnects.increment();
+	}
+
+	// ---------Getters-------------------------
+
+	public static long getTicks() {
+		return tickTime.getCount();
+	}
+
+	public static long getCollisionChecks() {
+		return collisionCheckTime.getCount();
+	}
+
+	public static long getCollisions() {
+		return collisions.get();
+	}
+
+	public static long getBricksTested() {
+		return bricksTested.getSum();
+	}
+
+	public static long getLighthouseSends() {
+		return lighthouseSendTime.getCount();
+	}
+
+	public static long getLighthouseDrops() {
+		return lighthouseDrops.get();
+	}
+
+	/**
+	 * Gets a percentile of the durations of the last ticks.
+	 *
+	 * @param percentile
+	 *            The percentile between 0 and 1, eg 0.99.
+	 * @return the duration in nanoseconds or 0 if there was no tick yet.
+	 */
+	public static long getTickNanos(double percentile) {
+		synchronized (tickNanos) {
+			int count = (int) Math.min(ticks, TICK_HISTORY);
+			if (count == 0) {
+				return 0;
+			}
+			System.arraycopy(tickNanos, 0, sortedTickNanos, 0, count);
+			Arrays.sort(sortedTickNanos, 0, count);
+			return sortedTickNanos[(int) Math.min(count - 1, Math.round(percentile * (count - 1)))];
+		}
+	}
+
+	/**
+	 * Gets the number of bytes the current thread has allocated on the heap.
+	 *
+	 * @return the allocated bytes or -1 if the JVM doesn't measure them.
+	 */
+	public static long getAllocatedBytes() {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+			if (allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled()) {
+				return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+}
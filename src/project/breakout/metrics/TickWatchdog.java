@@ -0,0 +1,292 @@
+package project.breakout.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import project.breakout.log.Log;
+
+/**
+ * This class watches the heartbeat of the game loop. The game thread reports
+ * the start and the end of every tick, and a watchdog thread checks if the
+ * current tick takes longer than the threshold. A stalled tick is captured
+ * once: the stack of the game thread with the lock it waits for, the state of
+ * the game and the state of the connection to the lighthouse. The captures are
+ * kept in a ring of the last {@code HISTORY} stalls and appended to a dump
+ * file, so a freeze can be diagnosed after the fact.
+ *
+ * The threshold is set in milliseconds with the system property
+ * "breakout.watchdog.threshold", the default is 250, 0 switches the watchdog
+ * off. The dump file is set with "breakout.watchdog.file".
+ */
+public class TickWatchdog {
+	private static final String THRESHOLD_PROPERTY = "breakout.watchdog.threshold"; //$NON-NLS-1$
+	private static final String FILE_PROPERTY = "breakout.watchdog.file"; //$NON-NLS-1$
+	private static final long DEFAULT_THRESHOLD_MILLIS = 250;
+	private static final String DEFAULT_FILE = "breakout-stalls.log"; //$NON-NLS-1$
+
+	private static final int HISTORY = 16;
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private static final Log.Site STALLED = Log.site("watchdog", Log.Level.WARN, 1); //$NON-NLS-1$
+
+	// the heartbeat, written by the game thread
+	private static volatile Thread gameThread;
+	private static volatile long tickStartAt;
+	private static volatile long tick = 0;
+
+	/**
+	 * The tick which was captured last, so a stall is only captured once.
+	 */
+	private static long capturedTick = -1;
+
+	private static final Stall[] stalls = new Stall[HISTORY];
+	private static int stallCount = 0;
+
+	private static Thread watchdog;
+	private static long thresholdNanos;
+	private static Path file;
+	private static Supplier<String> gameState = () -> "unknown";
+	private static Supplier<String> connectionState = () -> "unknown";
+
+	private TickWatchdog() {
+	}
+
+	/**
+	 * Starts the watchdog thread with the configured threshold. Calling it again
+	 * only updates the states.
+	 *
+	 * @param gameState
+	 *            Describes the state of the game, eg the level and the ball.
+	 * @param connectionState
+	 *            Describes the state of the connection to the lighthouse.
+	 */
+	public static synchronized void start(Supplier<String> gameState, Supplier<String> connectionState) {
+		TickWatchdog.gameState = gameState;
+		TickWatchdog.connectionState = connectionState;
+		if (watchdog != null) {
+			return;
+		}
+
+		long thresholdMillis = DEFAULT_THRESHOLD_MILLIS;
+		try {
+			thresholdMillis = Long.parseLong(
+					System.getProperty(THRESHOLD_PROPERTY, Long.toString(DEFAULT_THRESHOLD_MILLIS)).trim());
+		} catch (NumberFormatException e) {
+			System.out.println("invalid watchdog threshold, using " + DEFAULT_THRESHOLD_MILLIS + " ms");
+		}
+		if (thresholdMillis <= 0) {
+			return;
+		}
+		thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+		file = Paths.get(System.getProperty(FILE_PROPERTY, DEFAULT_FILE));
+
+		watchdog = new Thread(TickWatchdog::watch, "tick-watchdog");
+		watchdog.setDaemon(true);
+		watchdog.start();
+	}
+
+	// ---------heartbeat-------------------------
+
+	/**
+	 * Called by the game thread before every tick.
+	 */
+	public static void tickStarted() {
+		gameThread = Thread.currentThread();
+		tickStartAt = System.nanoTime();
+	}
+
+	/**
+	 * Called by the game thread after every tick.
+	 */
+	public static void tickEnded() {
+		long start = tickStartAt;
+		tickStartAt = 0;
+		long nanos = System.nanoTime() - start;
+		if (watchdog != null && nanos > thresholdNanos) {
+			STALLED.log("tick took {} ms", TimeUnit.NANOSECONDS.toMillis(nanos));
+		}
+		tick++;
+	}
+
+	// ---------watchdog-------------------------
+
+	/**
+	 * The loop of the watchdog thread, it checks the heartbeat four times per
+	 * threshold, so a stall is captured at most a quarter of the threshold late.
+	 */
+	private static void watch() {
+		long interval = Math.max(1, TimeUnit.NANOSECONDS.toMillis(thresholdNanos / 4));
+		while (true) {
+			try {
+				Thread.sleep(interval);
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			long start = tickStartAt;
+			long currentTick = tick;
+			long stalledNanos = System.nanoTime() - start;
+			if (start != 0 && stalledNanos > thresholdNanos && currentTick != capturedTick) {
+				capturedTick = currentTick;
+				Stall stall = capture(stalledNanos);
+				synchronized (stalls) {
+					stalls[stallCount % HISTORY] = stall;
+					stallCount++;
+				}
+				write(stall);
+			}
+		}
+	}
+
+	private static Stall capture(long stalledNanos) {
+		Thread thread = gameThread;
+		ThreadInfo[] infos = threads.getThreadInfo(new long[] { thread.getId() },
+				threads.isObjectMonitorUsageSupported(), threads.isSynchronizerUsageSupported());
+		String stack = infos.length > 0 && infos[0] != null ? format(infos[0]) : "thread has ended";
+
+		String game;
+		String connection;
+		try {
+			game = gameState.get();
+			connection = connectionState.get();
+		} catch (RuntimeException e) {
+			// the states are read while the game thread changes them
+			game = connection = "not readable: " + e;
+		}
+		return new Stall(Instant.now(), stalledNanos, thread.getName(), stack, game, connection);
+	}
+
+	/**
+	 * Formats the stack of a thread with the locks it holds and waits for. Unlike
+	 * {@code ThreadInfo.toString()} all frames are kept.
+	 */
+	private static String format(ThreadInfo info) {
+		StringBuilder text = new StringBuilder();
+		text.append('"').append(info.getThreadName()).append("\" ").append(info.getThreadState());
+		if (info.getLockName() != null) {
+			text.append(" on ").append(info.getLockName());
+			if (info.getLockOwnerName() != null) {
+				text.append(" owned by \"").append(info.getLockOwnerName()).append('"');
+			}
+		}
+		text.append('\n');
+
+		StackTraceElement[] frames = info.getStackTrace();
+		MonitorInfo[] monitors = info.getLockedMonitors();
+		for (int i = 0; i < frames.length; i++) {
+			text.append("\tat ").append(frames[i]).append('\n');
+			for (MonitorInfo monitor : monitors) {
+				if (monitor.getLockedStackDepth() == i) {
+					text.append("\t- locked ").append(monitor).append('\n');
+				}
+			}
+		}
+		return text.toString();
+	}
+
+	private static void write(Stall stall) {
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND)) {
+			out.write(stall.toString());
+			out.write('\n');
+		} catch (IOException e) {
+			System.out.println("Could not write the stall to " + file + ": " + e.getMessage());
+		}
+	}
+
+	// ---------Getters-------------------------
+
+	/**
+	 * Gets the captured stalls, which are still in the ring.
+	 *
+	 * @return the stalls, the oldest first.
+	 */
+	public static List<Stall> getStalls() {
+		synchronized (stalls) {
+			List<Stall> list = new ArrayList<>();
+			for (int i = Math.max(0, stallCount - HISTORY); i < stallCount; i++) {
+				list.add(stalls[i % HISTORY]);
+			}
+			return list;
+		}
+	}
+
+	/**
+	 * Gets the number of stalls captured so far.
+	 *
+	 * @return the number of stalls.
+	 */
+	public static int getStallCount() {
+		synchronized (stalls) {
+			return stallCount;
+		}
+	}
+
+	/**
+	 * A captured stall of the game loop.
+	 */
+	public static class Stall {
+		private final Instant time;
+		private final long stalledNanos;
+		private final String threadName;
+		private final String stack;
+		private final String gameState;
+		private final String connectionState;
+
+		Stall(Instant time, long stalledNanos, String threadName, String stack, String gameState,
+				String connectionState) {
+			this.time = time;
+			this.stalledNanos = stalledNanos;
+			this.threadName = threadName;
+			this.stack = stack;
+			this.gameState = gameState;
+			this.connectionState = connectionState;
+		}
+
+		public Instant getTime() {
+			return time;
+		}
+
+		public long getStalledNanos() {
+			return stalledNanos;
+		}
+
+		public String getThreadName() {
+			return threadName;
+		}
+
+		public String getStack() {
+			return stack;
+		}
+
+		public String getGameState() {
+			return gameState;
+		}
+
+		public String getConnectionState() {
+			return connectionState;
+		}
+
+		@Override
+		public String toString() {
+			return "stall at " + time + ": tick of " + threadName + " running for "
+					+ TimeUnit.NANOSECONDS.toMillis(stalledNanos) + " ms\n" + "game: " + gameState + "\n"
+					+ "lighthouse: " + connectionState + "\n" + stack;
+		}
+	}
+}
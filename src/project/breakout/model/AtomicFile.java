@@ -0,0 +1,77 @@
+package project.breakout.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Replaces files so that a crash leaves either the old or the new content. The
+ * data is written to a temporary file next to the file through an
+ * asynchronous channel, forced onto the disk and renamed over the file. File
+ * systems which can't rename atomically get a plain rename.
+ *
+ * It is used by the autosave, the leaderboard and the heatmap export, which
+ * call it from their own threads, never from the game thread.
+ */
+public class AtomicFile {
+	private static final String TEMPORARY_SUFFIX = ".tmp"; //$NON-NLS-1$
+
+	private AtomicFile() {
+	}
+
+	/**
+	 * Replaces the file with the data.
+	 *
+	 * @param file
+	 *            The file, which may not exist yet.
+	 * @param data
+	 *            The data from its position to its limit, the position is moved
+	 *            to the limit.
+	 * @throws IOException
+	 *             if the data couldn't be written or renamed. The file is left as
+	 *             it was.
+	 */
+	public static void write(Path file, ByteBuffer data) throws IOException {
+		Path temporaryFile = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+		try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(temporaryFile, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long position = 0;
+			while (data.hasRemaining()) {
+				position += channel.write(data, position).get();
+			}
+			channel.force(true);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while writing " + file, e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+
+		try {
+			Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Replaces the file with the data.
+	 *
+	 * @param file
+	 *            The file, which may not exist yet.
+	 * @param data
+	 *            The data.
+	 * @throws IOException
+	 *             if the data couldn't be written or renamed. The file is left as
+	 *             it was.
+	 */
+	public static void write(Path file, byte[] data) throws IOException {
+		write(file, ByteBuffer.wrap(data));
+	}
+}
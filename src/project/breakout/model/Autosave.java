@@ -0,0 +1,116 @@
+package project.breakout.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import project.breakout.log.Log;
+
+/**
+ * This class saves {@code GameSnapshot}s of the game in the background, so the
+ * progress survives a crash of the program. Every few seconds the autosave
+ * thread takes a snapshot from the game and, if the game changed since the
+ * last one, writes it with the {@code AtomicFile}: to a temporary file through
+ * an asynchronous channel, forced onto the disk and renamed over the last
+ * snapshot. A crash while writing leaves the last complete snapshot in place,
+ * the game thread never waits for the disk.
+ *
+ * The file is set with the system property "breakout.autosave.file", the
+ * default is "breakout-save.bin". The interval is set in seconds with
+ * "breakout.autosave.seconds", the default is 5, 0 switches the autosave off.
+ */
+public class Autosave {
+	private static final String FILE_PROPERTY = "breakout.autosave.file"; //$NON-NLS-1$
+	private static final String SECONDS_PROPERTY = "breakout.autosave.seconds"; //$NON-NLS-1$
+	private static final String DEFAULT_FILE = "breakout-save.bin"; //$NON-NLS-1$
+	private static final long DEFAULT_SECONDS = 5;
+
+	private static final Log.Site SAVE_FAILED = Log.site("autosave", Log.Level.WARN, 1); //$NON-NLS-1$
+
+	private static final Path file = Paths.get(System.getProperty(FILE_PROPERTY, DEFAULT_FILE));
+
+	private static ScheduledExecutorService autosave;
+	private static Supplier<GameSnapshot> game;
+	private static byte[] lastSaved;
+
+	private Autosave() {
+	}
+
+	/**
+	 * Loads the last snapshot which was saved.
+	 *
+	 * @return the snapshot or {@code null} if there is none or it is damaged.
+	 */
+	public static GameSnapshot load() {
+		try {
+			GameSnapshot snapshot = GameSnapshot.decode(Files.readAllBytes(file));
+			lastSaved = snapshot.encode();
+			return snapshot;
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			System.out.println("saved game not restored: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Starts to save the game in the configured interval and when the program
+	 * exits. Calling it again only changes the game.
+	 *
+	 * @param game
+	 *            Takes a snapshot of the game or returns {@code null} if there is
+	 *            nothing to save.
+	 */
+	public static synchronized void start(Supplier<GameSnapshot> game) {
+		Autosave.game = game;
+		if (autosave != null) {
+			return;
+		}
+
+		long seconds = DEFAULT_SECONDS;
+		try {
+			seconds = Long.parseLong(System.getProperty(SECONDS_PROPERTY, Long.toString(DEFAULT_SECONDS)).trim());
+		} catch (NumberFormatException e) {
+			System.out.println("invalid autosave interval, using " + DEFAULT_SECONDS + " s");
+		}
+		if (seconds <= 0) {
+			return;
+		}
+
+		autosave = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "autosave");
+			thread.setDaemon(true);
+			return thread;
+		});
+		autosave.scheduleWithFixedDelay(Autosave::save, seconds, seconds, TimeUnit.SECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(Autosave::save, "autosave-exit"));
+	}
+
+	/**
+	 * Saves a snapshot of the game now, if it changed since the last one.
+	 */
+	public static synchronized void save() {
+		GameSnapshot snapshot = game != null ? game.get() : null;
+		if (snapshot == null) {
+			return;
+		}
+		byte[] data = snapshot.encode();
+		if (Arrays.equals(data, lastSaved)) {
+			return;
+		}
+		try {
+			AtomicFile.write(file, data);
+			lastSaved = data;
+		} catch (IOException e) {
+			SAVE_FAILED.log("game not saved: {}", e.toString());
+		}
+	}
+}
@@ -8,6 +8,26 @@ public class BallModel implements CollisionListener {
 	private int ballDirection = 320;
 	private static int pixelsPerSecond = 200;
 
+	/**
+	 * The steps of the ball for every direction in whole degrees. They are
+	 * computed with {@code StrictMath}, so every JVM moves the ball the same,
+	 * which the versus mode needs to run the same game on two computers.
+	 */
+	private static final double[] STEP_X = new double[360];
+	private static final double[] STEP_Y = new double[360];
+
+	static {
+		for (int direction = 0; direction < 360; direction++) {
+			STEP_X[direction] = StrictMath.sin(StrictMath.toRadians(direction));
+			STEP_Y[direction] = -StrictMath.cos(StrictMath.toRadians(direction));
+		}
+	}
+
+	/**
+	 * The game the ball is in, its paddle changes the direction of the ball.
+	 */
+	private GameModel game;
+
 	// --------Constructors-----------------
 	/**
 	 * Empty constructor.
@@ -45,8 +65,9 @@ public class BallModel implements CollisionListener {
 	 */
 	public void updatePosition(double frameTime) {
 		// move ball in last known direction
-		double xMovedBy = pixelsPerSecond * frameTime * Math.sin(Math.toRadians(ballDirection));
-		double yMovedBy = -pixelsPerSecond * frameTime * Math.cos(Math.toRadians(ballDirection));
+		int direction = Math.floorMod(ballDirection, 360);
+		double xMovedBy = pixelsPerSecond * frameTime * STEP_X[direction];
+		double yMovedBy = pixelsPerSecond * frameTime * STEP_Y[direction];
 		this.move(xMovedBy, yMovedBy);
 
 		// The distance the ball moved is a^2 + b^2 = c^2
@@ -97,8 +118,12 @@ public class BallModel implements CollisionListener {
 	 * @return ballDirection, the new direction of the ball.
 	 */
 	private int directionAfterPaddleCollision() {
-		double paddleHalfX = BreakoutModel.getPaddleX() + BreakoutModel.getPaddleWidth() / 2;
-		double deviationFromPaddleMiddle = (ballX - paddleHalfX) / (BreakoutModel.getPaddleWidth() / 2);
+		// a ball without a game bounces off the middle of the paddle
+		double deviationFromPaddleMiddle = 0;
+		if (game != null) {
+			double paddleHalfX = game.getPaddleX() + game.getPaddleWidth() / 2;
+			deviationFromPaddleMiddle = (ballX - paddleHalfX) / (game.getPaddleWidth() / 2);
+		}
 
 		// update ball direction with normal collision and make it depend on the
 		// collision point
@@ -126,6 +151,14 @@ public class BallModel implements CollisionListener {
 	}
 
 	// ---------Getter and Setter --------------
+	/**
+	 * @param game
+	 *            the game the ball is in
+	 */
+	public void setGame(GameModel game) {
+		this.game = game;
+	}
+
 	/**
 	 * @return the ballRadius
 	 */
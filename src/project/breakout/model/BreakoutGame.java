@@ -0,0 +1,397 @@
+package project.breakout.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import project.breakout.controller.CollisionController;
+import project.breakout.controller.CollisionWith;
+import project.breakout.metrics.CollisionMetrics;
+import project.breakout.view.BreakoutBrick;
+
+/**
+ * The rules of breakout without any view: the ball, the paddle and the bricks
+ * of a field, the collision controller and the frames of a tick. The desktop
+ * game of the {@code BreakoutModel}, the {@code GameSession}s of the server,
+ * the games of the {@code LevelAnalyzer} and the benchmarks all play this game,
+ * so the rules are the same for all of them.
+ *
+ * What is shown and counted is left to the {@code Listener} of the game. It is
+ * told about the frames, the collisions, the destroyed bricks, the lost ball
+ * and the cleared level, and it decides how the game goes on, eg it restarts
+ * the game after the ball was lost or loads the next level.
+ *
+ * The game is changed by one thread at a time.
+ */
+public class BreakoutGame implements GameModel, CollisionListener {
+	/**
+	 * Gets told about the events of a {@code BreakoutGame}.
+	 */
+	public interface Listener {
+		/**
+		 * Called before every frame, also before the frames which are run again
+		 * after a collision.
+		 */
+		void frameStarted();
+
+		/**
+		 * Called after the ball was moved by a frame.
+		 */
+		void frameDone();
+
+		/**
+		 * Called for every collision of the ball, after the ball bounced off.
+		 *
+		 * @param lastCollisionWith
+		 *            The object the ball collided with.
+		 */
+		void collided(CollisionWith lastCollisionWith);
+
+		/**
+		 * Called after the ball destroyed a brick.
+		 *
+		 * @param brick
+		 *            The index of the brick in the brick array or the brick store.
+		 * @param removed
+		 *            The brick which was removed from the brick array, {@code null}
+		 *            if it was in the store.
+		 */
+		void brickDestroyed(int brick, BreakoutBrick removed);
+
+		/**
+		 * Called when the ball reached the bottom wall. The frame isn't run again,
+		 * the listener restarts the game, eg with {@code reset}.
+		 */
+		void ballLost();
+
+		/**
+		 * Called when the last brick of the level was destroyed. The listener
+		 * loads the next level, eg with {@code loadLevel(getNextLevel())}.
+		 */
+		void levelDone();
+	}
+
+	public static final int PADDLE_WIDTH = 100;
+	public static final int PADDLE_HEIGHT = 10;
+	public static final int BALL_RADIUS = 3;
+
+	/**
+	 * The space between the paddle and the bottom of the field.
+	 */
+	private static final int PADDLE_MARGIN = 2;
+
+	private final Listener listener;
+	private final Random random;
+	private final BallModel ball = new BallModel(BALL_RADIUS);
+	private final FrameRunner frames = new FrameRunner(ball, this::runFrame);
+
+	/**
+	 * The listeners which are told about the collisions after the game, eg the
+	 * {@code AutoPlayer}.
+	 */
+	private final List<CollisionListener> collisionListeners = new ArrayList<>();
+	private CollisionMetrics metrics = CollisionMetrics.NONE;
+	private CollisionController collisionControl;
+
+	private int width, height;
+	private int paddleX, paddleY;
+	private BreakoutBrick[] brickArray;
+	private BrickStore brickStore;
+	private int currentLevel = 0;
+	private boolean started = false;
+
+	/**
+	 * Constructor for the BreakoutGame. The paddle is in the middle with the
+	 * ball on it, the field has no bricks yet.
+	 *
+	 * @param width
+	 *            The width of the field.
+	 * @param height
+	 *            The height of the field.
+	 * @param random
+	 *            The random numbers of the directions of the ball after a
+	 *            restart.
+	 * @param listener
+	 *            The listener of the game.
+	 */
+	public BreakoutGame(int width, int height, Random random, Listener listener) {
+		this.random = random;
+		this.listener = listener;
+		ball.setGame(this);
+		setSize(width, height);
+		reset(width / 2);
+	}
+
+	// ------------------initializing methods----------------------------
+
+	/**
+	 * Sets the metrics the collision checks of the game are recorded into. The
+	 * collision controller starts again.
+	 *
+	 * @param metrics
+	 *            The metrics or {@code CollisionMetrics.NONE}.
+	 */
+	public void setCollisionMetrics(CollisionMetrics metrics) {
+		this.metrics = metrics;
+		resetCollisions();
+	}
+
+	/**
+	 * Adds a listener which is told about the collisions after the ball and the
+	 * game, also by the collision controllers of later restarts.
+	 *
+	 * @param listener
+	 *            The listener, eg the {@code AutoPlayer}.
+	 */
+	public void addCollisionListener(CollisionListener listener) {
+		collisionListeners.add(listener);
+		collisionControl.addListener(listener);
+	}
+
+	/**
+	 * Starts a new collision controller, which has seen no collision yet, eg after
+	 * a rewind.
+	 */
+	public void resetCollisions() {
+		collisionControl = new CollisionController(metrics);
+		collisionControl.addListener(ball);
+		collisionControl.addListener(this);
+		for (CollisionListener collisionListener : collisionListeners) {
+			collisionControl.addListener(collisionListener);
+		}
+	}
+
+	/**
+	 * Changes the size of the field, eg after the window was resized. The paddle
+	 * stays at the bottom.
+	 *
+	 * @param width
+	 *            The width of the field.
+	 * @param height
+	 *            The height of the field.
+	 */
+	public void setSize(int width, int height) {
+		this.width = width;
+		this.height = height;
+		paddleY = height - PADDLE_HEIGHT - PADDLE_MARGIN;
+	}
+
+	/**
+	 * Sets the game back to the beginning: the paddle is put under the mouse,
+	 * the ball onto the paddle and the collision controller starts again. The
+	 * game waits to be started, the bricks are left as they are.
+	 *
+	 * @param mouseX
+	 *            The x-position of the middle of the paddle.
+	 */
+	public void reset(int mouseX) {
+		resetCollisions();
+		paddleX = mouseX - PADDLE_WIDTH / 2;
+		ball.setX(mouseX);
+		ball.setY(paddleY - 3 * ball.getRadius());
+		started = false;
+	}
+
+	/**
+	 * Gives the ball one of the directions of a restart at random.
+	 */
+	public void setRandomDirection() {
+		ball.setDirection(random.nextInt(10) * 10 - 50);
+	}
+
+	/**
+	 * Loads the bricks of a level, very large levels into a {@code BrickStore}.
+	 *
+	 * @param levelNumber
+	 *            The number of the level.
+	 */
+	public void loadLevel(int levelNumber) {
+		currentLevel = levelNumber;
+		brickStore = BricksConfig.getBrickStore(levelNumber);
+		brickArray = brickStore == null ? BricksConfig.getBrickArray(levelNumber) : null;
+	}
+
+	/**
+	 * Gets the level which follows the current one.
+	 *
+	 * @return the number of the next level, the first level after the last one.
+	 */
+	public int getNextLevel() {
+		return LevelCache.levelExists(currentLevel + 1) ? currentLevel + 1 : 0;
+	}
+
+	/**
+	 * Sets the bricks of the field, eg of the endless mode or of a benchmark. The
+	 * current level is left as it is.
+	 *
+	 * @param brickArray
+	 *            The bricks or {@code null} for none.
+	 */
+	public void setBrickArray(BreakoutBrick[] brickArray) {
+		this.brickArray = brickArray;
+		this.brickStore = null;
+	}
+
+	/**
+	 * Sets the bricks of the field of a very large level. The current level is
+	 * left as it is.
+	 *
+	 * @param brickStore
+	 *            The store of the bricks or {@code null} for none.
+	 */
+	public void setBrickStore(BrickStore brickStore) {
+		this.brickStore = brickStore;
+		this.brickArray = null;
+	}
+
+	// -------------methods for the player-----------
+
+	/**
+	 * Moves the paddle under the mouse, if it stays in the field. Until the game
+	 * is started, the ball lies on the paddle.
+	 *
+	 * @param mouseX
+	 *            The x-position of the mouse in the field.
+	 * @return {@code true} if the paddle was moved, {@code false} if it would
+	 *         leave the field.
+	 */
+	public boolean movePaddle(int mouseX) {
+		int paddleHalf = PADDLE_WIDTH / 2;
+		if (mouseX <= paddleHalf || mouseX >= width - paddleHalf) {
+			return false;
+		}
+		paddleX = mouseX - paddleHalf;
+		if (!started) {
+			ball.setX(mouseX);
+			ball.setY(paddleY - 3 * ball.getRadius());
+		}
+		return true;
+	}
+
+	/**
+	 * Puts the paddle where it was, eg when a snapshot is restored.
+	 *
+	 * @param paddleX
+	 *            The x-position of the paddle.
+	 */
+	public void setPaddleX(int paddleX) {
+		this.paddleX = paddleX;
+	}
+
+	public void setStarted(boolean started) {
+		this.started = started;
+	}
+
+	// --------------------game loop----------------------------
+
+	/**
+	 * Runs a frame: checks the ball for a collision and moves it. A collision
+	 * runs the frame again, see {@code FrameRunner}.
+	 */
+	public void runFrame() {
+		listener.frameStarted();
+		collisionControl.checkForCollision(this);
+		ball.updatePosition(FrameRunner.FRAME_TIME);
+		listener.frameDone();
+	}
+
+	@Override
+	public void collisionEvent(CollisionWith lastCollisionWith) {
+		listener.collided(lastCollisionWith);
+		if (lastCollisionWith == CollisionWith.BOTTOMWALL) {
+			listener.ballLost();
+		} else {
+			frames.runAgain();
+		}
+	}
+
+	@Override
+	public void deleteBrickAfterCollision(BreakoutBrick lastBrickCollided) {
+		for (int i = 0; i < brickArray.length; i++) {
+			if (brickArray[i] != null && brickArray[i].equals(lastBrickCollided)) {
+				brickArray[i] = null;
+				listener.brickDestroyed(i, lastBrickCollided);
+			}
+		}
+	}
+
+	@Override
+	public void deleteBrickAfterCollision(int brick) {
+		brickStore.destroy(brick);
+		listener.brickDestroyed(brick, null);
+	}
+
+	@Override
+	public void levelDone() {
+		listener.levelDone();
+	}
+
+	// ---------Getters-------------------------
+
+	public BallModel getBall() {
+		return ball;
+	}
+
+	public int getCurrentLevel() {
+		return currentLevel;
+	}
+
+	public boolean isStarted() {
+		return started;
+	}
+
+	@Override
+	public double getBallX() {
+		return ball.getX();
+	}
+
+	@Override
+	public double getBallY() {
+		return ball.getY();
+	}
+
+	@Override
+	public int getBallRadius() {
+		return ball.getRadius();
+	}
+
+	@Override
+	public int getPaddleX() {
+		return paddleX;
+	}
+
+	@Override
+	public int getPaddleY() {
+		return paddleY;
+	}
+
+	@Override
+	public int getPaddleWidth() {
+		return PADDLE_WIDTH;
+	}
+
+	@Override
+	public int getPaddleHeight() {
+		return PADDLE_HEIGHT;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public BreakoutBrick[] getBrickArray() {
+		return brickArray;
+	}
+
+	@Override
+	public BrickStore getBrickStore() {
+		return brickStore;
+	}
+}
@@ -5,92 +5,227 @@ import java.util.Timer;
 
 import acm.program.GraphicsProgram;
 import acm.util.RandomGenerator;
+import project.breakout.controller.AutoPlayer;
 import project.breakout.controller.BreakoutController;
 import project.breakout.controller.BreakoutTimer;
-import project.breakout.controller.CollisionController;
 import project.breakout.controller.CollisionWith;
+import project.breakout.leaderboard.Leaderboard;
+import project.breakout.leaderboard.LeaderboardEntry;
+import project.breakout.log.Log;
+import project.breakout.metrics.FlightRecording;
+import project.breakout.metrics.LatencyProbe;
+import project.breakout.metrics.MetricsRegistry;
+import project.breakout.metrics.TickMetrics;
+import project.breakout.metrics.TickWatchdog;
+import project.breakout.replay.ReplayLog;
+import project.breakout.replay.ReplayRecorder;
+import project.breakout.telemetry.Heatmap;
+import project.breakout.telemetry.HeatmapExporter;
+import project.breakout.view.ActiveRenderView;
 import project.breakout.view.BreakoutBrick;
 import project.breakout.view.BreakoutView;
+import project.breakout.view.GameView;
 import project.breakout.view.LighthouseView;
+import project.breakout.view.PerformanceHud;
 
 /**
  * This class represents the main class of the breakout game. It takes a Canvas
  * from the BreakoutView-class and draws it on the drawing area. It is
- * controlled by the controller it initializes.
+ * controlled by the controller it initializes. The game itself is played by
+ * the {@code BreakoutGame}, this class shows it and decides how it goes on.
  * 
  * It can be found on GitHub via https://github.com/TiKo98/BreakoutProject
  */
 @SuppressWarnings("serial")
-public class BreakoutModel extends GraphicsProgram implements CollisionListener {
-	private static int paddleWidth = 100;
-	private static int paddleHeight = 10;
-	private static int paddleX, paddleY;
-
-	private BallModel ball = new BallModel(3);
-	private static BreakoutBrick[] brickArray;
+public class BreakoutModel extends GraphicsProgram
+		implements BreakoutGame.Listener, EndlessLevel.Listener {
+	private final BreakoutGame game = new BreakoutGame(0, 0, RandomGenerator.getInstance(), this);
+	private final BallModel ball = game.getBall();
+	private static EndlessLevel endlessLevel;
 
 	private static int framesPerSecond = 40;
-	private static long lastFrameAtTime;
 
-	private static BreakoutView view;
-	private static CollisionController collisionControl;
+	private static GameView view;
+	private static PerformanceHud hud;
+
+	/**
+	 * If the game is rendered by the {@code ActiveRenderView} instead of the
+	 * {@code BreakoutView}, which is selected with the system property
+	 * "breakout.renderer=active".
+	 */
+	private static final boolean ACTIVE_RENDERING = "active".equals(System.getProperty("breakout.renderer")); //$NON-NLS-1$
+	private static final Log.Site BALL_FAILED = Log.site("model.ball", Log.Level.WARN, 1); //$NON-NLS-1$
 	private Timer timer;
-	@SuppressWarnings("unused")
 	private static BreakoutController controller;
 	private Thread timerThread;
 
 	private static boolean lighthouseEnabled = false;
-	private static boolean gameStarted = false;
 	private static boolean gamePaused = false;
-	private static int currentLevel = 0;
+	private static boolean endlessMode = false;
+	private static boolean autoPlay = false;
+	private static final AutoPlayer autoPlayer = new AutoPlayer();
+	private static final Score score = new Score();
+	private static final Heatmap heatmap = new Heatmap("desktop"); //$NON-NLS-1$
+
+	/**
+	 * The name of the player on the {@code Leaderboard}, which is set with the
+	 * system property "breakout.player", the default is the name of the user.
+	 */
+	private static final String player = System.getProperty("breakout.player", //$NON-NLS-1$
+			System.getProperty("user.name", "player")); //$NON-NLS-1$ //$NON-NLS-2$
+
+	/**
+	 * The lock of the state of the game. The frames of the timer and the input
+	 * of the player take turns, so every input falls between two frames and a
+	 * recorded game can be replayed exactly.
+	 */
+	private static final Object stateLock = new Object();
+
+	/**
+	 * The system property of the seed of the {@code RandomGenerator}, eg to play
+	 * a recorded game again with the same directions of the ball.
+	 */
+	private static final String SEED_PROPERTY = "breakout.seed"; //$NON-NLS-1$
+
+	/**
+	 * The seconds of play which can be rewound, which are set with the system
+	 * property "breakout.rewind.seconds", 0 switches the rewinding off.
+	 */
+	private static final int REWIND_SECONDS = Integer.getInteger("breakout.rewind.seconds", 10); //$NON-NLS-1$
+	private static final RewindBuffer rewind = REWIND_SECONDS > 0
+			? new RewindBuffer(REWIND_SECONDS * framesPerSecond)
+			: null;
 
 	/**
 	 * RUN METHOD - HERE STARTS EVERYTHING!!!
 	 */
 	@Override
 	public void run() {
-		initView();
+		FlightRecording.startIfConfigured();
+		MetricsRegistry.startExporters();
+		TickWatchdog.start(this::describeState, LighthouseView::describeConnection);
+		Leaderboard.open();
+		HeatmapExporter.register(heatmap);
+		GameSnapshot saved = Autosave.load();
+		if (saved != null && !LevelCache.levelExists(saved.getLevel())) {
+			saved = null;
+		}
+		initView(saved != null ? saved.getLevel() : 0);
+		if (saved != null && !restoreSnapshot(saved)) {
+			saved = null;
+		}
+		if (saved != null) {
+			score.restore(saved.getPoints(), false);
+		}
+		if (saved != null && game.isStarted()) {
+			view.setInfoText("Game restored, press p to continue");
+			view.showInfoText(true);
+		}
+		initRandomGenerator(saved);
 		initController();
+		Autosave.start(this::takeSnapshot);
 		initLighthouse();
 
 	}
 
 	// ------------------initializing methods----------------------------
+	/**
+	 * Seeds the {@code RandomGenerator}, which chooses the direction of the ball
+	 * after a restart, and starts the recording of the game with the seed and
+	 * the restored game.
+	 */
+	private void initRandomGenerator(GameSnapshot restored) {
+		long seed = Long.getLong(SEED_PROPERTY, System.nanoTime());
+		RandomGenerator.getInstance().setSeed(seed);
+		ReplayRecorder.start(seed, getWidth(), getHeight(), game.getCurrentLevel(),
+				restored != null ? restored.encode() : null);
+	}
+
+	/**
+	 * Restores a saved game in the level, which is loaded already. A game which
+	 * was running is restored paused, so the player continues it with 'p'. The
+	 * lighthouse gets the paddle and the ball with the next frame.
+	 * 
+	 * @return {@code true} if the game was restored, {@code false} if the
+	 *         snapshot doesn't fit the level, eg after the level was changed.
+	 */
+	private boolean restoreSnapshot(GameSnapshot saved) {
+		if (!saved.fits(game)) {
+			System.out.println("saved game doesn't fit level " + game.getCurrentLevel() + ", the level starts again");
+			return false;
+		}
+
+		// remove the bricks which were destroyed before
+		BrickStore brickStore = game.getBrickStore();
+		BreakoutBrick[] brickArray = game.getBrickArray();
+		if (brickStore != null) {
+			for (int i = 0; i < brickStore.getBrickCount(); i++) {
+				if (brickStore.isAlive(i) && !saved.isAlive(i)) {
+					brickStore.destroy(i);
+					view.removeBrick(i);
+				}
+			}
+		} else if (brickArray != null) {
+			for (int i = 0; i < brickArray.length; i++) {
+				if (brickArray[i] != null && !saved.isAlive(i)) {
+					// the views redraw from the array, so the slot is emptied first
+					BreakoutBrick brick = brickArray[i];
+					brickArray[i] = null;
+					view.removeBrick(brick);
+				}
+			}
+		}
+
+		game.setPaddleX(saved.getPaddleX());
+		view.setPaddleLocation(game.getPaddleX(), game.getPaddleY());
+		ball.setX(saved.getBallX());
+		ball.setY(saved.getBallY());
+		ball.setDirection(saved.getDirection());
+		view.updateBallsPosition(ball);
+		autoPlay = saved.isAutoPlay();
+
+		game.setStarted(saved.isStarted());
+		gamePaused = saved.isStarted();
+		view.frameDone();
+		return true;
+	}
+
 	/**
 	 * Initializes the controller connected with this class.
 	 */
 	private void initController() {
-		collisionControl = new CollisionController();
+		game.setCollisionMetrics(TickMetrics.COLLISIONS);
+		game.addCollisionListener(autoPlayer);
 		controller = new BreakoutController(this, view);
-		collisionControl.addListener(ball);
-		collisionControl.addListener(this);
 	}
 
 	/**
 	 * Initializes the canvas which represents the model of the game in the current
 	 * class.
 	 */
-	private void initView() {
-		view = new BreakoutView(getWidth(), getHeight());
-
-		// init paddle
-		paddleX = (getWidth() - paddleWidth) / 2;
-		paddleY = getHeight() - paddleHeight - 2;
-		view.setPaddleLocation(paddleX, paddleY);
-		view.setPaddleSize(paddleWidth, paddleHeight);
+	private void initView(int levelNumber) {
+		if (ACTIVE_RENDERING) {
+			view = new ActiveRenderView(getWidth(), getHeight());
+		} else {
+			view = new BreakoutView(getWidth(), getHeight());
+		}
+		hud = new PerformanceHud(view);
 
-		// init ball
-		ball.setX(paddleX + paddleWidth / 2);
-		ball.setY(paddleY - 3 * ball.getRadius());
+		// init paddle and ball
+		game.setSize(getWidth(), getHeight());
+		game.reset(getWidth() / 2);
+		view.setPaddleLocation(game.getPaddleX(), game.getPaddleY());
+		view.setPaddleSize(game.getPaddleWidth(), game.getPaddleHeight());
 		view.updateBallsPosition(ball);
 		view.setBallsRadius(ball.getRadius());
 
 		// init bricks for level
-		initBricksForLevel(currentLevel);
+		initBricksForLevel(levelNumber);
 
 		// init view
 		removeAll();
-		add(view, 0, 0);
+		add(view.getComponent(), 0, 0);
+		view.frameDone();
 	}
 
 	/**
@@ -98,20 +233,63 @@ public class BreakoutModel extends GraphicsProgram implements CollisionListener
 	 * {@code levelNumber}.
 	 */
 	private void initBricksForLevel(int levelNumber) {
+		if (rewind != null) {
+			rewind.requestKeyframe();
+		}
+		if (endlessMode) {
+			heatmap.levelStarted(Heatmap.ENDLESS, 0);
+			initEndlessLevel();
+			return;
+		}
+		endlessLevel = null;
+
+		// very large levels are kept off-heap
+		game.loadLevel(levelNumber);
+		BrickStore brickStore = game.getBrickStore();
+		if (brickStore != null) {
+			heatmap.levelStarted(levelNumber, brickStore.getBrickCount());
+			view.updateBricks(brickStore);
+			if (LighthouseView.isConnected()) {
+				LighthouseView.updateBricks(brickStore, getWidth(), getHeight());
+			}
+			prefetchNextLevel(levelNumber);
+			return;
+		}
+
 		// init bricks in view
-		brickArray = BricksConfig.getBrickArray(levelNumber);
+		BreakoutBrick[] brickArray = game.getBrickArray();
 		if (brickArray != null) {
+			heatmap.levelStarted(levelNumber, brickArray.length);
 			view.updateBricks(brickArray);
 		}
+		prefetchNextLevel(levelNumber);
 
 		// init bricks on lighthouse
-		if (LighthouseView.isConnected()) {
-			for (BreakoutBrick brick : brickArray) {
-				double relativeBrickX = brick.getX() / getWidth();
-				double relativeBrickY = brick.getY() / getHeight();
-				LighthouseView.setBrick(relativeBrickX, relativeBrickY);
-			}
+		if (brickArray != null && LighthouseView.isConnected()) {
+			LighthouseView.updateBricks(brickArray, getWidth(), getHeight());
+		}
+	}
+
+	/**
+	 * Initializes the scrolling brick field of the endless mode. The views get
+	 * the bricks chunk by chunk through {@code bricksAdded}.
+	 */
+	private void initEndlessLevel() {
+		// the scrolling bricks can't be rewound
+		if (rewind != null) {
+			rewind.clear();
 		}
+		endlessLevel = new EndlessLevel(getWidth(), RandomGenerator.getInstance().nextInt(), this);
+		game.setBrickArray(endlessLevel.getBrickArray());
+		endlessLevel.fill(getHeight() / 2);
+	}
+
+	/**
+	 * Starts parsing the level following {@code levelNumber} in the background, so
+	 * it is ready when the current level is done.
+	 */
+	private void prefetchNextLevel(int levelNumber) {
+		LevelCache.prefetch(LevelCache.levelExists(levelNumber + 1) ? levelNumber + 1 : 0);
 	}
 
 	/**
@@ -133,7 +311,11 @@ public class BreakoutModel extends GraphicsProgram implements CollisionListener
 			LighthouseView.setPaddlePosition(0.5, 0.1);
 
 			// init bricks on lighthouse
-			LighthouseView.updateBricks(brickArray, getWidth(), getHeight());
+			if (game.getBrickStore() != null) {
+				LighthouseView.updateBricks(game.getBrickStore(), getWidth(), getHeight());
+			} else {
+				LighthouseView.updateBricks(game.getBrickArray(), getWidth(), getHeight());
+			}
 
 		} catch (Exception e) {
 			System.out.println("initital push to LighthouseView didn't work");
@@ -152,27 +334,29 @@ public class BreakoutModel extends GraphicsProgram implements CollisionListener
 	 *            The point where the mouse pointer is.
 	 */
 	public void updateMouseLocation(Point point) {
-		int mouseX = (int) point.getX();
-		int paddleHalf = paddleWidth / 2;
-
-		// Check if paddle would be still in the view after moving it
-		if (mouseX > paddleHalf && mouseX < view.getWidth() - paddleHalf) {
-			paddleX = mouseX - paddleHalf;
-			view.setPaddleLocation(paddleX, paddleY);
-
-			// move paddle in LighthouseView
-			double relativeX = (double) paddleX / getWidth();
-			double relativePaddleWidth = (double) paddleWidth / getWidth();
-			try {
-				LighthouseView.setPaddlePosition(relativeX, relativePaddleWidth);
-			} catch (Exception e) {
-			}
-
-			// move ball over paddle if game not started yet
-			if (!gameStarted) {
-				ball.setX(mouseX);
-				ball.setY(paddleY - 3 * ball.getRadius());
-				view.updateBallsPosition(ball);
+		LatencyProbe.inputReceived();
+		synchronized (stateLock) {
+			int mouseX = (int) point.getX();
+
+			// the paddle is only moved if it stays in the view, the ball lies on it
+			// until the game is started
+			if (game.movePaddle(mouseX)) {
+				ReplayRecorder.mouseMoved(mouseX);
+				view.setPaddleLocation(game.getPaddleX(), game.getPaddleY());
+
+				// move paddle in LighthouseView
+				double relativeX = (double) game.getPaddleX() / getWidth();
+				double relativePaddleWidth = (double) game.getPaddleWidth() / getWidth();
+				try {
+					LighthouseView.setPaddlePosition(relativeX, relativePaddleWidth);
+				} catch (Exception e) {
+				}
+
+				// the game loop doesn't run yet, so the frame is completed here
+				if (!game.isStarted()) {
+					view.updateBallsPosition(ball);
+					view.frameDone();
+				}
 			}
 		}
 	}
@@ -187,31 +371,112 @@ public class BreakoutModel extends GraphicsProgram implements CollisionListener
 	 *            the new height of the window.
 	 */
 	public void resizedView(int width, int height) {
-		paddleY = height - paddleHeight - 2;
-		view.setSize(width, height);
-		view.setPaddleLocation(paddleX, paddleY);
+		synchronized (stateLock) {
+			ReplayRecorder.resized(width, height);
+			game.setSize(width, height);
+			view.setSize(width, height);
+			view.setPaddleLocation(game.getPaddleX(), game.getPaddleY());
+		}
 	}
 
 	// --------------------game control methods----------------------------
 
 	/**
-	 * Called by the timer. Updates the ball position depending on { @code
-	 * pixelsPerSecond} and the time gone by since the last frame.
+	 * Called by the timer for every frame. The {@code AutoPlayer} moves the
+	 * paddle first, then the frame is updated and recorded.
 	 */
-	public void updateFrame() {
-		// compute time since the last frame was created
-		double frameTime = (double) (System.currentTimeMillis() - lastFrameAtTime);
-		view.setInfoText(String.valueOf(frameTime));
-		frameTime /= 1000.0;
-		lastFrameAtTime = System.currentTimeMillis();
+	public void tick() {
+		synchronized (stateLock) {
+			updateAutoPlayer();
+			ReplayRecorder.frameStarted();
+			game.runFrame();
+			ReplayRecorder.frameDone(game, ball);
+			if (game.isStarted()) {
+				heatmap.ballAt(ball.getX(), ball.getY(), getWidth(), getHeight());
+			}
+			if (rewind != null && !endlessMode) {
+				rewind.record(game, ball, game.getCurrentLevel(), score.getPoints(), game.isStarted());
+			}
+		}
+	}
 
-		// TODO comment out when not debugging
-		frameTime = 0.03;
-		collisionControl.checkForCollision(this);
-		ball.updatePosition(frameTime);
+	/**
+	 * Rewinds the game by some seconds or to the oldest frame which is kept. The
+	 * level, the bricks, the ball and the paddle of that frame are restored and
+	 * shown on the desktop and the lighthouse in one frame. The game is paused,
+	 * so the player continues it with 'p'.
+	 * 
+	 * @param seconds
+	 *            The seconds of play to rewind.
+	 * @return {@code true} if the game was rewound, {@code false} if there is
+	 *         nothing to rewind, eg in the endless mode.
+	 */
+	public boolean rewind(double seconds) {
+		synchronized (stateLock) {
+			if (rewind == null || endlessMode) {
+				return false;
+			}
+			long newest = rewind.getNewestFrame();
+			long target = Math.max(rewind.getOldestFrame(), newest - Math.round(seconds * framesPerSecond));
+			GameSnapshot snapshot = rewind.snapshotAt(target, autoPlay);
+			// the running game is only left if the snapshot can be restored
+			if (snapshot == null || !snapshot.fits(BricksConfig.getBrickCount(snapshot.getLevel()), getWidth(),
+					getHeight())) {
+				return false;
+			}
+			if (timer != null) {
+				timer.cancel();
+			}
+			ReplayRecorder.rewound((int) (newest - target));
+
+			LighthouseView.beginUpdate();
+			try {
+				LighthouseView.setAllDark();
+				initBricksForLevel(snapshot.getLevel());
+				game.resetCollisions();
+				autoPlayer.reset();
+				if (!restoreSnapshot(snapshot)) {
+					return false;
+				}
+				score.restore(snapshot.getPoints(), true);
+				LighthouseView.setPaddlePosition((double) game.getPaddleX() / getWidth(),
+						(double) game.getPaddleWidth() / getWidth());
+				LighthouseView.setBallPosition(ball.getX() / getWidth(), ball.getY() / getHeight());
+			} catch (IllegalArgumentException e) {
+				// the ball or the paddle is at the edge of the lighthouse
+			} finally {
+				LighthouseView.endUpdate();
+			}
+			rewind.truncate(target);
 
+			view.setInfoText(String.format("Rewound %.1f s, press p to continue", //$NON-NLS-1$
+					(double) (newest - target) / framesPerSecond));
+			view.showInfoText(true);
+			return true;
+		}
+	}
+
+	/**
+	 * Called by the game before every frame. Scrolls the bricks of the endless
+	 * mode.
+	 */
+	@Override
+	public void frameStarted() {
+		if (endlessLevel != null) {
+			updateEndlessLevel(FrameRunner.FRAME_TIME);
+		}
+	}
+
+	/**
+	 * Called by the game after the ball was moved. Shows the ball on the desktop
+	 * and the lighthouse.
+	 */
+	@Override
+	public void frameDone() {
 		// apply changes
 		view.updateBallsPosition(ball);
+		hud.refresh();
+		view.frameDone();
 
 		// compute relative position for lighthouse use
 		double relativeX = (ball.getX() / getWidth());
@@ -220,38 +485,146 @@ public class BreakoutModel extends GraphicsProgram implements CollisionListener
 			LighthouseView.setBallPosition(relativeX, relativeY);
 			// System.out.println("Set ball to window " + relativeX + "/" + relativeY);
 		} catch (Exception e) {
-			System.out.println("failes to set ball to " + relativeX + "/" + relativeY);
-			System.out.println(e.getMessage());
+			BALL_FAILED.log("failes to set ball to {}/{}: {}", relativeX, relativeY, e.getMessage());
+		}
+	}
+
+	/**
+	 * Called before every frame. Lets the {@code AutoPlayer} move the paddle like
+	 * the mouse does, if the auto play is on.
+	 */
+	private void updateAutoPlayer() {
+		if (!autoPlay) {
+			return;
+		}
+		int mouseX = autoPlayer.nextMouseX(game, ball);
+		if (mouseX != game.getPaddleX() + game.getPaddleWidth() / 2) {
+			updateMouseLocation(new Point(mouseX, game.getPaddleY()));
+		}
+	}
+
+	/**
+	 * Scrolls the brick field of the endless mode. The bricks on the lighthouse
+	 * are only moved when the field scrolls past a floor.
+	 * 
+	 * @param frameTime
+	 *            The time since the last frame in seconds.
+	 */
+	private void updateEndlessLevel(double frameTime) {
+		double floorHeight = (double) getHeight() / LighthouseView.getFloors();
+		boolean lighthouseMoves = LighthouseView.isConnected() && endlessLevel.scrollsPastStep(frameTime, floorHeight);
+		BreakoutBrick[] brickArray = game.getBrickArray();
+
+		if (lighthouseMoves) {
+			LighthouseView.removeBricks(brickArray, 0, brickArray.length, getWidth(), getHeight());
+		}
+		endlessLevel.update(frameTime, game.getPaddleY());
+		if (lighthouseMoves) {
+			LighthouseView.setBricks(brickArray, 0, brickArray.length, getWidth(), getHeight());
 		}
 	}
 
 	@Override
-	public void collisionEvent(CollisionWith lastCollisionWith) {
-		if (lastCollisionWith != null && !lastCollisionWith.equals(CollisionWith.BOTTOMWALL)) {
-			updateFrame();
-		} else {
-			restartGame();
+	public void bricksAdded(BreakoutBrick[] bricks, int from, int to) {
+		view.addBricks(bricks, from, to);
+		if (LighthouseView.isConnected()) {
+			LighthouseView.setBricks(bricks, from, to, getWidth(), getHeight());
+		}
+	}
+
+	@Override
+	public void bricksRemoved(BreakoutBrick[] bricks, int from, int to) {
+		view.removeBricks(bricks, from, to);
+		if (LighthouseView.isConnected()) {
+			LighthouseView.removeBricks(bricks, from, to, getWidth(), getHeight());
+		}
+	}
+
+	@Override
+	public void collided(CollisionWith lastCollisionWith) {
+		heatmap.collision(lastCollisionWith, ball.getX(), ball.getY(), getWidth(), getHeight());
+	}
+
+	@Override
+	public void ballLost() {
+		String result = endRun();
+		restartGame();
+		if (result != null) {
+			view.setInfoText(result);
+			view.showInfoText(true);
 		}
 	}
 
 	/**
-	 * Deletes a brick from the brickArray and updates the view.
+	 * Ends the run after the ball was lost or the mode was switched and submits
+	 * its points to the {@code Leaderboard}, which writes them in the
+	 * background. The runs of the {@code AutoPlayer} aren't submitted.
 	 * 
-	 * @param lastBrickCollided
-	 *            The {@code BreakoutBrick} which collided with the ball.
+	 * @return the result of the run for the info text or {@code null} if nothing
+	 *         was submitted.
 	 */
-	public void deleteBrickAfterCollision(BreakoutBrick lastBrickCollided) {
-		for (int i = 0; i < brickArray.length; i++) {
-			if (brickArray[i] != null && brickArray[i].equals(lastBrickCollided)) {
-				brickArray[i] = null;
-			}
+	private String endRun() {
+		int points = score.getPoints();
+		int flags = (endlessMode ? LeaderboardEntry.ENDLESS : 0) | (score.isRewound() ? LeaderboardEntry.REWOUND : 0);
+		score.reset();
+		if (points == 0 || autoPlay) {
+			return null;
 		}
-		view.removeBrick(lastBrickCollided);
+		int rank = Leaderboard.rankFor(points);
+		Leaderboard.submit(player, points, game.getCurrentLevel(), flags);
+		return rank > 0 ? "Game over: " + points + " points, rank " + rank + " of the leaderboard"
+				: "Game over: " + points + " points";
+	}
+
+	/**
+	 * Shows the best runs of the {@code Leaderboard} in the info text.
+	 */
+	public void showLeaderboard() {
+		LeaderboardEntry[] top = Leaderboard.getTop();
+		for (int i = 0; i < GameView.INFO_LINES; i++) {
+			view.setInfoText(i, i < top.length ? (i + 1) + ". " + top[i] : i == 0 ? "No runs yet" : "");
+		}
+		view.showInfoText(true);
+	}
+
+	/**
+	 * Counts a brick which was destroyed by the ball and removes it from the
+	 * views.
+	 * 
+	 * @param brick
+	 *            The index of the brick in the brickArray or the store.
+	 * @param removed
+	 *            The {@code BreakoutBrick} which collided with the ball or
+	 *            {@code null} if it was in the store of a very large level.
+	 */
+	@Override
+	public void brickDestroyed(int brick, BreakoutBrick removed) {
+		score.brickDestroyed();
+		heatmap.brickHit(brick);
+		if (rewind != null && !endlessMode) {
+			rewind.brickDestroyed(brick);
+		}
+
+		if (removed != null) {
+			view.removeBrick(removed);
+
+			// remove brick on Lighthouse
+			double relativeBrickX = removed.getX() / getWidth();
+			double relativeBrickY = removed.getY() / getHeight();
+			LighthouseView.removeBrick(relativeBrickX, relativeBrickY);
+			return;
+		}
+
+		view.removeBrick(brick);
 
 		// remove brick on Lighthouse
-		double relativeBrickX = lastBrickCollided.getX() / getWidth();
-		double relativeBrickY = lastBrickCollided.getY() / getHeight();
-		LighthouseView.removeBrick(relativeBrickX, relativeBrickY);
+		BrickStore brickStore = game.getBrickStore();
+		double relativeBrickX = brickStore.getX(brick) / getWidth();
+		double relativeBrickY = brickStore.getY(brick) / getHeight();
+		try {
+			LighthouseView.removeBrick(relativeBrickX, relativeBrickY);
+		} catch (IllegalArgumentException e) {
+		}
 	}
 
 	// ----------------game states methods------------------
@@ -264,21 +637,16 @@ public class BreakoutModel extends GraphicsProgram implements CollisionListener
 	 *         game is already running.
 	 */
 	public boolean startGame() {
-		if (!gameStarted) {
-
-			// set up a new timer which updates the ball's position depending on the frame
-			// rate
-			timer = new Timer();
-			BreakoutTimer timerTask = new BreakoutTimer(this);
-			lastFrameAtTime = System.currentTimeMillis();
-			long frameTime = 1000 / framesPerSecond;
-			timer.schedule(timerTask, 0, frameTime);
-
-			gameStarted = true;
-			view.levelStarted();
-			return true;
-		} else {
-			return false;
+		synchronized (stateLock) {
+			if (!game.isStarted()) {
+				ReplayRecorder.record(ReplayLog.START);
+				startTimer();
+				game.setStarted(true);
+				view.levelStarted();
+				return true;
+			} else {
+				return false;
+			}
 		}
 	}
 
@@ -286,65 +654,142 @@ public class BreakoutModel extends GraphicsProgram implements CollisionListener
 	 * Sets the game to the beginning state.
 	 */
 	private void restartGame() {
-		gameStarted = false;
-
 		// stop timer
-		timer.cancel();
+		if (timer != null) {
+			timer.cancel();
+		}
 
-		// Re-init view and controllers
-		initView();
-		initController();
+		// Re-init view and controllers, the controller keeps its listeners of the
+		// model and only listens to the new view
+		initView(game.getCurrentLevel());
+		controller.setView(view);
+
+		game.setRandomDirection();
 
-		ball.setDirection(RandomGenerator.getInstance().nextInt(10) * 10 - 50);
+		// the bot plays on without a click
+		if (autoPlay) {
+			startGame();
+		}
 	}
 
 	/**
 	 * Handles when a level is completed by the player.
 	 */
+	@Override
 	public void levelDone() {
+		// the endless mode refills the field on its own
+		if (endlessMode) {
+			return;
+		}
+
 		view.levelDone();
-		gameStarted = false;
+		score.levelDone(game.getCurrentLevel());
+		view.setInfoText("Level " + (game.getCurrentLevel() + 1) + " done, " + score.getPoints() + " points");
+		view.showInfoText(true);
+		game.setStarted(false);
 		timer.cancel();
 
 		// start next level or begin again at the first
-		if (BricksConfig.getBrickArray(currentLevel + 1) != null) {
-			currentLevel++;
-		} else {
-			currentLevel = 0;
-		}
-
-		brickArray = BricksConfig.getBrickArray(currentLevel);
-		view.updateBricks(brickArray);
 		LighthouseView.setAllDark();
-		LighthouseView.updateBricks(brickArray, getWidth(), getHeight());
+		initBricksForLevel(game.getNextLevel());
+		view.frameDone();
+
+		if (autoPlay) {
+			startGame();
+		}
 	}
 
 	/**
 	 * Pauses the game and the timer.
 	 */
 	public void pauseGame() {
-		if (timer != null) {
-			timer.cancel();
+		synchronized (stateLock) {
+			ReplayRecorder.record(ReplayLog.PAUSE);
+			if (timer != null) {
+				timer.cancel();
+			}
+			gamePaused = true;
 		}
-		gamePaused = true;
 	}
 
 	/**
 	 * Continues the game and the timer starts running.
 	 */
 	public void continueGame() {
-		// set up a new timer which updates the ball's position depending on the frame
-		// rate
-		timer = new Timer();
+		synchronized (stateLock) {
+			ReplayRecorder.record(ReplayLog.CONTINUE);
+			startTimer();
+			gamePaused = false;
+			game.setStarted(true);
+		}
+	}
+
+	/**
+	 * Sets up a new timer which updates the ball's position depending on the
+	 * frame rate. A running timer is cancelled first, so its thread doesn't keep
+	 * running next to the new one.
+	 */
+	private void startTimer() {
+		if (timer != null) {
+			timer.cancel();
+		}
+		timer = new Timer("breakout-timer"); //$NON-NLS-1$
 		BreakoutTimer timerTask = new BreakoutTimer(this);
-		lastFrameAtTime = System.currentTimeMillis();
 		long frameTime = 1000 / framesPerSecond;
 		timer.schedule(timerTask, 0, frameTime);
-		gamePaused = false;
-		gameStarted = true;
+	}
+
+	/**
+	 * Takes a snapshot of the game for the {@code Autosave}. It is called by
+	 * another thread and waits for the current frame.
+	 * 
+	 * @return the snapshot or {@code null} in the endless mode, whose bricks
+	 *         can't be restored.
+	 */
+	private GameSnapshot takeSnapshot() {
+		synchronized (stateLock) {
+			if (endlessMode) {
+				return null;
+			}
+			return GameSnapshot.capture(game, ball, game.getCurrentLevel(), score.getPoints(), game.isStarted(),
+					gamePaused, autoPlay);
+		}
+	}
+
+	/**
+	 * Describes the state of the game for the diagnostics of a stalled tick. It is
+	 * called by another thread, so the values may be changing.
+	 * 
+	 * @return the level, the ball and the number of bricks.
+	 */
+	private String describeState() {
+		int bricks = 0;
+		BrickStore store = game.getBrickStore();
+		BreakoutBrick[] bricksInArray = game.getBrickArray();
+		if (store != null) {
+			bricks = store.getLiveCount();
+		} else if (bricksInArray != null) {
+			for (BreakoutBrick brick : bricksInArray) {
+				if (brick != null) {
+					bricks++;
+				}
+			}
+		}
+		return "level " + game.getCurrentLevel() + (endlessMode ? " (endless)" : "") + ", started " + game.isStarted()
+				+ ", paused " + gamePaused + ", ball at " + ball.getX() + "/" + ball.getY() + " direction "
+				+ ball.getDirection() + ", bricks " + bricks;
 	}
 
 	// ---------Getters-------------------------
+	/**
+	 * Gets the view the game is shown in.
+	 * 
+	 * @return view or {@code null} if the game isn't running yet.
+	 */
+	public static GameView getView() {
+		return view;
+	}
+
 	/**
 	 * Gets the ball radius.
 	 * 
@@ -378,7 +823,34 @@ public class BreakoutModel extends GraphicsProgram implements CollisionListener
 	 * @return brickArray
 	 */
 	public BreakoutBrick[] getBrickArray() {
-		return brickArray;
+		return game.getBrickArray();
+	}
+
+	/**
+	 * Gets the store where the bricks of a very large level are saved in.
+	 * 
+	 * @return brickStore or {@code null} if the bricks are in the brickArray.
+	 */
+	public BrickStore getBrickStore() {
+		return game.getBrickStore();
+	}
+
+	/**
+	 * Gets the model of the ball.
+	 * 
+	 * @return ball.
+	 */
+	public BallModel getBall() {
+		return ball;
+	}
+
+	/**
+	 * Gets the game which is shown, eg for the bot or a snapshot.
+	 * 
+	 * @return game.
+	 */
+	public BreakoutGame getGame() {
+		return game;
 	}
 
 	/**
@@ -386,8 +858,8 @@ public class BreakoutModel extends GraphicsProgram implements CollisionListener
 	 * 
 	 * @return paddleHeight the width of the paddle.
 	 */
-	public static int getPaddleWidth() {
-		return paddleWidth;
+	public int getPaddleWidth() {
+		return game.getPaddleWidth();
 	}
 
 	/**
@@ -395,8 +867,8 @@ public class BreakoutModel extends GraphicsProgram implements CollisionListener
 	 * 
 	 * @return paddleHeight the height of the paddle.
 	 */
-	public static int getPaddleHeight() {
-		return paddleHeight;
+	public int getPaddleHeight() {
+		return game.getPaddleHeight();
 	}
 
 	/**
@@ -404,8 +876,8 @@ public class BreakoutModel extends GraphicsProgram implements CollisionListener
 	 * 
 	 * @return paddleX the paddle's x-Position.
 	 */
-	public static int getPaddleX() {
-		return paddleX;
+	public int getPaddleX() {
+		return game.getPaddleX();
 	}
 
 	/**
@@ -413,8 +885,8 @@ public class BreakoutModel extends GraphicsProgram implements CollisionListener
 	 * 
 	 * @return paddleY the paddle's y-Position.
 	 */
-	public static int getPaddleY() {
-		return paddleY;
+	public int getPaddleY() {
+		return game.getPaddleY();
 	}
 
 	/**
@@ -426,6 +898,52 @@ public class BreakoutModel extends GraphicsProgram implements CollisionListener
 		return gamePaused;
 	}
 
+	/**
+	 * @return {@code true} if the endless mode is on, {@code false} if not.
+	 */
+	public boolean isEndlessMode() {
+		return endlessMode;
+	}
+
+	/**
+	 * Switches the endless mode on or off. The game restarts with the new mode.
+	 * 
+	 * @param endlessMode
+	 *            {@code true} for the endless mode, {@code false} for the levels.
+	 */
+	public void setEndlessMode(boolean endlessMode) {
+		synchronized (stateLock) {
+			ReplayRecorder.endlessMode(endlessMode);
+			endRun();
+			BreakoutModel.endlessMode = endlessMode;
+			restartGame();
+		}
+	}
+
+	/**
+	 * @return {@code true} if the {@code AutoPlayer} plays, {@code false} if not.
+	 */
+	public boolean isAutoPlay() {
+		return autoPlay;
+	}
+
+	/**
+	 * Switches the auto play on or off. The {@code AutoPlayer} moves the paddle
+	 * instead of the mouse and starts the game on its own.
+	 * 
+	 * @param autoPlay
+	 *            {@code true} to let the bot play, {@code false} for the mouse.
+	 */
+	public void setAutoPlay(boolean autoPlay) {
+		synchronized (stateLock) {
+			BreakoutModel.autoPlay = autoPlay;
+			autoPlayer.reset();
+			if (autoPlay) {
+				startGame();
+			}
+		}
+	}
+
 	/**
 	 * @return the lighthouseEnabled
 	 */
@@ -0,0 +1,412 @@
+package project.breakout.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import project.breakout.view.BrickType;
+
+/**
+ * Off-heap storage for the bricks of very large levels. Every brick is a record
+ * of {@code RECORD_SIZE} bytes in a direct buffer, so a level with a million
+ * bricks doesn't create a million objects on the heap. The record layout is:
+ *
+ * x (float32)
+ * y (float32)
+ * width (float32)
+ * height (float32)
+ * color (int32 ARGB, 0 = standard color)
+ * type (uint8, ordinal of the BrickType-enum)
+ * padding (3 bytes)
+ *
+ * The bricks are indexed by a uniform grid, which is stored off-heap as well.
+ * A brick belongs to the grid cell of its top left corner and the cells are at
+ * least as large as the largest brick, so only the neighbouring cells have to
+ * be checked for a collision.
+ *
+ * Whether a brick is still in the game is kept in an off-heap byte per brick
+ * apart from the records. The records and the grid never change, so
+ * {@code copy} shares them with a new store whose bricks are all alive, and a
+ * level is read only once.
+ */
+public class BrickStore {
+	private static final int RECORD_SIZE = 24;
+	private static final int X = 0;
+	private static final int Y = 4;
+	private static final int WIDTH = 8;
+	private static final int HEIGHT = 12;
+	private static final int COLOR = 16;
+	private static final int TYPE = 20;
+
+	private static final int MIN_CELLS = 1024;
+
+	private static final BrickType[] TYPES = BrickType.values();
+
+	private final ByteBuffer records;
+	private final int brickCount;
+	/**
+	 * One byte per brick, 1 if the brick is still in the game.
+	 */
+	private final ByteBuffer alive;
+	private int liveCount;
+
+	/**
+	 * The number of bricks tested by the last {@code findHit}.
+	 */
+	private int lastCandidateCount;
+
+	// the grid index
+	private final double gridX;
+	private final double gridY;
+	private final double cellWidth;
+	private final double cellHeight;
+	private final int gridColumns;
+	private final int gridRows;
+
+	/**
+	 * {@code cellStart[c]} to {@code cellStart[c + 1]} are the positions of the
+	 * bricks of cell {@code c} in {@code cellBricks}.
+	 */
+	private final IntBuffer cellStart;
+	private final IntBuffer cellBricks;
+
+	/**
+	 * Constructor for the BrickStore. The records have to be written completely
+	 * before, the grid index is built from them.
+	 *
+	 * @param records
+	 *            The direct buffer with {@code brickCount} records.
+	 * @param brickCount
+	 *            The number of bricks.
+	 */
+	private BrickStore(ByteBuffer records, int brickCount) {
+		this.records = records;
+		this.brickCount = brickCount;
+		this.alive = allAlive(brickCount);
+		this.liveCount = brickCount;
+
+		// compute the bounds of the level and the size of the largest brick
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		double maxWidth = 1, maxHeight = 1;
+		for (int i = 0; i < brickCount; i++) {
+			minX = Math.min(minX, getX(i));
+			minY = Math.min(minY, getY(i));
+			maxX = Math.max(maxX, getX(i));
+			maxY = Math.max(maxY, getY(i));
+			maxWidth = Math.max(maxWidth, getWidth(i));
+			maxHeight = Math.max(maxHeight, getHeight(i));
+		}
+		if (brickCount == 0) {
+			minX = minY = maxX = maxY = 0;
+		}
+
+		// cells of sparse levels are enlarged, so the grid doesn't get larger than
+		// the records
+		double width = Math.ceil(maxWidth);
+		double height = Math.ceil(maxHeight);
+		long maxCells = Math.max(MIN_CELLS, (long) brickCount * 4);
+		while (((long) ((maxX - minX) / width) + 1) * ((long) ((maxY - minY) / height) + 1) > maxCells) {
+			width *= 2;
+			height *= 2;
+		}
+
+		gridX = minX;
+		gridY = minY;
+		cellWidth = width;
+		cellHeight = height;
+		gridColumns = (int) ((maxX - minX) / cellWidth) + 1;
+		gridRows = (int) ((maxY - minY) / cellHeight) + 1;
+
+		// count the bricks per cell, then sort the bricks into their cells
+		int cells = gridColumns * gridRows;
+		cellStart = ByteBuffer.allocateDirect((cells + 1) * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		cellBricks = ByteBuffer.allocateDirect(Math.max(1, brickCount) * 4).order(ByteOrder.nativeOrder())
+				.asIntBuffer();
+		for (int i = 0; i < brickCount; i++) {
+			int cell = cellOf(i) + 1;
+			cellStart.put(cell, cellStart.get(cell) + 1);
+		}
+		for (int cell = 1; cell <= cells; cell++) {
+			cellStart.put(cell, cellStart.get(cell) + cellStart.get(cell - 1));
+		}
+		IntBuffer next = ByteBuffer.allocateDirect((cells + 1) * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		next.put(cellStart.duplicate());
+		for (int i = 0; i < brickCount; i++) {
+			int cell = cellOf(i);
+			cellBricks.put(next.get(cell), i);
+			next.put(cell, next.get(cell) + 1);
+		}
+	}
+
+	/**
+	 * Constructor for a copy of the given store, which shares its records and
+	 * grid index.
+	 */
+	private BrickStore(BrickStore store) {
+		this.records = store.records;
+		this.brickCount = store.brickCount;
+		this.alive = allAlive(brickCount);
+		this.liveCount = brickCount;
+		this.gridX = store.gridX;
+		this.gridY = store.gridY;
+		this.cellWidth = store.cellWidth;
+		this.cellHeight = store.cellHeight;
+		this.gridColumns = store.gridColumns;
+		this.gridRows = store.gridRows;
+		this.cellStart = store.cellStart;
+		this.cellBricks = store.cellBricks;
+	}
+
+	private static ByteBuffer allAlive(int brickCount) {
+		ByteBuffer alive = ByteBuffer.allocateDirect(Math.max(1, brickCount));
+		for (int i = 0; i < brickCount; i++) {
+			alive.put(i, (byte) 1);
+		}
+		return alive;
+	}
+
+	/**
+	 * Creates a store with the same bricks, which are all alive again. The
+	 * records and the grid index are shared, so this is much cheaper than reading
+	 * the level again, and the copy can be played while this store is used by
+	 * another game.
+	 *
+	 * @return the new store.
+	 */
+	public BrickStore copy() {
+		return new BrickStore(this);
+	}
+
+	/**
+	 * Creates a store for all bricks of a level.
+	 *
+	 * @param level
+	 *            The level.
+	 * @return the store.
+	 */
+	public static BrickStore of(LevelData level) {
+		Builder builder = new Builder(level.getBrickCount());
+		for (int i = 0; i < level.getBrickCount(); i++) {
+			builder.add(level.getX(i), level.getY(i), level.getWidth(i), level.getHeight(i),
+					level.getColor(i) != null ? level.getColor(i).getRGB() : 0, level.getType(i));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Builder which writes the records of a store one after the other.
+	 */
+	public static class Builder {
+		private final ByteBuffer records;
+		private final int brickCount;
+		private int added = 0;
+
+		/**
+		 * Constructor for the Builder.
+		 *
+		 * @param brickCount
+		 *            The number of bricks which will be added.
+		 */
+		public Builder(int brickCount) {
+			this.brickCount = brickCount;
+			this.records = ByteBuffer.allocateDirect(Math.max(1, brickCount) * RECORD_SIZE)
+					.order(ByteOrder.nativeOrder());
+		}
+
+		/**
+		 * Adds the next brick.
+		 *
+		 * @param color
+		 *            The color as ARGB, 0 for the standard color.
+		 */
+		public void add(double x, double y, double width, double height, int color, BrickType type) {
+			int offset = added * RECORD_SIZE;
+			records.putFloat(offset + X, (float) x);
+			records.putFloat(offset + Y, (float) y);
+			records.putFloat(offset + WIDTH, (float) width);
+			records.putFloat(offset + HEIGHT, (float) height);
+			records.putInt(offset + COLOR, color);
+			records.put(offset + TYPE, (byte) type.ordinal());
+			added++;
+		}
+
+		/**
+		 * Builds the store and its grid index.
+		 *
+		 * @return the store.
+		 */
+		public BrickStore build() {
+			if (added != brickCount) {
+				throw new IllegalStateException("Only " + added + " of " + brickCount + " bricks were added");
+			}
+			return new BrickStore(records, brickCount);
+		}
+	}
+
+	// ---------queries-------------------------
+
+	/**
+	 * Finds a brick which is hit by the ball. The hit test is the one of the
+	 * {@code CollisionController}: the distances of the ball to the middle of the
+	 * brick relative to the brick size must both be at most 1.
+	 *
+	 * @param ballMiddleX
+	 *            The x-coordinate of the middle of the ball.
+	 * @param ballMiddleY
+	 *            The y-coordinate of the middle of the ball.
+	 * @param ballRadius
+	 *            The radius of the ball.
+	 * @return the index of the brick or -1 if no brick is hit.
+	 */
+	public int findHit(double ballMiddleX, double ballMiddleY, int ballRadius) {
+		int firstColumn = columnOf(ballMiddleX - ballRadius - cellWidth);
+		int lastColumn = columnOf(ballMiddleX + ballRadius);
+		int firstRow = rowOf(ballMiddleY - ballRadius - cellHeight);
+		int lastRow = rowOf(ballMiddleY + ballRadius);
+
+		lastCandidateCount = 0;
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				int cell = row * gridColumns + column;
+				for (int k = cellStart.get(cell); k < cellStart.get(cell + 1); k++) {
+					int brick = cellBricks.get(k);
+					lastCandidateCount++;
+					if (isAlive(brick) && isHit(brick, ballMiddleX, ballMiddleY, ballRadius)) {
+						return brick;
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	private boolean isHit(int brick, double ballMiddleX, double ballMiddleY, int ballRadius) {
+		double halfWidth = getWidth(brick) / 2;
+		double halfHeight = getHeight(brick) / 2;
+		double relativeDistanceX = (Math.abs(getX(brick) + halfWidth - ballMiddleX) - ballRadius) / halfWidth;
+		double relativeDistanceY = (Math.abs(getY(brick) + halfHeight - ballMiddleY) - ballRadius) / halfHeight;
+		return relativeDistanceX <= 1 && relativeDistanceY <= 1;
+	}
+
+	/**
+	 * Collects the live bricks which may intersect the given region.
+	 *
+	 * @param x
+	 *            The x-coordinate of the region.
+	 * @param y
+	 *            The y-coordinate of the region.
+	 * @param width
+	 *            The width of the region.
+	 * @param height
+	 *            The height of the region.
+	 * @param visitor
+	 *            The visitor called for every brick.
+	 */
+	public void visit(double x, double y, double width, double height, Visitor visitor) {
+		int firstColumn = columnOf(x - cellWidth);
+		int lastColumn = columnOf(x + width);
+		int firstRow = rowOf(y - cellHeight);
+		int lastRow = rowOf(y + height);
+
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				int cell = row * gridColumns + column;
+				for (int k = cellStart.get(cell); k < cellStart.get(cell + 1); k++) {
+					int brick = cellBricks.get(k);
+					if (isAlive(brick)) {
+						visitor.visit(brick);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visitor for the bricks of a region.
+	 */
+	public interface Visitor {
+		void visit(int brick);
+	}
+
+	// ---------helper methods-------------------------
+
+	private int cellOf(int brick) {
+		return rowOf(getY(brick)) * gridColumns + columnOf(getX(brick));
+	}
+
+	private int columnOf(double x) {
+		return (int) Math.max(0, Math.min(gridColumns - 1, Math.floor((x - gridX) / cellWidth)));
+	}
+
+	private int rowOf(double y) {
+		return (int) Math.max(0, Math.min(gridRows - 1, Math.floor((y - gridY) / cellHeight)));
+	}
+
+	// ---------Getters and Setters-------------------------
+
+	/**
+	 * Removes the brick from the game.
+	 *
+	 * @param brick
+	 *            The index of the brick.
+	 */
+	public void destroy(int brick) {
+		if (isAlive(brick)) {
+			alive.put(brick, (byte) 0);
+			liveCount--;
+		}
+	}
+
+	/**
+	 * @return the number of bricks in the level, including destroyed ones.
+	 */
+	public int getBrickCount() {
+		return brickCount;
+	}
+
+	/**
+	 * @return the number of bricks tested by the last {@code findHit}.
+	 */
+	public int getLastCandidateCount() {
+		return lastCandidateCount;
+	}
+
+	/**
+	 * @return the number of bricks which are still in the game.
+	 */
+	public int getLiveCount() {
+		return liveCount;
+	}
+
+	public boolean isAlive(int brick) {
+		return alive.get(brick) != 0;
+	}
+
+	public double getX(int brick) {
+		return records.getFloat(brick * RECORD_SIZE + X);
+	}
+
+	public double getY(int brick) {
+		return records.getFloat(brick * RECORD_SIZE + Y);
+	}
+
+	public double getWidth(int brick) {
+		return records.getFloat(brick * RECORD_SIZE + WIDTH);
+	}
+
+	public double getHeight(int brick) {
+		return records.getFloat(brick * RECORD_SIZE + HEIGHT);
+	}
+
+	/**
+	 * @return the color as ARGB, 0 for the standard color.
+	 */
+	public int getColor(int brick) {
+		return records.getInt(brick * RECORD_SIZE + COLOR);
+	}
+
+	public BrickType getType(int brick) {
+		return TYPES[records.get(brick * RECORD_SIZE + TYPE)];
+	}
+}
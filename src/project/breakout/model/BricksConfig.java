@@ -1,11 +1,16 @@
 package project.breakout.model;
 
 import java.awt.Color;
+import java.io.IOException;
 import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import project.breakout.metrics.LevelLoadEvent;
 import project.breakout.view.BreakoutBrick;
 import project.breakout.view.BrickType;
 
@@ -23,11 +28,21 @@ import project.breakout.view.BrickType;
  * 
  * 2x ... 
  * 2y... 
+ * 
+ * A level can also be compiled into the binary format of {@code LevelFormat}
+ * with the {@code LevelCompiler}, which is preferred if it exists.
  */
 public class BricksConfig {
 	private static int brickWidth = 40;
 	private static int brickHeight = 15;
-	private static String BUNDLE_NAME = "project.breakout.model.bricksConfig"; //$NON-NLS-1$
+
+	/**
+	 * Binary levels with more bricks than this are kept in a {@code BrickStore}.
+	 */
+	public static final int LARGE_LEVEL_BRICKS = 10000;
+
+	private static final String LEVEL_BUNDLE_PREFIX = "project.breakout.model.level"; //$NON-NLS-1$
+	static final String PROPERTIES_EXTENSION = ".properties"; //$NON-NLS-1$
 
 	private static final String XCOORD = "x";
 	private static final String YCOORD = "y";
@@ -36,7 +51,11 @@ public class BricksConfig {
 	private static final String BRICKCOLOR = "color";
 	private static final String BRICKTYPE = "type";
 
-	private static ResourceBundle RESOURCE_BUNDLE;
+	/**
+	 * The color constants of {@code java.awt.Color} by their names. It is built
+	 * once, so no reflection is needed while parsing.
+	 */
+	private static final Map<String, Color> COLORS = colorsByName();
 
 	/**
 	 * Returns a simple brick array for testing.
@@ -48,115 +67,291 @@ public class BricksConfig {
 	}
 
 	/**
-	 * Returns a brickArray specified by the {@code levelNumber}.
+	 * Returns a brickArray specified by the {@code levelNumber}. The level is
+	 * taken from the {@code LevelCache}, so the configuration file is only parsed
+	 * once.
 	 * 
 	 * @param levelNumber
 	 *            Specifies which brick configuration should be returned.
 	 * @return A brickArray representing the level.
 	 */
 	public static BreakoutBrick[] getBrickArray(int levelNumber) {
-		// Set resource file to level specification
-		try {
-			BUNDLE_NAME = "project.breakout.model.level" + levelNumber;
-			RESOURCE_BUNDLE = ResourceBundle.getBundle(BUNDLE_NAME);
-		} catch (Exception e) {
+		LevelData level = LevelCache.getLevel(levelNumber);
+		if (level == null) {
 			System.out.println("could not load brick config for level " + levelNumber);
 			return null;
 		}
+		return level.toBrickArray();
+	}
 
-		// create arrayList with all breakoutBricks in the configuration file
-		ArrayList<BreakoutBrick> brickList = new ArrayList<>();
-		for (int i = 1; brickExistsInFile(i); i++) {
-			brickList.add(getBrickFromFile(i));
+	/**
+	 * Returns the number of bricks of a level. The level is taken from the
+	 * {@code LevelCache}, so no bricks are created.
+	 * 
+	 * @param levelNumber
+	 *            The number of the level.
+	 * @return the number of bricks or -1 if the level couldn't be loaded.
+	 */
+	public static int getBrickCount(int levelNumber) {
+		if (LevelCache.isLargeLevel(levelNumber)) {
+			BrickStore store = LevelCache.getBrickStore(levelNumber);
+			return store != null ? store.getBrickCount() : -1;
 		}
+		LevelData level = LevelCache.getLevel(levelNumber);
+		return level != null ? level.getBrickCount() : -1;
+	}
+
+	/**
+	 * Returns the bricks of a very large level in a {@code BrickStore}. Only
+	 * binary levels with more than {@code LARGE_LEVEL_BRICKS} bricks are loaded
+	 * into a store, the bricks of all other levels are taken from
+	 * {@code getBrickArray}. The level is read once into the {@code LevelCache},
+	 * every call returns a copy of the cached store with all bricks alive.
+	 * 
+	 * @param levelNumber
+	 *            Specifies which brick configuration should be returned.
+	 * @return A store with the bricks of the level or {@code null} if the level is
+	 *         not a large level.
+	 */
+	public static BrickStore getBrickStore(int levelNumber) {
+		BrickStore store = LevelCache.getBrickStore(levelNumber);
+		return store != null ? store.copy() : null;
+	}
 
-		// clear up the list in order to remove null elements
-		brickList.removeAll(Collections.singleton(null));
-		assert brickList.indexOf(null) == -1;
+	/**
+	 * Reads a large level into a {@code BrickStore}. This method is thread-safe,
+	 * so it can be called by the prefetching thread of the {@code LevelCache}.
+	 * 
+	 * @param levelNumber
+	 *            Specifies which brick configuration should be read.
+	 * @return The store or {@code null} if the level couldn't be read.
+	 */
+	static BrickStore readBrickStore(int levelNumber) {
+		LevelLoadEvent event = new LevelLoadEvent();
+		event.begin();
+		BrickStore store = null;
+		try {
+			store = LevelFormat.readStore(getLevelResource(levelNumber, LevelFormat.FILE_EXTENSION));
+			event.format = "brk-store";
+		} catch (IOException e) {
+			System.out.println("could not read binary level " + levelNumber + ": " + e.getMessage());
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.level = levelNumber;
+			event.bricks = store != null ? store.getBrickCount() : 0;
+			event.commit();
+		}
+		return store;
+	}
 
-		// return brickList as array of BreakoutBricks
-		BreakoutBrick[] brickArray = new BreakoutBrick[brickList.size()];
-		brickArray = brickList.toArray(brickArray);
-		return brickArray;
+	/**
+	 * Checks whether the level is a binary level with more than
+	 * {@code LARGE_LEVEL_BRICKS} bricks. The flag is kept in the manifest of the
+	 * {@code LevelCache}, so no file is read.
+	 * 
+	 * @param levelNumber
+	 *            The number of the level.
+	 * @return {@code true} if the level is large, {@code false} if not.
+	 */
+	public static boolean isLargeLevel(int levelNumber) {
+		return LevelCache.isLargeLevel(levelNumber);
 	}
 
-	private static BreakoutBrick getBrickFromFile(int brickNumber) {
-		// if brick doesn't exist return null
-		if (!brickExistsInFile(brickNumber)) {
-			return null;
+	/**
+	 * Reads the header of a binary level to find out whether it is a large level.
+	 * It is called once per level when the manifest of the {@code LevelCache} is
+	 * built.
+	 */
+	static boolean readLargeLevel(int levelNumber) {
+		URL binaryLevel = getLevelResource(levelNumber, LevelFormat.FILE_EXTENSION);
+		try {
+			return binaryLevel != null && LevelFormat.readBrickCount(binaryLevel) > LARGE_LEVEL_BRICKS;
+		} catch (IOException e) {
+			return false;
 		}
+	}
+
+	/**
+	 * Parses the configuration file of the level specified by the
+	 * {@code levelNumber}. This method is thread-safe, so it can be called by the
+	 * prefetching thread of the {@code LevelCache}.
+	 * 
+	 * @param levelNumber
+	 *            Specifies which brick configuration should be parsed.
+	 * @return The parsed level or {@code null} if the level couldn't be loaded.
+	 */
+	static LevelData parseLevel(int levelNumber) {
+		LevelLoadEvent event = new LevelLoadEvent();
+		event.begin();
+		LevelData level = parseLevel(levelNumber, event);
+		event.end();
+		if (event.shouldCommit()) {
+			event.level = levelNumber;
+			event.bricks = level != null ? level.getBrickCount() : 0;
+			event.commit();
+		}
+		return level;
+	}
 
-		BreakoutBrick brick = new BreakoutBrick();
+	/**
+	 * Parses the level and sets the format it was read from in the event.
+	 */
+	private static LevelData parseLevel(int levelNumber, LevelLoadEvent event) {
+		// prefer the compiled binary level
+		URL binaryLevel = getLevelResource(levelNumber, LevelFormat.FILE_EXTENSION);
+		if (binaryLevel != null) {
+			try {
+				LevelData level = LevelFormat.read(levelNumber, binaryLevel);
+				event.format = LevelFormat.FILE_EXTENSION.substring(1);
+				return level;
+			} catch (IOException e) {
+				System.out.println("could not read binary level " + levelNumber + ": " + e.getMessage());
+			}
+		}
 
-		// get location of the brick
+		// Set resource file to level specification
+		String bundleName = LEVEL_BUNDLE_PREFIX + levelNumber;
+		ResourceBundle bundle;
 		try {
-			double brickX = Double.parseDouble(getString(brickNumber + XCOORD));
-			double brickY = Double.parseDouble(getString(brickNumber + YCOORD));
-			brick.setLocation(brickX, brickY);
+			bundle = ResourceBundle.getBundle(bundleName);
 		} catch (Exception e) {
-			System.out.println("BrickNr " + brickNumber + " in resource " + BUNDLE_NAME + " has no x- or y-coordinate");
+			System.out.println("could not load brick config for level " + levelNumber);
 			return null;
 		}
+		event.format = PROPERTIES_EXTENSION.substring(1);
+		return parseLevel(levelNumber, bundle, bundleName);
+	}
 
-		// get size of the brick
-		try {
-			double brickWidth = Double.parseDouble(getString(brickNumber + BRICKWIDTH));
-			double brickHeight = Double.parseDouble(getString(brickNumber + BRICKHEIGHT));
-			brick.setSize(brickWidth, brickHeight);
-		} catch (Exception e) {
-			System.out.println(
-					"BrickNr " + brickNumber + " in resource " + BUNDLE_NAME + " was initialized with standard size");
-			brick.setSize(brickWidth, brickHeight);
+	/**
+	 * Parses a level configuration in the properties format.
+	 * 
+	 * @param levelNumber
+	 *            The number of the level.
+	 * @param bundle
+	 *            The bundle containing the level configuration.
+	 * @param bundleName
+	 *            The name of the bundle used in messages.
+	 * @return The parsed level.
+	 */
+	static LevelData parseLevel(int levelNumber, ResourceBundle bundle, String bundleName) {
+		// count the bricks in the configuration file
+		int brickCount = 0;
+		while (bundle.containsKey((brickCount + 1) + XCOORD)) {
+			brickCount++;
 		}
 
-		// get color of the brick
-		try {
-			String brickColor = getString(brickNumber + BRICKCOLOR);
-			Field field = Color.class.getField(brickColor);
-			Color color = (Color) field.get(null);
-			brick.setFillColor(color);
-		} catch (Exception e) {
-			System.out.println(
-					"BrickNr " + brickNumber + " in resource " + BUNDLE_NAME + " was initialized with standard color");
-			brick.setColor(Color.BLACK);
+		double[] x = new double[brickCount];
+		double[] y = new double[brickCount];
+		double[] width = new double[brickCount];
+		double[] height = new double[brickCount];
+		Color[] color = new Color[brickCount];
+		BrickType[] type = new BrickType[brickCount];
+
+		// parse all bricks, bricks without valid coordinates are left out
+		int parsed = 0;
+		for (int brickNumber = 1; brickNumber <= brickCount; brickNumber++) {
+			String prefix = Integer.toString(brickNumber);
+
+			// get location of the brick
+			try {
+				x[parsed] = Double.parseDouble(bundle.getString(prefix + XCOORD).trim());
+				y[parsed] = Double.parseDouble(bundle.getString(prefix + YCOORD).trim());
+			} catch (Exception e) {
+				System.out.println("BrickNr " + brickNumber + " in resource " + bundleName + " has no x- or y-coordinate");
+				continue;
+			}
+
+			// get size of the brick
+			try {
+				width[parsed] = Double.parseDouble(bundle.getString(prefix + BRICKWIDTH).trim());
+				height[parsed] = Double.parseDouble(bundle.getString(prefix + BRICKHEIGHT).trim());
+			} catch (Exception e) {
+				System.out.println(
+						"BrickNr " + brickNumber + " in resource " + bundleName + " was initialized with standard size");
+				width[parsed] = brickWidth;
+				height[parsed] = brickHeight;
+			}
+
+			// get color of the brick
+			String brickColor = getString(bundle, prefix + BRICKCOLOR);
+			color[parsed] = (brickColor != null) ? COLORS.get(brickColor.trim()) : null;
+			if (color[parsed] == null) {
+				System.out.println(
+						"BrickNr " + brickNumber + " in resource " + bundleName + " was initialized with standard color");
+			}
+
+			// get type of brick
+			type[parsed] = BrickType.STANDARD;
+			String brickTypeString = getString(bundle, prefix + BRICKTYPE);
+			if (brickTypeString != null) {
+				try {
+					type[parsed] = BrickType.valueOf(brickTypeString.trim());
+				} catch (IllegalArgumentException e) {
+				}
+			}
+
+			parsed++;
 		}
 
-		// get type of brick
-		try {
-			String brickTypeString = getString(brickNumber + BRICKTYPE);
-			BrickType brickTypeEnum = BrickType.valueOf(brickTypeString);
-			brick.setBrickType(brickTypeEnum);
-		} catch (Exception e) {
+		if (parsed < brickCount) {
+			x = Arrays.copyOf(x, parsed);
+			y = Arrays.copyOf(y, parsed);
+			width = Arrays.copyOf(width, parsed);
+			height = Arrays.copyOf(height, parsed);
+			color = Arrays.copyOf(color, parsed);
+			type = Arrays.copyOf(type, parsed);
 		}
+		return new LevelData(levelNumber, x, y, width, height, color, type);
+	}
 
-		return brick;
+	/**
+	 * Finds the file of a level in the class path.
+	 * 
+	 * @param levelNumber
+	 *            The number of the level.
+	 * @param extension
+	 *            The file extension, eg ".properties".
+	 * @return the URL of the file or {@code null} if it doesn't exist.
+	 */
+	static URL getLevelResource(int levelNumber, String extension) {
+		return BricksConfig.class.getClassLoader()
+				.getResource(LEVEL_BUNDLE_PREFIX.replace('.', '/') + levelNumber + extension);
 	}
 
 	/**
+	 * Collects the color constants of {@code java.awt.Color} by their names, eg
+	 * "red" and "RED".
 	 * 
-	 * @param key
-	 * @return
+	 * @return map from the name of a color to the color.
 	 */
-	private static String getString(String key) {
-		try {
-			return RESOURCE_BUNDLE.getString(key);
-		} catch (MissingResourceException e) {
-			return '!' + key + '!';
+	private static Map<String, Color> colorsByName() {
+		Map<String, Color> colors = new HashMap<>();
+		for (Field field : Color.class.getFields()) {
+			if (Modifier.isStatic(field.getModifiers()) && field.getType() == Color.class) {
+				try {
+					colors.put(field.getName(), (Color) field.get(null));
+				} catch (IllegalAccessException e) {
+				}
+			}
 		}
+		return colors;
 	}
 
 	/**
-	 * Checks whether key exists in bricksConfig.properties.
+	 * Gets the value of a key in the given bundle.
 	 * 
+	 * @param bundle
+	 *            The bundle containing the level configuration.
 	 * @param key
-	 *            The key which shall be proved.
-	 * @return {@code true} if key exists, {@code false} if not.
+	 *            The key of the value.
+	 * @return the value or {@code null} if the key doesn't exist.
 	 */
-	private static boolean brickExistsInFile(int brickNumber) {
+	private static String getString(ResourceBundle bundle, String key) {
 		try {
-			return RESOURCE_BUNDLE.getString(brickNumber + "x") != null;
+			return bundle.getString(key);
 		} catch (MissingResourceException e) {
-			return false;
+			return null;
 		}
 	}
 }
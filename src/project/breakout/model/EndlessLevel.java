@@ -0,0 +1,245 @@
+package project.breakout.model;
+
+import java.awt.Color;
+
+import project.breakout.view.BreakoutBrick;
+
+/**
+ * This class represents the brick field of the endless mode. The field scrolls
+ * down slowly and is built from chunks of a few rows of bricks, which are
+ * generated above the visible area before they scroll into it. Chunks which
+ * scrolled past the paddle are evicted.
+ *
+ * The bricks are kept in a brick array of fixed size, where every chunk owns a
+ * fixed range of slots. The {@code BreakoutBrick}s of the slots are reused for
+ * new chunks, so the memory stays constant no matter how long the game lasts.
+ */
+public class EndlessLevel {
+
+	/**
+	 * Listener which is informed when bricks enter or leave the field, so the
+	 * views can be updated per chunk instead of being rebuilt.
+	 */
+	public interface Listener {
+		/**
+		 * Called when a new chunk was loaded.
+		 *
+		 * @param bricks
+		 *            The brick array of the level.
+		 * @param from
+		 *            The first index of the new bricks.
+		 * @param to
+		 *            The index after the last new brick.
+		 */
+		void bricksAdded(BreakoutBrick[] bricks, int from, int to);
+
+		/**
+		 * Called before a chunk is evicted. Bricks which were already destroyed are
+		 * {@code null}.
+		 *
+		 * @param bricks
+		 *            The brick array of the level.
+		 * @param from
+		 *            The first index of the evicted bricks.
+		 * @param to
+		 *            The index after the last evicted brick.
+		 */
+		void bricksRemoved(BreakoutBrick[] bricks, int from, int to);
+	}
+
+	private static final int MAX_CHUNKS = 16;
+	private static final int BRICKS_PER_CHUNK = 64;
+	private static final int CHUNK_HEIGHT = 60;
+	private static final double PIXELS_PER_SECOND = 5;
+
+	private final int fieldWidth;
+	private final long seed;
+	private final Listener listener;
+
+	/**
+	 * All bricks ever used, chunk {@code c} owns the slots from
+	 * {@code c * BRICKS_PER_CHUNK} to {@code (c + 1) * BRICKS_PER_CHUNK}.
+	 */
+	private final BreakoutBrick[] pool = new BreakoutBrick[MAX_CHUNKS * BRICKS_PER_CHUNK];
+
+	/**
+	 * The bricks which are still in the game, destroyed bricks are {@code null}.
+	 */
+	private final BreakoutBrick[] brickArray = new BreakoutBrick[MAX_CHUNKS * BRICKS_PER_CHUNK];
+
+	private final double[] chunkTop = new double[MAX_CHUNKS];
+	private final int[] chunkSize = new int[MAX_CHUNKS];
+
+	/**
+	 * The chunks form a ring, {@code oldestChunk} is the lowest one in the field.
+	 */
+	private int oldestChunk = 0;
+	private int chunkCount = 0;
+	private long chunksLoaded = 0;
+	private double scrolled = 0;
+
+	/**
+	 * Constructor for the EndlessLevel.
+	 *
+	 * @param fieldWidth
+	 *            The width of the field in pixels.
+	 * @param seed
+	 *            The seed for generating the chunks.
+	 * @param listener
+	 *            The listener informed about loaded and evicted chunks.
+	 */
+	public EndlessLevel(int fieldWidth, long seed, Listener listener) {
+		this.fieldWidth = fieldWidth;
+		this.seed = seed;
+		this.listener = listener;
+		for (int i = 0; i < pool.length; i++) {
+			pool[i] = new BreakoutBrick();
+		}
+	}
+
+	/**
+	 * Fills the field with chunks from the top down to the given y-coordinate.
+	 *
+	 * @param bottomY
+	 *            The y-coordinate where the lowest chunk should end.
+	 */
+	public void fill(double bottomY) {
+		while (chunkCount < MAX_CHUNKS && topOfField(bottomY) > 0) {
+			loadChunk(topOfField(bottomY) - CHUNK_HEIGHT);
+		}
+	}
+
+	/**
+	 * Called by the timer. Scrolls the field down depending on the time gone by
+	 * since the last frame, evicts the chunks below {@code evictY} and loads new
+	 * chunks above the visible area.
+	 *
+	 * @param frameTime
+	 *            The time since the last frame in seconds.
+	 * @param evictY
+	 *            The y-coordinate below which chunks are evicted, usually the
+	 *            paddle.
+	 */
+	public void update(double frameTime, double evictY) {
+		double distance = PIXELS_PER_SECOND * frameTime;
+		scrolled += distance;
+
+		// scroll all chunks
+		for (int i = 0; i < chunkCount; i++) {
+			int chunk = (oldestChunk + i) % MAX_CHUNKS;
+			chunkTop[chunk] += distance;
+			int from = chunk * BRICKS_PER_CHUNK;
+			for (int slot = from; slot < from + chunkSize[chunk]; slot++) {
+				if (brickArray[slot] != null) {
+					brickArray[slot].move(0, distance);
+				}
+			}
+		}
+
+		// evict chunks which scrolled past the paddle
+		while (chunkCount > 0 && chunkTop[oldestChunk] > evictY) {
+			evictChunk();
+		}
+
+		// load new chunks ahead of the visible area
+		while (chunkCount < MAX_CHUNKS && topOfField(evictY) > -CHUNK_HEIGHT) {
+			loadChunk(topOfField(evictY) - CHUNK_HEIGHT);
+		}
+	}
+
+	/**
+	 * Checks whether the next update scrolls the field past a multiple of the
+	 * given step height, eg past the next floor of the lighthouse.
+	 *
+	 * @param frameTime
+	 *            The time since the last frame in seconds.
+	 * @param stepHeight
+	 *            The height of a step in pixels.
+	 * @return {@code true} if the field crosses a step, {@code false} if not.
+	 */
+	public boolean scrollsPastStep(double frameTime, double stepHeight) {
+		double distance = PIXELS_PER_SECOND * frameTime;
+		return (long) ((scrolled + distance) / stepHeight) != (long) (scrolled / stepHeight);
+	}
+
+	/**
+	 * Gets the y-coordinate of the top of the newest chunk.
+	 *
+	 * @param emptyTop
+	 *            The y-coordinate returned if there are no chunks.
+	 */
+	private double topOfField(double emptyTop) {
+		if (chunkCount == 0) {
+			return emptyTop;
+		}
+		return chunkTop[(oldestChunk + chunkCount - 1) % MAX_CHUNKS];
+	}
+
+	/**
+	 * Generates the next chunk and places it at the given y-coordinate. Chunks are
+	 * generated from the seed and their number, so the field is the same in
+	 * every game with the same seed.
+	 */
+	private void loadChunk(double top) {
+		int chunk = (oldestChunk + chunkCount) % MAX_CHUNKS;
+		LevelData rows = LevelGenerator.generate(LevelGenerator.Pattern.RANDOM_FILL, BRICKS_PER_CHUNK / 2,
+				fieldWidth, CHUNK_HEIGHT, seed + chunksLoaded);
+
+		int from = chunk * BRICKS_PER_CHUNK;
+		int size = 0;
+		for (int i = 0; i < rows.getBrickCount() && size < BRICKS_PER_CHUNK; i++) {
+			if (rows.getY(i) + rows.getHeight(i) > CHUNK_HEIGHT) {
+				continue;
+			}
+			BreakoutBrick brick = pool[from + size];
+			brick.setLocation(rows.getX(i), top + rows.getY(i));
+			brick.setSize(rows.getWidth(i), rows.getHeight(i));
+			Color color = rows.getColor(i);
+			brick.setFillColor(color != null ? color : Color.BLACK);
+			brick.setBrickType(rows.getType(i));
+			brickArray[from + size] = brick;
+			size++;
+		}
+
+		chunkTop[chunk] = top;
+		chunkSize[chunk] = size;
+		chunkCount++;
+		chunksLoaded++;
+		listener.bricksAdded(brickArray, from, from + size);
+	}
+
+	/**
+	 * Removes the oldest chunk from the field.
+	 */
+	private void evictChunk() {
+		int from = oldestChunk * BRICKS_PER_CHUNK;
+		int to = from + chunkSize[oldestChunk];
+		listener.bricksRemoved(brickArray, from, to);
+		for (int slot = from; slot < to; slot++) {
+			brickArray[slot] = null;
+		}
+
+		chunkSize[oldestChunk] = 0;
+		oldestChunk = (oldestChunk + 1) % MAX_CHUNKS;
+		chunkCount--;
+	}
+
+	// ---------Getters-------------------------
+
+	/**
+	 * Gets the array where the bricks are saved in. The array keeps its size
+	 * during the whole game, empty slots are {@code null}.
+	 *
+	 * @return brickArray
+	 */
+	public BreakoutBrick[] getBrickArray() {
+		return brickArray;
+	}
+
+	/**
+	 * @return the number of chunks generated since the game started.
+	 */
+	public long getChunksLoaded() {
+		return chunksLoaded;
+	}
+}
@@ -0,0 +1,57 @@
+package project.breakout.model;
+
+/**
+ * Runs the frame of a game again after a collision. A frame checks the ball
+ * for a collision and moves it, running it again lets the ball bounce off
+ * everything it touches in the same tick. A ball between two objects, eg the
+ * paddle and a wall, would collide with them in turn without moving, so it is
+ * moved away before every further check. At most {@code MAX_COLLISION_DEPTH}
+ * frames are run again in one tick.
+ *
+ * The {@code BreakoutGame} and the {@code VersusGame} run their frames with
+ * it, so the ball moves the same in both.
+ */
+public class FrameRunner {
+	/**
+	 * The time the ball moves per frame in seconds.
+	 */
+	public static final double FRAME_TIME = 0.03;
+
+	/**
+	 * The maximum number of frames run again after collisions in one tick.
+	 */
+	public static final int MAX_COLLISION_DEPTH = 8;
+
+	private final BallModel ball;
+	private final Runnable frame;
+	private int collisionDepth = 0;
+
+	/**
+	 * Constructor for the FrameRunner.
+	 *
+	 * @param ball
+	 *            The ball of the game.
+	 * @param frame
+	 *            The frame of the game, which checks the ball for a collision and
+	 *            moves it.
+	 */
+	public FrameRunner(BallModel ball, Runnable frame) {
+		this.ball = ball;
+		this.frame = frame;
+	}
+
+	/**
+	 * Runs the frame again, unless the maximum depth is reached. It is called by
+	 * the game after it handled a collision.
+	 */
+	public void runAgain() {
+		if (collisionDepth < MAX_COLLISION_DEPTH) {
+			collisionDepth++;
+			if (collisionDepth > 1) {
+				ball.updatePosition(FRAME_TIME);
+			}
+			frame.run();
+			collisionDepth--;
+		}
+	}
+}
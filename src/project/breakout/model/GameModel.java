@@ -0,0 +1,73 @@
+package project.breakout.model;
+
+import project.breakout.view.BreakoutBrick;
+
+/**
+ * The state of a running game which the collision controller and the ball
+ * work on. It is implemented by the {@code BreakoutGame}, which plays the
+ * desktop game, the {@code GameSession}s of the game server and the games of
+ * the {@code LevelAnalyzer}, so the rules of the game are the same for all.
+ */
+public interface GameModel {
+
+	// ---------ball-------------------------
+
+	double getBallX();
+
+	double getBallY();
+
+	int getBallRadius();
+
+	// ---------paddle-------------------------
+
+	int getPaddleX();
+
+	int getPaddleY();
+
+	int getPaddleWidth();
+
+	int getPaddleHeight();
+
+	// ---------field-------------------------
+
+	int getWidth();
+
+	int getHeight();
+
+	/**
+	 * Gets the array where the bricks are saved in.
+	 *
+	 * @return brickArray or {@code null} if the bricks are in a store.
+	 */
+	BreakoutBrick[] getBrickArray();
+
+	/**
+	 * Gets the store where the bricks of a very large level are saved in.
+	 *
+	 * @return brickStore or {@code null} if the bricks are in the brickArray.
+	 */
+	BrickStore getBrickStore();
+
+	// ---------events-------------------------
+
+	/**
+	 * Deletes a brick of the brickArray after the ball collided with it.
+	 *
+	 * @param brick
+	 *            The brick which collided with the ball.
+	 */
+	void deleteBrickAfterCollision(BreakoutBrick brick);
+
+	/**
+	 * Deletes a brick of the brickStore after the ball collided with it.
+	 *
+	 * @param brick
+	 *            The index of the brick in the store.
+	 */
+	void deleteBrickAfterCollision(int brick);
+
+	/**
+	 * Called when the last brick of the level was destroyed.
+	 */
+	void levelDone();
+}
@@ -0,0 +1,331 @@
+package project.breakout.model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import project.breakout.view.BreakoutBrick;
+
+/**
+ * A snapshot of the state of a game: the level, which bricks of the level are
+ * still alive, the ball, the paddle, the points and the flags of the game. The bricks are
+ * kept as a bitset over the bricks of the level, so a snapshot of a level with
+ * a thousand bricks takes less than 200 bytes.
+ *
+ * The encoded snapshot ends with a CRC32 of its content, so a snapshot which
+ * was only written in part is rejected instead of restored.
+ *
+ * <pre>
+ * "BSNP" version:byte flags:byte level width height paddleX paddleY direction
+ * points:int ballX ballY:double brickCount:int bits:long[] crc:int
+ * </pre>
+ *
+ * A snapshot of version 1 has no points, it is restored with none.
+ */
+public class GameSnapshot {
+	private static final byte[] MAGIC = { 'B', 'S', 'N', 'P' };
+	private static final int VERSION = 2;
+
+	// the flags
+	private static final int STARTED = 1;
+	private static final int PAUSED = 2;
+	private static final int AUTO_PLAY = 4;
+
+	private static final int HEADER_BYTES = MAGIC.length + 2 + 7 * 4 + 2 * 8 + 4;
+	private static final int HEADER_BYTES_V1 = HEADER_BYTES - 4;
+
+	private int level;
+	private boolean started;
+	private boolean paused;
+	private boolean autoPlay;
+	private int width, height;
+	private int paddleX, paddleY;
+	private int direction;
+	private int points;
+	private double ballX, ballY;
+	private int brickCount;
+	private long[] alive;
+
+	private GameSnapshot() {
+	}
+
+	/**
+	 * Constructor for a snapshot of a state which was kept elsewhere, eg by the
+	 * {@code RewindBuffer}.
+	 */
+	GameSnapshot(int level, boolean started, boolean paused, boolean autoPlay, int width, int height, int paddleX,
+			int paddleY, int direction, int points, double ballX, double ballY, int brickCount, long[] alive) {
+		this.level = level;
+		this.started = started;
+		this.paused = paused;
+		this.autoPlay = autoPlay;
+		this.width = width;
+		this.height = height;
+		this.paddleX = paddleX;
+		this.paddleY = paddleY;
+		this.direction = direction;
+		this.points = points;
+		this.ballX = ballX;
+		this.ballY = ballY;
+		this.brickCount = brickCount;
+		this.alive = alive;
+	}
+
+	/**
+	 * Takes a snapshot of a game. The caller makes sure the game doesn't change
+	 * meanwhile.
+	 *
+	 * @param game
+	 *            The game.
+	 * @param ball
+	 *            The ball of the game.
+	 * @param level
+	 *            The current level of the game.
+	 * @param points
+	 *            The points of the current run.
+	 * @param started
+	 *            If the game was started.
+	 * @param paused
+	 *            If the game is paused.
+	 * @param autoPlay
+	 *            If the {@code AutoPlayer} plays.
+	 * @return the snapshot.
+	 */
+	public static GameSnapshot capture(GameModel game, BallModel ball, int level, int points, boolean started,
+			boolean paused, boolean autoPlay) {
+		GameSnapshot snapshot = new GameSnapshot();
+		snapshot.level = level;
+		snapshot.started = started;
+		snapshot.paused = paused;
+		snapshot.autoPlay = autoPlay;
+		snapshot.width = game.getWidth();
+		snapshot.height = game.getHeight();
+		snapshot.paddleX = game.getPaddleX();
+		snapshot.paddleY = game.getPaddleY();
+		snapshot.direction = ball.getDirection();
+		snapshot.points = points;
+		snapshot.ballX = ball.getX();
+		snapshot.ballY = ball.getY();
+
+		BrickStore store = game.getBrickStore();
+		BreakoutBrick[] bricks = game.getBrickArray();
+		if (store != null) {
+			snapshot.brickCount = store.getBrickCount();
+			snapshot.alive = new long[(snapshot.brickCount + 63) / 64];
+			for (int i = 0; i < snapshot.brickCount; i++) {
+				if (store.isAlive(i)) {
+					snapshot.alive[i >> 6] |= 1L << i;
+				}
+			}
+		} else if (bricks != null) {
+			snapshot.brickCount = bricks.length;
+			snapshot.alive = new long[(snapshot.brickCount + 63) / 64];
+			for (int i = 0; i < bricks.length; i++) {
+				if (bricks[i] != null) {
+					snapshot.alive[i >> 6] |= 1L << i;
+				}
+			}
+		} else {
+			snapshot.alive = new long[0];
+		}
+		return snapshot;
+	}
+
+	// ---------encoding-------------------------
+
+	/**
+	 * Encodes the snapshot.
+	 *
+	 * @return the bytes of the snapshot.
+	 */
+	public byte[] encode() {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + alive.length * 8 + 4);
+		buffer.put(MAGIC);
+		buffer.put((byte) VERSION);
+		buffer.put((byte) ((started ? STARTED : 0) | (paused ? PAUSED : 0) | (autoPlay ? AUTO_PLAY : 0)));
+		buffer.putInt(level);
+		buffer.putInt(width);
+		buffer.putInt(height);
+		buffer.putInt(paddleX);
+		buffer.putInt(paddleY);
+		buffer.putInt(direction);
+		buffer.putInt(points);
+		buffer.putDouble(ballX);
+		buffer.putDouble(ballY);
+		buffer.putInt(brickCount);
+		for (long bits : alive) {
+			buffer.putLong(bits);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, buffer.position());
+		buffer.putInt((int) crc.getValue());
+		return buffer.array();
+	}
+
+	/**
+	 * Decodes a snapshot.
+	 *
+	 * @param data
+	 *            The bytes of the snapshot.
+	 * @return the snapshot.
+	 * @throws IOException
+	 *             if the data is no complete snapshot of this version.
+	 */
+	public static GameSnapshot decode(byte[] data) throws IOException {
+		if (data.length < HEADER_BYTES_V1 + 4) {
+			throw new IOException("no snapshot, the data is too short");
+		}
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length - 4);
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		if (buffer.getInt(data.length - 4) != (int) crc.getValue()) {
+			throw new IOException("snapshot is damaged, the checksum doesn't match");
+		}
+		for (byte b : MAGIC) {
+			if (buffer.get() != b) {
+				throw new IOException("no snapshot, the magic number is missing");
+			}
+		}
+		int version = buffer.get();
+		if (version < 1 || version > VERSION) {
+			throw new IOException("snapshot version " + version + " is not supported");
+		}
+
+		try {
+			GameSnapshot snapshot = new GameSnapshot();
+			int flags = buffer.get();
+			snapshot.started = (flags & STARTED) != 0;
+			snapshot.paused = (flags & PAUSED) != 0;
+			snapshot.autoPlay = (flags & AUTO_PLAY) != 0;
+			snapshot.level = buffer.getInt();
+			snapshot.width = buffer.getInt();
+			snapshot.height = buffer.getInt();
+			snapshot.paddleX = buffer.getInt();
+			snapshot.paddleY = buffer.getInt();
+			snapshot.direction = buffer.getInt();
+			snapshot.points = version >= 2 ? buffer.getInt() : 0;
+			snapshot.ballX = buffer.getDouble();
+			snapshot.ballY = buffer.getDouble();
+			snapshot.brickCount = buffer.getInt();
+			if (snapshot.brickCount < 0 || (snapshot.brickCount + 63) / 64 * 8 != buffer.remaining() - 4) {
+				throw new IOException("snapshot is damaged, the bricks don't match its size");
+			}
+			snapshot.alive = new long[(snapshot.brickCount + 63) / 64];
+			for (int i = 0; i < snapshot.alive.length; i++) {
+				snapshot.alive[i] = buffer.getLong();
+			}
+			return snapshot;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("snapshot is damaged, it ends too early");
+		}
+	}
+
+	// ---------restoring-------------------------
+
+	/**
+	 * Checks if the snapshot was taken of the level of the game, which has the
+	 * same number of bricks, and of a field of the same size.
+	 *
+	 * @param game
+	 *            The game with the bricks of the level loaded.
+	 * @return {@code true} if the snapshot can be restored in the game.
+	 */
+	public boolean fits(GameModel game) {
+		int bricks = 0;
+		if (game.getBrickStore() != null) {
+			bricks = game.getBrickStore().getBrickCount();
+		} else if (game.getBrickArray() != null) {
+			bricks = game.getBrickArray().length;
+		}
+		return fits(bricks, game.getWidth(), game.getHeight());
+	}
+
+	/**
+	 * Checks if the snapshot can be restored in a level with the given number of
+	 * bricks on a field of the given size, before the level is loaded.
+	 *
+	 * @param bricks
+	 *            The number of bricks of the level, see
+	 *            {@code BricksConfig.getBrickCount}.
+	 * @param fieldWidth
+	 *            The width of the field.
+	 * @param fieldHeight
+	 *            The height of the field.
+	 * @return {@code true} if the snapshot can be restored in the level.
+	 */
+	public boolean fits(int bricks, int fieldWidth, int fieldHeight) {
+		return bricks == brickCount && fieldWidth == width && fieldHeight == height;
+	}
+
+	/**
+	 * Checks if a brick of the level was alive when the snapshot was taken.
+	 *
+	 * @param brick
+	 *            The index of the brick in the level.
+	 * @return {@code true} if the brick was alive.
+	 */
+	public boolean isAlive(int brick) {
+		return brick < brickCount && (alive[brick >> 6] & 1L << brick) != 0;
+	}
+
+	// ---------Getters-------------------------
+
+	public int getLevel() {
+		return level;
+	}
+
+	public boolean isStarted() {
+		return started;
+	}
+
+	public boolean isPaused() {
+		return paused;
+	}
+
+	public boolean isAutoPlay() {
+		return autoPlay;
+	}
+
+	public int getPaddleX() {
+		return paddleX;
+	}
+
+	public int getPaddleY() {
+		return paddleY;
+	}
+
+	public int getDirection() {
+		return direction;
+	}
+
+	public int getPoints() {
+		return points;
+	}
+
+	public double getBallX() {
+		return ballX;
+	}
+
+	public double getBallY() {
+		return ballY;
+	}
+
+	public int getBrickCount() {
+		return brickCount;
+	}
+
+	/**
+	 * Counts the bricks which were alive when the snapshot was taken.
+	 *
+	 * @return the number of live bricks.
+	 */
+	public int getLiveCount() {
+		int count = 0;
+		for (long bits : alive) {
+			count += Long.bitCount(bits);
+		}
+		return count;
+	}
+}
@@ -0,0 +1,555 @@
+package project.breakout.model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+
+import project.breakout.controller.AutoPlayer;
+import project.breakout.controller.CollisionWith;
+import project.breakout.view.BreakoutBrick;
+
+/**
+ * Command line tool which plays every {@code levelN.properties} file of a
+ * directory many times with a bot and reports how long the levels take to
+ * clear, how often the ball is lost and which bricks are hit how often. The
+ * games are headless and played by the {@code BreakoutGame}, so they follow the
+ * rules of the game.
+ *
+ * The games run in parallel on a fork/join pool. Every game gets its own seed,
+ * which is derived from the seed of the run, the level and the number of the
+ * game, and the results are kept per game or summed up, so a run with the same
+ * seed gives the same results and checksum with any number of threads.
+ *
+ * Usage:
+ * LevelAnalyzer [levelDirectory] [--policy predict|follow] [--games n]
+ * [--seed n] [--threads n] [--max-seconds s] [--paddle-speed px]
+ * [--out file] [--heatmap file]
+ */
+public class LevelAnalyzer {
+	private static final String DEFAULT_DIRECTORY = "src/project/breakout/model"; //$NON-NLS-1$
+	private static final String DEFAULT_OUT = "level-analysis.csv"; //$NON-NLS-1$
+	private static final String DEFAULT_HEATMAP = "level-heatmap.csv"; //$NON-NLS-1$
+
+	private static final int FIELD_WIDTH = 700;
+	private static final int FIELD_HEIGHT = 500;
+
+	/**
+	 * The number of games a task plays without splitting them up further.
+	 */
+	private static final int GAMES_PER_TASK = 8;
+
+	private static final double[] PERCENTILES = { 0, 50, 90, 99, 100 };
+	private static final int HISTOGRAM_BUCKETS = 10;
+
+	/**
+	 * The heatmap is printed with the windows of the lighthouse.
+	 */
+	private static final int HEATMAP_COLUMNS = 28;
+	private static final int HEATMAP_ROWS = 14;
+	private static final String HEAT = " .:-=+*#%@"; //$NON-NLS-1$
+
+	/**
+	 * How the bot moves the paddle.
+	 */
+	public enum Policy {
+		/** the {@code AutoPlayer} predicts the ball and aims at the bricks */
+		PREDICT,
+		/** the paddle follows the ball with an offset, which changes at random */
+		FOLLOW
+	}
+
+	// options
+	private Policy policy = Policy.PREDICT;
+	private int games = 1000;
+	private long seed = 42;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int maxTicks = (int) (300 / FrameRunner.FRAME_TIME);
+	private int paddleSpeed = 0;
+	private Path out = Paths.get(DEFAULT_OUT);
+	private Path heatmap = Paths.get(DEFAULT_HEATMAP);
+
+	public static void main(String[] args) throws IOException {
+		LevelAnalyzer analyzer = new LevelAnalyzer();
+		Path directory = Paths.get(DEFAULT_DIRECTORY);
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--policy":
+				analyzer.policy = Policy.valueOf(args[++i].toUpperCase());
+				break;
+			case "--games":
+				analyzer.games = Integer.parseInt(args[++i]);
+				break;
+			case "--seed":
+				analyzer.seed = Long.parseLong(args[++i]);
+				break;
+			case "--threads":
+				analyzer.threads = Integer.parseInt(args[++i]);
+				break;
+			case "--max-seconds":
+				analyzer.maxTicks = (int) (Double.parseDouble(args[++i]) / FrameRunner.FRAME_TIME);
+				break;
+			case "--paddle-speed":
+				analyzer.paddleSpeed = Integer.parseInt(args[++i]);
+				break;
+			case "--out":
+				analyzer.out = Paths.get(args[++i]);
+				break;
+			case "--heatmap":
+				analyzer.heatmap = Paths.get(args[++i]);
+				break;
+			default:
+				if (args[i].startsWith("--")) {
+					System.out.println("unknown option " + args[i]);
+					System.out.println("usage: LevelAnalyzer [levelDirectory] [--policy predict|follow] [--games n] "
+							+ "[--seed n] [--threads n] [--max-seconds s] [--paddle-speed px] [--out file] "
+							+ "[--heatmap file]");
+					return;
+				}
+				directory = Paths.get(args[i]);
+			}
+		}
+		analyzer.analyzeDirectory(directory);
+	}
+
+	/**
+	 * Analyzes all levels in the given directory, ordered by their numbers.
+	 *
+	 * @param directory
+	 *            The directory containing the {@code levelN.properties} files.
+	 * @throws IOException
+	 *             if the directory or the results can't be read or written.
+	 */
+	public void analyzeDirectory(Path directory) throws IOException {
+		Map<Integer, Path> files = new TreeMap<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "level*.properties")) {
+			for (Path file : stream) {
+				Matcher matcher = LevelCompiler.LEVEL_FILE.matcher(file.getFileName().toString());
+				if (matcher.matches()) {
+					files.put(Integer.parseInt(matcher.group(1)), file);
+				}
+			}
+		}
+
+		System.out.println(files.size() + " levels, " + games + " games each, policy " + policy + ", seed " + seed
+				+ ", " + threads + " threads");
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try (Writer summary = Files.newBufferedWriter(out, StandardCharsets.UTF_8);
+				Writer hits = Files.newBufferedWriter(heatmap, StandardCharsets.UTF_8)) {
+			summary.write("level,bricks,games,cleared,clearP50,clearP90,clearP99,clearMax,clearMean,"
+					+ "lossesPerGame,gamesWithLoss,lossesPerMinute,checksum\n");
+			hits.write("level,brick,x,y,width,height,hits,hitsPerGame\n");
+
+			for (Map.Entry<Integer, Path> file : files.entrySet()) {
+				LevelData level;
+				try {
+					level = LevelCompiler.parseProperties(file.getKey(), file.getValue());
+				} catch (IOException | IllegalArgumentException e) {
+					System.out.println("could not parse " + file.getValue() + ": " + e.getMessage());
+					continue;
+				}
+				Analysis analysis = analyze(level, pool);
+				analysis.report();
+				analysis.write(summary, hits);
+			}
+		} finally {
+			pool.shutdown();
+		}
+		System.out.println("results written to " + out + " and " + heatmap);
+	}
+
+	/**
+	 * Plays all games of a level on the pool.
+	 *
+	 * @param level
+	 *            The level to play.
+	 * @param pool
+	 *            The pool running the games.
+	 * @return the results of the games.
+	 */
+	public Analysis analyze(LevelData level, ForkJoinPool pool) {
+		Analysis analysis = new Analysis(level);
+		long start = System.nanoTime();
+		analysis.hits = pool.invoke(new Games(analysis, 0, games));
+		analysis.nanos = System.nanoTime() - start;
+		return analysis;
+	}
+
+	/**
+	 * Derives the seed of a game from the seed of the run, so the games don't
+	 * depend on the order in which they are played.
+	 */
+	private static long gameSeed(long seed, int levelNumber, int game) {
+		long z = seed + levelNumber * 0x9E3779B97F4A7C15L + (game + 1) * 0xD1B54A32D192ED03L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	// ---------tasks-------------------------
+
+	/**
+	 * Plays a range of games. The range is split in halves until it is small
+	 * enough, the hits of the bricks are summed up when the halves are joined.
+	 */
+	@SuppressWarnings("serial")
+	private class Games extends RecursiveTask<long[]> {
+		private final Analysis analysis;
+		private final int from;
+		private final int to;
+
+		Games(Analysis analysis, int from, int to) {
+			this.analysis = analysis;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected long[] compute() {
+			if (to - from <= GAMES_PER_TASK) {
+				long[] hits = new long[analysis.level.getBrickCount()];
+				for (int game = from; game < to; game++) {
+					new Game(analysis, game, hits).play();
+				}
+				return hits;
+			}
+
+			int middle = (from + to) >>> 1;
+			Games left = new Games(analysis, from, middle);
+			left.fork();
+			long[] hits = new Games(analysis, middle, to).compute();
+			long[] leftHits = left.join();
+			for (int i = 0; i < hits.length; i++) {
+				hits[i] += leftHits[i];
+			}
+			return hits;
+		}
+	}
+
+	// ---------game-------------------------
+
+	/**
+	 * A headless game of one level. It ends when the level is cleared or after
+	 * the maximum number of ticks. A lost ball restarts the level like in the
+	 * {@code GameSession}.
+	 */
+	private class Game implements BreakoutGame.Listener {
+		private final Analysis analysis;
+		private final int game;
+		private final long[] hits;
+		private final Random random;
+
+		private final BreakoutGame breakout;
+		private final BallModel ball;
+		private final AutoPlayer autoPlayer = new AutoPlayer();
+
+		/**
+		 * The offset of the paddle to the ball of the follow policy.
+		 */
+		private double followOffset;
+		private boolean cleared = false;
+		private int losses = 0;
+
+		Game(Analysis analysis, int game, long[] hits) {
+			this.analysis = analysis;
+			this.game = game;
+			this.hits = hits;
+			this.random = new Random(gameSeed(seed, analysis.level.getLevelNumber(), game));
+			this.breakout = new BreakoutGame(FIELD_WIDTH, FIELD_HEIGHT, random, this);
+			this.ball = breakout.getBall();
+			breakout.addCollisionListener(autoPlayer);
+		}
+
+		void play() {
+			// the game starts with the paddle somewhere in the field
+			int paddleWidth = BreakoutGame.PADDLE_WIDTH;
+			initGame(paddleWidth / 2 + 1 + random.nextInt(FIELD_WIDTH - paddleWidth - 2));
+
+			int tick = 0;
+			while (!cleared && tick < maxTicks) {
+				movePaddle(policy == Policy.PREDICT ? autoPlayer.nextMouseX(breakout, ball)
+						: (int) Math.round(ball.getX() + ball.getRadius() + followOffset));
+				breakout.runFrame();
+				tick++;
+			}
+			analysis.ticks[game] = tick;
+			analysis.cleared[game] = cleared;
+			analysis.losses[game] = losses;
+		}
+
+		private void initGame(int mouseX) {
+			breakout.reset(mouseX);
+			if (analysis.large) {
+				breakout.setBrickStore(BrickStore.of(analysis.level));
+			} else {
+				breakout.setBrickArray(analysis.level.toBrickArray());
+			}
+			breakout.setStarted(true);
+			breakout.setRandomDirection();
+			followOffset = nextFollowOffset();
+		}
+
+		private double nextFollowOffset() {
+			return (random.nextDouble() * 2 - 1) * BreakoutGame.PADDLE_WIDTH * 0.4;
+		}
+
+		/**
+		 * Moves the paddle towards the mouse, at most by the speed of the paddle.
+		 */
+		private void movePaddle(int mouseX) {
+			int paddleHalf = BreakoutGame.PADDLE_WIDTH / 2;
+			int current = breakout.getPaddleX() + paddleHalf;
+			if (paddleSpeed > 0) {
+				mouseX = Math.max(current - paddleSpeed, Math.min(current + paddleSpeed, mouseX));
+			}
+			mouseX = Math.max(paddleHalf + 1, Math.min(FIELD_WIDTH - paddleHalf - 1, mouseX));
+			breakout.movePaddle(mouseX);
+		}
+
+		@Override
+		public void frameStarted() {
+		}
+
+		@Override
+		public void frameDone() {
+		}
+
+		@Override
+		public void collided(CollisionWith lastCollisionWith) {
+			if (!cleared && lastCollisionWith == CollisionWith.PADDLE) {
+				followOffset = nextFollowOffset();
+			}
+		}
+
+		@Override
+		public void brickDestroyed(int brick, BreakoutBrick removed) {
+			hits[brick]++;
+		}
+
+		@Override
+		public void ballLost() {
+			if (cleared) {
+				return;
+			}
+			losses++;
+			initGame(FIELD_WIDTH / 2);
+		}
+
+		@Override
+		public void levelDone() {
+			cleared = true;
+		}
+	}
+
+	// ---------results-------------------------
+
+	/**
+	 * The results of all games of a level. Every game writes its own entries of
+	 * the arrays, the hits of the bricks are summed up by the tasks.
+	 */
+	public class Analysis {
+		private final LevelData level;
+		private final boolean large;
+		private final int[] ticks = new int[games];
+		private final boolean[] cleared = new boolean[games];
+		private final int[] losses = new int[games];
+		private long[] hits;
+		private long nanos;
+
+		Analysis(LevelData level) {
+			this.level = level;
+			this.large = level.getBrickCount() > BricksConfig.LARGE_LEVEL_BRICKS;
+		}
+
+		/**
+		 * Gets the times the cleared games took, sorted.
+		 *
+		 * @return the times in seconds.
+		 */
+		public double[] getClearSeconds() {
+			double[] seconds = new double[games];
+			int count = 0;
+			for (int game = 0; game < games; game++) {
+				if (cleared[game]) {
+					seconds[count++] = ticks[game] * FrameRunner.FRAME_TIME;
+				}
+			}
+			seconds = Arrays.copyOf(seconds, count);
+			Arrays.sort(seconds);
+			return seconds;
+		}
+
+		public int getClearedCount() {
+			int count = 0;
+			for (boolean game : cleared) {
+				count += game ? 1 : 0;
+			}
+			return count;
+		}
+
+		public long getLosses() {
+			long sum = 0;
+			for (int game : losses) {
+				sum += game;
+			}
+			return sum;
+		}
+
+		public int getGamesWithLoss() {
+			int count = 0;
+			for (int game : losses) {
+				count += game > 0 ? 1 : 0;
+			}
+			return count;
+		}
+
+		public double getPlayedMinutes() {
+			long sum = 0;
+			for (int game : ticks) {
+				sum += game;
+			}
+			return sum * FrameRunner.FRAME_TIME / 60;
+		}
+
+		/**
+		 * Gets how often every brick was hit in all games.
+		 *
+		 * @return the hits by the index of the brick.
+		 */
+		public long[] getHits() {
+			return hits;
+		}
+
+		/**
+		 * Computes a checksum over the results of all games, which is the same for
+		 * the same seed with any number of threads.
+		 *
+		 * @return the checksum.
+		 */
+		public long getChecksum() {
+			long checksum = level.getLevelNumber();
+			for (int game = 0; game < games; game++) {
+				checksum = checksum * 31 + ticks[game];
+				checksum = checksum * 31 + losses[game];
+			}
+			for (long brick : hits) {
+				checksum = checksum * 31 + brick;
+			}
+			return checksum;
+		}
+
+		void report() {
+			double[] seconds = getClearSeconds();
+			System.out.printf("%nlevel %d: %d bricks, %d of %d games cleared in %.1f s%n", level.getLevelNumber(),
+					level.getBrickCount(), seconds.length, games, nanos / 1e9);
+
+			// time to clear
+			if (seconds.length > 0) {
+				System.out.print("  time to clear (s):");
+				for (double percentile : PERCENTILES) {
+					System.out.printf(" %s %.1f", percentile == 0 ? "min" : percentile == 100 ? "max" : "p"
+							+ (int) percentile, percentile(seconds, percentile));
+				}
+				System.out.printf(" mean %.1f%n", mean(seconds));
+				printHistogram(seconds);
+			}
+
+			// lost balls
+			System.out.printf("  lost balls: %.2f per game, %d games with a loss, %.2f per minute%n",
+					(double) getLosses() / games, getGamesWithLoss(), getLosses() / getPlayedMinutes());
+
+			printHeatmap();
+			System.out.printf("  checksum %016x%n", getChecksum());
+		}
+
+		private void printHistogram(double[] seconds) {
+			double min = seconds[0];
+			double width = Math.max((seconds[seconds.length - 1] - min) / HISTOGRAM_BUCKETS, FrameRunner.FRAME_TIME);
+			int[] buckets = new int[HISTOGRAM_BUCKETS];
+			for (double time : seconds) {
+				buckets[Math.min(HISTOGRAM_BUCKETS - 1, (int) ((time - min) / width))]++;
+			}
+			int most = Arrays.stream(buckets).max().getAsInt();
+			for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+				char[] bar = new char[(int) Math.round(40.0 * buckets[i] / most)];
+				Arrays.fill(bar, '#');
+				System.out.printf("  %7.1f s %6d %s%n", min + i * width, buckets[i], new String(bar));
+			}
+		}
+
+		/**
+		 * Prints the hits of the bricks summed up over the windows of the
+		 * lighthouse, the darkest character is the most hit window.
+		 */
+		private void printHeatmap() {
+			long[] cells = new long[HEATMAP_COLUMNS * HEATMAP_ROWS];
+			int lastRow = -1;
+			for (int brick = 0; brick < hits.length; brick++) {
+				int column = cell(level.getX(brick) + level.getWidth(brick) / 2, FIELD_WIDTH, HEATMAP_COLUMNS);
+				int row = cell(level.getY(brick) + level.getHeight(brick) / 2, FIELD_HEIGHT, HEATMAP_ROWS);
+				cells[row * HEATMAP_COLUMNS + column] += hits[brick];
+				lastRow = Math.max(lastRow, row);
+			}
+			long most = Math.max(1, Arrays.stream(cells).max().getAsLong());
+
+			System.out.println("  brick hits:");
+			for (int row = 0; row <= lastRow; row++) {
+				StringBuilder line = new StringBuilder("  |");
+				for (int column = 0; column < HEATMAP_COLUMNS; column++) {
+					long cell = cells[row * HEATMAP_COLUMNS + column];
+					line.append(cell == 0 ? ' ' : HEAT.charAt((int) (1 + (HEAT.length() - 2) * cell / most)));
+				}
+				System.out.println(line.append('|'));
+			}
+		}
+
+		void write(Writer summary, Writer heatmap) throws IOException {
+			double[] seconds = getClearSeconds();
+			summary.write(level.getLevelNumber() + "," + level.getBrickCount() + "," + games + "," + seconds.length
+					+ "," + percentile(seconds, 50) + "," + percentile(seconds, 90) + "," + percentile(seconds, 99)
+					+ "," + percentile(seconds, 100) + "," + mean(seconds) + "," + (double) getLosses() / games + ","
+					+ getGamesWithLoss() + "," + getLosses() / getPlayedMinutes() + ","
+					+ String.format("%016x", getChecksum()) + "\n");
+			for (int brick = 0; brick < hits.length; brick++) {
+				heatmap.write(level.getLevelNumber() + "," + brick + "," + level.getX(brick) + "," + level.getY(brick)
+						+ "," + level.getWidth(brick) + "," + level.getHeight(brick) + "," + hits[brick] + ","
+						+ (double) hits[brick] / games + "\n");
+			}
+		}
+	}
+
+	// ---------helper methods-------------------------
+
+	private static int cell(double position, int size, int cells) {
+		return Math.max(0, Math.min(cells - 1, (int) (position * cells / size)));
+	}
+
+	/**
+	 * Computes a percentile of sorted values with the nearest rank.
+	 */
+	private static double percentile(double[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return Double.NaN;
+		}
+		int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	private static double mean(double[] values) {
+		double sum = 0;
+		for (double value : values) {
+			sum += value;
+		}
+		return values.length > 0 ? sum / values.length : Double.NaN;
+	}
+}
@@ -0,0 +1,239 @@
+package project.breakout.model;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class caches the parsed levels. On first use it builds a manifest of
+ * all level files, so checking whether a level exists or is a large level
+ * doesn't need to touch any file. Levels can be prefetched on a background
+ * thread while another level is played, so starting the next level doesn't
+ * cost any parsing on the game thread. Large levels are cached as a
+ * {@code BrickStore}, which is read only once and copied for every game.
+ */
+public class LevelCache {
+	/**
+	 * Upper bound for the level numbers looked up in the manifest.
+	 */
+	private static final int MAX_LEVELS = 1000;
+
+	/**
+	 * The manifest of the levels or {@code null} if it wasn't built yet.
+	 */
+	private static volatile Manifest manifest;
+	private static final Map<Integer, Future<LevelData>> levels = new ConcurrentHashMap<>();
+	private static final Map<Integer, Future<BrickStore>> stores = new ConcurrentHashMap<>();
+
+	private static final ExecutorService prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "level-prefetcher");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private LevelCache() {
+	}
+
+	/**
+	 * Checks whether there is a level with the given number.
+	 *
+	 * @param levelNumber
+	 *            The number of the level.
+	 * @return {@code true} if the level exists, {@code false} if not.
+	 */
+	public static boolean levelExists(int levelNumber) {
+		return levelNumber >= 0 && levelNumber < getManifest().levelCount;
+	}
+
+	/**
+	 * Checks whether the level is a binary level with more than
+	 * {@code BricksConfig.LARGE_LEVEL_BRICKS} bricks. The flag is taken from the
+	 * manifest.
+	 *
+	 * @param levelNumber
+	 *            The number of the level.
+	 * @return {@code true} if the level is large, {@code false} if not or if it
+	 *         doesn't exist.
+	 */
+	public static boolean isLargeLevel(int levelNumber) {
+		return levelExists(levelNumber) && getManifest().large[levelNumber];
+	}
+
+	/**
+	 * Gets the number of levels. The levels are numbered from 0 to
+	 * {@code getLevelCount() - 1}.
+	 *
+	 * @return the number of levels.
+	 */
+	public static int getLevelCount() {
+		return getManifest().levelCount;
+	}
+
+	/**
+	 * Gets the parsed level with the given number. If the level is currently
+	 * prefetched, this method waits until the prefetching is done.
+	 *
+	 * @param levelNumber
+	 *            The number of the level.
+	 * @return The parsed level or {@code null} if the level doesn't exist or
+	 *         couldn't be loaded.
+	 */
+	public static LevelData getLevel(int levelNumber) {
+		if (!levelExists(levelNumber)) {
+			return null;
+		}
+
+		Future<LevelData> level = levels.get(levelNumber);
+		if (level == null) {
+			// not prefetched, so parse it on the calling thread
+			LevelData data = BricksConfig.parseLevel(levelNumber);
+			// a level which couldn't be parsed is tried again next time
+			if (data != null) {
+				levels.putIfAbsent(levelNumber, CompletableFuture.completedFuture(data));
+			}
+			return data;
+		}
+
+		return get(levels, levelNumber, level);
+	}
+
+	/**
+	 * Gets the {@code BrickStore} of a large level. The store is read on first
+	 * use and then kept, it must not be played itself, but copied with
+	 * {@code BrickStore.copy}. If the store is currently prefetched, this method
+	 * waits until the prefetching is done.
+	 *
+	 * @param levelNumber
+	 *            The number of the level.
+	 * @return The store or {@code null} if the level isn't a large level or
+	 *         couldn't be loaded.
+	 */
+	static BrickStore getBrickStore(int levelNumber) {
+		if (!isLargeLevel(levelNumber)) {
+			return null;
+		}
+
+		Future<BrickStore> store = stores.get(levelNumber);
+		if (store == null) {
+			// not prefetched, so read it on the calling thread
+			BrickStore data = BricksConfig.readBrickStore(levelNumber);
+			if (data != null) {
+				stores.putIfAbsent(levelNumber, CompletableFuture.completedFuture(data));
+			}
+			return data;
+		}
+		return get(stores, levelNumber, store);
+	}
+
+	/**
+	 * Starts loading the level with the given number on a background thread.
+	 * Large levels are read into a {@code BrickStore}, all other levels are
+	 * parsed. Nothing happens if the level doesn't exist or is already cached.
+	 *
+	 * @param levelNumber
+	 *            The number of the level.
+	 */
+	public static void prefetch(int levelNumber) {
+		if (isLargeLevel(levelNumber)) {
+			stores.computeIfAbsent(levelNumber, number -> CompletableFuture
+					.supplyAsync(() -> loaded(BricksConfig.readBrickStore(number), number), prefetcher));
+		} else if (levelExists(levelNumber)) {
+			levels.computeIfAbsent(levelNumber, number -> CompletableFuture
+					.supplyAsync(() -> loaded(BricksConfig.parseLevel(number), number), prefetcher));
+		}
+	}
+
+	/**
+	 * Fails the prefetching of a level which couldn't be loaded, so {@code get}
+	 * removes it from the cache.
+	 */
+	private static <T> T loaded(T data, int levelNumber) {
+		if (data == null) {
+			throw new IllegalStateException("level " + levelNumber + " couldn't be loaded");
+		}
+		return data;
+	}
+
+	/**
+	 * Removes all parsed levels and stores from the cache and rebuilds the
+	 * manifest on next use.
+	 */
+	public static synchronized void clear() {
+		levels.clear();
+		stores.clear();
+		manifest = null;
+	}
+
+	/**
+	 * Waits for a level which is loaded on the prefetching thread. A level whose
+	 * loading failed is removed from the cache, so it is tried again.
+	 */
+	private static <T> T get(Map<Integer, Future<T>> cache, int levelNumber, Future<T> level) {
+		try {
+			return level.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			System.out.println("could not prefetch level " + levelNumber + ": " + e.getCause());
+			cache.remove(levelNumber, level);
+			return null;
+		}
+	}
+
+	/**
+	 * Checks whether there is a properties or binary file for the level.
+	 */
+	private static boolean levelFileExists(int levelNumber) {
+		return BricksConfig.getLevelResource(levelNumber, BricksConfig.PROPERTIES_EXTENSION) != null
+				|| BricksConfig.getLevelResource(levelNumber, LevelFormat.FILE_EXTENSION) != null;
+	}
+
+	/**
+	 * Builds the manifest on first use. The levels are numbered consecutively, so
+	 * the first missing level file ends the list. Only the header of the binary
+	 * levels is read to find the large ones.
+	 *
+	 * @return the manifest.
+	 */
+	private static Manifest getManifest() {
+		Manifest current = manifest;
+		if (current == null) {
+			synchronized (LevelCache.class) {
+				current = manifest;
+				if (current == null) {
+					int count = 0;
+					while (count < MAX_LEVELS && levelFileExists(count)) {
+						count++;
+					}
+					boolean[] large = new boolean[count];
+					for (int level = 0; level < count; level++) {
+						large[level] = BricksConfig.readLargeLevel(level);
+					}
+					current = new Manifest(count, large);
+					manifest = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * The manifest of the levels. As the levels are numbered consecutively, it
+	 * contains the number of level files found and whether each level is a large
+	 * level.
+	 */
+	private static class Manifest {
+		final int levelCount;
+		final boolean[] large;
+
+		Manifest(int levelCount, boolean[] large) {
+			this.levelCount = levelCount;
+			this.large = large;
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package project.breakout.model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.PropertyResourceBundle;
+import java.util.ResourceBundle;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import project.breakout.view.BrickType;
+
+/**
+ * Command line tool which compiles the {@code levelN.properties} files into the
+ * binary format of {@code LevelFormat}. Every compiled level is read back and
+ * compared with the parsed properties, so a level is never shipped with data
+ * lost in the conversion.
+ *
+ * Usage:
+ * LevelCompiler [levelDirectory] (default: src/project/breakout/model)
+ * LevelCompiler --benchmark [brickCount] (default: 100000)
+ */
+public class LevelCompiler {
+	static final Pattern LEVEL_FILE = Pattern.compile("level(\\d+)\\.properties"); //$NON-NLS-1$
+	private static final String DEFAULT_DIRECTORY = "src/project/breakout/model"; //$NON-NLS-1$
+	private static final int BENCHMARK_BRICKS = 100000;
+	private static final int BENCHMARK_RUNS = 20;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0 && args[0].equals("--benchmark")) {
+			benchmark(args.length > 1 ? Integer.parseInt(args[1]) : BENCHMARK_BRICKS);
+		} else {
+			int failed = compileDirectory(Paths.get(args.length > 0 ? args[0] : DEFAULT_DIRECTORY));
+			if (failed > 0) {
+				System.exit(1);
+			}
+		}
+	}
+
+	/**
+	 * Compiles all levels in the given directory.
+	 *
+	 * @param directory
+	 *            The directory containing the {@code levelN.properties} files.
+	 * @return the number of levels which couldn't be compiled.
+	 * @throws IOException
+	 *             if the directory can't be read.
+	 */
+	public static int compileDirectory(Path directory) throws IOException {
+		int compiled = 0;
+		int failed = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "level*.properties")) {
+			for (Path file : files) {
+				Matcher matcher = LEVEL_FILE.matcher(file.getFileName().toString());
+				if (!matcher.matches()) {
+					continue;
+				}
+				int levelNumber = Integer.parseInt(matcher.group(1));
+				Path target = directory.resolve("level" + levelNumber + LevelFormat.FILE_EXTENSION);
+				try {
+					compile(levelNumber, file, target);
+					System.out.println("compiled " + file + " -> " + target);
+					compiled++;
+				} catch (IOException | IllegalArgumentException e) {
+					System.out.println("could not compile " + file + ": " + e.getMessage());
+					failed++;
+				}
+			}
+		}
+		System.out.println(compiled + " levels compiled, " + failed + " failed");
+		return failed;
+	}
+
+	/**
+	 * Compiles one level and verifies the result by reading it back.
+	 *
+	 * @param levelNumber
+	 *            The number of the level.
+	 * @param source
+	 *            The properties file of the level.
+	 * @param target
+	 *            The binary level file to write.
+	 * @throws IOException
+	 *             if a file can't be read or written or the round trip changed
+	 *             the level.
+	 * @throws IllegalArgumentException
+	 *             if the level can't be stored in the binary format.
+	 */
+	public static void compile(int levelNumber, Path source, Path target) throws IOException {
+		LevelData level = parseProperties(levelNumber, source);
+		LevelFormat.write(level, target);
+
+		if (!level.equals(LevelFormat.read(levelNumber, target))) {
+			Files.delete(target);
+			throw new IOException("round trip changed the level");
+		}
+	}
+
+	/**
+	 * Parses a level from a properties file.
+	 */
+	static LevelData parseProperties(int levelNumber, Path source) throws IOException {
+		try (InputStream in = Files.newInputStream(source)) {
+			ResourceBundle bundle = new PropertyResourceBundle(in);
+			return BricksConfig.parseLevel(levelNumber, bundle, source.toString());
+		}
+	}
+
+	// ---------benchmark-------------------------
+
+	/**
+	 * Compares loading a level with the given number of bricks from the
+	 * properties format and from the binary format.
+	 *
+	 * @param brickCount
+	 *            The number of bricks of the level.
+	 * @throws IOException
+	 *             if the temporary level files can't be written.
+	 */
+	private static void benchmark(int brickCount) throws IOException {
+		Path directory = Files.createTempDirectory("levels");
+		Path properties = directory.resolve("level0.properties");
+		Path binary = directory.resolve("level0" + LevelFormat.FILE_EXTENSION);
+		try {
+			writeGridLevel(properties, brickCount);
+			compile(0, properties, binary);
+			System.out.printf("%d bricks: properties %d bytes, binary %d bytes%n", brickCount, Files.size(properties),
+					Files.size(binary));
+
+			double propertiesMillis = 0;
+			double binaryMillis = 0;
+			for (int run = 0; run < BENCHMARK_RUNS; run++) {
+				long start = System.nanoTime();
+				parseProperties(0, properties);
+				long parsed = System.nanoTime();
+				LevelFormat.read(0, binary);
+				long read = System.nanoTime();
+
+				// the first half of the runs warms up the JIT
+				if (run >= BENCHMARK_RUNS / 2) {
+					propertiesMillis += (parsed - start) / 1e6;
+					binaryMillis += (read - parsed) / 1e6;
+				}
+			}
+			int measured = BENCHMARK_RUNS - BENCHMARK_RUNS / 2;
+			System.out.printf("properties: %.3f ms per load%n", propertiesMillis / measured);
+			System.out.printf("binary:     %.3f ms per load%n", binaryMillis / measured);
+		} finally {
+			Files.deleteIfExists(properties);
+			Files.deleteIfExists(binary);
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	/**
+	 * Writes a level in the properties format with bricks in a grid.
+	 */
+	private static void writeGridLevel(Path file, int brickCount) throws IOException {
+		String[] colors = { "red", "yellow", "green", "blue", "orange" };
+		BrickType[] types = BrickType.values();
+		int columns = 500;
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1)) {
+			for (int i = 0; i < brickCount; i++) {
+				int brickNumber = i + 1;
+				out.write(brickNumber + "x=" + (i % columns) * 42 % Short.MAX_VALUE + "\n");
+				out.write(brickNumber + "y=" + (i / columns) * 17 % Short.MAX_VALUE + "\n");
+				out.write(brickNumber + "width=40\n");
+				out.write(brickNumber + "height=15\n");
+				out.write(brickNumber + "color=" + colors[i % colors.length] + "\n");
+				out.write(brickNumber + "type=" + types[i % types.length] + "\n");
+			}
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package project.breakout.model;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import project.breakout.view.BreakoutBrick;
+import project.breakout.view.BrickType;
+
+/**
+ * Immutable representation of a parsed level configuration. It holds the
+ * attributes of every brick in plain arrays, so a level only has to be parsed
+ * once and can be turned into fresh {@code BreakoutBrick}s whenever the level
+ * is (re-)started.
+ */
+public final class LevelData {
+	private final int levelNumber;
+	private final double[] x;
+	private final double[] y;
+	private final double[] width;
+	private final double[] height;
+	private final Color[] color;
+	private final BrickType[] type;
+
+	/**
+	 * Constructor for the LevelData. The arrays are taken over without copying,
+	 * so the caller must not modify them afterwards.
+	 *
+	 * @param levelNumber
+	 *            The number of the level.
+	 * @param x
+	 *            The x-coordinates of the bricks.
+	 * @param y
+	 *            The y-coordinates of the bricks.
+	 * @param width
+	 *            The widths of the bricks.
+	 * @param height
+	 *            The heights of the bricks.
+	 * @param color
+	 *            The fill colors of the bricks, {@code null} for the standard
+	 *            color.
+	 * @param type
+	 *            The types of the bricks.
+	 */
+	LevelData(int levelNumber, double[] x, double[] y, double[] width, double[] height, Color[] color,
+			BrickType[] type) {
+		assert x.length == y.length && x.length == width.length && x.length == height.length
+				&& x.length == color.length && x.length == type.length : "brick attribute arrays differ in length";
+		this.levelNumber = levelNumber;
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		this.color = color;
+		this.type = type;
+	}
+
+	/**
+	 * Creates a new array of {@code BreakoutBrick}s for this level. Every call
+	 * returns new bricks, because the bricks are removed from the array while the
+	 * level is played.
+	 *
+	 * @return A brickArray representing the level.
+	 */
+	public BreakoutBrick[] toBrickArray() {
+		BreakoutBrick[] brickArray = new BreakoutBrick[x.length];
+		for (int i = 0; i < brickArray.length; i++) {
+			BreakoutBrick brick = new BreakoutBrick();
+			brick.setLocation(x[i], y[i]);
+			brick.setSize(width[i], height[i]);
+			if (color[i] != null) {
+				brick.setFillColor(color[i]);
+			} else {
+				brick.setColor(Color.BLACK);
+			}
+			brick.setBrickType(type[i]);
+			brickArray[i] = brick;
+		}
+		return brickArray;
+	}
+
+	/**
+	 * Two levels are equal if they have the same number and equal bricks in the
+	 * same order.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof LevelData)) {
+			return false;
+		}
+		LevelData other = (LevelData) obj;
+		return levelNumber == other.levelNumber && Arrays.equals(x, other.x) && Arrays.equals(y, other.y)
+				&& Arrays.equals(width, other.width) && Arrays.equals(height, other.height)
+				&& Arrays.equals(color, other.color) && Arrays.equals(type, other.type);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * levelNumber + Arrays.hashCode(x) + 17 * Arrays.hashCode(y);
+	}
+
+	// ---------Getters-------------------------
+
+	/**
+	 * @return the levelNumber
+	 */
+	public int getLevelNumber() {
+		return levelNumber;
+	}
+
+	/**
+	 * @return the number of bricks in the level.
+	 */
+	public int getBrickCount() {
+		return x.length;
+	}
+
+	/**
+	 * @param index
+	 *            The index of the brick.
+	 * @return the x-coordinate of the brick.
+	 */
+	public double getX(int index) {
+		return x[index];
+	}
+
+	/**
+	 * @param index
+	 *            The index of the brick.
+	 * @return the y-coordinate of the brick.
+	 */
+	public double getY(int index) {
+		return y[index];
+	}
+
+	/**
+	 * @param index
+	 *            The index of the brick.
+	 * @return the width of the brick.
+	 */
+	public double getWidth(int index) {
+		return width[index];
+	}
+
+	/**
+	 * @param index
+	 *            The index of the brick.
+	 * @return the height of the brick.
+	 */
+	public double getHeight(int index) {
+		return height[index];
+	}
+
+	/**
+	 * @param index
+	 *            The index of the brick.
+	 * @return the fill color of the brick, {@code null} for the standard color.
+	 */
+	public Color getColor(int index) {
+		return color[index];
+	}
+
+	/**
+	 * @param index
+	 *            The index of the brick.
+	 * @return the type of the brick.
+	 */
+	public BrickType getType(int index) {
+		return type[index];
+	}
+}
@@ -0,0 +1,380 @@
+package project.breakout.model;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import project.breakout.view.BrickType;
+
+/**
+ * This class specifies the compact binary level format. A binary level is
+ * stored next to the properties of the level as {@code levelN.brk} and is
+ * preferred by the {@code BricksConfig} when it exists. All values are stored
+ * big endian:
+ *
+ * magic (int32, "BRKL")
+ * version (int16)
+ * paletteSize (int16)
+ * brickCount (int32)
+ * palette (paletteSize * int32 ARGB)
+ * x (brickCount * int16)
+ * y (brickCount * int16)
+ * width (brickCount * int16)
+ * height (brickCount * int16)
+ * color (brickCount * uint8, 0 = standard color, i = palette entry i - 1)
+ * type (brickCount * uint8, ordinal of the BrickType-enum)
+ *
+ * The attributes are stored column by column, so a whole column can be copied
+ * into the arrays of the {@code LevelData} with a single bulk read.
+ */
+public class LevelFormat {
+	public static final String FILE_EXTENSION = ".brk"; //$NON-NLS-1$
+
+	private static final int MAGIC = 0x42524B4C; // "BRKL"
+	private static final short VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+
+	/**
+	 * The palette index 0 stands for the standard color, so 255 colors can be
+	 * stored.
+	 */
+	private static final int MAX_PALETTE_SIZE = 255;
+
+	private LevelFormat() {
+	}
+
+	// ---------reading-------------------------
+
+	/**
+	 * Reads a binary level from the given resource. Resources in the file system
+	 * are memory-mapped, others are read completely into a buffer.
+	 *
+	 * @param levelNumber
+	 *            The number of the level.
+	 * @param resource
+	 *            The URL of the binary level.
+	 * @return The level.
+	 * @throws IOException
+	 *             if the resource can't be read or isn't a valid binary level.
+	 */
+	public static LevelData read(int levelNumber, URL resource) throws IOException {
+		return read(levelNumber, map(resource));
+	}
+
+	/**
+	 * Reads a binary level from a file by memory-mapping it.
+	 *
+	 * @param levelNumber
+	 *            The number of the level.
+	 * @param file
+	 *            The binary level file.
+	 * @return The level.
+	 * @throws IOException
+	 *             if the file can't be read or isn't a valid binary level.
+	 */
+	public static LevelData read(int levelNumber, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return read(levelNumber, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Reads a binary level from the given buffer.
+	 *
+	 * @param levelNumber
+	 *            The number of the level.
+	 * @param buffer
+	 *            The buffer positioned at the beginning of the level.
+	 * @return The level.
+	 * @throws IOException
+	 *             if the buffer doesn't contain a valid binary level.
+	 */
+	public static LevelData read(int levelNumber, ByteBuffer buffer) throws IOException {
+		int brickCount = readHeader(buffer);
+		int paletteSize = buffer.getShort(6) & 0xFFFF;
+
+		Color[] palette = new Color[paletteSize + 1];
+		for (int i = 1; i <= paletteSize; i++) {
+			palette[i] = new Color(buffer.getInt(), true);
+		}
+
+		short[] column = new short[brickCount];
+		double[] x = readColumn(buffer, column);
+		double[] y = readColumn(buffer, column);
+		double[] width = readColumn(buffer, column);
+		double[] height = readColumn(buffer, column);
+
+		byte[] indices = new byte[brickCount];
+		buffer.get(indices);
+		Color[] color = new Color[brickCount];
+		for (int i = 0; i < brickCount; i++) {
+			int index = indices[i] & 0xFF;
+			if (index > paletteSize) {
+				throw new IOException("Color of brick " + i + " is not in the palette");
+			}
+			color[i] = palette[index];
+		}
+
+		buffer.get(indices);
+		BrickType[] types = BrickType.values();
+		BrickType[] type = new BrickType[brickCount];
+		for (int i = 0; i < brickCount; i++) {
+			int ordinal = indices[i] & 0xFF;
+			if (ordinal >= types.length) {
+				throw new IOException("Type of brick " + i + " is unknown");
+			}
+			type[i] = types[ordinal];
+		}
+
+		return new LevelData(levelNumber, x, y, width, height, color, type);
+	}
+
+	/**
+	 * Reads a binary level from the given resource directly into a
+	 * {@code BrickStore}, without creating any objects per brick.
+	 *
+	 * @param resource
+	 *            The URL of the binary level.
+	 * @return The store containing the bricks of the level.
+	 * @throws IOException
+	 *             if the resource can't be read or isn't a valid binary level.
+	 */
+	public static BrickStore readStore(URL resource) throws IOException {
+		ByteBuffer buffer = map(resource);
+		int brickCount = readHeader(buffer);
+		int paletteSize = buffer.getShort(6) & 0xFFFF;
+
+		int[] palette = new int[paletteSize + 1];
+		for (int i = 1; i <= paletteSize; i++) {
+			palette[i] = buffer.getInt();
+		}
+
+		// the columns are read with absolute gets, brick by brick
+		int xColumn = buffer.position();
+		int yColumn = xColumn + brickCount * 2;
+		int widthColumn = yColumn + brickCount * 2;
+		int heightColumn = widthColumn + brickCount * 2;
+		int colorColumn = heightColumn + brickCount * 2;
+		int typeColumn = colorColumn + brickCount;
+		BrickType[] types = BrickType.values();
+
+		BrickStore.Builder builder = new BrickStore.Builder(brickCount);
+		for (int i = 0; i < brickCount; i++) {
+			int colorIndex = buffer.get(colorColumn + i) & 0xFF;
+			int ordinal = buffer.get(typeColumn + i) & 0xFF;
+			if (colorIndex > paletteSize || ordinal >= types.length) {
+				throw new IOException("Brick " + i + " has an unknown color or type");
+			}
+			builder.add(buffer.getShort(xColumn + i * 2), buffer.getShort(yColumn + i * 2),
+					buffer.getShort(widthColumn + i * 2), buffer.getShort(heightColumn + i * 2), palette[colorIndex],
+					types[ordinal]);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Reads the number of bricks from the header of a binary level without reading
+	 * the bricks.
+	 *
+	 * @param resource
+	 *            The URL of the binary level.
+	 * @return the number of bricks.
+	 * @throws IOException
+	 *             if the resource can't be read or isn't a valid binary level.
+	 */
+	public static int readBrickCount(URL resource) throws IOException {
+		try (InputStream in = resource.openStream()) {
+			byte[] header = new byte[HEADER_SIZE];
+			int read = 0;
+			while (read < HEADER_SIZE) {
+				int n = in.read(header, read, HEADER_SIZE - read);
+				if (n < 0) {
+					throw new IOException("Not a binary level");
+				}
+				read += n;
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(header);
+			if (buffer.getInt(0) != MAGIC) {
+				throw new IOException("Not a binary level");
+			}
+			return buffer.getInt(8);
+		}
+	}
+
+	/**
+	 * Checks the header of a binary level and positions the buffer after it.
+	 *
+	 * @param buffer
+	 *            The buffer positioned at the beginning of the level.
+	 * @return the number of bricks.
+	 * @throws IOException
+	 *             if the buffer doesn't contain a valid binary level.
+	 */
+	private static int readHeader(ByteBuffer buffer) throws IOException {
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a binary level");
+		}
+		short version = buffer.getShort();
+		if (version != VERSION) {
+			throw new IOException("Unsupported level version " + version);
+		}
+		int paletteSize = buffer.getShort() & 0xFFFF;
+		int brickCount = buffer.getInt();
+		if (paletteSize > MAX_PALETTE_SIZE || brickCount < 0
+				|| buffer.remaining() != paletteSize * 4L + brickCount * 10L) {
+			throw new IOException("Corrupt binary level");
+		}
+		return brickCount;
+	}
+
+	/**
+	 * Opens a resource as buffer. Resources in the file system are memory-mapped,
+	 * others are read completely.
+	 */
+	private static ByteBuffer map(URL resource) throws IOException {
+		if ("file".equals(resource.getProtocol())) {
+			try (FileChannel channel = FileChannel.open(Paths.get(resource.toURI()), StandardOpenOption.READ)) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			} catch (URISyntaxException e) {
+				throw new IOException("Invalid level resource " + resource, e);
+			}
+		}
+
+		try (InputStream in = resource.openStream()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] chunk = new byte[8192];
+			for (int read = in.read(chunk); read >= 0; read = in.read(chunk)) {
+				out.write(chunk, 0, read);
+			}
+			return ByteBuffer.wrap(out.toByteArray());
+		}
+	}
+
+	/**
+	 * Reads one column of int16 values with a bulk read.
+	 *
+	 * @param buffer
+	 *            The buffer positioned at the beginning of the column.
+	 * @param column
+	 *            Array used for the bulk read, its length is the length of the
+	 *            column.
+	 * @return the values of the column.
+	 */
+	private static double[] readColumn(ByteBuffer buffer, short[] column) {
+		buffer.asShortBuffer().get(column);
+		buffer.position(buffer.position() + column.length * 2);
+
+		double[] values = new double[column.length];
+		for (int i = 0; i < column.length; i++) {
+			values[i] = column[i];
+		}
+		return values;
+	}
+
+	// ---------writing-------------------------
+
+	/**
+	 * Writes the level to a binary level file.
+	 *
+	 * @param level
+	 *            The level to write.
+	 * @param file
+	 *            The binary level file.
+	 * @throws IOException
+	 *             if the file can't be written.
+	 * @throws IllegalArgumentException
+	 *             if the level can't be stored in the binary format, eg because a
+	 *             coordinate doesn't fit into an int16.
+	 */
+	public static void write(LevelData level, Path file) throws IOException {
+		Files.write(file, toBytes(level).array());
+	}
+
+	/**
+	 * Encodes the level in the binary format.
+	 *
+	 * @param level
+	 *            The level to encode.
+	 * @return buffer containing the binary level.
+	 * @throws IllegalArgumentException
+	 *             if the level can't be stored in the binary format.
+	 */
+	public static ByteBuffer toBytes(LevelData level) {
+		int brickCount = level.getBrickCount();
+
+		// collect the palette
+		Map<Color, Integer> palette = new LinkedHashMap<>();
+		byte[] colorIndex = new byte[brickCount];
+		for (int i = 0; i < brickCount; i++) {
+			Color color = level.getColor(i);
+			if (color != null) {
+				Integer index = palette.get(color);
+				if (index == null) {
+					if (palette.size() == MAX_PALETTE_SIZE) {
+						throw new IllegalArgumentException("Level uses more than " + MAX_PALETTE_SIZE + " colors");
+					}
+					index = palette.size() + 1;
+					palette.put(color, index);
+				}
+				colorIndex[i] = (byte) index.intValue();
+			}
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + palette.size() * 4 + brickCount * 10);
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putShort((short) palette.size());
+		buffer.putInt(brickCount);
+		for (Color color : palette.keySet()) {
+			buffer.putInt(color.getRGB());
+		}
+
+		for (int i = 0; i < brickCount; i++) {
+			buffer.putShort(toShort(level.getX(i), "x", i));
+		}
+		for (int i = 0; i < brickCount; i++) {
+			buffer.putShort(toShort(level.getY(i), "y", i));
+		}
+		for (int i = 0; i < brickCount; i++) {
+			buffer.putShort(toShort(level.getWidth(i), "width", i));
+		}
+		for (int i = 0; i < brickCount; i++) {
+			buffer.putShort(toShort(level.getHeight(i), "height", i));
+		}
+		buffer.put(colorIndex);
+		for (int i = 0; i < brickCount; i++) {
+			buffer.put((byte) level.getType(i).ordinal());
+		}
+
+		assert !buffer.hasRemaining() : "binary level size was computed wrong";
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Converts an attribute of a brick to an int16.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the value is no integer or doesn't fit into an int16.
+	 */
+	private static short toShort(double value, String attribute, int brick) {
+		if (value != Math.rint(value) || value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+			throw new IllegalArgumentException(
+					"The " + attribute + " of brick " + brick + " can't be stored as int16, was " + value);
+		}
+		return (short) value;
+	}
+}
@@ -0,0 +1,223 @@
+package project.breakout.model;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import project.breakout.view.BrickType;
+
+/**
+ * This class generates levels procedurally. The generated levels are
+ * reproducible: the same pattern, brick count, field and seed always give the
+ * same level. They are meant as large inputs for stress tests and benchmarks
+ * of the collision detection and the views, so the bricks get mixed sizes,
+ * colors and types.
+ *
+ * Usage:
+ * LevelGenerator pattern brickCount seed targetFile
+ * eg: LevelGenerator GRID 100000 42 level4.brk
+ */
+public class LevelGenerator {
+
+	/**
+	 * The patterns in which the bricks can be arranged.
+	 */
+	public enum Pattern {
+		/** every cell holds a brick, some bricks span two cells */
+		GRID,
+		/** rows get shorter to the top, new pyramids are stacked below */
+		PYRAMID,
+		/** every cell holds a brick with a probability of 50 percent */
+		RANDOM_FILL,
+		/** bricks fill every cell without any gaps */
+		DENSE_WALL
+	}
+
+	/**
+	 * The ratio of width to height of the standard brick of 40*15 pixels.
+	 */
+	private static final double BRICK_RATIO = 40.0 / 15.0;
+	private static final int MAX_BRICK_HEIGHT = 15;
+	private static final int GAP = 2;
+
+	private static final Color[] COLORS = { Color.RED, Color.ORANGE, Color.YELLOW, Color.GREEN, Color.CYAN,
+			Color.BLUE, Color.MAGENTA, null };
+
+	private final Random random;
+	private final int columns;
+	private final int cellWidth;
+	private final int cellHeight;
+
+	private double[] x;
+	private double[] y;
+	private double[] width;
+	private double[] height;
+	private Color[] color;
+	private BrickType[] type;
+	private int brickCount;
+
+	/**
+	 * Constructor for the LevelGenerator.
+	 */
+	private LevelGenerator(int brickCount, int fieldWidth, int fieldHeight, long seed) {
+		this.random = new Random(seed);
+
+		// the cells are chosen as large as possible to fit all bricks into the field
+		double cellArea = (double) fieldWidth * fieldHeight / brickCount;
+		cellHeight = (int) Math.max(1, Math.min(MAX_BRICK_HEIGHT, Math.sqrt(cellArea / BRICK_RATIO)));
+		cellWidth = (int) Math.max(2, cellHeight * BRICK_RATIO);
+		columns = Math.max(1, fieldWidth / cellWidth);
+
+		x = new double[brickCount];
+		y = new double[brickCount];
+		width = new double[brickCount];
+		height = new double[brickCount];
+		color = new Color[brickCount];
+		type = new BrickType[brickCount];
+	}
+
+	/**
+	 * Generates a level.
+	 *
+	 * @param pattern
+	 *            The pattern of the bricks.
+	 * @param brickCount
+	 *            The number of bricks in the level.
+	 * @param fieldWidth
+	 *            The width of the field in pixels the bricks are placed in.
+	 * @param fieldHeight
+	 *            The height of the field in pixels the bricks should fit in. If
+	 *            the bricks can't be smaller, the field grows downwards.
+	 * @param seed
+	 *            The seed of the random generator.
+	 * @return The generated level.
+	 */
+	public static LevelData generate(Pattern pattern, int brickCount, int fieldWidth, int fieldHeight, long seed) {
+		if (brickCount < 0 || fieldWidth <= 0 || fieldHeight <= 0) {
+			throw new IllegalArgumentException("brickCount, fieldWidth and fieldHeight must be positive");
+		}
+
+		LevelGenerator generator = new LevelGenerator(Math.max(1, brickCount), fieldWidth, fieldHeight, seed);
+		switch (pattern) {
+		case GRID:
+			generator.grid(brickCount);
+			break;
+		case PYRAMID:
+			generator.pyramid(brickCount);
+			break;
+		case RANDOM_FILL:
+			generator.randomFill(brickCount);
+			break;
+		case DENSE_WALL:
+			generator.denseWall(brickCount);
+			break;
+		}
+		return generator.toLevel(-1);
+	}
+
+	/**
+	 * Generates a level for the standard field of the game of 700*250 pixels.
+	 *
+	 * @param pattern
+	 *            The pattern of the bricks.
+	 * @param brickCount
+	 *            The number of bricks in the level.
+	 * @param seed
+	 *            The seed of the random generator.
+	 * @return The generated level.
+	 */
+	public static LevelData generate(Pattern pattern, int brickCount, long seed) {
+		return generate(pattern, brickCount, 700, 250, seed);
+	}
+
+	// ---------patterns-------------------------
+
+	private void grid(int count) {
+		for (int cell = 0; brickCount < count; cell++) {
+			int column = cell % columns;
+
+			// every tenth brick spans two cells
+			if (column < columns - 1 && random.nextInt(10) == 0) {
+				addBrick(column, cell / columns, 2, true);
+				cell++;
+			} else {
+				addBrick(column, cell / columns, 1, true);
+			}
+		}
+	}
+
+	private void pyramid(int count) {
+		int row = 0;
+		while (brickCount < count) {
+			for (int step = 0; step <= columns / 2 && brickCount < count; step++, row++) {
+				for (int column = columns / 2 - step; column <= columns / 2 + step && brickCount < count; column++) {
+					if (column >= 0 && column < columns) {
+						addBrick(column, row, 1, true);
+					}
+				}
+			}
+		}
+	}
+
+	private void randomFill(int count) {
+		for (int cell = 0; brickCount < count; cell++) {
+			if (random.nextBoolean()) {
+				addBrick(cell % columns, cell / columns, 1, true);
+			}
+		}
+	}
+
+	private void denseWall(int count) {
+		for (int cell = 0; brickCount < count; cell++) {
+			addBrick(cell % columns, cell / columns, 1, false);
+		}
+	}
+
+	// ---------helper methods-------------------------
+
+	/**
+	 * Adds a brick with random color and type in the given cell.
+	 *
+	 * @param column
+	 *            The column of the cell.
+	 * @param row
+	 *            The row of the cell.
+	 * @param cells
+	 *            The number of cells the brick spans.
+	 * @param withGap
+	 *            {@code true} if there should be a gap to the next bricks.
+	 */
+	private void addBrick(int column, int row, int cells, boolean withGap) {
+		int gap = (withGap && cellHeight > GAP * 2) ? GAP : 0;
+		x[brickCount] = column * cellWidth;
+		y[brickCount] = row * cellHeight;
+		width[brickCount] = cells * cellWidth - gap;
+		height[brickCount] = cellHeight - gap;
+		color[brickCount] = COLORS[random.nextInt(COLORS.length)];
+
+		// mostly standard bricks, some special ones
+		int typeRoll = random.nextInt(100);
+		type[brickCount] = (typeRoll < 80) ? BrickType.STANDARD
+				: (typeRoll < 95) ? BrickType.SPARKLE_BRICK : BrickType.BRICK_OF_LOVE;
+		brickCount++;
+	}
+
+	private LevelData toLevel(int levelNumber) {
+		return new LevelData(levelNumber, Arrays.copyOf(x, brickCount), Arrays.copyOf(y, brickCount),
+				Arrays.copyOf(width, brickCount), Arrays.copyOf(height, brickCount), Arrays.copyOf(color, brickCount),
+				Arrays.copyOf(type, brickCount));
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4) {
+			System.out.println("Usage: LevelGenerator pattern brickCount seed targetFile");
+			System.out.println("patterns: " + Arrays.toString(Pattern.values()));
+			System.exit(1);
+		}
+		LevelData level = generate(Pattern.valueOf(args[0]), Integer.parseInt(args[1]), Long.parseLong(args[2]));
+		LevelFormat.write(level, Paths.get(args[3]));
+		System.out.println("generated " + level.getBrickCount() + " bricks into " + args[3]);
+	}
+}
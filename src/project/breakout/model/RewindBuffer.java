@@ -0,0 +1,288 @@
+package project.breakout.model;
+
+import project.breakout.view.BreakoutBrick;
+
+/**
+ * A ring of the last frames of a game, which the game can be rewound to. Every
+ * frame keeps the ball, the paddle, the points and the bricks destroyed in it; every
+ * {@code KEYFRAME_INTERVAL} frames and after the bricks were loaded again, eg
+ * for the next level, a keyframe keeps the level and which of its bricks are
+ * alive. The state of a frame is the keyframe before it plus the bricks
+ * destroyed since then.
+ *
+ * All arrays are allocated by the constructor for the configured window, so
+ * recording a frame allocates nothing and the memory doesn't grow with the
+ * length of the game. Only a keyframe of a level with more bricks than any
+ * level before enlarges the bitset of its slot.
+ *
+ * The buffer is not thread-safe, the game records and rewinds it under its own
+ * lock.
+ */
+public class RewindBuffer {
+	/**
+	 * The frames between two keyframes, one second of the timer of the game.
+	 */
+	public static final int KEYFRAME_INTERVAL = 40;
+
+	/**
+	 * The number of destroyed bricks kept per frame of the window on average.
+	 * More bricks shorten the window.
+	 */
+	private static final int DESTROYED_PER_FRAME = 2;
+
+	/**
+	 * The number of keyframes kept in addition to the regular ones, for the
+	 * keyframes of new levels.
+	 */
+	private static final int EXTRA_KEYFRAMES = 8;
+
+	private final int capacity;
+
+	// the frames, frame f is kept in slot f % capacity
+	private final double[] ballX;
+	private final double[] ballY;
+	private final int[] direction;
+	private final int[] paddleX;
+	private final int[] paddleY;
+	private final boolean[] started;
+	private final int[] points;
+	/** the number of bricks destroyed until the end of the frame */
+	private final long[] destroyedEnd;
+
+	// the keyframes, keyframe k is kept in slot k % length
+	private final long[] keyframeFrame;
+	private final int[] keyframeLevel;
+	private final int[] keyframeWidth;
+	private final int[] keyframeHeight;
+	private final int[] keyframeBricks;
+	private final long[][] keyframeAlive;
+	private long keyframes = 0;
+	private boolean keyframeRequested = true;
+
+	// the destroyed bricks, brick d is kept in slot d % length
+	private final int[] destroyed;
+	private long destroyedCount = 0;
+
+	/**
+	 * The newest frame, the frames are counted from 1.
+	 */
+	private long frames = 0;
+
+	/**
+	 * Constructor for the RewindBuffer.
+	 *
+	 * @param capacity
+	 *            The number of frames which can be rewound, at least one
+	 *            interval of the keyframes.
+	 */
+	public RewindBuffer(int capacity) {
+		capacity = Math.max(capacity, KEYFRAME_INTERVAL);
+		this.capacity = capacity;
+		ballX = new double[capacity];
+		ballY = new double[capacity];
+		direction = new int[capacity];
+		paddleX = new int[capacity];
+		paddleY = new int[capacity];
+		started = new boolean[capacity];
+		points = new int[capacity];
+		destroyedEnd = new long[capacity];
+
+		int keyframeSlots = capacity / KEYFRAME_INTERVAL + EXTRA_KEYFRAMES;
+		keyframeFrame = new long[keyframeSlots];
+		keyframeLevel = new int[keyframeSlots];
+		keyframeWidth = new int[keyframeSlots];
+		keyframeHeight = new int[keyframeSlots];
+		keyframeBricks = new int[keyframeSlots];
+		keyframeAlive = new long[keyframeSlots][];
+		for (int i = 0; i < keyframeSlots; i++) {
+			keyframeAlive[i] = new long[0];
+		}
+		destroyed = new int[capacity * DESTROYED_PER_FRAME];
+	}
+
+	// ---------recording-------------------------
+
+	/**
+	 * Called when a brick was destroyed in the current frame.
+	 *
+	 * @param brick
+	 *            The index of the brick in the level.
+	 */
+	public void brickDestroyed(int brick) {
+		destroyed[(int) (destroyedCount % destroyed.length)] = brick;
+		destroyedCount++;
+	}
+
+	/**
+	 * Called when the bricks were loaded again, eg for the next level, so the
+	 * next frame is recorded with a keyframe.
+	 */
+	public void requestKeyframe() {
+		keyframeRequested = true;
+	}
+
+	/**
+	 * Records the state of the game at the end of a frame.
+	 *
+	 * @param game
+	 *            The game.
+	 * @param ball
+	 *            The ball of the game.
+	 * @param level
+	 *            The current level of the game.
+	 * @param points
+	 *            The points of the current run.
+	 * @param gameStarted
+	 *            If the game is started.
+	 */
+	public void record(GameModel game, BallModel ball, int level, int points, boolean gameStarted) {
+		frames++;
+		int slot = slot(frames);
+		ballX[slot] = ball.getX();
+		ballY[slot] = ball.getY();
+		direction[slot] = ball.getDirection();
+		paddleX[slot] = game.getPaddleX();
+		paddleY[slot] = game.getPaddleY();
+		started[slot] = gameStarted;
+		this.points[slot] = points;
+		destroyedEnd[slot] = destroyedCount;
+
+		if (keyframeRequested || keyframes == 0
+				|| frames - keyframeFrame[keyframeSlot(keyframes - 1)] >= KEYFRAME_INTERVAL) {
+			recordKeyframe(game, level);
+			keyframeRequested = false;
+		}
+	}
+
+	private void recordKeyframe(GameModel game, int level) {
+		int k = keyframeSlot(keyframes);
+		BrickStore store = game.getBrickStore();
+		BreakoutBrick[] bricks = game.getBrickArray();
+		int brickCount = store != null ? store.getBrickCount() : bricks != null ? bricks.length : 0;
+
+		int words = (brickCount + 63) / 64;
+		if (keyframeAlive[k].length < words) {
+			keyframeAlive[k] = new long[words];
+		}
+		long[] alive = keyframeAlive[k];
+		for (int i = 0; i < words; i++) {
+			alive[i] = 0;
+		}
+		for (int i = 0; i < brickCount; i++) {
+			if (store != null ? store.isAlive(i) : bricks[i] != null) {
+				alive[i >> 6] |= 1L << i;
+			}
+		}
+
+		keyframeFrame[k] = frames;
+		keyframeLevel[k] = level;
+		keyframeWidth[k] = game.getWidth();
+		keyframeHeight[k] = game.getHeight();
+		keyframeBricks[k] = brickCount;
+		keyframes++;
+	}
+
+	// ---------rewinding-------------------------
+
+	/**
+	 * Gets the oldest frame the game can be rewound to. It is the oldest keyframe
+	 * whose frames and destroyed bricks are all still kept.
+	 *
+	 * @return the frame or a frame after the newest one if there is no frame to
+	 *         rewind to.
+	 */
+	public long getOldestFrame() {
+		long oldestKept = Math.max(1, frames - capacity + 1);
+		long oldestKeyframe = Math.max(0, keyframes - keyframeFrame.length);
+		for (long k = oldestKeyframe; k < keyframes; k++) {
+			long frame = keyframeFrame[keyframeSlot(k)];
+			if (frame >= oldestKept && destroyedCount - destroyedEnd[slot(frame)] <= destroyed.length) {
+				return frame;
+			}
+		}
+		return frames + 1;
+	}
+
+	public long getNewestFrame() {
+		return frames;
+	}
+
+	/**
+	 * Reconstructs the state of the game at the end of a frame from the keyframe
+	 * before it and the bricks destroyed since then.
+	 *
+	 * @param frame
+	 *            The frame, between the oldest and the newest frame.
+	 * @param autoPlay
+	 *            If the {@code AutoPlayer} plays, which isn't recorded.
+	 * @return the state as a snapshot or {@code null} if the frame isn't kept.
+	 */
+	public GameSnapshot snapshotAt(long frame, boolean autoPlay) {
+		if (frame < getOldestFrame() || frame > frames) {
+			return null;
+		}
+		long k = keyframes - 1;
+		while (keyframeFrame[keyframeSlot(k)] > frame) {
+			k--;
+		}
+		int keyframe = keyframeSlot(k);
+		long[] alive = new long[(keyframeBricks[keyframe] + 63) / 64];
+		System.arraycopy(keyframeAlive[keyframe], 0, alive, 0, alive.length);
+		for (long d = destroyedEnd[slot(keyframeFrame[keyframe])]; d < destroyedEnd[slot(frame)]; d++) {
+			int brick = destroyed[(int) (d % destroyed.length)];
+			alive[brick >> 6] &= ~(1L << brick);
+		}
+
+		int slot = slot(frame);
+		return new GameSnapshot(keyframeLevel[keyframe], started[slot], false, autoPlay, keyframeWidth[keyframe],
+				keyframeHeight[keyframe], paddleX[slot], paddleY[slot], direction[slot], points[slot], ballX[slot],
+				ballY[slot], keyframeBricks[keyframe], alive);
+	}
+
+	/**
+	 * Drops the frames after a frame the game was rewound to, so the game is
+	 * recorded on from there.
+	 *
+	 * @param frame
+	 *            The frame the game was rewound to.
+	 */
+	public void truncate(long frame) {
+		if (frame < 1 || frame >= frames) {
+			return;
+		}
+		destroyedCount = destroyedEnd[slot(frame)];
+		while (keyframes > 0 && keyframeFrame[keyframeSlot(keyframes - 1)] > frame) {
+			keyframes--;
+		}
+		frames = frame;
+	}
+
+	/**
+	 * Drops all frames, eg in the endless mode, which can't be rewound.
+	 */
+	public void clear() {
+		frames = 0;
+		keyframes = 0;
+		destroyedCount = 0;
+		keyframeRequested = true;
+	}
+
+	private int slot(long frame) {
+		return (int) (frame % capacity);
+	}
+
+	private int keyframeSlot(long keyframe) {
+		return (int) (keyframe % keyframeFrame.length);
+	}
+
+	// ---------Getters-------------------------
+
+	/**
+	 * Gets the number of frames which can be rewound at most.
+	 *
+	 * @return the capacity.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+}
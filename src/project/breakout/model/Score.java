@@ -0,0 +1,68 @@
+package project.breakout.model;
+
+/**
+ * The score of a run, which lasts from the start of a game until the ball is
+ * lost. Every destroyed brick scores {@code BRICK_POINTS}, a level which is
+ * done scores {@code LEVEL_POINTS} times its number counted from 1, so the
+ * later levels are worth more.
+ *
+ * The score is changed by the game thread only.
+ */
+public class Score {
+	public static final int BRICK_POINTS = 10;
+	public static final int LEVEL_POINTS = 100;
+
+	private int points = 0;
+	private boolean rewound = false;
+
+	/**
+	 * Called when a brick was destroyed.
+	 */
+	public void brickDestroyed() {
+		points += BRICK_POINTS;
+	}
+
+	/**
+	 * Called when a level is done.
+	 *
+	 * @param level
+	 *            The number of the level, counted from 0.
+	 */
+	public void levelDone(int level) {
+		points += LEVEL_POINTS * (level + 1);
+	}
+
+	/**
+	 * Sets the points of a game which was restored or rewound.
+	 *
+	 * @param points
+	 *            The points of the game.
+	 * @param rewound
+	 *            {@code true} if the game was rewound, which marks the run.
+	 */
+	public void restore(int points, boolean rewound) {
+		this.points = points;
+		this.rewound |= rewound;
+	}
+
+	/**
+	 * Starts a new run with no points.
+	 */
+	public void reset() {
+		points = 0;
+		rewound = false;
+	}
+
+	// ---------Getters-------------------------
+
+	public int getPoints() {
+		return points;
+	}
+
+	/**
+	 * @return {@code true} if the run was rewound, {@code false} if not.
+	 */
+	public boolean isRewound() {
+		return rewound;
+	}
+}
@@ -0,0 +1,473 @@
+package project.breakout.replay;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import project.breakout.model.BallModel;
+import project.breakout.model.BrickStore;
+import project.breakout.model.GameModel;
+import project.breakout.view.BreakoutBrick;
+
+/**
+ * The binary format of a replay: a header with the seed and the size of the
+ * field followed by the events of the game in the order they happened.
+ *
+ * Every event starts with a varint which holds the number of ticks since the
+ * previous event in the upper bits and the type of the event in the lower
+ * four bits, so an event in the same or the next tick takes one byte. The
+ * events are applied after the tick they are stamped with and before the next
+ * one. The position of the mouse is stored as the zigzag encoded difference to
+ * the previous position, which is a single byte for most moves.
+ *
+ * A game which was restored from a {@code GameSnapshot} has the snapshot in the
+ * header, the replay starts with it.
+ *
+ * <pre>
+ * header:  "BRPL" version:byte seed:long checkEvery width height level startMillis:varlong
+ *          snapshotLength snapshot:byte[]
+ * event:   (ticks &lt;&lt; 4 | type) [arguments]
+ * </pre>
+ *
+ * A log which ends inside an event, eg after the game was killed, is read up
+ * to the last complete event.
+ */
+public final class ReplayLog {
+	static final byte[] MAGIC = { 'B', 'R', 'P', 'L' };
+	static final int VERSION = 2;
+
+	// the types of the events
+	/** The paddle moved under the mouse, argument: the zigzag delta of x. */
+	public static final int MOUSE = 0;
+	/** The game was started, eg by a click or the bot. */
+	public static final int START = 1;
+	/** The game was paused. */
+	public static final int PAUSE = 2;
+	/** The game was continued, which also starts it. */
+	public static final int CONTINUE = 3;
+	/** A key was typed, argument: the character. */
+	public static final int KEY = 4;
+	/** The window was resized, arguments: the width and the height. */
+	public static final int RESIZE = 5;
+	/** The endless mode was switched, argument: 1 for on, 0 for off. */
+	public static final int ENDLESS = 6;
+	/** The mouse was clicked into the field. */
+	public static final int CLICK = 7;
+	/** The checksum of the state after the tick, argument: 2 bytes. */
+	public static final int CHECK = 8;
+	/** The game was rewound, argument: the number of frames. */
+	public static final int REWIND = 9;
+
+	private static final int TYPE_BITS = 4;
+	private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+	private ReplayLog() {
+	}
+
+	// ---------checksum-------------------------
+
+	/**
+	 * Hashes the state of a game which the next ticks depend on: the ball, the
+	 * paddle and the number of bricks left.
+	 *
+	 * @param game
+	 *            The game.
+	 * @param ball
+	 *            The ball of the game.
+	 * @return the hash of the state.
+	 */
+	public static long stateHash(GameModel game, BallModel ball) {
+		long hash = Double.doubleToLongBits(ball.getX());
+		hash = hash * 31 + Double.doubleToLongBits(ball.getY());
+		hash = hash * 31 + ball.getDirection();
+		hash = hash * 31 + game.getPaddleX();
+		hash = hash * 31 + game.getPaddleY();
+		hash = hash * 31 + liveBricks(game);
+		return mix(hash);
+	}
+
+	/**
+	 * Adds the state after a tick to the running checksum of a game, so a
+	 * checkpoint covers all ticks before it.
+	 *
+	 * @param checksum
+	 *            The checksum after the previous tick.
+	 * @param stateHash
+	 *            The hash of the state after this tick.
+	 * @return the new checksum.
+	 */
+	public static long nextChecksum(long checksum, long stateHash) {
+		return mix(checksum * 31 + stateHash);
+	}
+
+	/**
+	 * Shortens a checksum to the 16 bits stored in a checkpoint.
+	 *
+	 * @param checksum
+	 *            The checksum.
+	 * @return the stored bits.
+	 */
+	public static int checkBits(long checksum) {
+		return (int) (checksum ^ (checksum >>> 16) ^ (checksum >>> 32) ^ (checksum >>> 48)) & 0xffff;
+	}
+
+	private static int liveBricks(GameModel game) {
+		BrickStore store = game.getBrickStore();
+		if (store != null) {
+			return store.getLiveCount();
+		}
+		int bricks = 0;
+		BreakoutBrick[] brickArray = game.getBrickArray();
+		if (brickArray != null) {
+			for (BreakoutBrick brick : brickArray) {
+				if (brick != null) {
+					bricks++;
+				}
+			}
+		}
+		return bricks;
+	}
+
+	/**
+	 * The finalizer of splitmix64, which spreads every bit of the input over the
+	 * output.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	// ---------encoding-------------------------
+
+	/**
+	 * The header of a replay.
+	 */
+	public static class Header {
+		public long seed;
+		public int checkEvery;
+		public int width;
+		public int height;
+		public int level;
+		public long startMillis;
+		/** the game the replay starts with or {@code null} for a new game */
+		public byte[] snapshot;
+	}
+
+	/**
+	 * Encodes the header and the events of a replay into a growing buffer. The
+	 * encoder is not thread-safe.
+	 */
+	public static class Encoder {
+		private byte[] buffer = new byte[256];
+		private int size = 0;
+		private long lastTick = 0;
+		private int lastMouseX = 0;
+
+		/**
+		 * Writes the header, which is the first thing of a replay.
+		 *
+		 * @param header
+		 *            The header.
+		 */
+		public void header(Header header) {
+			for (byte b : MAGIC) {
+				put(b);
+			}
+			put((byte) VERSION);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				put((byte) (header.seed >>> shift));
+			}
+			putVarint(header.checkEvery);
+			putVarint(header.width);
+			putVarint(header.height);
+			putVarint(header.level);
+			putVarint(header.startMillis);
+			if (header.snapshot != null) {
+				putVarint(header.snapshot.length);
+				for (byte b : header.snapshot) {
+					put(b);
+				}
+			} else {
+				putVarint(0);
+			}
+		}
+
+		/**
+		 * Writes an event without arguments.
+		 *
+		 * @param tick
+		 *            The number of ticks done before the event.
+		 * @param type
+		 *            The type of the event.
+		 */
+		public void event(long tick, int type) {
+			putVarint((tick - lastTick) << TYPE_BITS | type);
+			lastTick = tick;
+		}
+
+		/**
+		 * Writes an event with one unsigned argument, eg a key.
+		 */
+		public void event(long tick, int type, int argument) {
+			event(tick, type);
+			putVarint(argument);
+		}
+
+		/**
+		 * Writes the new position of the mouse.
+		 */
+		public void mouse(long tick, int mouseX) {
+			event(tick, MOUSE);
+			int delta = mouseX - lastMouseX;
+			putVarint((delta << 1) ^ (delta >> 31));
+			lastMouseX = mouseX;
+		}
+
+		/**
+		 * Writes the checksum of the state after a tick.
+		 */
+		public void check(long tick, int checkBits) {
+			event(tick, CHECK);
+			put((byte) (checkBits >>> 8));
+			put((byte) checkBits);
+		}
+
+		/**
+		 * Writes the new size of the window.
+		 */
+		public void resize(long tick, int width, int height) {
+			event(tick, RESIZE);
+			putVarint(width);
+			putVarint(height);
+		}
+
+		private void putVarint(long value) {
+			while ((value & ~0x7fL) != 0) {
+				put((byte) ((value & 0x7f) | 0x80));
+				value >>>= 7;
+			}
+			put((byte) value);
+		}
+
+		private void put(byte b) {
+			if (size == buffer.length) {
+				buffer = Arrays.copyOf(buffer, size * 2);
+			}
+			buffer[size++] = b;
+		}
+
+		/**
+		 * Gets the bytes written since the last {@code clear}.
+		 *
+		 * @return the buffer, which is valid up to {@code size}.
+		 */
+		public byte[] getBuffer() {
+			return buffer;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Empties the buffer. The previous tick and mouse position are kept, so the
+		 * next events continue the deltas.
+		 */
+		public void clear() {
+			size = 0;
+		}
+	}
+
+	// ---------decoding-------------------------
+
+	/**
+	 * Reads the header and the events of a replay one after the other.
+	 */
+	public static class Reader {
+		private final byte[] data;
+		private int position = 0;
+		private final Header header = new Header();
+
+		// the current event
+		private long tick = 0;
+		private int type;
+		private int argument;
+		private int argument2;
+		private int mouseX = 0;
+		private boolean corrupt = false;
+
+		/**
+		 * Constructor for the Reader, which reads the header.
+		 *
+		 * @param data
+		 *            The replay.
+		 * @throws IOException
+		 *             if the data is no replay or of another version.
+		 */
+		public Reader(byte[] data) throws IOException {
+			this.data = data;
+			if (data.length < MAGIC.length + 9) {
+				throw new IOException("no replay, the file is too short");
+			}
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (data[i] != MAGIC[i]) {
+					throw new IOException("no replay, the magic number is missing");
+				}
+			}
+			position = MAGIC.length;
+			int version = data[position++];
+			if (version < 1 || version > VERSION) {
+				throw new IOException("replay version " + version + " is not supported");
+			}
+			long seed = 0;
+			for (int i = 0; i < 8; i++) {
+				seed = seed << 8 | (data[position++] & 0xff);
+			}
+			header.seed = seed;
+			header.checkEvery = (int) varint();
+			header.width = (int) varint();
+			header.height = (int) varint();
+			header.level = (int) varint();
+			header.startMillis = varint();
+			int snapshotLength = version >= 2 ? (int) varint() : 0;
+			if (snapshotLength > 0 && snapshotLength <= data.length - position) {
+				header.snapshot = Arrays.copyOfRange(data, position, position + snapshotLength);
+				position += snapshotLength;
+			} else if (snapshotLength != 0) {
+				position = data.length + 1;
+			}
+			if (position > data.length) {
+				throw new IOException("no replay, the header is incomplete");
+			}
+		}
+
+		/**
+		 * Reads the next event.
+		 *
+		 * @return {@code false} at the end of the replay.
+		 */
+		public boolean next() {
+			int start = position;
+			long head = varint();
+			type = (int) (head & TYPE_MASK);
+			long nextTick = tick + (head >>> TYPE_BITS);
+			switch (type) {
+			case MOUSE:
+				int zigzag = (int) varint();
+				argument = mouseX + ((zigzag >>> 1) ^ -(zigzag & 1));
+				break;
+			case KEY:
+			case ENDLESS:
+			case REWIND:
+				argument = (int) varint();
+				break;
+			case CHECK:
+				argument = nextByte() << 8 | nextByte();
+				break;
+			case RESIZE:
+				argument = (int) varint();
+				argument2 = (int) varint();
+				break;
+			case START:
+			case PAUSE:
+			case CONTINUE:
+			case CLICK:
+				break;
+			default:
+				// no event of this version, the rest of the log is unreadable
+				position = start;
+				corrupt = true;
+				return false;
+			}
+			if (position > data.length) {
+				// the log ends inside the event
+				position = start;
+				return false;
+			}
+			tick = nextTick;
+			if (type == MOUSE) {
+				mouseX = argument;
+			}
+			return true;
+		}
+
+		/**
+		 * Reads an unsigned byte, a read past the end moves the position past the
+		 * end.
+		 */
+		private int nextByte() {
+			if (position >= data.length) {
+				position = data.length + 1;
+				return 0;
+			}
+			return data[position++] & 0xff;
+		}
+
+		/**
+		 * Reads a varint, a read past the end moves the position past the end.
+		 */
+		private long varint() {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				if (position >= data.length) {
+					position = data.length + 1;
+					return 0;
+				}
+				byte b = data[position++];
+				value |= (long) (b & 0x7f) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			return value;
+		}
+
+		// ---------Getters-------------------------
+
+		public Header getHeader() {
+			return header;
+		}
+
+		/**
+		 * Checks if the reading stopped at an unknown event instead of the end of
+		 * the log.
+		 *
+		 * @return {@code true} if the log is corrupt after the last event read.
+		 */
+		public boolean isCorrupt() {
+			return corrupt;
+		}
+
+		/**
+		 * Gets the number of ticks done before the current event.
+		 *
+		 * @return the tick of the event.
+		 */
+		public long getTick() {
+			return tick;
+		}
+
+		public int getType() {
+			return type;
+		}
+
+		/**
+		 * Gets the first argument of the current event: the position of the mouse,
+		 * the key, the width, the endless mode or the checksum.
+		 *
+		 * @return the argument.
+		 */
+		public int getArgument() {
+			return argument;
+		}
+
+		/**
+		 * Gets the second argument of the current event, the height of a resize.
+		 *
+		 * @return the argument.
+		 */
+		public int getArgument2() {
+			return argument2;
+		}
+	}
+}
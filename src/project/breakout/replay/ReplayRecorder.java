@@ -0,0 +1,295 @@
+package project.breakout.replay;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import project.breakout.log.Log;
+import project.breakout.model.BallModel;
+import project.breakout.model.GameModel;
+
+/**
+ * This class records the desktop game into a {@code ReplayLog}, so a bug can
+ * be reproduced with the {@code Replayer}. The model reports its inputs and
+ * the end of every frame; the recorder encodes them into a buffer and a
+ * writer thread appends the buffer to the file once a second, so the game
+ * thread never waits for the disk.
+ *
+ * The moves of the mouse between two frames are merged into the last one. A
+ * checksum of the state runs over all frames and is stored every
+ * {@code checkEvery} frames, which keeps the log of an evening in the
+ * kilobytes; a check every frame finds the exact frame of a divergence.
+ *
+ * The file is set with the system property "breakout.replay.file", the
+ * default is "breakout-replay.bin" and an empty name switches the recording
+ * off. The interval of the checks is set with "breakout.replay.checkEvery",
+ * the default is 8.
+ */
+public class ReplayRecorder {
+	private static final String FILE_PROPERTY = "breakout.replay.file"; //$NON-NLS-1$
+	private static final String CHECK_EVERY_PROPERTY = "breakout.replay.checkEvery"; //$NON-NLS-1$
+	private static final String DEFAULT_FILE = "breakout-replay.bin"; //$NON-NLS-1$
+	private static final int DEFAULT_CHECK_EVERY = 8;
+
+	private static final long FLUSH_MILLIS = 1000;
+
+	private static final Log.Site WRITE_FAILED = Log.site("replay", Log.Level.WARN, 1); //$NON-NLS-1$
+
+	// the recording, guarded by the class
+	private static ReplayLog.Encoder encoder;
+	private static int checkEvery;
+	private static long frames = 0;
+	private static long checksum = 0;
+	private static boolean inFrame = false;
+	private static int pendingMouseX = -1;
+
+	private static OutputStream out;
+	private static Thread writer;
+	private static final Object writeLock = new Object();
+
+	private ReplayRecorder() {
+	}
+
+	/**
+	 * Starts the recording with the configured file. Calling it again does
+	 * nothing.
+	 *
+	 * @param seed
+	 *            The seed of the {@code RandomGenerator} of the game.
+	 * @param width
+	 *            The width of the field.
+	 * @param height
+	 *            The height of the field.
+	 * @param level
+	 *            The level the game starts with.
+	 * @param snapshot
+	 *            The encoded {@code GameSnapshot} the game was restored from or
+	 *            {@code null} for a new game.
+	 */
+	public static synchronized void start(long seed, int width, int height, int level, byte[] snapshot) {
+		if (writer != null) {
+			return;
+		}
+		String file = System.getProperty(FILE_PROPERTY, DEFAULT_FILE).trim();
+		if (file.isEmpty()) {
+			return;
+		}
+		checkEvery = DEFAULT_CHECK_EVERY;
+		try {
+			checkEvery = Math.max(1, Integer.parseInt(
+					System.getProperty(CHECK_EVERY_PROPERTY, Integer.toString(DEFAULT_CHECK_EVERY)).trim()));
+		} catch (NumberFormatException e) {
+			System.out.println("invalid replay check interval, using " + DEFAULT_CHECK_EVERY);
+		}
+		try {
+			out = Files.newOutputStream(Paths.get(file));
+		} catch (IOException e) {
+			WRITE_FAILED.log("replay not recorded: {}", e.toString());
+			return;
+		}
+
+		ReplayLog.Header header = new ReplayLog.Header();
+		header.seed = seed;
+		header.checkEvery = checkEvery;
+		header.width = width;
+		header.height = height;
+		header.level = level;
+		header.startMillis = System.currentTimeMillis();
+		header.snapshot = snapshot;
+		encoder = new ReplayLog.Encoder();
+		encoder.header(header);
+
+		writer = new Thread(ReplayRecorder::write, "replay-writer");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(ReplayRecorder::flush, "replay-flush"));
+	}
+
+	// ---------events of the game-------------------------
+
+	/**
+	 * Called by the model when the paddle moved under the mouse.
+	 *
+	 * @param mouseX
+	 *            The x-position of the mouse.
+	 */
+	public static synchronized void mouseMoved(int mouseX) {
+		if (encoder != null) {
+			pendingMouseX = mouseX;
+		}
+	}
+
+	/**
+	 * Called when an event without arguments happened, eg the game started.
+	 *
+	 * @param type
+	 *            The type of the event of the {@code ReplayLog}.
+	 */
+	public static synchronized void record(int type) {
+		if (encoder != null) {
+			flushMouse();
+			encoder.event(eventTick(), type);
+		}
+	}
+
+	/**
+	 * Called by the controller when a key was typed.
+	 *
+	 * @param key
+	 *            The character of the key.
+	 */
+	public static synchronized void keyTyped(char key) {
+		if (encoder != null) {
+			flushMouse();
+			encoder.event(eventTick(), ReplayLog.KEY, key);
+		}
+	}
+
+	/**
+	 * Called by the model when the endless mode was switched.
+	 *
+	 * @param endlessMode
+	 *            {@code true} if the endless mode is on.
+	 */
+	public static synchronized void endlessMode(boolean endlessMode) {
+		if (encoder != null) {
+			flushMouse();
+			encoder.event(eventTick(), ReplayLog.ENDLESS, endlessMode ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Called by the model when the game was rewound.
+	 *
+	 * @param frames
+	 *            The number of frames the game was rewound by.
+	 */
+	public static synchronized void rewound(int frames) {
+		if (encoder != null) {
+			flushMouse();
+			encoder.event(eventTick(), ReplayLog.REWIND, frames);
+		}
+	}
+
+	/**
+	 * Called by the model when the window was resized.
+	 *
+	 * @param width
+	 *            The new width.
+	 * @param height
+	 *            The new height.
+	 */
+	public static synchronized void resized(int width, int height) {
+		if (encoder != null) {
+			flushMouse();
+			encoder.resize(eventTick(), width, height);
+		}
+	}
+
+	/**
+	 * Called by the model before every frame. The events until the end of the
+	 * frame happen inside it, so they are replayed after it.
+	 */
+	public static synchronized void frameStarted() {
+		if (encoder != null) {
+			flushMouse();
+			inFrame = true;
+		}
+	}
+
+	/**
+	 * Called by the model after every frame, adds its state to the checksum.
+	 *
+	 * @param game
+	 *            The game.
+	 * @param ball
+	 *            The ball of the game.
+	 */
+	public static synchronized void frameDone(GameModel game, BallModel ball) {
+		if (encoder == null) {
+			return;
+		}
+		inFrame = false;
+		frames++;
+		checksum = ReplayLog.nextChecksum(checksum, ReplayLog.stateHash(game, ball));
+		if (frames % checkEvery == 0) {
+			encoder.check(frames, ReplayLog.checkBits(checksum));
+		}
+	}
+
+	/**
+	 * The events before a frame are replayed after the frames done, the events
+	 * inside a frame after this frame.
+	 */
+	private static long eventTick() {
+		return inFrame ? frames + 1 : frames;
+	}
+
+	private static void flushMouse() {
+		if (pendingMouseX >= 0) {
+			encoder.mouse(eventTick(), pendingMouseX);
+			pendingMouseX = -1;
+		}
+	}
+
+	// ---------writing-------------------------
+
+	private static void write() {
+		while (true) {
+			try {
+				Thread.sleep(FLUSH_MILLIS);
+			} catch (InterruptedException e) {
+				return;
+			}
+			flush();
+		}
+	}
+
+	/**
+	 * Writes the events recorded so far to the file, eg before the program
+	 * exits. The moves of the mouse since the last frame are written with the
+	 * next event.
+	 */
+	public static void flush() {
+		// the chunks are copied and written in turn, so they keep their order
+		synchronized (writeLock) {
+			byte[] bytes;
+			synchronized (ReplayRecorder.class) {
+				if (encoder == null || encoder.size() == 0) {
+					return;
+				}
+				bytes = Arrays.copyOf(encoder.getBuffer(), encoder.size());
+				encoder.clear();
+			}
+			try {
+				out.write(bytes);
+				out.flush();
+			} catch (IOException e) {
+				WRITE_FAILED.log("replay stopped: {}", e.toString());
+				synchronized (ReplayRecorder.class) {
+					encoder = null;
+				}
+			}
+		}
+	}
+
+	// ---------Getters-------------------------
+
+	/**
+	 * @return {@code true} if the game is recorded, {@code false} if not.
+	 */
+	public static synchronized boolean isRecording() {
+		return encoder != null;
+	}
+
+	/**
+	 * Gets the number of frames recorded so far.
+	 *
+	 * @return the number of frames.
+	 */
+	public static synchronized long getFrames() {
+		return frames;
+	}
+}
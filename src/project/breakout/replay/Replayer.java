@@ -0,0 +1,249 @@
+package project.breakout.replay;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import de.cau.infprogoo.lighthouse.LighthouseDisplay;
+import project.breakout.model.GameSnapshot;
+import project.breakout.model.RewindBuffer;
+import project.breakout.server.GameSession;
+
+/**
+ * Command line tool which plays a game recorded by the {@code ReplayRecorder}
+ * again. The game runs headless in a {@code GameSession} with the recorded
+ * seed and starts with the {@code GameSnapshot} the recorded game was restored
+ * from, if any. The inputs are fed in between the frames they were recorded
+ * between and the checksum of the state is compared at every checkpoint of the
+ * log.
+ * The replay stops at the first checkpoint which differs and reports the
+ * frames the divergence happened in.
+ *
+ * The frames run as fast as possible or, with {@code --realtime}, at the rate
+ * of the timer of the game. The endless mode and resizing the window are not
+ * replayed, a replay stops at them.
+ *
+ * Usage: Replayer replayFile [--realtime]
+ */
+public class Replayer {
+	/**
+	 * The time between two frames in real time, like the timer of the
+	 * {@code BreakoutModel}.
+	 */
+	private static final long FRAME_MILLIS = 1000 / 40;
+
+	private static final String[] EVENT_NAMES = { "mouse", "start", "pause", "continue", "key", "resize",
+			"endless", "click", "check", "rewind" };
+
+	/**
+	 * The frames the replay keeps to be rewound, ten minutes, which is more than
+	 * a game keeps.
+	 */
+	private static final int REWIND_FRAMES = 10 * 60 * 40;
+
+	private final ReplayLog.Reader reader;
+	private final ReplayLog.Header header;
+	private final GameSession session;
+	private boolean realtime = false;
+
+	// the result of the replay
+	private long frames = 0;
+	private long checksum = 0;
+	private long checksPassed = 0;
+	private final long[] events = new long[EVENT_NAMES.length];
+	private long divergedAt = -1;
+	private String stoppedBecause;
+
+	/**
+	 * Constructor for the Replayer.
+	 *
+	 * @param data
+	 *            The recorded game.
+	 * @throws IOException
+	 *             if the data is no replay.
+	 */
+	public Replayer(byte[] data) throws IOException {
+		reader = new ReplayLog.Reader(data);
+		header = reader.getHeader();
+		session = new GameSession(0, new LighthouseDisplay("replay", ""), header.width, header.height, //$NON-NLS-1$ //$NON-NLS-2$
+				header.level, header.seed);
+		session.setRewindBuffer(new RewindBuffer(REWIND_FRAMES));
+		if (header.snapshot != null && !session.restore(GameSnapshot.decode(header.snapshot))) {
+			throw new IOException("the restored game doesn't fit the level " + header.level);
+		}
+	}
+
+	/**
+	 * Main method of the Replayer.
+	 *
+	 * @param args
+	 *            The replay file and the options.
+	 * @throws IOException
+	 *             if the file can't be read or is no replay.
+	 */
+	public static void main(String[] args) throws IOException {
+		String file = null;
+		boolean realtime = false;
+		for (String arg : args) {
+			if (arg.equals("--realtime")) {
+				realtime = true;
+			} else if (arg.startsWith("--") || file != null) {
+				file = null;
+				break;
+			} else {
+				file = arg;
+			}
+		}
+		if (file == null) {
+			System.out.println("usage: Replayer replayFile [--realtime]");
+			return;
+		}
+
+		Replayer replayer = new Replayer(Files.readAllBytes(Paths.get(file)));
+		replayer.setRealtime(realtime);
+		long start = System.nanoTime();
+		boolean same = replayer.replay();
+		replayer.printResult(System.nanoTime() - start);
+		if (!same) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Replays the whole log or until the state diverges.
+	 *
+	 * @return {@code true} if all checkpoints matched, {@code false} if the state
+	 *         diverged.
+	 */
+	public boolean replay() {
+		long start = System.nanoTime();
+		while (reader.next()) {
+			while (frames < reader.getTick()) {
+				runFrame(start);
+			}
+			events[reader.getType()]++;
+			if (!apply()) {
+				break;
+			}
+		}
+		if (reader.isCorrupt()) {
+			stoppedBecause = "the log is corrupt after the event of frame " + reader.getTick();
+		}
+		return divergedAt < 0;
+	}
+
+	private void runFrame(long start) {
+		if (realtime) {
+			long wait = start + TimeUnit.MILLISECONDS.toNanos(frames * FRAME_MILLIS) - System.nanoTime();
+			if (wait > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		session.tick();
+		frames++;
+		checksum = ReplayLog.nextChecksum(checksum, ReplayLog.stateHash(session.getGame(), session.getBall()));
+	}
+
+	/**
+	 * Applies the current event of the log to the session.
+	 *
+	 * @return {@code false} if the replay has to stop.
+	 */
+	private boolean apply() {
+		switch (reader.getType()) {
+		case ReplayLog.MOUSE:
+			session.updateMouseLocation(reader.getArgument());
+			session.applyInput();
+			return true;
+		case ReplayLog.START:
+		case ReplayLog.CONTINUE:
+			session.startGame();
+			session.applyInput();
+			return true;
+		case ReplayLog.RESIZE:
+			if (reader.getArgument() == header.width && reader.getArgument2() == header.height) {
+				return true;
+			}
+			stoppedBecause = "the window was resized to " + reader.getArgument() + "x" + reader.getArgument2();
+			return false;
+		case ReplayLog.ENDLESS:
+			stoppedBecause = "the endless mode is not replayed";
+			return false;
+		case ReplayLog.REWIND:
+			if (session.rewind(reader.getArgument())) {
+				return true;
+			}
+			stoppedBecause = "the game was rewound further than the replay keeps";
+			return false;
+		case ReplayLog.CHECK:
+			if (ReplayLog.checkBits(checksum) == reader.getArgument()) {
+				checksPassed++;
+				return true;
+			}
+			divergedAt = frames;
+			return false;
+		default:
+			// pauses, clicks and keys don't change the state, their effects are
+			// recorded as events of their own
+			return true;
+		}
+	}
+
+	/**
+	 * Prints the result of the replay.
+	 *
+	 * @param nanos
+	 *            The duration of the replay.
+	 */
+	public void printResult(long nanos) {
+		System.out.println("replay of seed " + header.seed + ", field " + header.width + "x" + header.height
+				+ ", level " + header.level + ", checked every " + header.checkEvery + " frames");
+		StringBuilder counts = new StringBuilder();
+		for (int i = 0; i < events.length; i++) {
+			if (events[i] > 0) {
+				counts.append(' ').append(EVENT_NAMES[i]).append(' ').append(events[i]);
+			}
+		}
+		System.out.println("events:" + counts);
+		double seconds = nanos / 1e9;
+		System.out.println("frames " + frames + " in " + String.format("%.3f", seconds) + " s ("
+				+ Math.round(frames / Math.max(seconds, 1e-9)) + " frames/s), checks passed " + checksPassed);
+
+		if (divergedAt >= 0) {
+			long first = Math.max(1, divergedAt - header.checkEvery + 1);
+			System.out.println("DIVERGED at frame " + divergedAt
+					+ (first < divergedAt ? ", the first divergent frame is one of " + first + ".." + divergedAt : ""));
+			System.out.println("state: ball at " + session.getBallX() + "/" + session.getBallY() + " direction "
+					+ session.getBall().getDirection() + ", paddle at " + session.getPaddleX() + ", level "
+					+ session.getCurrentLevel() + ", started " + session.isGameStarted());
+		} else if (stoppedBecause != null) {
+			System.out.println("stopped at frame " + frames + ": " + stoppedBecause);
+		} else {
+			System.out.println("replay matches the recording");
+		}
+	}
+
+	// ---------Getters-------------------------
+
+	public void setRealtime(boolean realtime) {
+		this.realtime = realtime;
+	}
+
+	/**
+	 * Gets the frame at whose checkpoint the state diverged.
+	 *
+	 * @return the frame or -1 if the state didn't diverge.
+	 */
+	public long getDivergedAt() {
+		return divergedAt;
+	}
+
+	public long getFrames() {
+		return frames;
+	}
+}
@@ -0,0 +1,294 @@
+package project.breakout.server;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import de.cau.infprogoo.lighthouse.LighthouseDisplay;
+import project.breakout.log.Log;
+import project.breakout.metrics.Counter;
+import project.breakout.metrics.Histogram;
+import project.breakout.metrics.MetricsRegistry;
+import project.breakout.telemetry.HeatmapExporter;
+
+/**
+ * This class hosts many {@code GameSession}s in one JVM. The ticks of all
+ * sessions run on a shared scheduler with one thread per processor, so a
+ * session costs no thread of its own. The blocking calls of the sessions, the
+ * connections to the lighthouse and the sending of the frames, run on a pool
+ * of I/O threads which grows with the number of sessions waiting for the
+ * network.
+ *
+ * The sessions are isolated: a session whose tick fails is closed and counted,
+ * the other sessions keep running.
+ *
+ * Every tick has a deadline, the time it was scheduled for. How late a tick
+ * starts after its deadline shows if the tick threads keep up with the
+ * sessions, it is recorded in a histogram and passed to a {@code TickListener},
+ * eg of a load test.
+ */
+public class GameServer implements Closeable {
+	/**
+	 * The time between two ticks of a session, like the timer of the
+	 * {@code BreakoutModel}.
+	 */
+	public static final long TICK_MILLIS = 30;
+
+	private static final Log.Site FAILED = Log.site("server", Log.Level.ERROR, 10); //$NON-NLS-1$
+
+	private static final Counter sessionsOpened = MetricsRegistry.counter("breakout_sessions_opened_total", //$NON-NLS-1$
+			"Game sessions opened by the server"); //$NON-NLS-1$
+	private static final Counter sessionsFailed = MetricsRegistry.counter("breakout_sessions_failed_total", //$NON-NLS-1$
+			"Game sessions closed after a failed tick"); //$NON-NLS-1$
+	private static final Histogram sessionTick = MetricsRegistry.histogram("breakout_session_tick_seconds", //$NON-NLS-1$
+			"Duration of a tick of a game session", 1e-9); //$NON-NLS-1$
+	private static final Histogram tickLateness = MetricsRegistry.histogram(
+			"breakout_session_tick_lateness_seconds", //$NON-NLS-1$
+			"Time a tick of a game session started after its deadline", 1e-9); //$NON-NLS-1$
+
+	/**
+	 * Gets the timing of every tick.
+	 */
+	public interface TickListener {
+		/**
+		 * Called by the tick thread after every tick which didn't fail.
+		 *
+		 * @param session
+		 *            The session of the tick.
+		 * @param latenessNanos
+		 *            The time the tick started after its deadline.
+		 * @param tickNanos
+		 *            The duration of the tick.
+		 */
+		void tickDone(GameSession session, long latenessNanos, long tickNanos);
+	}
+
+	/**
+	 * The deadline of the next tick of a session, used by its ticks only.
+	 */
+	private static class Deadline {
+		private long nanos;
+
+		Deadline(long nanos) {
+			this.nanos = nanos;
+		}
+	}
+
+	private final ScheduledExecutorService scheduler;
+	private final ExecutorService io;
+	private final Map<GameSession, ScheduledFuture<?>> sessions = new ConcurrentHashMap<>();
+	private final AtomicInteger nextId = new AtomicInteger();
+	private volatile TickListener tickListener;
+
+	/**
+	 * Constructor for a GameServer with one tick thread per processor.
+	 */
+	public GameServer() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor for the GameServer.
+	 *
+	 * @param tickThreads
+	 *            The number of threads which run the ticks of the sessions.
+	 */
+	public GameServer(int tickThreads) {
+		scheduler = Executors.newScheduledThreadPool(tickThreads, daemonThreads("game-tick-")); //$NON-NLS-1$
+		io = Executors.newCachedThreadPool(daemonThreads("game-io-")); //$NON-NLS-1$
+	}
+
+	private static ThreadFactory daemonThreads(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	// -------------sessions-----------
+
+	/**
+	 * Opens a session and starts its ticks. The session is not connected to the
+	 * lighthouse yet, see {@code connect}.
+	 *
+	 * @param username
+	 *            The user of the lighthouse the session is shown for.
+	 * @param token
+	 *            The token of the user.
+	 * @param width
+	 *            The width of the field.
+	 * @param height
+	 *            The height of the field.
+	 * @param level
+	 *            The level the game starts with.
+	 * @return the session.
+	 */
+	public GameSession openSession(String username, String token, int width, int height, int level) {
+		int id = nextId.getAndIncrement();
+		GameSession session = new GameSession(id, new LighthouseDisplay(username, token), width, height, level,
+				id);
+		session.getLighthouse().setSendExecutor(io);
+		HeatmapExporter.register(session.getHeatmap());
+
+		// the initial delay spreads the ticks of the sessions over the period, it
+		// is never 0, so the session is registered before its first tick
+		long period = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+		long offset = period * (id % 16 + 1) / 16;
+		Deadline deadline = new Deadline(System.nanoTime() + offset);
+		sessions.put(session, scheduler.scheduleAtFixedRate(() -> tick(session, deadline, period), offset, period,
+				TimeUnit.NANOSECONDS));
+		sessionsOpened.increment();
+		return session;
+	}
+
+	/**
+	 * Runs a tick of a session. A failed tick closes the session, so it can't
+	 * stop the ticks of the other sessions on the same thread. A session which
+	 * isn't registered, eg one which was closed already, isn't ticked.
+	 */
+	private void tick(GameSession session, Deadline deadline, long period) {
+		long start = System.nanoTime();
+		// a late tick doesn't move the deadlines, the scheduler catches up
+		long lateness = Math.max(0, start - deadline.nanos);
+		deadline.nanos += period;
+		if (!sessions.containsKey(session)) {
+			return;
+		}
+		try {
+			session.tick();
+		} catch (RuntimeException e) {
+			FAILED.log("tick of session {} failed", session.getId(), e.toString());
+			sessionsFailed.increment();
+			closeSession(session);
+			return;
+		}
+		long nanos = System.nanoTime() - start;
+		sessionTick.record(nanos);
+		tickLateness.record(lateness);
+		TickListener listener = tickListener;
+		if (listener != null) {
+			listener.tickDone(session, lateness, nanos);
+		}
+	}
+
+	/**
+	 * Connects a session to the lighthouse on an I/O thread.
+	 *
+	 * @param session
+	 *            The session to connect.
+	 * @param uri
+	 *            The address of the server or {@code null} for the lighthouse.
+	 * @return a future which completes when the session is connected.
+	 */
+	public CompletableFuture<Void> connect(GameSession session, String uri) {
+		CompletableFuture<Void> connected = new CompletableFuture<>();
+		io.execute(() -> {
+			try {
+				session.connect(uri);
+				connected.complete(null);
+			} catch (Exception e) {
+				connected.completeExceptionally(e);
+			}
+		});
+		return connected;
+	}
+
+	/**
+	 * Runs work on the thread of the ticks of a session before its next tick, so
+	 * it doesn't run at the same time as a tick, eg {@code GameSession.restore}
+	 * or {@code GameSession.snapshot}.
+	 *
+	 * @param session
+	 *            The session.
+	 * @param work
+	 *            The work, which gets the session.
+	 * @return the future of the result. It is cancelled if the session is closed
+	 *         before the work was run.
+	 */
+	public <T> Future<T> runOnTick(GameSession session, Function<GameSession, T> work) {
+		FutureTask<T> task = new FutureTask<>(() -> work.apply(session));
+		session.runBeforeNextTick(task);
+		// the session may have been closed while the work was queued
+		if (!sessions.containsKey(session)) {
+			task.cancel(false);
+		}
+		return task;
+	}
+
+	/**
+	 * Stops the ticks of a session and closes its connection to the lighthouse.
+	 * The work queued with {@code runOnTick} which wasn't run yet is cancelled.
+	 *
+	 * @param session
+	 *            The session to close.
+	 */
+	public void closeSession(GameSession session) {
+		ScheduledFuture<?> ticks = sessions.remove(session);
+		if (ticks != null) {
+			ticks.cancel(false);
+			session.cancelQueuedWork();
+			io.execute(() -> {
+				HeatmapExporter.unregister(session.getHeatmap());
+				session.close();
+			});
+		}
+	}
+
+	/**
+	 * Closes all sessions and stops the threads of the server.
+	 */
+	@Override
+	public void close() {
+		for (GameSession session : getSessions()) {
+			ScheduledFuture<?> ticks = sessions.remove(session);
+			if (ticks != null) {
+				ticks.cancel(false);
+				session.cancelQueuedWork();
+				HeatmapExporter.unregister(session.getHeatmap());
+				session.close();
+			}
+		}
+		scheduler.shutdownNow();
+		io.shutdown();
+	}
+
+	/**
+	 * Sets the listener which gets the timing of every tick.
+	 *
+	 * @param listener
+	 *            The listener or {@code null} for none.
+	 */
+	public void setTickListener(TickListener listener) {
+		tickListener = listener;
+	}
+
+	// ---------Getters-------------------------
+
+	/**
+	 * Gets the running sessions.
+	 *
+	 * @return a copy of the list of the sessions.
+	 */
+	public List<GameSession> getSessions() {
+		return new ArrayList<>(sessions.keySet());
+	}
+
+	public int getSessionCount() {
+		return sessions.size();
+	}
+}
@@ -0,0 +1,586 @@
+package project.breakout.server;
+
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.cau.infprogoo.lighthouse.LighthouseDisplay;
+import project.breakout.controller.AutoPlayer;
+import project.breakout.controller.CollisionWith;
+import project.breakout.model.BallModel;
+import project.breakout.model.BreakoutGame;
+import project.breakout.model.BrickStore;
+import project.breakout.model.BricksConfig;
+import project.breakout.model.GameSnapshot;
+import project.breakout.model.LevelCache;
+import project.breakout.model.RewindBuffer;
+import project.breakout.model.Score;
+import project.breakout.telemetry.Heatmap;
+import project.breakout.view.BreakoutBrick;
+import project.breakout.view.LighthouseFrame;
+
+/**
+ * A game of breakout run by the {@code GameServer}. The session owns all state
+ * of its game: the {@code BreakoutGame} with the ball, the paddle and the
+ * bricks, the score and the frame on the lighthouse with its own connection.
+ * It has no window, the game is only shown on the lighthouse, so many sessions
+ * can run in one JVM.
+ *
+ * The game is played by the {@code BreakoutGame} like the one of the
+ * {@code BreakoutModel}, the session shows it and counts it. The server calls
+ * {@code tick} from one thread at a time, the input of the player may come
+ * from any thread and is applied with the next tick. Other calls which change
+ * the game, eg {@code restore}, are run between two ticks with
+ * {@code GameServer.runOnTick}.
+ */
+public class GameSession implements BreakoutGame.Listener {
+	private final int id;
+	private final int width;
+	private final int height;
+	private final LighthouseFrame lighthouse;
+	private final Heatmap heatmap;
+
+	// the game, changed by the ticks only
+	private final BreakoutGame game;
+	private final BallModel ball;
+	private final Score score = new Score();
+
+	// the input of the player for the next tick
+	private volatile int requestedMouseX = -1;
+	private volatile boolean startRequested = false;
+	private volatile boolean paused = false;
+	private volatile boolean autoPlay = false;
+	private final AutoPlayer autoPlayer = new AutoPlayer();
+	private RewindBuffer rewind;
+
+	/**
+	 * The work which is run by the thread of the ticks before the next tick.
+	 */
+	private final Queue<FutureTask<?>> beforeNextTick = new ConcurrentLinkedQueue<>();
+
+	// metrics of this session
+	private final AtomicLong ticks = new AtomicLong();
+	private final AtomicLong tickNanos = new AtomicLong();
+	private volatile long maxTickNanos = 0;
+	private final AtomicLong collisions = new AtomicLong();
+	private final AtomicLong bricksDestroyed = new AtomicLong();
+	private final AtomicLong levelsDone = new AtomicLong();
+	private final AtomicLong ballsLost = new AtomicLong();
+
+	/**
+	 * Constructor for the GameSession.
+	 *
+	 * @param id
+	 *            The number of the session in the server.
+	 * @param display
+	 *            The connection to the lighthouse of the session.
+	 * @param width
+	 *            The width of the field.
+	 * @param height
+	 *            The height of the field.
+	 * @param level
+	 *            The level the game starts with.
+	 * @param seed
+	 *            The seed of the directions of the ball after a restart.
+	 */
+	public GameSession(int id, LighthouseDisplay display, int width, int height, int level, long seed) {
+		this.id = id;
+		this.width = width;
+		this.height = height;
+		this.lighthouse = new LighthouseFrame(display);
+		this.heatmap = new Heatmap("session-" + id); //$NON-NLS-1$
+
+		game = new BreakoutGame(width, height, new Random(seed), this);
+		game.addCollisionListener(autoPlayer);
+		ball = game.getBall();
+		initGame(level);
+	}
+
+	// ------------------initializing methods----------------------------
+
+	/**
+	 * Puts the paddle into the middle, the ball onto the paddle and loads the
+	 * bricks of the level.
+	 */
+	private void initGame(int levelNumber) {
+		game.reset(width / 2);
+		lighthouse.setAllDark();
+		initBricksForLevel(levelNumber);
+		movePaddleOnLighthouse();
+	}
+
+	private void initBricksForLevel(int levelNumber) {
+		if (rewind != null) {
+			rewind.requestKeyframe();
+		}
+		game.loadLevel(levelNumber);
+		BrickStore brickStore = game.getBrickStore();
+		if (brickStore != null) {
+			heatmap.levelStarted(levelNumber, brickStore.getBrickCount());
+			lighthouse.updateBricks(brickStore, width, height);
+			return;
+		}
+		BreakoutBrick[] brickArray = game.getBrickArray();
+		if (brickArray != null) {
+			heatmap.levelStarted(levelNumber, brickArray.length);
+			lighthouse.setBricks(brickArray, 0, brickArray.length, width, height);
+		}
+	}
+
+	/**
+	 * Connects the session to the lighthouse. The call blocks until the
+	 * connection is set up, so the server calls it from a thread for the
+	 * connections.
+	 *
+	 * @param uri
+	 *            The address of the server or {@code null} for the lighthouse.
+	 * @throws Exception
+	 *             if the connection could not be set up.
+	 */
+	public void connect(String uri) throws Exception {
+		lighthouse.connect(uri);
+	}
+
+	/**
+	 * Closes the connection to the lighthouse.
+	 */
+	public void close() {
+		lighthouse.close();
+	}
+
+	// -------------snapshots-----------
+
+	/**
+	 * Takes a snapshot of the game. It is called between two ticks, eg with
+	 * {@code GameServer.runOnTick}.
+	 *
+	 * @return the snapshot.
+	 */
+	public GameSnapshot snapshot() {
+		return GameSnapshot.capture(game, ball, game.getCurrentLevel(), score.getPoints(), game.isStarted(), paused,
+				autoPlay);
+	}
+
+	/**
+	 * Restores a game from a snapshot, eg after the server was restarted. It is
+	 * called between two ticks. The auto play is left as it is. A snapshot which
+	 * doesn't fit the level leaves the running game as it is.
+	 *
+	 * @param snapshot
+	 *            The snapshot of the game.
+	 * @return {@code true} if the game was restored, {@code false} if the level
+	 *         of the snapshot doesn't exist or has other bricks.
+	 */
+	public boolean restore(GameSnapshot snapshot) {
+		if (!LevelCache.levelExists(snapshot.getLevel())
+				|| !snapshot.fits(BricksConfig.getBrickCount(snapshot.getLevel()), width, height)) {
+			return false;
+		}
+		initGame(snapshot.getLevel());
+
+		// remove the bricks which were destroyed before
+		BrickStore brickStore = game.getBrickStore();
+		BreakoutBrick[] brickArray = game.getBrickArray();
+		if (brickStore != null) {
+			for (int i = 0; i < brickStore.getBrickCount(); i++) {
+				if (brickStore.isAlive(i) && !snapshot.isAlive(i)) {
+					brickStore.destroy(i);
+					try {
+						lighthouse.removeBrick(brickStore.getX(i) / width, brickStore.getY(i) / height);
+					} catch (IllegalArgumentException e) {
+					}
+				}
+			}
+		} else if (brickArray != null) {
+			for (int i = 0; i < brickArray.length; i++) {
+				if (brickArray[i] != null && !snapshot.isAlive(i)) {
+					lighthouse.removeBrick(brickArray[i].getX() / width, brickArray[i].getY() / height);
+					brickArray[i] = null;
+				}
+			}
+		}
+
+		game.setPaddleX(snapshot.getPaddleX());
+		ball.setX(snapshot.getBallX());
+		ball.setY(snapshot.getBallY());
+		ball.setDirection(snapshot.getDirection());
+		score.restore(snapshot.getPoints(), false);
+		game.setStarted(snapshot.isStarted());
+		movePaddleOnLighthouse();
+		return true;
+	}
+
+	/**
+	 * Keeps the last ticks of the game, so it can be rewound. It is called
+	 * between two ticks.
+	 *
+	 * @param rewind
+	 *            The buffer of the ticks or {@code null} to keep none.
+	 */
+	public void setRewindBuffer(RewindBuffer rewind) {
+		this.rewind = rewind;
+	}
+
+	/**
+	 * Rewinds the game by some ticks. It is called between two ticks.
+	 *
+	 * @param ticks
+	 *            The number of ticks to rewind.
+	 * @return {@code true} if the game was rewound, {@code false} if the ticks
+	 *         aren't kept.
+	 */
+	public boolean rewind(int ticks) {
+		if (rewind == null) {
+			return false;
+		}
+		long target = rewind.getNewestFrame() - ticks;
+		GameSnapshot snapshot = rewind.snapshotAt(target, autoPlay);
+		if (snapshot == null) {
+			return false;
+		}
+		autoPlayer.reset();
+		lighthouse.beginUpdate();
+		try {
+			if (!restore(snapshot)) {
+				return false;
+			}
+		} finally {
+			lighthouse.endUpdate();
+		}
+		rewind.truncate(target);
+		return true;
+	}
+
+	// -------------methods for the player-----------
+
+	/**
+	 * Moves the paddle under the mouse with the next tick. It may be called from
+	 * any thread.
+	 *
+	 * @param mouseX
+	 *            The x-position of the mouse in the field.
+	 */
+	public void updateMouseLocation(int mouseX) {
+		requestedMouseX = mouseX;
+	}
+
+	/**
+	 * Starts the game with the next tick. It may be called from any thread.
+	 */
+	public void startGame() {
+		startRequested = true;
+	}
+
+	/**
+	 * Pauses the game, the ball stands still until the game is continued. The
+	 * paddle can still be moved. It may be called from any thread.
+	 */
+	public void pauseGame() {
+		paused = true;
+	}
+
+	/**
+	 * Continues the game and starts it, if it wasn't started yet. It may be
+	 * called from any thread.
+	 */
+	public void continueGame() {
+		paused = false;
+		startRequested = true;
+	}
+
+	/**
+	 * Switches the auto play on or off. The {@code AutoPlayer} moves the paddle
+	 * instead of the player and starts the game on its own.
+	 *
+	 * @param autoPlay
+	 *            {@code true} to let the bot play, {@code false} for the player.
+	 */
+	public void setAutoPlay(boolean autoPlay) {
+		this.autoPlay = autoPlay;
+	}
+
+	// --------------------game loop----------------------------
+
+	/**
+	 * Queues work which the thread of the ticks runs before the next tick.
+	 *
+	 * @param work
+	 *            The work, which gets the result or exception.
+	 */
+	void runBeforeNextTick(FutureTask<?> work) {
+		beforeNextTick.add(work);
+	}
+
+	/**
+	 * Cancels the queued work, eg after the session was closed.
+	 */
+	void cancelQueuedWork() {
+		FutureTask<?> work;
+		while ((work = beforeNextTick.poll()) != null) {
+			work.cancel(false);
+		}
+	}
+
+	/**
+	 * Runs a tick of the game: runs the queued work, applies the input of the
+	 * player, checks for collisions and moves the ball.
+	 */
+	public void tick() {
+		long start = System.nanoTime();
+
+		FutureTask<?> work;
+		while ((work = beforeNextTick.poll()) != null) {
+			// a failed work completes its future, the tick goes on
+			work.run();
+		}
+
+		if (autoPlay) {
+			updateAutoPlayer();
+		}
+		applyInput();
+		if (game.isStarted() && !paused) {
+			game.runFrame();
+			heatmap.ballAt(ball.getX(), ball.getY(), width, height);
+		}
+		if (rewind != null) {
+			rewind.record(game, ball, game.getCurrentLevel(), score.getPoints(), game.isStarted());
+		}
+
+		long nanos = System.nanoTime() - start;
+		ticks.incrementAndGet();
+		tickNanos.addAndGet(nanos);
+		if (nanos > maxTickNanos) {
+			maxTickNanos = nanos;
+		}
+	}
+
+	private void updateAutoPlayer() {
+		if (!game.isStarted()) {
+			autoPlayer.reset();
+			startRequested = true;
+			return;
+		}
+		int mouseX = autoPlayer.nextMouseX(game, ball);
+		if (mouseX != game.getPaddleX() + game.getPaddleWidth() / 2) {
+			requestedMouseX = mouseX;
+		}
+	}
+
+	/**
+	 * Applies the input of the player now instead of with the next tick, eg for
+	 * a replay which feeds the recorded inputs between two ticks in their order.
+	 */
+	public void applyInput() {
+		int mouseX = requestedMouseX;
+		if (mouseX >= 0) {
+			requestedMouseX = -1;
+			if (game.movePaddle(mouseX)) {
+				movePaddleOnLighthouse();
+			}
+		}
+		if (startRequested) {
+			startRequested = false;
+			game.setStarted(true);
+		}
+	}
+
+	private void movePaddleOnLighthouse() {
+		try {
+			lighthouse.setPaddlePosition((double) game.getPaddleX() / width, (double) game.getPaddleWidth() / width);
+		} catch (IllegalArgumentException e) {
+			// the paddle is at the edge of the lighthouse
+		}
+	}
+
+	@Override
+	public void frameStarted() {
+	}
+
+	@Override
+	public void frameDone() {
+		try {
+			lighthouse.setBallPosition(ball.getX() / width, ball.getY() / height);
+		} catch (IllegalArgumentException e) {
+			// the ball is at the edge of the lighthouse
+		}
+	}
+
+	@Override
+	public void collided(CollisionWith lastCollisionWith) {
+		collisions.incrementAndGet();
+		heatmap.collision(lastCollisionWith, ball.getX(), ball.getY(), width, height);
+	}
+
+	/**
+	 * Sets the game to the beginning state after the ball was lost.
+	 */
+	@Override
+	public void ballLost() {
+		ballsLost.incrementAndGet();
+		score.reset();
+		initGame(game.getCurrentLevel());
+		game.setRandomDirection();
+	}
+
+	@Override
+	public void brickDestroyed(int brick, BreakoutBrick removed) {
+		score.brickDestroyed();
+		heatmap.brickHit(brick);
+		if (rewind != null) {
+			rewind.brickDestroyed(brick);
+		}
+		bricksDestroyed.incrementAndGet();
+		BrickStore brickStore = game.getBrickStore();
+		try {
+			if (removed != null) {
+				lighthouse.removeBrick(removed.getX() / width, removed.getY() / height);
+			} else {
+				lighthouse.removeBrick(brickStore.getX(brick) / width, brickStore.getY(brick) / height);
+			}
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Override
+	public void levelDone() {
+		levelsDone.incrementAndGet();
+		score.levelDone(game.getCurrentLevel());
+		game.setStarted(false);
+
+		// start next level or begin again at the first, the ball stays where it is
+		lighthouse.setAllDark();
+		initBricksForLevel(game.getNextLevel());
+		movePaddleOnLighthouse();
+	}
+
+	// ---------Getters-------------------------
+
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Gets the game the session plays.
+	 *
+	 * @return the game.
+	 */
+	public BreakoutGame getGame() {
+		return game;
+	}
+
+	public double getBallX() {
+		return ball.getX();
+	}
+
+	public double getBallY() {
+		return ball.getY();
+	}
+
+	public int getPaddleX() {
+		return game.getPaddleX();
+	}
+
+	public int getPaddleY() {
+		return game.getPaddleY();
+	}
+
+	/**
+	 * Gets the model of the ball.
+	 *
+	 * @return ball.
+	 */
+	public BallModel getBall() {
+		return ball;
+	}
+
+	public int getCurrentLevel() {
+		return game.getCurrentLevel();
+	}
+
+	/**
+	 * Gets the points of the current run, which ends when the ball is lost.
+	 *
+	 * @return the points.
+	 */
+	public int getPoints() {
+		return score.getPoints();
+	}
+
+	public boolean isGameStarted() {
+		return game.isStarted();
+	}
+
+	public boolean isGamePaused() {
+		return paused;
+	}
+
+	public boolean isAutoPlay() {
+		return autoPlay;
+	}
+
+	/**
+	 * Gets the telemetry of the session.
+	 *
+	 * @return the heatmap.
+	 */
+	public Heatmap getHeatmap() {
+		return heatmap;
+	}
+
+	/**
+	 * Gets the frame of the session on the lighthouse.
+	 *
+	 * @return the frame.
+	 */
+	public LighthouseFrame getLighthouse() {
+		return lighthouse;
+	}
+
+	// ---------metrics-------------------------
+
+	public long getTicks() {
+		return ticks.get();
+	}
+
+	/**
+	 * Gets the average duration of a tick.
+	 *
+	 * @return the average in nanoseconds, 0 before the first tick.
+	 */
+	public long getAverageTickNanos() {
+		long count = ticks.get();
+		return count > 0 ? tickNanos.get() / count : 0;
+	}
+
+	public long getMaxTickNanos() {
+		return maxTickNanos;
+	}
+
+	public long getCollisions() {
+		return collisions.get();
+	}
+
+	public long getBricksDestroyed() {
+		return bricksDestroyed.get();
+	}
+
+	public long getLevelsDone() {
+		return levelsDone.get();
+	}
+
+	public long getBallsLost() {
+		return ballsLost.get();
+	}
+
+	@Override
+	public String toString() {
+		return "session " + id + ": level " + game.getCurrentLevel() + ", ticks " + getTicks() + ", tick avg "
+				+ TimeUnit.NANOSECONDS.toMicros(getAverageTickNanos()) + " us max "
+				+ TimeUnit.NANOSECONDS.toMicros(getMaxTickNanos()) + " us, collisions " + getCollisions()
+				+ ", bricks " + getBricksDestroyed() + ", balls lost " + getBallsLost() + ", lighthouse "
+				+ lighthouse.describeConnection();
+	}
+}
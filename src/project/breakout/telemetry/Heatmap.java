@@ -0,0 +1,407 @@
+package project.breakout.telemetry;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import project.breakout.controller.CollisionWith;
+
+/**
+ * The telemetry of one game: where the ball was in every tick, where it
+ * collided with what and how often every brick of a level was hit. The counts
+ * are binned into a grid of {@code COLUMNS} x {@code ROWS} cells over the
+ * field, one grid per level.
+ *
+ * Every game records into a heatmap of its own, which is written by its game
+ * thread only, so the counters are stripes without any contention: an
+ * increment is a plain read and an opaque write of an array element, without
+ * a lock or an atomic instruction. The {@code HeatmapExporter} reads them from
+ * another thread with opaque reads, which may miss the last increments but
+ * never sees a torn count. The grids of a level are allocated when the level
+ * is loaded, recording allocates nothing.
+ *
+ * <pre>
+ * file:   "BHMP" version:byte session:utf8 level columns rows kinds bricks
+ *         ball:counts collisions:counts kinds:counts bricks:counts
+ * counts: varint*, a 0 is followed by the number of further zeros
+ * </pre>
+ */
+public class Heatmap {
+	public static final int COLUMNS = 48;
+	public static final int ROWS = 32;
+
+	/**
+	 * The level of the endless mode, whose bricks aren't counted.
+	 */
+	public static final int ENDLESS = -1;
+
+	static final byte[] MAGIC = { 'B', 'H', 'M', 'P' };
+	static final int VERSION = 1;
+
+	private static final int KINDS = CollisionWith.values().length;
+	private static final int MAX_COUNTS = 1 << 24;
+	private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+	private final String session;
+	private final Map<Integer, Grid> grids = new ConcurrentHashMap<>();
+
+	/**
+	 * The grid of the current level, used by the game thread only.
+	 */
+	private Grid grid;
+
+	/**
+	 * Constructor for the Heatmap.
+	 *
+	 * @param session
+	 *            The name of the game, eg "desktop" or "session-3".
+	 */
+	public Heatmap(String session) {
+		this.session = session;
+	}
+
+	// ---------recording-------------------------
+
+	/**
+	 * Called when the bricks of a level were loaded. The grid of the level is
+	 * allocated the first time.
+	 *
+	 * @param level
+	 *            The number of the level or {@code ENDLESS}.
+	 * @param brickCount
+	 *            The number of bricks of the level.
+	 */
+	public void levelStarted(int level, int brickCount) {
+		Grid started = grids.computeIfAbsent(level, Grid::new);
+		if (started.bricks.length < brickCount && level != ENDLESS) {
+			// a brick added to the level file, the old counts stay
+			started.bricks = Arrays.copyOf(started.bricks, brickCount);
+		}
+		grid = started;
+	}
+
+	/**
+	 * Called after every tick in which the ball moved.
+	 *
+	 * @param x
+	 *            The x-position of the ball.
+	 * @param y
+	 *            The y-position of the ball.
+	 * @param width
+	 *            The width of the field.
+	 * @param height
+	 *            The height of the field.
+	 */
+	public void ballAt(double x, double y, int width, int height) {
+		if (grid != null) {
+			increment(grid.ball, cell(x, y, width, height));
+		}
+	}
+
+	/**
+	 * Called for every collision of the ball.
+	 *
+	 * @param with
+	 *            What the ball collided with.
+	 * @param x
+	 *            The x-position of the ball.
+	 * @param y
+	 *            The y-position of the ball.
+	 * @param width
+	 *            The width of the field.
+	 * @param height
+	 *            The height of the field.
+	 */
+	public void collision(CollisionWith with, double x, double y, int width, int height) {
+		if (grid != null && with != null) {
+			increment(grid.collisions, cell(x, y, width, height));
+			increment(grid.kinds, with.ordinal());
+		}
+	}
+
+	/**
+	 * Called when a brick of the level was hit.
+	 *
+	 * @param brick
+	 *            The index of the brick in the level.
+	 */
+	public void brickHit(int brick) {
+		Grid current = grid;
+		if (current != null && brick >= 0 && brick < current.bricks.length) {
+			increment(current.bricks, brick);
+		}
+	}
+
+	private static int cell(double x, double y, int width, int height) {
+		int column = (int) (x * COLUMNS / width);
+		int row = (int) (y * ROWS / height);
+		column = column < 0 ? 0 : column >= COLUMNS ? COLUMNS - 1 : column;
+		row = row < 0 ? 0 : row >= ROWS ? ROWS - 1 : row;
+		return row * COLUMNS + column;
+	}
+
+	/**
+	 * Increments a count which only the calling thread writes.
+	 */
+	private static void increment(int[] counts, int index) {
+		COUNTS.setOpaque(counts, index, (int) COUNTS.getOpaque(counts, index) + 1);
+	}
+
+	// ---------Getters-------------------------
+
+	public String getSession() {
+		return session;
+	}
+
+	/**
+	 * Gets the grids of the levels played so far.
+	 *
+	 * @return a view of the grids, which grows while the game runs.
+	 */
+	public Collection<Grid> getGrids() {
+		return grids.values();
+	}
+
+	/**
+	 * The counts of one level.
+	 */
+	public static class Grid {
+		private final int level;
+		private final int[] ball;
+		private final int[] collisions;
+		private final int[] kinds;
+		private volatile int[] bricks;
+
+		Grid(int level) {
+			this(level, new int[COLUMNS * ROWS], new int[COLUMNS * ROWS], new int[KINDS], new int[0]);
+		}
+
+		private Grid(int level, int[] ball, int[] collisions, int[] kinds, int[] bricks) {
+			this.level = level;
+			this.ball = ball;
+			this.collisions = collisions;
+			this.kinds = kinds;
+			this.bricks = bricks;
+		}
+
+		// ---------encoding-------------------------
+
+		/**
+		 * Encodes the counts as they are now.
+		 *
+		 * @param session
+		 *            The name of the game.
+		 * @return the bytes of the file.
+		 */
+		byte[] encode(String session) {
+			int[] brickCounts = bricks;
+			byte[] name = session.getBytes(StandardCharsets.UTF_8);
+			ByteBuffer out = ByteBuffer.allocate(64 + name.length
+					+ 10 * (ball.length + collisions.length + kinds.length + brickCounts.length));
+			out.put(MAGIC);
+			out.put((byte) VERSION);
+			putVarint(out, name.length);
+			out.put(name);
+			putVarint(out, (level << 1) ^ (level >> 31));
+			putVarint(out, COLUMNS);
+			putVarint(out, ROWS);
+			putVarint(out, kinds.length);
+			putVarint(out, brickCounts.length);
+			putCounts(out, ball);
+			putCounts(out, collisions);
+			putCounts(out, kinds);
+			putCounts(out, brickCounts);
+			return Arrays.copyOf(out.array(), out.position());
+		}
+
+		private static void putCounts(ByteBuffer out, int[] counts) {
+			for (int i = 0; i < counts.length; i++) {
+				int count = (int) COUNTS.getOpaque(counts, i);
+				putVarint(out, count);
+				if (count == 0) {
+					int zeros = 0;
+					while (i + 1 < counts.length && (int) COUNTS.getOpaque(counts, i + 1) == 0) {
+						zeros++;
+						i++;
+					}
+					putVarint(out, zeros);
+				}
+			}
+		}
+
+		private static void putVarint(ByteBuffer out, int value) {
+			while ((value & ~0x7f) != 0) {
+				out.put((byte) ((value & 0x7f) | 0x80));
+				value >>>= 7;
+			}
+			out.put((byte) value);
+		}
+
+		/**
+		 * Decodes the counts of a file.
+		 *
+		 * @param data
+		 *            The bytes of the file.
+		 * @return the counts.
+		 * @throws IOException
+		 *             if the data is no heatmap of this grid size.
+		 */
+		public static Grid decode(byte[] data) throws IOException {
+			ByteBuffer in = ByteBuffer.wrap(data);
+			try {
+				for (byte b : MAGIC) {
+					if (in.get() != b) {
+						throw new IOException("no heatmap, the magic number is missing");
+					}
+				}
+				int version = in.get();
+				if (version != VERSION) {
+					throw new IOException("heatmap version " + version + " is not supported");
+				}
+				int nameLength = getVarint(in);
+				in.position(in.position() + nameLength);
+				int zigzag = getVarint(in);
+				int level = (zigzag >>> 1) ^ -(zigzag & 1);
+				if (getVarint(in) != COLUMNS || getVarint(in) != ROWS) {
+					throw new IOException("heatmap has another grid size");
+				}
+				int kindCount = getVarint(in);
+				int brickCount = getVarint(in);
+				if (kindCount > MAX_COUNTS || brickCount > MAX_COUNTS) {
+					throw new IOException("heatmap is damaged");
+				}
+				Grid grid = new Grid(level, new int[COLUMNS * ROWS], new int[COLUMNS * ROWS], new int[kindCount],
+						new int[brickCount]);
+				getCounts(in, grid.ball);
+				getCounts(in, grid.collisions);
+				getCounts(in, grid.kinds);
+				getCounts(in, grid.bricks);
+				return grid;
+			} catch (BufferUnderflowException | IllegalArgumentException e) {
+				throw new IOException("heatmap is damaged, it ends too early");
+			}
+		}
+
+		private static void getCounts(ByteBuffer in, int[] counts) throws IOException {
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = getVarint(in);
+				if (counts[i] == 0) {
+					i += getVarint(in);
+				}
+			}
+		}
+
+		private static int getVarint(ByteBuffer in) throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				byte b = in.get();
+				value |= (b & 0x7f) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IOException("heatmap is damaged, a count is too long");
+		}
+
+		/**
+		 * Adds the counts of another grid of the same level, eg of another game.
+		 *
+		 * @param other
+		 *            The other grid.
+		 */
+		public void add(Grid other) {
+			for (int i = 0; i < ball.length; i++) {
+				ball[i] += other.ball[i];
+				collisions[i] += other.collisions[i];
+			}
+			for (int i = 0; i < Math.min(kinds.length, other.kinds.length); i++) {
+				kinds[i] += other.kinds[i];
+			}
+			if (bricks.length < other.bricks.length) {
+				bricks = Arrays.copyOf(bricks, other.bricks.length);
+			}
+			for (int i = 0; i < other.bricks.length; i++) {
+				bricks[i] += other.bricks[i];
+			}
+		}
+
+		// ---------Getters-------------------------
+
+		public int getLevel() {
+			return level;
+		}
+
+		/**
+		 * Gets the ticks the ball was in a cell.
+		 *
+		 * @param column
+		 *            The column of the cell.
+		 * @param row
+		 *            The row of the cell.
+		 * @return the number of ticks.
+		 */
+		public int getBallCount(int column, int row) {
+			return (int) COUNTS.getOpaque(ball, row * COLUMNS + column);
+		}
+
+		/**
+		 * Gets the collisions of the ball in a cell.
+		 *
+		 * @param column
+		 *            The column of the cell.
+		 * @param row
+		 *            The row of the cell.
+		 * @return the number of collisions.
+		 */
+		public int getCollisionCount(int column, int row) {
+			return (int) COUNTS.getOpaque(collisions, row * COLUMNS + column);
+		}
+
+		/**
+		 * Gets the collisions with one kind of object.
+		 *
+		 * @param with
+		 *            What the ball collided with.
+		 * @return the number of collisions.
+		 */
+		public int getCollisionCount(CollisionWith with) {
+			return with.ordinal() < kinds.length ? (int) COUNTS.getOpaque(kinds, with.ordinal()) : 0;
+		}
+
+		public int getBrickCount() {
+			return bricks.length;
+		}
+
+		/**
+		 * Gets the hits of a brick.
+		 *
+		 * @param brick
+		 *            The index of the brick in the level.
+		 * @return the number of hits.
+		 */
+		public int getHits(int brick) {
+			int[] brickCounts = bricks;
+			return brick < brickCounts.length ? (int) COUNTS.getOpaque(brickCounts, brick) : 0;
+		}
+
+		/**
+		 * Sums the ticks in all cells.
+		 *
+		 * @return the number of ticks recorded.
+		 */
+		public long getTicks() {
+			long ticks = 0;
+			for (int i = 0; i < ball.length; i++) {
+				ticks += (int) COUNTS.getOpaque(ball, i);
+			}
+			return ticks;
+		}
+	}
+}
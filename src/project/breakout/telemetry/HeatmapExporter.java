@@ -0,0 +1,249 @@
+package project.breakout.telemetry;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import project.breakout.controller.CollisionWith;
+import project.breakout.log.Log;
+import project.breakout.model.AtomicFile;
+import project.breakout.model.LevelCache;
+import project.breakout.model.LevelData;
+
+/**
+ * This class writes the {@code Heatmap}s of the running games into a
+ * directory in the background. Every few seconds the exporter thread reads the
+ * grids of every registered game and writes the grids which changed, one file
+ * per game and level, with the {@code AtomicFile}, so a crash leaves the last
+ * complete file. The file names have the start of the program in them, so the files of
+ * earlier runs are kept and the report adds them up.
+ *
+ * The directory is set with the system property "breakout.heatmap.dir", the
+ * default is "breakout-heatmaps". The interval is set in seconds with
+ * "breakout.heatmap.seconds", the default is 30, 0 switches the export off.
+ *
+ * Usage of the report: HeatmapExporter level [directory]
+ */
+public class HeatmapExporter {
+	private static final String DIR_PROPERTY = "breakout.heatmap.dir"; //$NON-NLS-1$
+	private static final String SECONDS_PROPERTY = "breakout.heatmap.seconds"; //$NON-NLS-1$
+	private static final String DEFAULT_DIR = "breakout-heatmaps"; //$NON-NLS-1$
+	private static final long DEFAULT_SECONDS = 30;
+	private static final String SUFFIX = ".heatmap"; //$NON-NLS-1$
+
+	/**
+	 * The shades of the cells of the report, from no ticks to the most ticks.
+	 */
+	private static final String SHADES = " .:-=+*#%@"; //$NON-NLS-1$
+	private static final int TOP_BRICKS = 10;
+
+	private static final Log.Site EXPORT_FAILED = Log.site("heatmap", Log.Level.WARN, 1); //$NON-NLS-1$
+
+	private static final Path directory = Paths.get(System.getProperty(DIR_PROPERTY, DEFAULT_DIR));
+	private static final String run = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()); //$NON-NLS-1$
+
+	/**
+	 * The registered games with the ticks of their grids at the last export.
+	 */
+	private static final Map<Heatmap, Map<Integer, Long>> heatmaps = new ConcurrentHashMap<>();
+	private static ScheduledExecutorService exporter;
+	private static boolean enabled = true;
+
+	private HeatmapExporter() {
+	}
+
+	/**
+	 * Starts to export the heatmap of a game in the configured interval and when
+	 * the program exits.
+	 *
+	 * @param heatmap
+	 *            The heatmap of the game.
+	 */
+	public static void register(Heatmap heatmap) {
+		if (start()) {
+			heatmaps.put(heatmap, new ConcurrentHashMap<>());
+		}
+	}
+
+	/**
+	 * Exports the heatmap of a game a last time and stops exporting it, eg when
+	 * the game is closed.
+	 *
+	 * @param heatmap
+	 *            The heatmap of the game.
+	 */
+	public static void unregister(Heatmap heatmap) {
+		Map<Integer, Long> exported = heatmaps.remove(heatmap);
+		if (exported != null) {
+			synchronized (HeatmapExporter.class) {
+				export(heatmap, exported);
+			}
+		}
+	}
+
+	private static synchronized boolean start() {
+		if (exporter != null || !enabled) {
+			return enabled;
+		}
+		long seconds = DEFAULT_SECONDS;
+		try {
+			seconds = Long.parseLong(System.getProperty(SECONDS_PROPERTY, Long.toString(DEFAULT_SECONDS)).trim());
+		} catch (NumberFormatException e) {
+			System.out.println("invalid heatmap interval, using " + DEFAULT_SECONDS + " s");
+		}
+		if (seconds <= 0) {
+			enabled = false;
+			return false;
+		}
+
+		exporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "heatmap-exporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		exporter.scheduleWithFixedDelay(HeatmapExporter::exportAll, seconds, seconds, TimeUnit.SECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(HeatmapExporter::exportAll, "heatmap-exit"));
+		return true;
+	}
+
+	// ---------exporting-------------------------
+
+	/**
+	 * Writes the grids of all games which changed since the last export.
+	 */
+	public static synchronized void exportAll() {
+		for (Map.Entry<Heatmap, Map<Integer, Long>> entry : heatmaps.entrySet()) {
+			export(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private static void export(Heatmap heatmap, Map<Integer, Long> exported) {
+		for (Heatmap.Grid grid : heatmap.getGrids()) {
+			long ticks = grid.getTicks();
+			Long last = exported.get(grid.getLevel());
+			if (last != null && last == ticks) {
+				continue;
+			}
+			try {
+				write(fileOf(heatmap.getSession(), grid.getLevel()), grid.encode(heatmap.getSession()));
+				exported.put(grid.getLevel(), ticks);
+			} catch (IOException e) {
+				EXPORT_FAILED.log("heatmap not exported: {}", e.toString());
+			}
+		}
+	}
+
+	private static Path fileOf(String session, int level) {
+		return directory.resolve(session + "-" + run + "-" //$NON-NLS-1$ //$NON-NLS-2$
+				+ (level == Heatmap.ENDLESS ? "endless" : "level" + level) + SUFFIX); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static void write(Path file, byte[] data) throws IOException {
+		Files.createDirectories(directory);
+		AtomicFile.write(file, data);
+	}
+
+	// ---------report-------------------------
+
+	/**
+	 * Main method of the report, which adds up the heatmaps of a level of all
+	 * games and prints where the ball was, what it collided with and the bricks
+	 * which were hit most.
+	 *
+	 * @param args
+	 *            The level and the directory.
+	 * @throws IOException
+	 *             if the directory can't be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.out.println("usage: HeatmapExporter level [directory]");
+			return;
+		}
+		String level = args[0].equals("endless") ? "endless" : "level" + Integer.parseInt(args[0]);
+		Path dir = args.length > 1 ? Paths.get(args[1]) : directory;
+
+		Heatmap.Grid sum = null;
+		int files = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*-" + level + SUFFIX)) {
+			for (Path file : stream) {
+				try {
+					Heatmap.Grid grid = Heatmap.Grid.decode(Files.readAllBytes(file));
+					if (sum == null) {
+						sum = grid;
+					} else {
+						sum.add(grid);
+					}
+					files++;
+				} catch (IOException e) {
+					System.out.println(file + " skipped: " + e.getMessage());
+				}
+			}
+		}
+		if (sum == null) {
+			System.out.println("no heatmaps of " + level + " in " + dir);
+			return;
+		}
+		printReport(sum, files);
+	}
+
+	private static void printReport(Heatmap.Grid grid, int files) {
+		System.out.println("level " + (grid.getLevel() == Heatmap.ENDLESS ? "endless" : grid.getLevel()) + ", "
+				+ files + " heatmaps, " + grid.getTicks() + " ticks");
+
+		int most = 1;
+		for (int row = 0; row < Heatmap.ROWS; row++) {
+			for (int column = 0; column < Heatmap.COLUMNS; column++) {
+				most = Math.max(most, grid.getBallCount(column, row));
+			}
+		}
+		// the shades grow with the logarithm, so the rare cells stay visible
+		StringBuilder line = new StringBuilder();
+		for (int row = 0; row < Heatmap.ROWS; row++) {
+			line.setLength(0);
+			line.append('|');
+			for (int column = 0; column < Heatmap.COLUMNS; column++) {
+				int count = grid.getBallCount(column, row);
+				int shade = count == 0 ? 0
+						: 1 + (int) ((SHADES.length() - 2) * Math.log(count) / Math.log(Math.max(2, most)));
+				line.append(SHADES.charAt(Math.min(shade, SHADES.length() - 1)));
+			}
+			System.out.println(line.append('|'));
+		}
+
+		StringBuilder kinds = new StringBuilder("collisions:");
+		for (CollisionWith with : CollisionWith.values()) {
+			kinds.append(' ').append(with.name().toLowerCase()).append(' ').append(grid.getCollisionCount(with));
+		}
+		System.out.println(kinds);
+
+		List<Integer> bricks = new ArrayList<>();
+		for (int i = 0; i < grid.getBrickCount(); i++) {
+			if (grid.getHits(i) > 0) {
+				bricks.add(i);
+			}
+		}
+		bricks.sort((a, b) -> Integer.compare(grid.getHits(b), grid.getHits(a)));
+		LevelData data = grid.getLevel() != Heatmap.ENDLESS ? LevelCache.getLevel(grid.getLevel()) : null;
+		System.out.println("bricks hit most:");
+		for (int brick : bricks.subList(0, Math.min(TOP_BRICKS, bricks.size()))) {
+			System.out.println("  brick " + brick + " hits " + grid.getHits(brick)
+					+ (data != null && brick < data.getBrickCount()
+							? " at " + data.getX(brick) + "/" + data.getY(brick)
+							: ""));
+		}
+		System.out.println((grid.getBrickCount() - bricks.size()) + " of " + grid.getBrickCount()
+				+ " bricks were never hit");
+	}
+}
@@ -0,0 +1,107 @@
+package project.breakout.versus;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates a slow network between the players of a versus game on one
+ * computer. The packets a {@code VersusLink} sends are delayed by the delay
+ * plus a random part of the jitter, so they may arrive in another order, and
+ * some are lost. The delay is added to the packets of both players, so the
+ * round trip time is twice the delay.
+ *
+ * The packets are sent by a thread of the simulator when their delay is over.
+ */
+public class NetworkSimulator {
+	private final long delayMicros;
+	private final long jitterMicros;
+	private final double loss;
+	private final Random random;
+	private final ScheduledExecutorService sender;
+
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong lost = new AtomicLong();
+
+	/**
+	 * Constructor for the NetworkSimulator.
+	 *
+	 * @param delayMillis
+	 *            The delay of every packet.
+	 * @param jitterMillis
+	 *            The largest random delay which is added to a packet.
+	 * @param lossPercent
+	 *            The share of the packets which are lost.
+	 * @param seed
+	 *            The seed of the jitter and the loss.
+	 */
+	public NetworkSimulator(double delayMillis, double jitterMillis, double lossPercent, long seed) {
+		this.delayMicros = (long) (delayMillis * 1000);
+		this.jitterMicros = (long) (jitterMillis * 1000);
+		this.loss = lossPercent / 100;
+		this.random = new Random(seed);
+		this.sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "network-simulator");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Sends a packet after its delay, unless it is lost.
+	 *
+	 * @param channel
+	 *            The channel to send the packet with.
+	 * @param packet
+	 *            The packet, which is copied.
+	 * @param to
+	 *            The address of the other player.
+	 */
+	public synchronized void send(DatagramChannel channel, ByteBuffer packet, SocketAddress to) {
+		if (random.nextDouble() < loss) {
+			lost.incrementAndGet();
+			return;
+		}
+		ByteBuffer copy = ByteBuffer.allocate(packet.remaining());
+		copy.put(packet).flip();
+		long micros = delayMicros + (jitterMicros > 0 ? (long) (random.nextDouble() * jitterMicros) : 0);
+		sender.schedule(() -> {
+			try {
+				channel.send(copy, to);
+				sent.incrementAndGet();
+			} catch (IOException e) {
+				// the channel was closed, like a packet lost
+				lost.incrementAndGet();
+			}
+		}, micros, TimeUnit.MICROSECONDS);
+	}
+
+	/**
+	 * Stops the thread of the simulator, the delayed packets are not sent.
+	 */
+	public void close() {
+		sender.shutdownNow();
+	}
+
+	@Override
+	public String toString() {
+		return "delay " + delayMicros / 1000.0 + " ms, jitter " + jitterMicros / 1000.0 + " ms, loss "
+				+ loss * 100 + " %";
+	}
+
+	// ---------Getters-------------------------
+
+	public long getSent() {
+		return sent.get();
+	}
+
+	public long getLost() {
+		return lost.get();
+	}
+}
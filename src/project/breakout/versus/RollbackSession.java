@@ -0,0 +1,397 @@
+package project.breakout.versus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import project.breakout.log.Log;
+
+/**
+ * Runs a versus game on one computer with rollback: the game doesn't wait for
+ * the input of the other player. Every tick is run right away with the input
+ * of the local player and a prediction of the remote one, which is the last
+ * input received from the other player. The local paddle moves with the next
+ * tick like in a game for one player.
+ *
+ * The state of the game is saved before every tick. When the real input of a
+ * tick arrives and it differs from the prediction, the game is rolled back to
+ * the state of that tick and the ticks up to now are run again with the real
+ * inputs. The game runs at most {@code MAX_PREDICTION} ticks ahead of the
+ * inputs of the other player, then it waits for them.
+ *
+ * Every packet repeats the local inputs the other player didn't acknowledge
+ * yet, so a lost packet is made up for by the next one. It carries the tick
+ * of the sender and how far it runs ahead of the other player, so the player
+ * who is ahead waits a tick now and then and both run at the same time. The
+ * checksum of the last tick whose inputs are all known is sent along, a
+ * different checksum on the other computer means the games went different
+ * ways.
+ *
+ * <pre>
+ * inputs: tick:int lead:byte ack:int checksumTick:int checksum:int
+ *         start:int count:byte input:short*count
+ * </pre>
+ */
+public class RollbackSession {
+	/**
+	 * The most ticks the game runs ahead of the inputs of the other player, at
+	 * 30 ms per tick that is a round trip time of about 300 ms.
+	 */
+	public static final int MAX_PREDICTION = 10;
+
+	/**
+	 * The number of states and inputs which are kept, a power of 2 larger than
+	 * the prediction and the input delay.
+	 */
+	private static final int RING = 64;
+	private static final int MAX_INPUTS_PER_PACKET = RING / 2;
+
+	private static final Log.Site DESYNC = Log.site("versus", Log.Level.ERROR, 1); //$NON-NLS-1$
+
+	private final VersusGame game;
+	private final VersusLink link;
+	private final int side;
+	private final int inputDelay;
+
+	private final VersusGame.State[] states = new VersusGame.State[RING];
+	private final short[] localInputs = new short[RING];
+	/**
+	 * The inputs of the other player, the real ones up to
+	 * {@code remoteConfirmed} and the predicted ones after it.
+	 */
+	private final short[] remoteInputs = new short[RING];
+	private int remoteConfirmed = -1;
+	private int remoteAck = -1;
+	private int firstMismatch = Integer.MAX_VALUE;
+
+	// the last packet of the other player
+	private int remoteTick = -1;
+	private int remoteLead = 0;
+	private final int[] remoteChecksumTicks = new int[RING];
+	private final int[] remoteChecksums = new int[RING];
+	private boolean remoteQuit = false;
+	private int syncWait = 0;
+
+	private volatile int mouseX = VersusGame.NO_INPUT;
+
+	// statistics
+	private long ticks = 0;
+	private long rollbacks = 0;
+	private long ticksRunAgain = 0;
+	private int maxRollback = 0;
+	private long corrections = 0;
+	private long waits = 0;
+	private long syncs = 0;
+	private long checksumsCompared = 0;
+	private long desyncs = 0;
+	private long packetsReceived = 0;
+
+	/**
+	 * Constructor for the RollbackSession.
+	 *
+	 * @param game
+	 *            The game, which is run by the session only.
+	 * @param link
+	 *            The connection to the other player.
+	 * @param inputDelay
+	 *            The ticks the local input is delayed, which makes fewer
+	 *            rollbacks but a slower paddle. 0 moves the paddle with the next
+	 *            tick.
+	 */
+	public RollbackSession(VersusGame game, VersusLink link, int inputDelay) {
+		if (inputDelay < 0 || inputDelay + MAX_PREDICTION >= MAX_INPUTS_PER_PACKET) {
+			throw new IllegalArgumentException("input delay must be between 0 and "
+					+ (MAX_INPUTS_PER_PACKET - MAX_PREDICTION - 1) + " ticks");
+		}
+		this.game = game;
+		this.link = link;
+		this.side = link.isHost() ? VersusGame.BOTTOM : VersusGame.TOP;
+		this.inputDelay = inputDelay;
+		for (int i = 0; i < RING; i++) {
+			states[i] = new VersusGame.State();
+			localInputs[i] = VersusGame.NO_INPUT;
+			remoteInputs[i] = VersusGame.NO_INPUT;
+			remoteChecksumTicks[i] = -1;
+		}
+	}
+
+	/**
+	 * Sets the mouse location of the local player, which is the input of the
+	 * next tick. It may be called from any thread.
+	 *
+	 * @param mouseX
+	 *            The x-position of the mouse in the field.
+	 */
+	public void setLocalInput(int mouseX) {
+		this.mouseX = mouseX;
+	}
+
+	// --------------------game loop----------------------------
+
+	/**
+	 * Runs a tick: receives the inputs of the other player, rolls back if a
+	 * prediction was wrong, runs the next tick unless the game has to wait and
+	 * sends the local inputs.
+	 *
+	 * @return {@code true} if a tick was run, {@code false} if the game waited.
+	 * @throws IOException
+	 *             if the socket failed.
+	 */
+	public boolean tick() throws IOException {
+		receive();
+		if (firstMismatch < game.getTick()) {
+			rollback();
+		}
+		firstMismatch = Integer.MAX_VALUE;
+		checkRemoteChecksums();
+
+		boolean ran = false;
+		int tick = game.getTick();
+		if (tick - remoteConfirmed > MAX_PREDICTION || tick + inputDelay - remoteAck >= MAX_INPUTS_PER_PACKET) {
+			// the other player is too far behind or doesn't get the packets
+			waits++;
+		} else if (mustSync()) {
+			syncs++;
+		} else {
+			localInputs[(tick + inputDelay) & (RING - 1)] = (short) mouseX;
+			run(tick);
+			ticks++;
+			ran = true;
+		}
+		send();
+		return ran;
+	}
+
+	/**
+	 * Runs a tick with the inputs of the players, predicts the remote input if
+	 * it isn't known yet.
+	 */
+	private void run(int tick) {
+		game.save(states[tick & (RING - 1)]);
+		if (tick > remoteConfirmed) {
+			remoteInputs[tick & (RING - 1)] = remoteConfirmed >= 0 ? remoteInputs[remoteConfirmed & (RING - 1)]
+					: VersusGame.NO_INPUT;
+		}
+		int local = localInputs[tick & (RING - 1)];
+		int remote = remoteInputs[tick & (RING - 1)];
+		if (side == VersusGame.BOTTOM) {
+			game.step(local, remote);
+		} else {
+			game.step(remote, local);
+		}
+	}
+
+	/**
+	 * Loads the state of the first tick which was run with a wrong prediction
+	 * and runs the ticks up to now again.
+	 */
+	private void rollback() {
+		int now = game.getTick();
+		double ballX = game.getBallX();
+		double ballY = game.getBallY();
+
+		game.load(states[firstMismatch & (RING - 1)]);
+		for (int tick = firstMismatch; tick < now; tick++) {
+			run(tick);
+		}
+
+		rollbacks++;
+		ticksRunAgain += now - firstMismatch;
+		maxRollback = Math.max(maxRollback, now - firstMismatch);
+		if (game.getBallX() != ballX || game.getBallY() != ballY) {
+			// the player sees the ball jump
+			corrections++;
+		}
+	}
+
+	/**
+	 * Checks if this game runs ahead of the other one by more than a tick. The
+	 * leads of both players contain the time of the packets, the half of their
+	 * difference is how far this game is ahead. After a tick of waiting the
+	 * next check waits for a round trip, until the other player saw it.
+	 */
+	private boolean mustSync() {
+		if (syncWait > 0) {
+			syncWait--;
+			return false;
+		}
+		if (remoteTick < 0) {
+			return false;
+		}
+		int lead = game.getTick() - remoteTick;
+		if (lead - remoteLead >= 2) {
+			syncWait = Math.max(1, lead + remoteLead);
+			return true;
+		}
+		return false;
+	}
+
+	// ---------packets-------------------------
+
+	private void send() throws IOException {
+		int tick = game.getTick();
+		ByteBuffer packet = link.beginPacket(VersusLink.INPUTS);
+		packet.putInt(tick);
+		packet.put((byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, tick - remoteTick)));
+		packet.putInt(remoteConfirmed);
+
+		// the state of the last tick whose inputs are all known
+		int checksumTick = Math.min(remoteConfirmed + 1, tick - 1);
+		packet.putInt(checksumTick);
+		packet.putInt(checksumTick >= 0 ? states[checksumTick & (RING - 1)].checksum() : 0);
+
+		int start = remoteAck + 1;
+		int count = Math.min(MAX_INPUTS_PER_PACKET, tick + inputDelay - start);
+		packet.putInt(start);
+		packet.put((byte) Math.max(0, count));
+		for (int i = 0; i < count; i++) {
+			packet.putShort(localInputs[(start + i) & (RING - 1)]);
+		}
+		link.send();
+	}
+
+	private void receive() throws IOException {
+		int type;
+		while ((type = link.receive()) >= 0) {
+			if (type == VersusLink.BYE) {
+				remoteQuit = true;
+			} else if (type == VersusLink.INPUTS) {
+				readInputs(link.getPayload());
+			}
+		}
+	}
+
+	private void readInputs(ByteBuffer packet) {
+		packetsReceived++;
+		int tick = packet.getInt();
+		// an older packet which arrived late changes nothing
+		if (tick >= remoteTick) {
+			remoteTick = tick;
+			remoteLead = packet.get();
+		} else {
+			packet.get();
+		}
+		remoteAck = Math.max(remoteAck, packet.getInt());
+		int checksumTick = packet.getInt();
+		int checksum = packet.getInt();
+		if (checksumTick >= 0) {
+			remoteChecksumTicks[checksumTick & (RING - 1)] = checksumTick;
+			remoteChecksums[checksumTick & (RING - 1)] = checksum;
+		}
+
+		int start = packet.getInt();
+		int count = packet.get() & 0xff;
+		for (int i = 0; i < count; i++) {
+			int inputTick = start + i;
+			short input = packet.getShort();
+			if (inputTick <= remoteConfirmed) {
+				continue;
+			}
+			if (inputTick != remoteConfirmed + 1) {
+				// the inputs before are missing
+				break;
+			}
+			if (inputTick < game.getTick() && remoteInputs[inputTick & (RING - 1)] != input) {
+				firstMismatch = Math.min(firstMismatch, inputTick);
+			}
+			remoteInputs[inputTick & (RING - 1)] = input;
+			remoteConfirmed = inputTick;
+		}
+	}
+
+	/**
+	 * Compares the checksums of the other player with the ones of the same ticks
+	 * here, once all inputs of a tick are known here too.
+	 */
+	private void checkRemoteChecksums() {
+		int last = Math.min(remoteConfirmed + 1, game.getTick() - 1);
+		for (int tick = Math.max(0, game.getTick() - RING + 1); tick <= last; tick++) {
+			int slot = tick & (RING - 1);
+			if (remoteChecksumTicks[slot] == tick && states[slot].getTick() == tick) {
+				remoteChecksumTicks[slot] = -1;
+				checksumsCompared++;
+				if (states[slot].checksum() != remoteChecksums[slot]) {
+					desyncs++;
+					DESYNC.log("the games went different ways at tick {}", tick);
+				}
+			}
+		}
+	}
+
+	// ---------Getters-------------------------
+
+	public VersusGame getGame() {
+		return game;
+	}
+
+	/**
+	 * @return {@code VersusGame.BOTTOM} or {@code VersusGame.TOP}.
+	 */
+	public int getSide() {
+		return side;
+	}
+
+	/**
+	 * @return {@code true} if the other player left the game.
+	 */
+	public boolean isRemoteQuit() {
+		return remoteQuit;
+	}
+
+	/**
+	 * Estimates the round trip time from the leads of the players.
+	 *
+	 * @return the round trip time in ticks, -1 if there was no packet yet.
+	 */
+	public int getRoundTripTicks() {
+		return remoteTick < 0 ? -1 : Math.max(0, game.getTick() - remoteTick + remoteLead);
+	}
+
+	public long getTicks() {
+		return ticks;
+	}
+
+	public long getRollbacks() {
+		return rollbacks;
+	}
+
+	public long getTicksRunAgain() {
+		return ticksRunAgain;
+	}
+
+	public int getMaxRollback() {
+		return maxRollback;
+	}
+
+	/**
+	 * @return the rollbacks which moved the ball the player sees.
+	 */
+	public long getCorrections() {
+		return corrections;
+	}
+
+	/**
+	 * @return the ticks the game waited for the inputs of the other player.
+	 */
+	public long getWaits() {
+		return waits;
+	}
+
+	/**
+	 * @return the ticks the game waited, because it was ahead of the other one.
+	 */
+	public long getSyncs() {
+		return syncs;
+	}
+
+	public long getChecksumsCompared() {
+		return checksumsCompared;
+	}
+
+	public long getDesyncs() {
+		return desyncs;
+	}
+
+	public long getPacketsReceived() {
+		return packetsReceived;
+	}
+}
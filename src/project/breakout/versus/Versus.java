@@ -0,0 +1,337 @@
+package project.breakout.versus;
+
+import java.awt.Frame;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The versus mode for two players, each on a computer of its own, who play
+ * against each other over the loopback interface or a LAN. Every computer runs
+ * the whole game with a {@code RollbackSession}, so the own paddle moves
+ * without waiting for the network.
+ *
+ * One player hosts the game and plays at the bottom, the other one joins it
+ * and plays at the top. Without --host and --join both players run in this
+ * JVM and the one at the top is a bot, so the game can be tried on one
+ * computer. The {@code NetworkSimulator} adds the delay, jitter and loss of a
+ * real network to the packets of this JVM, eg "--delay 50" for a round trip
+ * time of 100 ms. With --bot a bot plays instead of the mouse, with --headless
+ * no window is shown and the statistics are printed after --seconds.
+ *
+ * Usage: Versus [--host port | --join host:port] [--port n] [--delay ms]
+ * [--jitter ms] [--loss percent] [--input-delay ticks] [--bot] [--headless]
+ * [--seconds n] [--seed n]
+ */
+public class Versus {
+	/**
+	 * The time between two ticks, like the timer of the {@code BreakoutModel}.
+	 */
+	public static final long TICK_MILLIS = 30;
+
+	private static final int DEFAULT_PORT = 4711;
+	private static final int FIELD_WIDTH = 700;
+	private static final int FIELD_HEIGHT = 500;
+	private static final long CONNECT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+	private static final long REPORT_SECONDS = 5;
+
+	// options
+	private boolean local = true;
+	private boolean host = false;
+	private InetSocketAddress hostAddress;
+	private int port = -1;
+	private double delayMillis = 0;
+	private double jitterMillis = 0;
+	private double lossPercent = 0;
+	private int inputDelay = 0;
+	private boolean bot = false;
+	private boolean headless = false;
+	private long seconds = 0;
+	private long seed = 42;
+
+	public static void main(String[] args) throws Exception {
+		Versus versus = new Versus();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--host":
+				versus.local = false;
+				versus.host = true;
+				versus.port = Integer.parseInt(args[++i]);
+				break;
+			case "--join":
+				versus.local = false;
+				String[] address = args[++i].split(":");
+				versus.hostAddress = new InetSocketAddress(address[0],
+						address.length > 1 ? Integer.parseInt(address[1]) : DEFAULT_PORT);
+				break;
+			case "--port":
+				versus.port = Integer.parseInt(args[++i]);
+				break;
+			case "--delay":
+				versus.delayMillis = Double.parseDouble(args[++i]);
+				break;
+			case "--jitter":
+				versus.jitterMillis = Double.parseDouble(args[++i]);
+				break;
+			case "--loss":
+				versus.lossPercent = Double.parseDouble(args[++i]);
+				break;
+			case "--input-delay":
+				versus.inputDelay = Integer.parseInt(args[++i]);
+				break;
+			case "--bot":
+				versus.bot = true;
+				break;
+			case "--headless":
+				versus.headless = true;
+				break;
+			case "--seconds":
+				versus.seconds = Long.parseLong(args[++i]);
+				break;
+			case "--seed":
+				versus.seed = Long.parseLong(args[++i]);
+				break;
+			default:
+				System.out.println("unknown option " + args[i]);
+				System.out.println("usage: Versus [--host port | --join host:port] [--port n] [--delay ms] "
+						+ "[--jitter ms] [--loss percent] [--input-delay ticks] [--bot] [--headless] [--seconds n] "
+						+ "[--seed n]");
+				return;
+			}
+		}
+		if (versus.headless && versus.seconds <= 0) {
+			versus.seconds = 60;
+		}
+		System.exit(versus.run() ? 0 : 1);
+	}
+
+	/**
+	 * Connects the players and runs the game until a window is closed, the other
+	 * player leaves or the time is over.
+	 *
+	 * @return {@code false} if the games went different ways.
+	 */
+	private boolean run() throws Exception {
+		Random random = new Random(seed);
+		VersusLink link;
+		VersusLink other = null;
+		if (local) {
+			link = VersusLink.host(0);
+			other = VersusLink.join(new InetSocketAddress("127.0.0.1", //$NON-NLS-1$
+					((InetSocketAddress) link.getLocalAddress()).getPort()), 0);
+		} else if (host) {
+			link = VersusLink.host(port);
+		} else {
+			link = VersusLink.join(hostAddress, Math.max(0, port));
+		}
+		if (delayMillis > 0 || jitterMillis > 0 || lossPercent > 0) {
+			link.setSimulator(new NetworkSimulator(delayMillis, jitterMillis, lossPercent, random.nextLong()));
+			if (other != null) {
+				other.setSimulator(new NetworkSimulator(delayMillis, jitterMillis, lossPercent, random.nextLong()));
+			}
+		}
+
+		if (!connect(link, other)) {
+			System.out.println("the other player didn't answer");
+			link.close();
+			if (other != null) {
+				other.close();
+			}
+			return true;
+		}
+
+		CountDownLatch done = new CountDownLatch(1);
+		Peer player = new Peer(link, bot, headless, random.nextLong(), done);
+		Peer opponent = other != null ? new Peer(other, true, true, random.nextLong(), done) : null;
+		player.start();
+		if (opponent != null) {
+			opponent.start();
+		}
+
+		long reports = 0;
+		while (!done.await(REPORT_SECONDS, TimeUnit.SECONDS)) {
+			reports++;
+			if (headless) {
+				System.out.println(player.report());
+			}
+			if (seconds > 0 && reports * REPORT_SECONDS >= seconds) {
+				break;
+			}
+		}
+
+		player.stop();
+		if (opponent != null) {
+			opponent.stop();
+		}
+		System.out.println(player.report());
+		if (opponent != null) {
+			System.out.println(opponent.report());
+		}
+		System.out.println("the local paddle moves " + TICK_MILLIS * (1 + inputDelay)
+				+ " ms after the mouse at the latest, the round trip time doesn't change that");
+		return player.session.getDesyncs() == 0 && (opponent == null || opponent.session.getDesyncs() == 0);
+	}
+
+	private boolean connect(VersusLink link, VersusLink other) throws Exception {
+		if (other == null) {
+			System.out.println(link.isHost() ? "waiting for the other player on " + link.getLocalAddress()
+					: "joining the game");
+			return link.connect(FIELD_WIDTH, FIELD_HEIGHT, CONNECT_MILLIS);
+		}
+		// both players are in this JVM, the host waits while the other one joins
+		CompletableFuture<Boolean> hosted = CompletableFuture.supplyAsync(() -> {
+			try {
+				return link.connect(FIELD_WIDTH, FIELD_HEIGHT, CONNECT_MILLIS);
+			} catch (IOException | InterruptedException e) {
+				return false;
+			}
+		});
+		return other.connect(FIELD_WIDTH, FIELD_HEIGHT, CONNECT_MILLIS) && hosted.get();
+	}
+
+	/**
+	 * A player with the game loop, the window and the bot.
+	 */
+	private class Peer {
+		private final VersusLink link;
+		private final RollbackSession session;
+		private final Bot bot;
+		private final CountDownLatch done;
+		private final ScheduledExecutorService loop;
+		private VersusView view;
+		private Frame frame;
+
+		Peer(VersusLink link, boolean bot, boolean headless, long seed, CountDownLatch done) {
+			this.link = link;
+			this.session = new RollbackSession(new VersusGame(link.getWidth(), link.getHeight()), link, inputDelay);
+			this.bot = bot ? new Bot(session.getSide(), seed) : null;
+			this.done = done;
+			String name = session.getSide() == VersusGame.BOTTOM ? "bottom" : "top"; //$NON-NLS-1$ //$NON-NLS-2$
+			this.loop = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "versus-" + name); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			});
+			if (!headless) {
+				openWindow(name);
+			}
+		}
+
+		private void openWindow(String name) {
+			view = new VersusView(session.getGame(), session.getSide());
+			view.addMouseMotionListener(new MouseAdapter() {
+				@Override
+				public void mouseMoved(MouseEvent e) {
+					if (bot == null) {
+						session.setLocalInput(e.getX());
+					}
+				}
+			});
+			frame = new Frame("Breakout versus, " + name);
+			frame.add(view);
+			frame.setResizable(false);
+			frame.addWindowListener(new WindowAdapter() {
+				@Override
+				public void windowClosing(WindowEvent e) {
+					done.countDown();
+				}
+			});
+			frame.pack();
+			frame.setVisible(true);
+		}
+
+		void start() {
+			loop.scheduleAtFixedRate(this::tick, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+		}
+
+		private void tick() {
+			try {
+				if (bot != null) {
+					session.setLocalInput(bot.nextMouseX(session.getGame()));
+				}
+				session.tick();
+				if (view != null) {
+					view.render(session);
+				}
+				if (session.isRemoteQuit()) {
+					System.out.println("the other player left the game");
+					done.countDown();
+				}
+			} catch (IOException | RuntimeException e) {
+				System.out.println("the game failed: " + e);
+				done.countDown();
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void stop() throws InterruptedException {
+			loop.shutdown();
+			loop.awaitTermination(1, TimeUnit.SECONDS);
+			link.close();
+			if (frame != null) {
+				frame.dispose();
+			}
+		}
+
+		String report() {
+			VersusGame game = session.getGame();
+			int roundTrip = session.getRoundTripTicks();
+			return String.format(
+					"%s: tick %d, points %d:%d, round trip ~%d ms, rollbacks %d (%.1f ticks on average, longest %d), "
+							+ "ball corrected %d, waited %d, synced %d, desyncs %d",
+					session.getSide() == VersusGame.BOTTOM ? "bottom" : "top", game.getTick(), //$NON-NLS-1$ //$NON-NLS-2$
+					game.getPoints(VersusGame.BOTTOM), game.getPoints(VersusGame.TOP),
+					roundTrip < 0 ? -1 : roundTrip * TICK_MILLIS, session.getRollbacks(),
+					session.getRollbacks() == 0 ? 0.0 : session.getTicksRunAgain() / (double) session.getRollbacks(),
+					session.getMaxRollback(), session.getCorrections(), session.getWaits(), session.getSyncs(),
+					session.getDesyncs());
+		}
+	}
+
+	/**
+	 * A player who follows the ball when it comes towards the own paddle. It
+	 * misjudges the ball a bit and moves the mouse at a limited speed, so it
+	 * misses sometimes.
+	 */
+	private static class Bot {
+		private static final int SPEED = 6;
+		private static final int AIM_ERROR = 25;
+		private static final int LOOK_TICKS = 6;
+
+		private final int side;
+		private final Random random;
+		private double mouseX = -1;
+		private double targetX;
+		private int look = 0;
+
+		Bot(int side, long seed) {
+			this.side = side;
+			this.random = new Random(seed);
+		}
+
+		int nextMouseX(VersusGame game) {
+			if (mouseX < 0) {
+				mouseX = game.getWidth() / 2.0;
+				targetX = mouseX;
+			}
+			if (look-- <= 0) {
+				look = LOOK_TICKS;
+				int direction = Math.floorMod(game.getBall().getDirection(), 360);
+				boolean comingUp = direction < 90 || direction > 270;
+				boolean coming = side == VersusGame.TOP ? comingUp : !comingUp;
+				targetX = coming ? game.getBallX() + random.nextGaussian() * AIM_ERROR : game.getWidth() / 2.0;
+			}
+			mouseX += Math.max(-SPEED, Math.min(SPEED, targetX - mouseX));
+			return (int) mouseX;
+		}
+	}
+}
@@ -0,0 +1,414 @@
+package project.breakout.versus;
+
+import project.breakout.controller.CollisionController;
+import project.breakout.controller.CollisionWith;
+import project.breakout.model.BallModel;
+import project.breakout.model.BrickStore;
+import project.breakout.model.CollisionListener;
+import project.breakout.model.FrameRunner;
+import project.breakout.model.GameModel;
+import project.breakout.view.BreakoutBrick;
+
+/**
+ * The game of the versus mode: two players, one paddle at the bottom and one
+ * at the top of the field, and a ball without bricks. A player scores when the
+ * ball gets past the paddle of the other player, then the ball is served again
+ * from the middle towards the player who lost the point.
+ *
+ * The game is deterministic: a step depends on its state and the inputs of the
+ * two players only, so both computers of a versus game compute the same game
+ * from the same inputs. The state is saved into and loaded from a
+ * {@code State}, which the {@code RollbackSession} keeps for the last ticks.
+ *
+ * The ball is moved by the {@code BallModel}, the collisions are found by the
+ * {@code CollisionController} and the frames are run again after collisions
+ * by the {@code FrameRunner}, like in the {@code BreakoutGame}. The controller
+ * knows one paddle only, so the game passes it the paddle in the half of the
+ * field the ball is in.
+ */
+public class VersusGame implements GameModel, CollisionListener {
+	// the sides of the players
+	public static final int BOTTOM = 0;
+	public static final int TOP = 1;
+
+	/**
+	 * The input of a player who didn't move the mouse.
+	 */
+	public static final int NO_INPUT = -1;
+
+	private static final int PADDLE_WIDTH = 100;
+	private static final int PADDLE_HEIGHT = 10;
+	private static final int BALL_RADIUS = 3;
+
+	/**
+	 * The ticks the ball waits in the middle before it is served.
+	 */
+	private static final int SERVE_TICKS = 33;
+
+	/**
+	 * The angles of the serves, they follow each other in this order.
+	 */
+	private static final int[] SERVE_ANGLES = { 20, -30, 40, -10, 30, -40, 10, -20 };
+
+	private static final CollisionWith[] COLLISIONS = CollisionWith.values();
+
+	private final int width;
+	private final int height;
+	private final int[] paddleY = new int[2];
+
+	// the state, saved and loaded by the rollback
+	private final BallModel ball = new BallModel(BALL_RADIUS);
+	private final CollisionController collisionControl = new CollisionController();
+	private final FrameRunner frames = new FrameRunner(ball, this::updateFrame);
+	private final int[] paddleX = new int[2];
+	private final int[] points = new int[2];
+	private int tick = 0;
+	private int serveTicks = SERVE_TICKS;
+
+	/**
+	 * Constructor for the VersusGame.
+	 *
+	 * @param width
+	 *            The width of the field.
+	 * @param height
+	 *            The height of the field.
+	 */
+	public VersusGame(int width, int height) {
+		this.width = width;
+		this.height = height;
+		paddleY[BOTTOM] = height - PADDLE_HEIGHT - 2;
+		paddleY[TOP] = 2;
+		paddleX[BOTTOM] = (width - PADDLE_WIDTH) / 2;
+		paddleX[TOP] = (width - PADDLE_WIDTH) / 2;
+
+		ball.setGame(this);
+		// the game passes the collisions on to the ball, see collisionEvent
+		collisionControl.addListener(this);
+		serve(BOTTOM);
+	}
+
+	// --------------------game loop----------------------------
+
+	/**
+	 * Runs a step of the game with the inputs of both players.
+	 *
+	 * @param bottomInput
+	 *            The mouse location of the bottom player or {@code NO_INPUT}.
+	 * @param topInput
+	 *            The mouse location of the top player or {@code NO_INPUT}.
+	 */
+	public void step(int bottomInput, int topInput) {
+		movePaddle(BOTTOM, bottomInput);
+		movePaddle(TOP, topInput);
+		if (serveTicks > 0) {
+			serveTicks--;
+		} else {
+			updateFrame();
+			leaveHalf();
+		}
+		tick++;
+	}
+
+	private void movePaddle(int side, int mouseX) {
+		int paddleHalf = PADDLE_WIDTH / 2;
+		// like the paddle of the GameSession, it stays in the field
+		if (mouseX > paddleHalf && mouseX < width - paddleHalf) {
+			paddleX[side] = mouseX - paddleHalf;
+		}
+	}
+
+	private void updateFrame() {
+		collisionControl.checkForCollision(this);
+		// a point was scored, the ball waits for the serve
+		if (serveTicks == 0) {
+			ball.updatePosition(FrameRunner.FRAME_TIME);
+		}
+	}
+
+	/**
+	 * The controller doesn't detect the paddle again right after it, so a ball
+	 * which went from one paddle to the other without touching a wall wouldn't
+	 * bounce. When the ball moves away from a paddle in the other half, the
+	 * last collision is set to the wall behind that paddle, which the ball
+	 * can't reach on its way.
+	 */
+	private void leaveHalf() {
+		if (collisionControl.getLastCollisionWith() != CollisionWith.PADDLE) {
+			return;
+		}
+		boolean movingUp = movingUp(ball.getDirection());
+		boolean inTopHalf = sideOfBall() == TOP;
+		if (movingUp && inTopHalf) {
+			collisionControl.setLastCollisionWith(CollisionWith.BOTTOMWALL);
+		} else if (!movingUp && !inTopHalf) {
+			collisionControl.setLastCollisionWith(CollisionWith.UPPERWALL);
+		}
+	}
+
+	private static boolean movingUp(int direction) {
+		int degrees = Math.floorMod(direction, 360);
+		return degrees < 90 || degrees > 270;
+	}
+
+	@Override
+	public void collisionEvent(CollisionWith lastCollisionWith) {
+		switch (lastCollisionWith) {
+		case UPPERWALL:
+			points[BOTTOM]++;
+			serve(TOP);
+			return;
+		case BOTTOMWALL:
+			points[TOP]++;
+			serve(BOTTOM);
+			return;
+		case PADDLE:
+			if (sideOfBall() == TOP) {
+				// the ball bounces off the top paddle like off the bottom one upside down
+				ball.setDirection(180 - ball.getDirection());
+				ball.collisionEvent(lastCollisionWith);
+				ball.setDirection(Math.floorMod(180 - ball.getDirection(), 360));
+				break;
+			}
+			ball.collisionEvent(lastCollisionWith);
+			break;
+		default:
+			ball.collisionEvent(lastCollisionWith);
+			break;
+		}
+
+		frames.runAgain();
+	}
+
+	/**
+	 * Puts the ball into the middle, from where it is served towards a player
+	 * after a moment.
+	 */
+	private void serve(int towards) {
+		int angle = SERVE_ANGLES[(points[BOTTOM] + points[TOP]) % SERVE_ANGLES.length];
+		ball.setX(width / 2 - BALL_RADIUS);
+		ball.setY(height / 2 - BALL_RADIUS);
+		ball.setDirection(Math.floorMod((towards == BOTTOM ? 180 : 0) + angle, 360));
+		// the ball moves away from the wall behind it
+		collisionControl.setLastCollisionWith(towards == BOTTOM ? CollisionWith.UPPERWALL : CollisionWith.BOTTOMWALL);
+		serveTicks = SERVE_TICKS;
+	}
+
+	private int sideOfBall() {
+		return ball.getY() + BALL_RADIUS < height / 2.0 ? TOP : BOTTOM;
+	}
+
+	// -------------state-----------
+
+	/**
+	 * Saves the state of the game.
+	 *
+	 * @param state
+	 *            The state to overwrite.
+	 */
+	public void save(State state) {
+		state.tick = tick;
+		state.ballX = ball.getX();
+		state.ballY = ball.getY();
+		state.direction = ball.getDirection();
+		state.lastCollision = collisionControl.getLastCollisionWith().ordinal();
+		state.bottomX = paddleX[BOTTOM];
+		state.topX = paddleX[TOP];
+		state.bottomPoints = points[BOTTOM];
+		state.topPoints = points[TOP];
+		state.serveTicks = serveTicks;
+	}
+
+	/**
+	 * Loads a state of the game, which was saved before.
+	 *
+	 * @param state
+	 *            The state.
+	 */
+	public void load(State state) {
+		tick = state.tick;
+		ball.setX(state.ballX);
+		ball.setY(state.ballY);
+		ball.setDirection(state.direction);
+		collisionControl.setLastCollisionWith(COLLISIONS[state.lastCollision]);
+		paddleX[BOTTOM] = state.bottomX;
+		paddleX[TOP] = state.topX;
+		points[BOTTOM] = state.bottomPoints;
+		points[TOP] = state.topPoints;
+		serveTicks = state.serveTicks;
+	}
+
+	/**
+	 * The state of a game at the beginning of a tick. The states are kept and
+	 * reused by the {@code RollbackSession}, so saving allocates nothing.
+	 */
+	public static class State {
+		private int tick;
+		private double ballX;
+		private double ballY;
+		private int direction;
+		private int lastCollision;
+		private int bottomX;
+		private int topX;
+		private int bottomPoints;
+		private int topPoints;
+		private int serveTicks;
+
+		/**
+		 * Computes a checksum of the state, which two computers compare to find
+		 * out if their games went different ways.
+		 *
+		 * @return the checksum.
+		 */
+		public int checksum() {
+			long hash = tick;
+			hash = hash * 31 + Double.doubleToLongBits(ballX);
+			hash = hash * 31 + Double.doubleToLongBits(ballY);
+			hash = hash * 31 + direction;
+			hash = hash * 31 + lastCollision;
+			hash = hash * 31 + bottomX;
+			hash = hash * 31 + topX;
+			hash = hash * 31 + bottomPoints;
+			hash = hash * 31 + topPoints;
+			hash = hash * 31 + serveTicks;
+			return (int) (hash ^ (hash >>> 32));
+		}
+
+		public int getTick() {
+			return tick;
+		}
+
+		public double getBallX() {
+			return ballX;
+		}
+
+		public double getBallY() {
+			return ballY;
+		}
+	}
+
+	// ---------Getters-------------------------
+
+	public int getTick() {
+		return tick;
+	}
+
+	/**
+	 * Gets the points of a player.
+	 *
+	 * @param side
+	 *            {@code BOTTOM} or {@code TOP}.
+	 * @return the points.
+	 */
+	public int getPoints(int side) {
+		return points[side];
+	}
+
+	/**
+	 * Gets the paddle of a player.
+	 *
+	 * @param side
+	 *            {@code BOTTOM} or {@code TOP}.
+	 * @return the x-position of the paddle.
+	 */
+	public int getPaddleX(int side) {
+		return paddleX[side];
+	}
+
+	/**
+	 * Gets the paddle of a player.
+	 *
+	 * @param side
+	 *            {@code BOTTOM} or {@code TOP}.
+	 * @return the y-position of the paddle.
+	 */
+	public int getPaddleY(int side) {
+		return paddleY[side];
+	}
+
+	public boolean isServing() {
+		return serveTicks > 0;
+	}
+
+	public BallModel getBall() {
+		return ball;
+	}
+
+	@Override
+	public double getBallX() {
+		return ball.getX();
+	}
+
+	@Override
+	public double getBallY() {
+		return ball.getY();
+	}
+
+	@Override
+	public int getBallRadius() {
+		return BALL_RADIUS;
+	}
+
+	/**
+	 * Gets the paddle in the half of the ball, the only one it can hit.
+	 */
+	@Override
+	public int getPaddleX() {
+		return paddleX[sideOfBall()];
+	}
+
+	/**
+	 * Gets the paddle in the half of the ball, the only one it can hit.
+	 */
+	@Override
+	public int getPaddleY() {
+		return paddleY[sideOfBall()];
+	}
+
+	@Override
+	public int getPaddleWidth() {
+		return PADDLE_WIDTH;
+	}
+
+	@Override
+	public int getPaddleHeight() {
+		return PADDLE_HEIGHT;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * The versus mode has no bricks.
+	 */
+	@Override
+	public BreakoutBrick[] getBrickArray() {
+		return null;
+	}
+
+	/**
+	 * The versus mode has no bricks.
+	 */
+	@Override
+	public BrickStore getBrickStore() {
+		return null;
+	}
+
+	@Override
+	public void deleteBrickAfterCollision(BreakoutBrick brick) {
+	}
+
+	@Override
+	public void deleteBrickAfterCollision(int brick) {
+	}
+
+	@Override
+	public void levelDone() {
+	}
+}
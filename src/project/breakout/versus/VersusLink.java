@@ -0,0 +1,291 @@
+package project.breakout.versus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The connection between the two players of a versus game: a UDP socket which
+ * sends and receives small packets without blocking, so the game loop polls it
+ * once per tick. A lost packet isn't sent again by the link, the
+ * {@code RollbackSession} repeats the inputs which weren't acknowledged in
+ * every packet instead.
+ *
+ * The player who hosts the game plays at the bottom and waits for the other
+ * player, who joins with a hello packet. The host answers with the size of the
+ * field, so both games are the same.
+ *
+ * <pre>
+ * packet: "BV" version:byte type:byte payload
+ * hello:  width:short height:short
+ * inputs: see RollbackSession
+ * bye:    -
+ * </pre>
+ */
+public class VersusLink implements Closeable {
+	static final byte[] MAGIC = { 'B', 'V' };
+	static final int VERSION = 1;
+
+	// the types of the packets
+	static final int HELLO = 0;
+	static final int INPUTS = 1;
+	static final int BYE = 2;
+
+	static final int MAX_PACKET = 1024;
+	private static final long HELLO_MILLIS = 100;
+
+	private final DatagramChannel channel;
+	private final boolean host;
+	private SocketAddress peer;
+	private NetworkSimulator simulator;
+	private int width;
+	private int height;
+
+	private final ByteBuffer out = ByteBuffer.allocate(MAX_PACKET);
+	private final ByteBuffer in = ByteBuffer.allocate(MAX_PACKET);
+
+	private VersusLink(DatagramChannel channel, boolean host, SocketAddress peer) throws IOException {
+		this.channel = channel;
+		this.host = host;
+		this.peer = peer;
+		channel.configureBlocking(false);
+	}
+
+	/**
+	 * Opens the link of the player who hosts the game.
+	 *
+	 * @param port
+	 *            The UDP port to wait for the other player on, 0 for any.
+	 * @return the link, which isn't connected yet.
+	 * @throws IOException
+	 *             if the port can't be bound.
+	 */
+	public static VersusLink host(int port) throws IOException {
+		return new VersusLink(DatagramChannel.open().bind(new InetSocketAddress(port)), true, null);
+	}
+
+	/**
+	 * Opens the link of the player who joins a game.
+	 *
+	 * @param hostAddress
+	 *            The address of the host.
+	 * @param port
+	 *            The local UDP port, 0 for any.
+	 * @return the link, which isn't connected yet.
+	 * @throws IOException
+	 *             if the port can't be bound.
+	 */
+	public static VersusLink join(SocketAddress hostAddress, int port) throws IOException {
+		return new VersusLink(DatagramChannel.open().bind(new InetSocketAddress(port)), false, hostAddress);
+	}
+
+	/**
+	 * Sets the simulator, which delays and loses the packets this link sends.
+	 *
+	 * @param simulator
+	 *            The simulator or {@code null} to send the packets right away.
+	 */
+	public void setSimulator(NetworkSimulator simulator) {
+		this.simulator = simulator;
+	}
+
+	// ---------handshake-------------------------
+
+	/**
+	 * Waits for the other player. The host waits for the hello of the other
+	 * player and answers it, the other player sends hellos until it gets the
+	 * answer.
+	 *
+	 * @param fieldWidth
+	 *            The width of the field of the host.
+	 * @param fieldHeight
+	 *            The height of the field of the host.
+	 * @param timeoutMillis
+	 *            How long to wait.
+	 * @return {@code true} if the other player answered in time.
+	 * @throws IOException
+	 *             if the socket failed.
+	 * @throws InterruptedException
+	 *             if the thread was interrupted while waiting.
+	 */
+	public boolean connect(int fieldWidth, int fieldHeight, long timeoutMillis)
+			throws IOException, InterruptedException {
+		width = fieldWidth;
+		height = fieldHeight;
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while (System.nanoTime() < deadline) {
+			if (!host) {
+				sendHello();
+			}
+			long helloDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HELLO_MILLIS);
+			while (System.nanoTime() < helloDeadline) {
+				SocketAddress from = receivePacket();
+				if (from != null && readType() == HELLO) {
+					if (host) {
+						peer = from;
+						sendHello();
+					} else {
+						width = in.getShort();
+						height = in.getShort();
+					}
+					return true;
+				}
+				Thread.sleep(1);
+			}
+		}
+		return false;
+	}
+
+	private void sendHello() throws IOException {
+		ByteBuffer packet = beginPacket(HELLO);
+		packet.putShort((short) width);
+		packet.putShort((short) height);
+		send();
+	}
+
+	// ---------packets-------------------------
+
+	/**
+	 * Starts a packet.
+	 *
+	 * @param type
+	 *            The type of the packet.
+	 * @return the buffer of the packet, to which the payload is written.
+	 */
+	ByteBuffer beginPacket(int type) {
+		out.clear();
+		out.put(MAGIC);
+		out.put((byte) VERSION);
+		out.put((byte) type);
+		return out;
+	}
+
+	/**
+	 * Sends the packet, which was started last, to the other player.
+	 *
+	 * @throws IOException
+	 *             if the socket failed.
+	 */
+	void send() throws IOException {
+		out.flip();
+		if (simulator != null) {
+			simulator.send(channel, out, peer);
+		} else {
+			// a full send buffer loses the packet like the network would
+			channel.send(out, peer);
+		}
+	}
+
+	/**
+	 * Receives the next packet of the other player without waiting. The host
+	 * answers a hello again, whose answer was lost.
+	 *
+	 * @return the type of the packet or -1 if there is none. The payload is
+	 *         read from {@code getPayload}.
+	 * @throws IOException
+	 *             if the socket failed.
+	 */
+	int receive() throws IOException {
+		SocketAddress from;
+		while ((from = receivePacket()) != null) {
+			if (!from.equals(peer)) {
+				continue;
+			}
+			int type = readType();
+			if (type == HELLO) {
+				if (host) {
+					sendHello();
+				}
+				continue;
+			}
+			if (type >= 0) {
+				return type;
+			}
+		}
+		return -1;
+	}
+
+	private SocketAddress receivePacket() throws IOException {
+		in.clear();
+		SocketAddress from = channel.receive(in);
+		in.flip();
+		return from;
+	}
+
+	/**
+	 * Reads the header of the received packet.
+	 *
+	 * @return the type or -1 if it isn't a packet of the versus mode.
+	 */
+	private int readType() {
+		if (in.remaining() < MAGIC.length + 2) {
+			return -1;
+		}
+		for (byte b : MAGIC) {
+			if (in.get() != b) {
+				return -1;
+			}
+		}
+		return in.get() == VERSION ? in.get() : -1;
+	}
+
+	ByteBuffer getPayload() {
+		return in;
+	}
+
+	/**
+	 * Tells the other player that the game is over and closes the socket.
+	 */
+	@Override
+	public void close() {
+		try {
+			if (peer != null) {
+				beginPacket(BYE);
+				out.flip();
+				channel.send(out, peer);
+			}
+		} catch (IOException e) {
+			// the other player finds out by the missing packets
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+		}
+		if (simulator != null) {
+			simulator.close();
+		}
+	}
+
+	// ---------Getters-------------------------
+
+	/**
+	 * @return {@code true} if this player hosts the game and plays at the
+	 *         bottom, {@code false} if not.
+	 */
+	public boolean isHost() {
+		return host;
+	}
+
+	/**
+	 * Gets the local address, eg to tell the other player the port.
+	 *
+	 * @return the address or {@code null} if the socket is closed.
+	 * @throws IOException
+	 *             if the socket failed.
+	 */
+	public SocketAddress getLocalAddress() throws IOException {
+		return channel.getLocalAddress();
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+}
@@ -0,0 +1,112 @@
+package project.breakout.versus;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+
+import acm.graphics.GLabel;
+import project.breakout.view.BreakoutBall;
+import project.breakout.view.BreakoutPaddle;
+
+/**
+ * The window of a versus game, which is rendered actively by the game loop
+ * like the {@code ActiveRenderView}. The field is turned upside down for the
+ * player at the top, so every player sees the own paddle at the bottom.
+ */
+@SuppressWarnings("serial")
+public class VersusView extends Canvas {
+	private static final int BUFFERS = 2;
+
+	private final BreakoutPaddle localPaddle = new BreakoutPaddle(0, 0);
+	private final BreakoutPaddle remotePaddle = new BreakoutPaddle(0, 0);
+	private final BreakoutBall ball;
+	private final GLabel score = new GLabel("", 10, 0);
+	private final GLabel status = new GLabel("", 10, 0);
+
+	private final int side;
+	private BufferStrategy strategy;
+
+	/**
+	 * Constructor for the VersusView.
+	 *
+	 * @param game
+	 *            The game which is shown.
+	 * @param side
+	 *            The side of the local player.
+	 */
+	public VersusView(VersusGame game, int side) {
+		this.side = side;
+		localPaddle.setColor(Color.red);
+		localPaddle.setSize(game.getPaddleWidth(), game.getPaddleHeight());
+		remotePaddle.setColor(Color.blue);
+		remotePaddle.setSize(game.getPaddleWidth(), game.getPaddleHeight());
+		ball = new BreakoutBall(game.getBallRadius() * 2);
+		ball.setFillColor(Color.red);
+		ball.setFilled(true);
+		score.setLocation(10, game.getHeight() / 2 - 6);
+		status.setLocation(10, game.getHeight() / 2 + 16);
+		status.setColor(Color.gray);
+
+		setSize(game.getWidth(), game.getHeight());
+		setBackground(Color.WHITE);
+		setIgnoreRepaint(true);
+	}
+
+	/**
+	 * Renders the game into the back buffer and flips it to the screen. It is
+	 * called by the game loop after every tick.
+	 *
+	 * @param session
+	 *            The session of the game.
+	 */
+	public synchronized void render(RollbackSession session) {
+		if (!isDisplayable() || getWidth() <= 0 || getHeight() <= 0) {
+			return;
+		}
+		if (strategy == null) {
+			createBufferStrategy(BUFFERS);
+			strategy = getBufferStrategy();
+		}
+
+		VersusGame game = session.getGame();
+		int other = 1 - side;
+		localPaddle.setLocation(game.getPaddleX(side), y(game, game.getPaddleY(side), game.getPaddleHeight()));
+		remotePaddle.setLocation(game.getPaddleX(other), y(game, game.getPaddleY(other), game.getPaddleHeight()));
+		ball.setLocation(game.getBallX(), y(game, game.getBallY(), 2 * game.getBallRadius()));
+		score.setLabel("you " + game.getPoints(side) + " : " + game.getPoints(other) + " other");
+		int roundTrip = session.getRoundTripTicks();
+		status.setLabel((roundTrip < 0 ? "waiting for the other player"
+				: "round trip ~" + roundTrip * Versus.TICK_MILLIS + " ms") + ", rollbacks " + session.getRollbacks()
+				+ ", longest " + session.getMaxRollback() + " ticks");
+
+		do {
+			do {
+				Graphics g = strategy.getDrawGraphics();
+				try {
+					g.setColor(getBackground());
+					g.fillRect(0, 0, getWidth(), getHeight());
+					g.setColor(Color.lightGray);
+					g.drawLine(0, getHeight() / 2, getWidth(), getHeight() / 2);
+					score.paint(g);
+					status.paint(g);
+					remotePaddle.paint(g);
+					localPaddle.paint(g);
+					ball.paint(g);
+				} finally {
+					g.dispose();
+				}
+			} while (strategy.contentsRestored());
+			strategy.show();
+		} while (strategy.contentsLost());
+		Toolkit.getDefaultToolkit().sync();
+	}
+
+	/**
+	 * Turns a y-position upside down for the player at the top.
+	 */
+	private double y(VersusGame game, double y, int objectHeight) {
+		return side == VersusGame.BOTTOM ? y : game.getHeight() - y - objectHeight;
+	}
+}
@@ -0,0 +1,289 @@
+package project.breakout.view;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+
+import acm.graphics.GLabel;
+import project.breakout.model.BallModel;
+import project.breakout.model.BrickStore;
+
+/**
+ * This class is an alternative to the {@code BreakoutView}, which renders the
+ * game actively instead of waiting for the repaint manager of AWT. Every frame
+ * is rendered by the game loop through {@code frameDone} into the back buffer of
+ * a {@code BufferStrategy} and presented by page flipping, so the frame appears
+ * right after the tick which created it.
+ *
+ * The bricks are kept in a {@code BrickBitmapLayer}, which tracks the dirty
+ * regions of removed bricks, so a frame costs one copy of the bitmap plus the
+ * paddle, the ball and the labels. It is selected at startup with the system
+ * property "breakout.renderer=active".
+ */
+@SuppressWarnings("serial")
+public class ActiveRenderView extends Canvas implements GameView {
+	private static final int BUFFERS = 2;
+
+	private final BreakoutPaddle paddle = new BreakoutPaddle(0, 0);
+	private final BreakoutBall ball = new BreakoutBall(0);
+	private final GLabel[] infoLabels = new GLabel[INFO_LINES];
+	private boolean infoVisible = false;
+	private boolean hudShown = false;
+	private GLabel winnerLabel;
+
+	private final BrickBitmapLayer brickLayer = new BrickBitmapLayer(this);
+	private BrickStore brickStore;
+
+	/**
+	 * The moving bricks of the endless mode, which are drawn every frame.
+	 */
+	private BreakoutBrick[] movingBricks;
+
+	private BufferStrategy strategy;
+
+	/**
+	 * Constructor for the ActiveRenderView.
+	 *
+	 * @param canvasWidth
+	 *            The desired width of the canvas.
+	 * @param canvasHeight
+	 *            The desired height of the canvas.
+	 */
+	public ActiveRenderView(int canvasWidth, int canvasHeight) {
+		paddle.setColor(Color.red);
+		ball.setFillColor(Color.red);
+		ball.setFilled(true);
+		for (int i = 0; i < INFO_LINES; i++) {
+			infoLabels[i] = new GLabel("", 0, 10 + INFO_LINE_HEIGHT * i);
+		}
+
+		setSize(canvasWidth, canvasHeight);
+		setBackground(Color.WHITE);
+		setIgnoreRepaint(true);
+		setFocusable(true);
+	}
+
+	// ---------rendering--------------------------
+
+	@Override
+	public void frameDone() {
+		render();
+	}
+
+	/**
+	 * Renders a frame into the back buffer and flips it to the screen.
+	 */
+	private synchronized void render() {
+		if (!isDisplayable() || getWidth() <= 0 || getHeight() <= 0) {
+			return;
+		}
+		if (strategy == null) {
+			createBufferStrategy(BUFFERS);
+			strategy = getBufferStrategy();
+		}
+
+		do {
+			do {
+				Graphics g = strategy.getDrawGraphics();
+				try {
+					draw(g);
+				} finally {
+					g.dispose();
+				}
+			} while (strategy.contentsRestored());
+			strategy.show();
+		} while (strategy.contentsLost());
+		Toolkit.getDefaultToolkit().sync();
+	}
+
+	/**
+	 * Draws the whole frame.
+	 */
+	private void draw(Graphics g) {
+		g.setColor(getBackground());
+		g.fillRect(0, 0, getWidth(), getHeight());
+
+		brickLayer.paint(g);
+		if (movingBricks != null) {
+			for (BreakoutBrick brick : movingBricks) {
+				if (brick != null) {
+					brick.paint(g);
+				}
+			}
+		}
+
+		ball.paint(g);
+		paddle.paint(g);
+		if (infoVisible) {
+			for (GLabel infoLabel : infoLabels) {
+				infoLabel.paint(g);
+			}
+		}
+		if (winnerLabel != null) {
+			winnerLabel.paint(g);
+		}
+	}
+
+	/**
+	 * Frames are rendered by the game loop, when AWT asks for a repaint the last
+	 * state is rendered again.
+	 */
+	@Override
+	public void paint(Graphics g) {
+		render();
+	}
+
+	@Override
+	public void update(Graphics g) {
+		render();
+	}
+
+	// ---------paddle methods--------------------------
+
+	@Override
+	public void setPaddleLocation(int xCoord, int yCoord) {
+		paddle.setLocation(xCoord, yCoord);
+	}
+
+	@Override
+	public void setPaddleSize(int width, int height) {
+		paddle.setSize(width, height);
+	}
+
+	// ----------ball methods-------------------------
+
+	@Override
+	public void setBallsRadius(int radius) {
+		ball.setSize(radius * 2, radius * 2);
+	}
+
+	@Override
+	public void setBallsPosition(double x, double y) {
+		ball.setLocation((int) x, (int) y);
+	}
+
+	@Override
+	public void updateBallsPosition(BallModel ballModel) {
+		ball.setLocation(ballModel.getX(), ballModel.getY());
+	}
+
+	// ------------Brick methods-------------------------
+
+	@Override
+	public synchronized void updateBricks(BreakoutBrick[] bricks) {
+		for (BreakoutBrick brick : bricks) {
+			if (brick != null) {
+				brick.setFilled(true);
+			}
+		}
+		brickStore = null;
+		brickLayer.setBricks(bricks);
+	}
+
+	@Override
+	public synchronized void updateBricks(BrickStore store) {
+		brickStore = store;
+		brickLayer.setBricks(store);
+	}
+
+	@Override
+	public synchronized void addBricks(BreakoutBrick[] bricks, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (bricks[i] != null) {
+				bricks[i].setFilled(true);
+			}
+		}
+		movingBricks = bricks;
+	}
+
+	/**
+	 * The moving bricks are drawn from their array, which doesn't contain the
+	 * removed bricks after this call.
+	 */
+	@Override
+	public void removeBricks(BreakoutBrick[] bricks, int from, int to) {
+	}
+
+	@Override
+	public synchronized void removeBrick(BreakoutBrick brick) {
+		brickLayer.invalidate(brick.getX(), brick.getY(), brick.getWidth(), brick.getHeight());
+	}
+
+	@Override
+	public synchronized void removeBrick(int brick) {
+		if (brickStore != null) {
+			brickLayer.invalidate(brickStore.getX(brick), brickStore.getY(brick), brickStore.getWidth(brick),
+					brickStore.getHeight(brick));
+		}
+	}
+
+	// ---------level methods--------------------------
+
+	@Override
+	public void levelDone() {
+		GLabel label = new GLabel("Winner!", getWidth() / 2, getHeight() / 2);
+		label.setFont(new Font("Serif", Font.BOLD, 20));
+		label.setColor(Color.green);
+		winnerLabel = label;
+	}
+
+	@Override
+	public void levelStarted() {
+		winnerLabel = null;
+	}
+
+	// ----------infoLabel methods--------------------
+
+	@Override
+	public synchronized void setInfoText(String text) {
+		setInfoText(0, text);
+		for (int i = 1; i < INFO_LINES; i++) {
+			setInfoText(i, "");
+		}
+	}
+
+	@Override
+	public synchronized void setInfoText(int line, String text) {
+		hudShown = false;
+		infoLabels[line].setLabel(text);
+	}
+
+	@Override
+	public void showInfoText(boolean show) {
+		infoVisible = show;
+	}
+
+	@Override
+	public boolean isInfoVisible() {
+		return infoVisible;
+	}
+
+	@Override
+	public synchronized void showHud() {
+		for (GLabel infoLabel : infoLabels) {
+			infoLabel.setLabel("");
+		}
+		hudShown = true;
+	}
+
+	@Override
+	public synchronized boolean isHudShown() {
+		return hudShown && infoVisible;
+	}
+
+	@Override
+	public synchronized void setHudText(int line, String text) {
+		if (hudShown) {
+			infoLabels[line].setLabel(text);
+		}
+	}
+
+	@Override
+	public Component getComponent() {
+		return this;
+	}
+}
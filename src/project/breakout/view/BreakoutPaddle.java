@@ -7,6 +7,7 @@ import acm.graphics.GCompound;
 import acm.graphics.GObject;
 import acm.graphics.GRect;
 import acm.graphics.GRectangle;
+import project.breakout.log.Log;
 
 /**
  * This class represents the paddle in the BreakoutView.
@@ -20,6 +21,8 @@ public class BreakoutPaddle extends GCompound {
 	private final double PADDLE_ROUNDNESS = 0.9;
 	private Color paddleColor = Color.red;
 
+	private static final Log.Site SIZE = Log.site("paddle.size", Log.Level.DEBUG, 1); //$NON-NLS-1$
+
 	/**
 	 * Constructor for the BreakoutPaddle.
 	 * 
@@ -78,10 +81,10 @@ public class BreakoutPaddle extends GCompound {
 		rectOfPaddle.setFilled(true);
 
 		double arcWidth = width * (1 - PADDLE_ROUNDNESS);
-		System.out.println("desired arcWidth: " + arcWidth / 2);
+		SIZE.log("desired arcWidth: {}", arcWidth / 2);
 		roundLeft = new GArc(arcWidth, height, 90, 180);
 		roundLeft.setFilled(true);
-		System.out.println("roundLeft.getWidth():" + roundLeft.getWidth());
+		SIZE.log("roundLeft.getWidth(): {}", roundLeft.getWidth());
 
 		roundRight = new GArc(arcWidth, height, 90, -180);
 		roundRight.setFilled(true);
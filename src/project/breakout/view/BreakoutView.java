@@ -1,12 +1,14 @@
 package project.breakout.view;
 
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Font;
 
 import acm.graphics.GCanvas;
 import acm.graphics.GLabel;
 import acm.graphics.GRect;
 import project.breakout.model.BallModel;
+import project.breakout.model.BrickStore;
 
 /**
  * This class represents the {@code BreakoutModel} as a game view. It provides a
@@ -14,13 +16,23 @@ import project.breakout.model.BallModel;
  * {@code BreakoutController}.
  */
 @SuppressWarnings("serial")
-public class BreakoutView extends GCanvas {
+public class BreakoutView extends GCanvas implements GameView {
 
 	private GRect paddleOld = new GRect(0, 0);
 	private BreakoutPaddle paddle = new BreakoutPaddle(0, 0);
 	private BreakoutBall ball = new BreakoutBall(0);
-	private GLabel infoLabel = new GLabel("", 0, 10);
+	private GLabel[] infoLabels = new GLabel[INFO_LINES];
+	private boolean hudShown = false;
 	private GLabel winnerLabel;
+	private BrickStoreLayer brickLayer;
+
+	/**
+	 * If the bricks are cached in a bitmap, which is switched on with the system
+	 * property "breakout.brickBitmap".
+	 */
+	private static final boolean BRICK_BITMAP = Boolean.getBoolean("breakout.brickBitmap"); //$NON-NLS-1$
+	private BrickBitmapLayer brickBitmap;
+	private BrickStore brickStore;
 
 	/**
 	 * Constructor for the BreakoutView.
@@ -34,12 +46,22 @@ public class BreakoutView extends GCanvas {
 		paddle.setColor(Color.red);
 		ball.setFillColor(Color.red);
 		ball.setFilled(true);
-		infoLabel.setVisible(false);
+		for (int i = 0; i < INFO_LINES; i++) {
+			infoLabels[i] = new GLabel("", 0, 10 + INFO_LINE_HEIGHT * i);
+			infoLabels[i].setVisible(false);
+		}
 
 		setSize(canvasWidth, canvasHeight);
+		if (BRICK_BITMAP) {
+			// added first, so the bitmap is drawn below everything else
+			brickBitmap = new BrickBitmapLayer(this);
+			add(brickBitmap);
+		}
 		add(paddleOld);
 		add(ball);
-		add(infoLabel);
+		for (GLabel infoLabel : infoLabels) {
+			add(infoLabel);
+		}
 		add(paddle);
 	}
 
@@ -103,14 +125,101 @@ public class BreakoutView extends GCanvas {
 	 *            The array of {@code BreakoutBrick}s.
 	 */
 	public void updateBricks(BreakoutBrick[] bricks) {
-		for (BreakoutBrick brick : bricks) {
-			if (brick != null) {
-				brick.setFilled(true);
-				add(brick);
+		if (brickLayer != null) {
+			remove(brickLayer);
+			brickLayer = null;
+		}
+		brickStore = null;
+
+		// the bricks are drawn into the bitmap instead of being added
+		if (brickBitmap != null) {
+			for (BreakoutBrick brick : bricks) {
+				if (brick != null) {
+					brick.setFilled(true);
+				}
+			}
+			brickBitmap.setBricks(bricks);
+			return;
+		}
+		addBricks(bricks, 0, bricks.length);
+	}
+
+	/**
+	 * Brings a range of an array of {@code BreakoutBrick}s on the
+	 * {@code BreakoutView}. The bricks are always added as objects of their own,
+	 * because this is used for the moving bricks of the endless mode.
+	 * 
+	 * @param bricks
+	 *            The array of {@code BreakoutBrick}s.
+	 * @param from
+	 *            The first index of the range.
+	 * @param to
+	 *            The index after the last brick of the range.
+	 */
+	public void addBricks(BreakoutBrick[] bricks, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (bricks[i] != null) {
+				bricks[i].setFilled(true);
+				add(bricks[i]);
+			}
+		}
+	}
+
+	/**
+	 * Removes a range of an array of {@code BreakoutBrick}s from the view.
+	 * 
+	 * @param bricks
+	 *            The array of {@code BreakoutBrick}s.
+	 * @param from
+	 *            The first index of the range.
+	 * @param to
+	 *            The index after the last brick of the range.
+	 */
+	public void removeBricks(BreakoutBrick[] bricks, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (bricks[i] != null) {
+				remove(bricks[i]);
 			}
 		}
 	}
 
+	/**
+	 * Brings the bricks of a {@code BrickStore} on the {@code BreakoutView}. The
+	 * bricks are drawn by a single {@code BrickStoreLayer}, which only reads the
+	 * bricks of the visible region.
+	 * 
+	 * @param store
+	 *            The store containing the bricks.
+	 */
+	public void updateBricks(BrickStore store) {
+		brickStore = store;
+		if (brickBitmap != null) {
+			brickBitmap.setBricks(store);
+			return;
+		}
+
+		if (brickLayer != null) {
+			remove(brickLayer);
+		}
+		brickLayer = new BrickStoreLayer(store, this);
+		add(brickLayer);
+	}
+
+	/**
+	 * Removes a brick of the {@code BrickStore} from the view.
+	 * 
+	 * @param brick
+	 *            The index of the brick in the store.
+	 */
+	public void removeBrick(int brick) {
+		if (brickBitmap != null && brickStore != null) {
+			brickBitmap.invalidate(brickStore.getX(brick), brickStore.getY(brick), brickStore.getWidth(brick),
+					brickStore.getHeight(brick));
+		} else if (brickLayer != null) {
+			brickLayer.repaintBrick(brick);
+		}
+	}
+
 	/**
 	 * Removes a brick from the view.
 	 * 
@@ -118,6 +227,10 @@ public class BreakoutView extends GCanvas {
 	 *            The {@code BreakoutBrick} to be removed.
 	 */
 	public void removeBrick(BreakoutBrick brick) {
+		if (brickBitmap != null && brick.getParent() == null) {
+			brickBitmap.invalidate(brick.getX(), brick.getY(), brick.getWidth(), brick.getHeight());
+			return;
+		}
 		remove(brick);
 
 		// TODO evtl mit Animation? Viel Spass, Cecile ;-)
@@ -153,8 +266,25 @@ public class BreakoutView extends GCanvas {
 	 * @param text
 	 *            the added text.
 	 */
-	public void setInfoText(String text) {
-		infoLabel.setLabel(text);
+	public synchronized void setInfoText(String text) {
+		setInfoText(0, text);
+		for (int i = 1; i < INFO_LINES; i++) {
+			setInfoText(i, "");
+		}
+	}
+
+	/**
+	 * Sets a line of the information text in the view.
+	 * 
+	 * @param line
+	 *            the line, from 0 to {@code INFO_LINES - 1}.
+	 * @param text
+	 *            the text of the line.
+	 */
+	@Override
+	public synchronized void setInfoText(int line, String text) {
+		hudShown = false;
+		infoLabels[line].setLabel(text);
 	}
 
 	/**
@@ -165,7 +295,21 @@ public class BreakoutView extends GCanvas {
 	 *            not.
 	 */
 	public void showInfoText(boolean show) {
-		infoLabel.setVisible(show);
+		for (GLabel infoLabel : infoLabels) {
+			infoLabel.setVisible(show);
+		}
+	}
+
+	/**
+	 * The acm canvas repaints itself, so nothing has to be done after a frame.
+	 */
+	@Override
+	public void frameDone() {
+	}
+
+	@Override
+	public Component getComponent() {
+		return this;
 	}
 
 	/**
@@ -174,6 +318,26 @@ public class BreakoutView extends GCanvas {
 	 * @return {@code true} if the information text is visible {@code false} if not.
 	 */
 	public boolean isInfoVisible() {
-		return infoLabel.isVisible();
+		return infoLabels[0].isVisible();
+	}
+
+	@Override
+	public synchronized void showHud() {
+		for (GLabel infoLabel : infoLabels) {
+			infoLabel.setLabel("");
+		}
+		hudShown = true;
+	}
+
+	@Override
+	public synchronized boolean isHudShown() {
+		return hudShown && isInfoVisible();
+	}
+
+	@Override
+	public synchronized void setHudText(int line, String text) {
+		if (hudShown) {
+			infoLabels[line].setLabel(text);
+		}
 	}
 }
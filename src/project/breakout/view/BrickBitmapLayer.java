@@ -0,0 +1,161 @@
+package project.breakout.view;
+
+import java.awt.AlphaComposite;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import acm.graphics.GObject;
+import acm.graphics.GRectangle;
+import project.breakout.model.BrickStore;
+
+/**
+ * This class caches the bricks of a level in a bitmap. The bricks are drawn
+ * into the bitmap once and every repaint of the {@code BreakoutView} only
+ * copies the bitmap, so the costs of a repaint don't depend on the number of
+ * bricks. When a brick is removed, only its rectangle in the bitmap is drawn
+ * again.
+ *
+ * The bricks are changed by the game thread and the bitmap is copied by the
+ * thread which paints the canvas, so the bitmap and the bricks are guarded by
+ * the lock of the layer.
+ */
+@SuppressWarnings("serial")
+public class BrickBitmapLayer extends GObject {
+	private final Component canvas;
+	private BufferedImage bitmap;
+
+	// the source of the bricks, either an array or a store
+	private BreakoutBrick[] bricks;
+	private BrickStoreLayer storeLayer;
+
+	/**
+	 * Constructor for the BrickBitmapLayer.
+	 *
+	 * @param canvas
+	 *            The canvas the layer is drawn on.
+	 */
+	public BrickBitmapLayer(Component canvas) {
+		this.canvas = canvas;
+	}
+
+	/**
+	 * Draws the bricks of an array into the bitmap. The layer keeps the array and
+	 * reads it again when a brick is removed.
+	 *
+	 * @param bricks
+	 *            The array of {@code BreakoutBrick}s, removed bricks are
+	 *            {@code null}.
+	 */
+	public synchronized void setBricks(BreakoutBrick[] bricks) {
+		this.bricks = bricks;
+		this.storeLayer = null;
+		redrawAll();
+	}
+
+	/**
+	 * Draws the bricks of a {@code BrickStore} into the bitmap.
+	 *
+	 * @param store
+	 *            The store containing the bricks.
+	 */
+	public synchronized void setBricks(BrickStore store) {
+		this.bricks = null;
+		this.storeLayer = new BrickStoreLayer(store, canvas);
+		redrawAll();
+	}
+
+	/**
+	 * Draws the region of a removed brick again. The brick must already be
+	 * removed from the array or store.
+	 *
+	 * @param x
+	 *            The x-coordinate of the brick.
+	 * @param y
+	 *            The y-coordinate of the brick.
+	 * @param width
+	 *            The width of the brick.
+	 * @param height
+	 *            The height of the brick.
+	 */
+	public synchronized void invalidate(double x, double y, double width, double height) {
+		// the outline of a brick is one pixel larger than its size
+		Rectangle dirty = new Rectangle((int) Math.floor(x), (int) Math.floor(y), (int) Math.ceil(width) + 2,
+				(int) Math.ceil(height) + 2);
+		redraw(dirty);
+		canvas.repaint(dirty.x, dirty.y, dirty.width, dirty.height);
+	}
+
+	/**
+	 * Draws all bricks into the bitmap again.
+	 */
+	public synchronized void redrawAll() {
+		createBitmap();
+		canvas.repaint();
+	}
+
+	/**
+	 * Creates the bitmap in the size of the canvas and draws all bricks into it.
+	 */
+	private synchronized void createBitmap() {
+		int width = Math.max(1, canvas.getWidth());
+		int height = Math.max(1, canvas.getHeight());
+		if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+			bitmap = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		}
+		redraw(new Rectangle(0, 0, width, height));
+	}
+
+	/**
+	 * Clears the region of the bitmap and draws the bricks in it.
+	 */
+	private void redraw(Rectangle region) {
+		if (bitmap == null) {
+			return;
+		}
+		Graphics2D g = bitmap.createGraphics();
+		try {
+			g.setClip(region);
+			g.setComposite(AlphaComposite.Clear);
+			g.fillRect(region.x, region.y, region.width, region.height);
+			g.setComposite(AlphaComposite.SrcOver);
+
+			if (storeLayer != null) {
+				storeLayer.paint(g);
+			} else if (bricks != null) {
+				for (BreakoutBrick brick : bricks) {
+					if (brick != null && intersects(brick, region)) {
+						brick.paint(g);
+					}
+				}
+			}
+		} finally {
+			g.dispose();
+		}
+	}
+
+	private static boolean intersects(BreakoutBrick brick, Rectangle region) {
+		return brick.getX() <= region.x + region.width && brick.getX() + brick.getWidth() + 1 >= region.x
+				&& brick.getY() <= region.y + region.height && brick.getY() + brick.getHeight() + 1 >= region.y;
+	}
+
+	/**
+	 * Copies the bitmap to the canvas.
+	 */
+	@Override
+	public synchronized void paint(Graphics g) {
+		// the canvas was resized
+		if (bitmap == null || bitmap.getWidth() != Math.max(1, canvas.getWidth())
+				|| bitmap.getHeight() != Math.max(1, canvas.getHeight())) {
+			createBitmap();
+		}
+		g.drawImage(bitmap, 0, 0, null);
+	}
+
+	@Override
+	public GRectangle getBounds() {
+		return new GRectangle(0, 0, canvas.getWidth(), canvas.getHeight());
+	}
+}
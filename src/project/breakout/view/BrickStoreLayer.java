@@ -0,0 +1,111 @@
+package project.breakout.view;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+
+import acm.graphics.GObject;
+import acm.graphics.GRectangle;
+import project.breakout.model.BrickStore;
+
+/**
+ * This class draws the bricks of a {@code BrickStore} on the
+ * {@code BreakoutView}. Instead of one {@code BreakoutBrick} per brick there is
+ * only this one object, which reads the bricks of the visible region straight
+ * from the store whenever the view is painted.
+ */
+@SuppressWarnings("serial")
+public class BrickStoreLayer extends GObject implements BrickStore.Visitor {
+
+	/**
+	 * The color of the bricks of love, VIOLET as used by {@code BreakoutBrick}.
+	 */
+	private static final Color BRICK_OF_LOVE_COLOR = new Color(238, 130, 238);
+
+	private static final int COLOR_CACHE_SIZE = 64;
+
+	private final Color[] colorCache = new Color[COLOR_CACHE_SIZE];
+	private final BrickStore store;
+	private final Component canvas;
+
+	/**
+	 * The graphics used by {@code visit} while painting.
+	 */
+	private Graphics graphics;
+
+	/**
+	 * Constructor for the BrickStoreLayer.
+	 *
+	 * @param store
+	 *            The store containing the bricks.
+	 * @param canvas
+	 *            The canvas the layer is drawn on.
+	 */
+	public BrickStoreLayer(BrickStore store, Component canvas) {
+		this.store = store;
+		this.canvas = canvas;
+	}
+
+	/**
+	 * Draws the live bricks of the visible region.
+	 */
+	@Override
+	public void paint(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight());
+		}
+
+		graphics = g;
+		store.visit(clip.x, clip.y, clip.width, clip.height, this);
+		graphics = null;
+	}
+
+	@Override
+	public void visit(int brick) {
+		int x = (int) store.getX(brick);
+		int y = (int) store.getY(brick);
+		int width = (int) store.getWidth(brick);
+		int height = (int) store.getHeight(brick);
+
+		// fill like a filled GRect, bricks without color are black
+		int color = store.getColor(brick);
+		if (store.getType(brick) == BrickType.BRICK_OF_LOVE) {
+			graphics.setColor(BRICK_OF_LOVE_COLOR);
+		} else {
+			graphics.setColor(color != 0 ? toColor(color) : Color.BLACK);
+		}
+		graphics.fillRect(x, y, width, height);
+		graphics.setColor(Color.BLACK);
+		graphics.drawRect(x, y, width, height);
+	}
+
+	/**
+	 * Gets the {@code Color} for an ARGB value. The colors are cached, so painting
+	 * doesn't create a new color for every brick.
+	 */
+	private Color toColor(int argb) {
+		int slot = (argb ^ (argb >>> 12) ^ (argb >>> 24)) & (COLOR_CACHE_SIZE - 1);
+		if (colorCache[slot] == null || colorCache[slot].getRGB() != argb) {
+			colorCache[slot] = new Color(argb, true);
+		}
+		return colorCache[slot];
+	}
+
+	/**
+	 * Repaints the region of a brick after it was removed from the store.
+	 *
+	 * @param brick
+	 *            The index of the brick.
+	 */
+	public void repaintBrick(int brick) {
+		canvas.repaint((int) store.getX(brick), (int) store.getY(brick), (int) store.getWidth(brick) + 1,
+				(int) store.getHeight(brick) + 1);
+	}
+
+	@Override
+	public GRectangle getBounds() {
+		return new GRectangle(0, 0, canvas.getWidth(), canvas.getHeight());
+	}
+}
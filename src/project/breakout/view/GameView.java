@@ -0,0 +1,124 @@
+package project.breakout.view;
+
+import java.awt.Component;
+
+import project.breakout.model.BallModel;
+import project.breakout.model.BrickStore;
+
+/**
+ * This interface describes the desktop view of the game, which is drawn by the
+ * {@code BreakoutModel} and controlled by the {@code BreakoutController}. It is
+ * implemented by the {@code BreakoutView}, which uses the acm canvas, and by the
+ * {@code ActiveRenderView}, which renders every frame itself.
+ */
+public interface GameView {
+
+	/**
+	 * The number of lines of the info text and their distance in pixels.
+	 */
+	int INFO_LINES = 4;
+	int INFO_LINE_HEIGHT = 14;
+
+	// ---------paddle methods--------------------------
+
+	void setPaddleLocation(int xCoord, int yCoord);
+
+	void setPaddleSize(int width, int height);
+
+	// ----------ball methods-------------------------
+
+	void setBallsRadius(int radius);
+
+	void setBallsPosition(double x, double y);
+
+	void updateBallsPosition(BallModel ballModel);
+
+	// ------------Brick methods-------------------------
+
+	void updateBricks(BreakoutBrick[] bricks);
+
+	void updateBricks(BrickStore store);
+
+	void addBricks(BreakoutBrick[] bricks, int from, int to);
+
+	void removeBricks(BreakoutBrick[] bricks, int from, int to);
+
+	void removeBrick(BreakoutBrick brick);
+
+	void removeBrick(int brick);
+
+	// ---------level methods--------------------------
+
+	void levelDone();
+
+	void levelStarted();
+
+	// ----------infoLabel methods--------------------
+
+	/**
+	 * Shows a message of one line in the info text, the other lines are cleared.
+	 * Like every message, it switches the info text out of the HUD.
+	 *
+	 * @param text
+	 *            the message.
+	 */
+	void setInfoText(String text);
+
+	/**
+	 * Sets a line of a message of several lines, eg the leaderboard, and switches
+	 * the info text out of the HUD.
+	 *
+	 * @param line
+	 *            the line, from 0 to {@code INFO_LINES - 1}.
+	 * @param text
+	 *            the text of the line.
+	 */
+	void setInfoText(int line, String text);
+
+	void showInfoText(boolean show);
+
+	boolean isInfoVisible();
+
+	/**
+	 * Switches the info text to the {@code PerformanceHud}, whose lines are empty
+	 * until its next refresh. The HUD keeps the info text until a message is set.
+	 */
+	void showHud();
+
+	/**
+	 * @return {@code true} if the info text is visible and belongs to the HUD.
+	 */
+	boolean isHudShown();
+
+	/**
+	 * Sets a line of the HUD. It is ignored if the info text shows a message.
+	 *
+	 * @param line
+	 *            the line, from 0 to {@code INFO_LINES - 1}.
+	 * @param text
+	 *            the text of the line.
+	 */
+	void setHudText(int line, String text);
+
+	// ----------component methods--------------------
+
+	/**
+	 * Called by the model when a frame is complete, eg after every tick of the
+	 * game loop.
+	 */
+	void frameDone();
+
+	/**
+	 * Gets the component which is added to the window and receives the mouse and
+	 * key events.
+	 *
+	 * @return the component of the view.
+	 */
+	Component getComponent();
+
+	void setSize(int width, int height);
+
+	int getWidth();
+
+	int getHeight();
+}
@@ -0,0 +1,739 @@
+package project.breakout.view;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.cau.infprogoo.lighthouse.LighthouseDisplay;
+import project.breakout.log.Log;
+import project.breakout.metrics.LighthouseSendEvent;
+import project.breakout.metrics.TickMetrics;
+import project.breakout.model.BrickStore;
+import javafx.scene.paint.Color;
+
+/**
+ * The frame of a game on the lighthouse and the connection it is sent over.
+ * The bricks, the ball and the paddle are painted into the colors of the
+ * windows, and every change is sent to the lighthouse. Every game has its own
+ * frame, the {@code LighthouseView} is the frame of the desktop game.
+ *
+ * The frame is sent by the thread which paints it, unless an executor for the
+ * sending is set. Then the painting thread only copies the frame, and the
+ * executor sends the newest copy, so a slow connection doesn't block the game
+ * and frames which are replaced before they are sent are skipped.
+ */
+public class LighthouseFrame {
+	private final LighthouseDisplay display;
+
+	/**
+	 * The number of connections to the lighthouse made so far.
+	 */
+	private int connections = 0;
+
+	// the messages of the hot paths, which are logged in the background
+	private static final Log.Site BRICK_FAILED = Log.site("lighthouse.brick", Log.Level.WARN, 1); //$NON-NLS-1$
+	private static final Log.Site BALL_UNCHANGED = Log.site("lighthouse.ball", Log.Level.DEBUG, 1); //$NON-NLS-1$
+	private static final Log.Site SEND_FAILED = Log.site("lighthouse.send", Log.Level.WARN, 1); //$NON-NLS-1$
+
+	// data of the lighthouse
+	private final static int FLOORS = 14;
+	private final static int WINDOWS_PER_FLOOR = 28;
+	private final static int RGB = 3;
+
+	/**
+	 * ByteArray which represents the window colors of the lighthouse. Every window
+	 * is related with three bytes in a row - red, green and blue. Thus the first
+	 * three indices of the array represent the rgb value of the top left window.
+	 */
+	private final byte[] data = new byte[FLOORS * WINDOWS_PER_FLOOR * RGB];
+
+	// sending in the background, the copies are guarded by this
+	private Executor sendExecutor;
+	private byte[] pending = new byte[data.length];
+	private byte[] sending = new byte[data.length];
+	private boolean pendingChanged = false;
+	private boolean sendScheduled = false;
+
+	// the changes between beginUpdate and endUpdate are sent as one frame
+	private int updateDepth = 0;
+	private boolean updateChanged = false;
+
+	// the frames of this game, the counters of all games are in TickMetrics
+	private final AtomicLong framesSent = new AtomicLong();
+	private final AtomicLong framesDropped = new AtomicLong();
+	private final AtomicLong framesSkipped = new AtomicLong();
+
+	// paddle size 8*1
+	private int paddleWidth = 8;
+
+	private int paddleX;
+	private static final int PADDLE_Y = FLOORS - 1;
+
+	// ball size 2*1
+	private final static int BALL_LENGTH = 2;
+	private final static int BALL_HEIGHT = 1;
+
+	private int ballX;
+	private int ballY;
+
+	// brick size 7*1
+	private final static int BRICK_LENGTH = 7;
+	private final static int BRICK_HEIGHT = 1;
+
+	/**
+	 * Constructor for the LighthouseFrame.
+	 * 
+	 * @param display
+	 *            The connection to the lighthouse the frame is sent over.
+	 */
+	public LighthouseFrame(LighthouseDisplay display) {
+		this.display = display;
+	}
+
+	/**
+	 * Sends the frame with an executor instead of the painting thread, eg to run
+	 * many games on a few threads.
+	 * 
+	 * @param sendExecutor
+	 *            The executor which sends the frames or {@code null} to send
+	 *            them right away.
+	 */
+	public synchronized void setSendExecutor(Executor sendExecutor) {
+		this.sendExecutor = sendExecutor;
+	}
+
+	/**
+	 * Sets the position of the brick at a certain position in the data array. The
+	 * brick position shouldn't be higher/smaller than the amount of floors and
+	 * windows per floor.
+	 * 
+	 * @param relativeBrickX
+	 *            The relative X-position of the brick in the view.
+	 * @param relativeBrickY
+	 *            The relative Y-position of the brick in the view.
+	 */
+	public void setBrick(double relativeBrickX, double relativeBrickY) throws IllegalArgumentException {
+		drawBrick(relativeBrickX, relativeBrickY);
+		updateLighthouseView();
+	}
+
+	/**
+	 * Puts the brick into the data array without sending it to the lighthouse.
+	 * 
+	 * @param relativeBrickX
+	 *            The relative X-position of the brick in the view.
+	 * @param relativeBrickY
+	 *            The relative Y-position of the brick in the view.
+	 */
+	private void drawBrick(double relativeBrickX, double relativeBrickY) throws IllegalArgumentException {
+		// Convert from relative position to window position
+		int brickX = (int) (27 * relativeBrickX);
+		int brickY = (int) (13 * relativeBrickY);
+
+		// exception handling
+		if (brickX < 0 || brickX + BRICK_LENGTH >= WINDOWS_PER_FLOOR) {
+			throw new IllegalArgumentException("X-Coordinate of the brick out of range.");
+		}
+		if (brickY < 0 || brickY + BRICK_HEIGHT >= FLOORS) {
+			throw new IllegalArgumentException("Y-Coordinate of the brick out of range.");
+		}
+
+		// red
+		for (int h = 0; h < BRICK_HEIGHT; h++) {
+			for (int l = 0; l < BRICK_LENGTH; l++) {
+				int index = indexInDataArray(brickX + l, brickY + h, Color.RED);
+				data[index] = (byte) 0;
+			}
+		}
+
+		// green
+		for (int h = 0; h < BRICK_HEIGHT; h++) {
+			for (int l = 0; l < BRICK_LENGTH; l++) {
+				int index = indexInDataArray(brickX + l, brickY + h, Color.GREEN);
+				data[index] = (byte) 205;
+			}
+		}
+
+		// blue
+		for (int h = 0; h < BRICK_HEIGHT; h++) {
+			for (int l = 0; l < BRICK_LENGTH; l++) {
+				int index = indexInDataArray(brickX + l, brickY + h, Color.BLUE);
+				data[index] = (byte) 255;
+			}
+		}
+	}
+
+	/**
+	 * This method takes an array of {@code BreakoutBrick}s and puts it on the
+	 * lighthouse display.
+	 * 
+	 * @param brickArray
+	 *            The array of {@code BreakoutBrick}s to put on the screen.
+	 * @param screenWidth
+	 *            The width of the screen in the {@code BreakoutView}.
+	 * @param screenHeight
+	 *            The height of the screen in the {@code BreakoutView}.
+	 */
+	public void updateBricks(BreakoutBrick[] brickArray, int screenWidth, int screenHeight) {
+		for (BreakoutBrick brick : brickArray) {
+			if (brick == null) {
+				continue;
+			}
+			try {
+				double relativeBrickX = brick.getX() / screenWidth;
+				double relativeBrickY = brick.getY() / screenHeight;
+				setBrick(relativeBrickX, relativeBrickY);
+			} catch (Exception e) {
+				BRICK_FAILED.log("Could not show brick on lighthouse: {}", e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * This method puts the live bricks of a {@code BrickStore} on the lighthouse
+	 * display and sends the data only once.
+	 * 
+	 * @param store
+	 *            The store containing the bricks.
+	 * @param screenWidth
+	 *            The width of the screen in the {@code BreakoutView}.
+	 * @param screenHeight
+	 *            The height of the screen in the {@code BreakoutView}.
+	 */
+	public void updateBricks(BrickStore store, int screenWidth, int screenHeight) {
+		for (int brick = 0; brick < store.getBrickCount(); brick++) {
+			if (store.isAlive(brick)) {
+				try {
+					drawBrick(store.getX(brick) / screenWidth, store.getY(brick) / screenHeight);
+				} catch (IllegalArgumentException e) {
+				}
+			}
+		}
+		updateLighthouseView();
+	}
+
+	/**
+	 * Sets the position of the ball at a certain position in the data array. The
+	 * ball position shouldn't be higher/smaller than the amount of floors and
+	 * windows per floor.
+	 * 
+	 * @param relativeX
+	 *            The X-position of the ball in the game.
+	 * @param relativeY
+	 *            The Y-position of the ball in the game.
+	 */
+	public void setBallPosition(double relativeX, double relativeY) throws IllegalArgumentException {
+		removeBall();
+
+		// Convert from relative position to window position
+		int newBallX = (int) (27 * relativeX);
+		int newBallY = (int) (13 * relativeY);
+
+		// exception handling
+		if (newBallX < 0 || newBallX + BALL_LENGTH >= WINDOWS_PER_FLOOR) {
+			throw new IllegalArgumentException("X-Coordinate of the ball out of range.");
+		}
+		if (newBallY < 0 || newBallY + BALL_HEIGHT >= FLOORS) {
+			throw new IllegalArgumentException("Y-Coordinate of the ball out of range.");
+		}
+		
+		// check if the ball did move at all
+		if (newBallX == ballX && newBallY == ballY) {
+			BALL_UNCHANGED.log("Lighthouse updated aborted because nothing changed");
+			return;
+		} else {
+			ballX = newBallX;
+			ballY = newBallY;
+		}
+
+		// insert ball in array
+		for (int i = 0; i < BALL_LENGTH; i++) {
+			int index = indexInDataArray(ballX + i, ballY, Color.RED);
+			data[index] = (byte) 255;
+		}
+		updateLighthouseView();
+	}
+
+	/**
+	 * Sets the position of the paddle at a certain position in the data array. The
+	 * paddle X-position shouldn't be higher/smaller than the amount of windows per
+	 * floor. The Y-position of the paddle should be in the lowest row of windows.
+	 * 
+	 * @param relativePaddleWidth
+	 * 
+	 * @param paddleX
+	 *            The X-position of the paddle in the game.
+	 */
+	public void setPaddlePosition(double relativeX, double relativePaddleWidth) throws IllegalArgumentException {
+		removePaddle();
+		// System.out.println(getPaddleXPosition());
+		// System.out.println(getPaddleYPosition());
+
+		// Convert from relative position to window position
+		paddleX = (int) (27 * relativeX);
+		paddleWidth = (int) (27 * relativePaddleWidth);
+
+		// exception handling
+		if (paddleX < 0 || paddleX + paddleWidth >= WINDOWS_PER_FLOOR) {
+			throw new IllegalArgumentException("X-Coordinate of the paddle out of range.");
+		}
+
+		// insert paddle in data array
+		// implies that the height of the paddle is just 1 window
+		// red
+		for (int i = 0; i < paddleWidth; i++) {
+			int index = indexInDataArray(paddleX + i, PADDLE_Y, Color.RED);
+			data[index] = (byte) 255;
+		}
+
+		// green
+		for (int i = 0; i < paddleWidth; i++) {
+			int index = indexInDataArray(paddleX + i, PADDLE_Y, Color.GREEN);
+			data[index] = (byte) 100;
+		}
+
+		// blue
+		for (int i = 0; i < paddleWidth; i++) {
+			int index = indexInDataArray(paddleX + i, PADDLE_Y, Color.BLUE);
+			data[index] = (byte) 200;
+		}
+		updateLighthouseView();
+	}
+
+	/**
+	 * Sets all windows of the lighthouse dark.
+	 */
+	public void setAllDark() {
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) 0;
+		}
+		// the ball is gone, so it is drawn again at the same position
+		ballX = -WINDOWS_PER_FLOOR;
+		ballY = -FLOORS;
+		updateLighthouseView();
+	}
+
+	/**
+	 * Holds the frame back until {@code endUpdate}, so many changes, eg a whole
+	 * new picture of the game, are sent as one frame. The calls can be nested.
+	 */
+	public void beginUpdate() {
+		updateDepth++;
+	}
+
+	/**
+	 * Sends the frame if it changed since {@code beginUpdate}.
+	 */
+	public void endUpdate() {
+		if (updateDepth > 0 && --updateDepth == 0 && updateChanged) {
+			updateChanged = false;
+			updateLighthouseView();
+		}
+	}
+
+	/**
+	 * Sets the window dark.
+	 * 
+	 * @param windowX
+	 *            The x-th window in a Lighthouse-floor.
+	 * 
+	 * @param windowY
+	 *            The floor in which the window is set.
+	 */
+	private void setWindowDark(int windowX, int windowY) throws IllegalArgumentException {
+		// exception handling
+		if (windowX < 0 || windowX >= WINDOWS_PER_FLOOR) {
+			throw new IllegalArgumentException("X-Coordinate of the window out of range.");
+		}
+		if (windowY < 0 || windowY >= FLOORS) {
+			throw new IllegalArgumentException("Y-Coordinate of the window out of range.");
+		}
+
+		// compute index in array
+		int index = indexInDataArray(windowX, windowY);
+
+		// Set red, green and blue to zero
+		for (int i = 0; i < RGB; i++) {
+			data[index + i] = (byte) 0;
+		}
+	}
+
+	/**
+	 * This method updates the lightHouseView and sends the new data-array to it.
+	 */
+	private void updateLighthouseView() {
+		if (updateDepth > 0) {
+			updateChanged = true;
+			return;
+		}
+		if (!display.isConnected()) {
+			return;
+		}
+		Executor executor;
+		synchronized (this) {
+			executor = sendExecutor;
+			if (executor != null) {
+				// the sender takes the newest copy
+				System.arraycopy(data, 0, pending, 0, data.length);
+				if (pendingChanged) {
+					framesSkipped.incrementAndGet();
+				}
+				pendingChanged = true;
+				if (sendScheduled) {
+					return;
+				}
+				sendScheduled = true;
+			}
+		}
+		if (executor != null) {
+			executor.execute(this::sendPending);
+		} else {
+			send(data);
+		}
+	}
+
+	/**
+	 * Sends the copies of the frame until there is no newer one.
+	 */
+	private void sendPending() {
+		while (true) {
+			byte[] frame;
+			synchronized (this) {
+				if (!pendingChanged) {
+					sendScheduled = false;
+					return;
+				}
+				frame = pending;
+				pending = sending;
+				sending = frame;
+				pendingChanged = false;
+			}
+			send(frame);
+		}
+	}
+
+	private void send(byte[] frame) {
+		LighthouseSendEvent event = new LighthouseSendEvent();
+		event.begin();
+		boolean frameDropped = false;
+		try {
+			display.send(frame);
+			framesSent.incrementAndGet();
+		} catch (IOException e) {
+			frameDropped = true;
+			dropped();
+			SEND_FAILED.log("Data sending failed: {}", e.getMessage()); //$NON-NLS-1$
+		} catch (IllegalStateException e) {
+			frameDropped = true;
+			dropped();
+			if (e.getMessage() != null && e.getMessage().contains("BLOCKING")) {
+				SEND_FAILED.log("Connection overflow");
+			}
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.bytes = frame.length;
+			event.dropped = frameDropped;
+			event.commit();
+		}
+	}
+
+	private void dropped() {
+		framesDropped.incrementAndGet();
+		TickMetrics.lighthouseDropped();
+	}
+
+	/**
+	 * Sets up the connection of this frame to the lighthouse.
+	 * 
+	 * @param uri
+	 *            The address of the server or {@code null} for the lighthouse.
+	 * @throws Exception
+	 *             if the connection could not be set up.
+	 */
+	public void connect(String uri) throws Exception {
+		display.setSendListener(TickMetrics::lighthouseSent);
+		if (uri != null) {
+			display.connect(uri);
+		} else {
+			display.connect();
+		}
+		if (connections++ > 0) {
+			TickMetrics.lighthouseReconnected();
+		}
+	}
+
+	/**
+	 * Closes the connection to the lighthouse.
+	 */
+	public void close() {
+		display.close();
+	}
+
+	/**
+	 * Deletes the ball.
+	 */
+	private void removeBall() {
+		for (int h = 0; h <= BALL_HEIGHT; h++) {
+			for (int i = 0; i <= BALL_LENGTH; i++) {
+				try {
+					setWindowDark(getBallXPosition() + i, getBallYPosition() + h);
+				} catch (Exception e) {
+				}
+			}
+		}
+		updateLighthouseView();
+	}
+
+	/**
+	 * Removes the specified brick.
+	 * 
+	 * @param relativeBrickX
+	 *            The relative x-coordinate of the brick.
+	 * @param relativeBrickY
+	 *            The relative y-coordinate of the brick.
+	 */
+	public void removeBrick(double relativeBrickX, double relativeBrickY) {
+		clearBrick(relativeBrickX, relativeBrickY);
+		updateLighthouseView();
+	}
+
+	/**
+	 * Removes the specified brick from the data array without sending it to the
+	 * lighthouse.
+	 * 
+	 * @param relativeBrickX
+	 *            The relative x-coordinate of the brick.
+	 * @param relativeBrickY
+	 *            The relative y-coordinate of the brick.
+	 */
+	private void clearBrick(double relativeBrickX, double relativeBrickY) {
+		// compute the windows on the lighthouse the brick is blocking
+		int brickX = (int) (relativeBrickX * WINDOWS_PER_FLOOR);
+		int brickY = (int) (relativeBrickY * FLOORS);
+
+		for (int y = 0; y <= BRICK_HEIGHT; y++) {
+			for (int x = 0; x <= BRICK_LENGTH; x++) {
+				setWindowDark(brickX + x, brickY + y);
+			}
+		}
+	}
+
+	/**
+	 * Puts a range of an array of {@code BreakoutBrick}s on the lighthouse and
+	 * sends the data only once. Bricks outside of the lighthouse are left out.
+	 * 
+	 * @param brickArray
+	 *            The array of {@code BreakoutBrick}s.
+	 * @param from
+	 *            The first index of the range.
+	 * @param to
+	 *            The index after the last brick of the range.
+	 * @param screenWidth
+	 *            The width of the screen in the {@code BreakoutView}.
+	 * @param screenHeight
+	 *            The height of the screen in the {@code BreakoutView}.
+	 */
+	public void setBricks(BreakoutBrick[] brickArray, int from, int to, int screenWidth, int screenHeight) {
+		for (int i = from; i < to; i++) {
+			if (brickArray[i] != null) {
+				try {
+					drawBrick(brickArray[i].getX() / screenWidth, brickArray[i].getY() / screenHeight);
+				} catch (IllegalArgumentException e) {
+				}
+			}
+		}
+		updateLighthouseView();
+	}
+
+	/**
+	 * Removes a range of an array of {@code BreakoutBrick}s from the lighthouse
+	 * and sends the data only once.
+	 * 
+	 * @param brickArray
+	 *            The array of {@code BreakoutBrick}s.
+	 * @param from
+	 *            The first index of the range.
+	 * @param to
+	 *            The index after the last brick of the range.
+	 * @param screenWidth
+	 *            The width of the screen in the {@code BreakoutView}.
+	 * @param screenHeight
+	 *            The height of the screen in the {@code BreakoutView}.
+	 */
+	public void removeBricks(BreakoutBrick[] brickArray, int from, int to, int screenWidth,
+			int screenHeight) {
+		for (int i = from; i < to; i++) {
+			if (brickArray[i] != null) {
+				try {
+					clearBrick(brickArray[i].getX() / screenWidth, brickArray[i].getY() / screenHeight);
+				} catch (IllegalArgumentException e) {
+				}
+			}
+		}
+		updateLighthouseView();
+	}
+
+	/**
+	 * Deletes the paddle.
+	 */
+	private void removePaddle() {
+		for (int i = 0; i < WINDOWS_PER_FLOOR; i++) {
+			setWindowDark(i, FLOORS - 1);
+		}
+		updateLighthouseView();
+	}
+
+	/**
+	 * Computes the index of the array representing the red-value of the given
+	 * window.
+	 * 
+	 * @param windowX
+	 *            The column in which the window is on the lighthouse.
+	 * @param windowY
+	 *            The floor in which the window is on the lighthouse.
+	 * @return The first index in the {@code data}-array representing the given
+	 *         window, means the red-value.
+	 */
+	private int indexInDataArray(int windowX, int windowY) {
+		return (int) ((windowY * WINDOWS_PER_FLOOR + windowX) * RGB);
+	}
+
+	/**
+	 * Computes the index of the array representing the given color in the given
+	 * window.
+	 * 
+	 * @param windowX
+	 *            The column in which the window is on the lighthouse.
+	 * @param windowY
+	 *            The floor in which the window is on the lighthouse.
+	 * @param color
+	 *            The color which the index is wanted of.
+	 * @return The index of the {@code data}-array representing the given window and
+	 *         the given color.
+	 */
+	private int indexInDataArray(int windowX, int windowY, Color color) {
+		// error handling
+		assert windowX <= WINDOWS_PER_FLOOR : "It should be: 1 <= windowX <= " + WINDOWS_PER_FLOOR + " but was " + windowX;
+		assert windowY <= FLOORS : "It should be: 1 <= windowY <= " + FLOORS + " but was " + windowY;
+		assert color.equals(Color.RED) || color.equals(Color.GREEN) || color.equals(Color.BLUE) : "Color is not allowed, see javaDoc";
+		
+		// compute index for red value for the given window
+		int index = (int) ((windowY * WINDOWS_PER_FLOOR + windowX) * RGB);
+		
+		// return the index or count further on for other colors
+		if (color.equals(Color.RED)) {			
+			return index;
+		} else if (color.equals(Color.GREEN)) {
+			// for green value
+			return (index+1);
+			
+		} else if (color.equals(Color.BLUE)) {
+			// for blue value
+			return (index+2);
+		} else {
+			return -1;
+		}
+	}
+
+	// ---------Getter-------------------------------------
+
+	/**
+	 * Gets the round trip time of the last request which was answered by the
+	 * lighthouse.
+	 * 
+	 * @return the round trip time in nanoseconds or -1 if none was answered yet.
+	 */
+	public long getRoundTripNanos() {
+		return display.getLastRoundTripNanos();
+	}
+
+	/**
+	 * Describes the connection to the lighthouse, eg for the diagnostics of a
+	 * stalled tick.
+	 * 
+	 * @return the state of the connection and the requests sent.
+	 */
+	public String describeConnection() {
+		long roundTrip = getRoundTripNanos();
+		return "connected " + isConnected() + ", requests sent " + display.getRequestsSent() + ", dropped "
+				+ framesDropped.get() + ", last round trip "
+				+ (roundTrip < 0 ? "none" : TimeUnit.NANOSECONDS.toMicros(roundTrip) + " us");
+	}
+
+	/**
+	 * Gets the number of frames sent to the lighthouse.
+	 * 
+	 * @return the number of frames sent.
+	 */
+	public long getFramesSent() {
+		return framesSent.get();
+	}
+
+	/**
+	 * Gets the number of frames which could not be sent.
+	 * 
+	 * @return the number of frames dropped.
+	 */
+	public long getFramesDropped() {
+		return framesDropped.get();
+	}
+
+	/**
+	 * Gets the number of frames which were replaced by a newer frame before they
+	 * were sent in the background.
+	 * 
+	 * @return the number of frames skipped.
+	 */
+	public long getFramesSkipped() {
+		return framesSkipped.get();
+	}
+
+	/**
+	 * Checks if there in a connection to the lighthouse.
+	 * 
+	 * @return {@code true} if LighthouseView is connected, {@code false} if not.
+	 */
+	public boolean isConnected() {
+		return display.isConnected();
+	}
+
+	/**
+	 * Get the x-position of the ball.
+	 * 
+	 * @return ballX.
+	 */
+	private int getBallXPosition() {
+		return ballX;
+	}
+
+	/**
+	 * Get the y-position of the ball.
+	 * 
+	 * @return ballY.
+	 */
+	private int getBallYPosition() {
+		return ballY;
+	}
+
+	/**
+	 * Get the y-position of the paddle.
+	 * 
+	 * @return paddleY.
+	 */
+	@SuppressWarnings("unused")
+	private int getPaddleYPosition() {
+		return PADDLE_Y;
+	}
+
+	/**
+	 * Get the x-position of the paddle.
+	 * 
+	 * @return paddleX.
+	 */
+	@SuppressWarnings("unused")
+	private int getPaddleXPosition() {
+		return paddleX;
+	}
+}
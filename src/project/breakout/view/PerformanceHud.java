@@ -0,0 +1,215 @@
+package project.breakout.view;
+
+import project.breakout.metrics.TickMetrics;
+
+/**
+ * This class shows the live metrics of the game loop in the info text of a
+ * {@code GameView}. It is refreshed by the game thread after every tick, but
+ * the text is only formatted a few times a second and only while the info text
+ * is visible and belongs to the HUD, so it doesn't overwrite the messages of
+ * the game. Every line is formatted into its own char buffer, which is
+ * reused, and only a line which changed is passed to the view as a new string.
+ */
+public class PerformanceHud {
+	private static final long REFRESH_NANOS = 250_000_000L;
+
+	private final GameView view;
+	private final TextLine[] lines = new TextLine[GameView.INFO_LINES];
+
+	// the readings of the last refresh
+	private long lastRefreshAt = 0;
+	private long lastTicks;
+	private long lastCollisionChecks;
+	private long lastBricksTested;
+	private long lastSends;
+	private long lastAllocatedBytes = -1;
+	private boolean shown = false;
+
+	/**
+	 * Constructor for the PerformanceHud.
+	 *
+	 * @param view
+	 *            The view showing the info text.
+	 */
+	public PerformanceHud(GameView view) {
+		this.view = view;
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = new TextLine();
+		}
+	}
+
+	/**
+	 * Updates the info text if it belongs to the HUD and the last refresh is long
+	 * enough ago, right away after the HUD was shown. Must be called by the game
+	 * thread.
+	 */
+	public void refresh() {
+		long now = System.nanoTime();
+		if (!view.isHudShown()) {
+			shown = false;
+			return;
+		}
+		// the lines were cleared when the HUD was shown, so they are all set again
+		boolean all = !shown;
+		if (shown && now - lastRefreshAt < REFRESH_NANOS) {
+			return;
+		}
+		shown = true;
+		double seconds = (now - lastRefreshAt) / 1e9;
+		lastRefreshAt = now;
+
+		long ticks = TickMetrics.getTicks() - lastTicks;
+		long collisionChecks = TickMetrics.getCollisionChecks() - lastCollisionChecks;
+		long bricksTested = TickMetrics.getBricksTested() - lastBricksTested;
+		long sends = TickMetrics.getLighthouseSends() - lastSends;
+		long allocatedBytes = TickMetrics.getAllocatedBytes();
+		long allocated = allocatedBytes - lastAllocatedBytes;
+
+		TextLine line = lines[0].clear();
+		line.append("tps ").append(ticks / seconds, 1);
+		line.append("   tick p50 ").append(TickMetrics.getTickNanos(0.5) / 1e6, 2).append(" ms");
+		line.append("   p99 ").append(TickMetrics.getTickNanos(0.99) / 1e6, 2).append(" ms");
+
+		line = lines[1].clear();
+		line.append("collision checks/tick ").append(ticks > 0 ? (double) collisionChecks / ticks : 0, 1);
+		line.append("   bricks tested/tick ").append(ticks > 0 ? (double) bricksTested / ticks : 0, 1);
+
+		line = lines[2].clear();
+		line.append("lighthouse sends/s ").append(sends / seconds, 1);
+		line.append("   drops ").append(TickMetrics.getLighthouseDrops());
+		line.append("   rtt ");
+		long roundTrip = LighthouseView.getRoundTripNanos();
+		if (roundTrip >= 0) {
+			line.append(roundTrip / 1e6, 1).append(" ms");
+		} else {
+			line.append("-");
+		}
+
+		// the game thread changes when the game is restarted
+		line = lines[3].clear();
+		line.append("alloc ");
+		if (allocatedBytes >= 0 && lastAllocatedBytes >= 0 && allocated >= 0) {
+			line.append(allocated / seconds / (1 << 20), 2).append(" MB/s");
+		} else {
+			line.append("-");
+		}
+
+		lastTicks += ticks;
+		lastCollisionChecks += collisionChecks;
+		lastBricksTested += bricksTested;
+		lastSends += sends;
+		lastAllocatedBytes = allocatedBytes;
+
+		for (int i = 0; i < lines.length; i++) {
+			if (lines[i].changed() || all) {
+				view.setHudText(i, lines[i].toString());
+			}
+		}
+	}
+
+	/**
+	 * A line of text in a reusable char buffer.
+	 */
+	private static class TextLine {
+		private char[] chars = new char[96];
+		private char[] shown = new char[0];
+		private int length = 0;
+
+		TextLine clear() {
+			length = 0;
+			return this;
+		}
+
+		TextLine append(String text) {
+			ensureCapacity(length + text.length());
+			text.getChars(0, text.length(), chars, length);
+			length += text.length();
+			return this;
+		}
+
+		TextLine append(long value) {
+			if (value < 0) {
+				append('-');
+				value = -value;
+			}
+			int start = length;
+			do {
+				append((char) ('0' + value % 10));
+				value /= 10;
+			} while (value > 0);
+
+			// the digits were appended in reverse order
+			for (int i = start, j = length - 1; i < j; i++, j--) {
+				char digit = chars[i];
+				chars[i] = chars[j];
+				chars[j] = digit;
+			}
+			return this;
+		}
+
+		/**
+		 * Appends a number with a fixed count of decimals.
+		 */
+		TextLine append(double value, int decimals) {
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				return append("-");
+			}
+			long scale = 1;
+			for (int i = 0; i < decimals; i++) {
+				scale *= 10;
+			}
+			long scaled = Math.round(Math.abs(value) * scale);
+			if (value < 0 && scaled != 0) {
+				append('-');
+			}
+			append(scaled / scale);
+			if (decimals > 0) {
+				append('.');
+				long fraction = scaled % scale;
+				for (long digit = scale / 10; digit > 0; digit /= 10) {
+					append((char) ('0' + fraction / digit % 10));
+				}
+			}
+			return this;
+		}
+
+		private TextLine append(char c) {
+			ensureCapacity(length + 1);
+			chars[length++] = c;
+			return this;
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > chars.length) {
+				char[] larger = new char[Math.max(capacity, chars.length * 2)];
+				System.arraycopy(chars, 0, larger, 0, length);
+				chars = larger;
+			}
+		}
+
+		/**
+		 * Checks if the line differs from the line shown the last time and remembers
+		 * it as shown.
+		 */
+		boolean changed() {
+			if (shown.length == length) {
+				boolean equal = true;
+				for (int i = 0; i < length && equal; i++) {
+					equal = shown[i] == chars[i];
+				}
+				if (equal) {
+					return false;
+				}
+			} else {
+				shown = new char[length];
+			}
+			System.arraycopy(chars, 0, shown, 0, length);
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return new String(chars, 0, length);
+		}
+	}
+}